@@ -0,0 +1,126 @@
+package server;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ocsf.server.ConnectionToClient;
+
+/**
+ * Decides whether a client request is handled or answered with BUSY right away.
+ * <p>
+ * Each connection has a {@link TokenBucket} per {@link CommandClass}, so a client flooding one
+ * kind of request is throttled without slowing down its other requests or other clients.
+ * The decisions are counted for the server monitor.
+ * </p>
+ * <p>
+ * There is no separate budget of concurrent requests: message handling is serialized under
+ * the server monitor, so only one request runs at a time. The work that outlives its request,
+ * report regeneration and subscriber import, runs on the fixed-size pools of the
+ * {@link ReportEngine} and the {@link SubscriberImporter}, which bound its concurrency and
+ * so the database connections it takes.
+ * </p>
+ */
+public class AdmissionController {
+
+    /**
+     * Classes of client commands with their own rate limits.
+     */
+    public enum CommandClass {
+        /** Cheap lookups. */
+        READ(30, 15),
+        /** Commands that change data. */
+        WRITE(10, 2),
+        /** Queries that scan many rows. */
+        EXPENSIVE(5, 1);
+
+        private final int burst;
+        private final double perSecond;
+
+        CommandClass(int burst, double perSecond) {
+            this.burst = burst;
+            this.perSecond = perSecond;
+        }
+    }
+
+    /**
+     * Outcome of an admission check.
+     */
+    public enum Decision {
+        /** The request may run. */
+        ADMITTED,
+        /** The connection exceeded the rate of the command's class. */
+        RATE_LIMITED
+    }
+
+    private static final String BUCKETS_INFO = "admission.buckets";
+
+    private static final Set<String> EXPENSIVE_COMMANDS = Set.of(
+            "get_valid_start_times", "check_reservation_availability",
+            "get_parking_history", "get_parking_history_all_active", "get_subscribers_all_active",
+            "search_subscribers", "search_active_parkings", "import_subscribers", "get_all_system_logs",
+            "regenerate_reports", "get_unique_subscribers", "get_occupancy_series", "get_occupancy_heatmap",
+            "get_parking_duration_report");
+
+    private static final Set<String> WRITE_COMMANDS = Set.of(
+            "car_deposit", "car_pickup", "extend_parking", "add_reservation", "update_subscriber",
+            "add_subscriber", "send_code_email", "CheckAndDepositReservedCar", "CancelReservationByCode");
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+
+    /**
+     * Returns the class of a client command.
+     *
+     * @param command the client command
+     * @return its class
+     */
+    public static CommandClass classify(String command) {
+        if (EXPENSIVE_COMMANDS.contains(command)) {
+            return CommandClass.EXPENSIVE;
+        }
+        return WRITE_COMMANDS.contains(command) ? CommandClass.WRITE : CommandClass.READ;
+    }
+
+    /**
+     * Checks whether a request of a client may run now.
+     *
+     * @param client  the connection the request came from
+     * @param command the client command
+     * @return the decision
+     */
+    public Decision admit(ConnectionToClient client, String command) {
+        CommandClass commandClass = classify(command);
+        if (!bucketsOf(client).get(commandClass).tryAcquire()) {
+            rateLimited.incrementAndGet();
+            return Decision.RATE_LIMITED;
+        }
+        admitted.incrementAndGet();
+        return Decision.ADMITTED;
+    }
+
+    /**
+     * @return a line with the admission counters, for the server monitor
+     */
+    public String summary() {
+        return String.format("Admitted: %d | Rate-limited: %d", admitted.get(), rateLimited.get());
+    }
+
+    /**
+     * Returns the buckets of a connection, kept with the connection so they go away with it.
+     * The requests of a connection are handled by its own thread, which is the only caller.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<CommandClass, TokenBucket> bucketsOf(ConnectionToClient client) {
+        Map<CommandClass, TokenBucket> buckets = (Map<CommandClass, TokenBucket>) client.getInfo(BUCKETS_INFO);
+        if (buckets == null) {
+            buckets = new EnumMap<>(CommandClass.class);
+            for (CommandClass commandClass : CommandClass.values()) {
+                buckets.put(commandClass, new TokenBucket(commandClass.burst, commandClass.perSecond));
+            }
+            client.setInfo(BUCKETS_INFO, buckets);
+        }
+        return buckets;
+    }
+}
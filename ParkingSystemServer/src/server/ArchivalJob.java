@@ -0,0 +1,65 @@
+package server;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Moves old rows of parking_history and system_log to their compressed archive tables.
+ * <p>
+ * Closed parking sessions that ended more than {@code hotMonths} months ago, and system log
+ * entries logged before that time, are moved once a day during the night. The hot tables
+ * then only hold recent rows, so the availability and active-session queries cost the same
+ * however many years of history are kept. Missed runs are coalesced, since one run archives
+ * everything that is due.
+ * </p>
+ */
+public class ArchivalJob implements ScheduledJob {
+
+    /** Time of day at which the archival runs. */
+    private static final LocalTime RUN_TIME = LocalTime.of(3, 30);
+
+    private final DBController dbController;
+    private final int hotMonths;
+
+    /**
+     * Constructs the archival job.
+     *
+     * @param dbController the database controller used to move the rows
+     * @param hotMonths    the number of months kept in the hot tables
+     */
+    public ArchivalJob(DBController dbController, int hotMonths) {
+        this.dbController = dbController;
+        this.hotMonths = hotMonths;
+    }
+
+    @Override
+    public String getName() {
+        return "history-archival";
+    }
+
+    @Override
+    public LocalDateTime nextRunAfter(LocalDateTime lastRun) {
+        LocalDate day = lastRun == null ? LocalDate.now() : lastRun.toLocalDate().plusDays(1);
+        return day.atTime(RUN_TIME);
+    }
+
+    @Override
+    public void run(LocalDateTime scheduledFor, Progress progress) {
+        LocalDateTime cutoff = LocalDate.now().minusMonths(hotMonths).atStartOfDay();
+
+        progress.report(0, "Archiving parking history before " + cutoff.toLocalDate() + "...");
+        int sessions = dbController.archiveParkingHistory(cutoff);
+        if (sessions < 0) {
+            throw new IllegalStateException("Failed to archive parking history before " + cutoff);
+        }
+
+        progress.report(0.5, "Archiving system logs before " + cutoff.toLocalDate() + "...");
+        int logs = dbController.archiveSystemLogs(cutoff);
+        if (logs < 0) {
+            throw new IllegalStateException("Failed to archive system logs before " + cutoff);
+        }
+
+        progress.report(1, "Archived " + sessions + " parking session(s) and " + logs + " log entr(ies).");
+    }
+}
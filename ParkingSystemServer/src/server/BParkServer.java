@@ -6,17 +6,27 @@ import ocsf.server.ConnectionToClient;
 import serverGui.ServerMainController;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import javax.mail.MessagingException;
 
 import bpark_common.ClientRequest;
+import bpark_common.ImportSummary;
+import bpark_common.ResultChunk;
+import bpark_common.ResultPage;
 import bpark_common.ServerResponse;
 
 /**
@@ -25,8 +35,59 @@ import bpark_common.ServerResponse;
  */
 public class BParkServer extends AbstractServer {
 
+    /** Upper bound for the page size a client may request in search commands. */
+    private static final int MAX_PAGE_SIZE = 500;
+
+    /** Rows per chunk when streaming a large result to a client. */
+    private static final int STREAM_CHUNK_SIZE = 200;
+
+    /** Interval at which the expiry sweeper is rebuilt from the database. */
+    private static final Duration SWEEPER_RESYNC_INTERVAL = Duration.ofHours(1);
+
+    /** How long system log entries are kept before compaction deletes them. */
+    private static final Duration SYSTEM_LOG_RETENTION = Duration.ofDays(365);
+
+    /** Interval at which the live subscriber sketches are merged into the database. */
+    private static final Duration SKETCH_FLUSH_INTERVAL = Duration.ofMinutes(1);
+
+    /** Interval at which the occupancy cube deltas and the duration statistics are written to the database. */
+    private static final Duration CUBE_FLUSH_INTERVAL = Duration.ofMinutes(1);
+
+    /** Interval at which the spot table is reconciled with the open parking sessions. */
+    private static final Duration SPOT_RECONCILE_INTERVAL = Duration.ofMinutes(5);
+
+    /** Interval at which the parking journal writes a snapshot of its state. */
+    private static final Duration JOURNAL_SNAPSHOT_INTERVAL = Duration.ofMinutes(10);
+
+    /** Client commands whose retries are answered from the {@link IdempotencyStore} when they carry an idempotency key. */
+    private static final Set<String> IDEMPOTENT_COMMANDS = Set.of("car_deposit", "car_pickup", "extend_parking", "add_reservation");
+
+    /** Months of parking history and system logs kept in the hot tables before archival. */
+    private static final int HOT_HISTORY_MONTHS = Integer.getInteger("bpark.archive.months", 6);
+
     private final DBController dbController;
     private final ServerMainController guiController;
+    private final ParkingJournal parkingJournal;
+    private final ExpirySweeper expirySweeper;
+    private final SpotStateTable spotTable;
+    private final JobScheduler jobScheduler;
+    private final SubscriberImporter subscriberImporter;
+    private final SubscriberSketchStore subscriberSketches;
+    private final OccupancyRecorder occupancyRecorder;
+    private final OccupancyCube occupancyCube;
+    private final ParkingDurationStore durationStore;
+    private final IdempotencyStore idempotencyStore;
+    private final AdmissionController admissionController;
+    private final ConnectionRegistry connectionRegistry;
+
+    /**
+     * Request id of the client request being handled by the current connection thread, copied
+     * into every response sent through {@link #sendServerResponse}.
+     */
+    private final ThreadLocal<Long> currentRequestId = ThreadLocal.withInitial(() -> 0L);
+
+    /** The last response sent by the current connection thread while handling a client request. */
+    private final ThreadLocal<ServerResponse> sentResponse = new ThreadLocal<>();
 
     /**
      * Constructs the server and initializes DB controller.
@@ -38,6 +99,138 @@ public class BParkServer extends AbstractServer {
         super(port);
         this.guiController = guiController;
         this.dbController = new DBController();
+        IdAllocator idAllocator = new IdAllocator(dbController);
+        dbController.setIdAllocator(idAllocator);
+        dbController.setConfirmationCodeAllocator(new ConfirmationCodeAllocator(dbController, idAllocator));
+        this.parkingJournal = new ParkingJournal(dbController);
+        this.expirySweeper = new ExpirySweeper(dbController, parkingJournal);
+        this.spotTable = new SpotStateTable(dbController);
+        this.jobScheduler = new JobScheduler(dbController);
+        this.subscriberImporter = new SubscriberImporter(dbController);
+        this.subscriberSketches = new SubscriberSketchStore(dbController);
+        this.occupancyRecorder = new OccupancyRecorder(new OccupancyStore(), spotTable, dbController);
+        this.occupancyCube = new OccupancyCube(dbController);
+        ReportEngine.getInstance().setOccupancyCube(occupancyCube);
+        this.durationStore = new ParkingDurationStore(dbController);
+        ReportEngine.getInstance().setDurationStore(durationStore);
+        this.idempotencyStore = new IdempotencyStore(dbController);
+        this.admissionController = new AdmissionController();
+        this.connectionRegistry = new ConnectionRegistry();
+
+        jobScheduler.register(ScheduledJob.every("expiry-sweeper-resync", SWEEPER_RESYNC_INTERVAL,
+                expirySweeper::resync));
+        jobScheduler.register(ScheduledJob.every("system-log-compaction", Duration.ofDays(1), () -> {
+            int deleted = dbController.deleteSystemLogsBefore(LocalDateTime.now().minus(SYSTEM_LOG_RETENTION));
+            System.out.println("System log compaction removed " + deleted + " entr(ies).");
+        }));
+        jobScheduler.register(new ArchivalJob(dbController, HOT_HISTORY_MONTHS));
+        jobScheduler.register(ScheduledJob.every("subscriber-sketch-flush", SKETCH_FLUSH_INTERVAL,
+                subscriberSketches::flush));
+        jobScheduler.register(ScheduledJob.every("occupancy-cube-flush", CUBE_FLUSH_INTERVAL,
+                occupancyCube::flush));
+        jobScheduler.register(ScheduledJob.every("parking-duration-flush", CUBE_FLUSH_INTERVAL,
+                durationStore::flush));
+        jobScheduler.register(ScheduledJob.every("idempotency-key-expiry", Duration.ofHours(1),
+                idempotencyStore::purgeExpired));
+        jobScheduler.register(ScheduledJob.every("spot-state-reconciliation", SPOT_RECONCILE_INTERVAL,
+                this::reconcileSpots));
+        jobScheduler.register(ScheduledJob.every("parking-journal-snapshot", JOURNAL_SNAPSHOT_INTERVAL,
+                parkingJournal::snapshot));
+    }
+
+    /**
+     * Loads the spot table and starts the expiry sweeper and the background jobs once the server
+     * is listening. The spot table is always reconciled against the open sessions in the
+     * database, so a spot is never handed out twice; the sweeper starts from the state restored
+     * by the parking journal when it opens, and from the database otherwise.
+     */
+    @Override
+    protected void serverStarted() {
+        dbController.loadArchiveHorizon();
+        boolean restored = parkingJournal.open();
+        spotTable.start();
+        occupancyRecorder.start();
+        if (restored) {
+            expirySweeper.start(parkingJournal.getReservationStartTimes(), parkingJournal.getSessionExitTimes());
+        } else {
+            expirySweeper.start();
+        }
+        jobScheduler.start();
+        connectionRegistry.start();
+        System.out.println("Server listening on port " + getPort());
+    }
+
+    /**
+     * Stops the expiry sweeper, the occupancy recorder and the background jobs, and flushes the
+     * spot table, the subscriber sketches, the occupancy cube and the duration statistics, and
+     * snapshots the parking journal, when the server is closed.
+     */
+    @Override
+    protected void serverClosed() {
+        connectionRegistry.stop();
+        jobScheduler.stop();
+        expirySweeper.stop();
+        occupancyRecorder.stop();
+        spotTable.stop();
+        subscriberSketches.flush();
+        occupancyCube.flush();
+        durationStore.flush();
+        parkingJournal.close();
+    }
+
+    /**
+     * Repairs spots of the spot table that drifted from the open parking sessions. Holds the
+     * server monitor, like message handling, so no deposit is between claiming its spot and
+     * inserting its session meanwhile.
+     */
+    private synchronized void reconcileSpots() {
+        int corrected = spotTable.reconcile();
+        if (corrected != 0) {
+            System.out.println(corrected < 0 ? "Spot reconciliation failed to read the parking sessions."
+                    : "Spot reconciliation corrected " + corrected + " spot(s).");
+        }
+    }
+
+    /**
+     * @return the journal of parking session and reservation events
+     */
+    public ParkingJournal getParkingJournal() {
+        return parkingJournal;
+    }
+
+    /**
+     * @return the spot availability table
+     */
+    public SpotStateTable getSpotTable() {
+        return spotTable;
+    }
+
+    /**
+     * @return the registry of live client connections
+     */
+    public ConnectionRegistry getConnectionRegistry() {
+        return connectionRegistry;
+    }
+
+    /**
+     * @return the admission control applied to client requests
+     */
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    /**
+     * @return the sweeper that expires reservations and flags overdue sessions
+     */
+    public ExpirySweeper getExpirySweeper() {
+        return expirySweeper;
+    }
+
+    /**
+     * @return the scheduler running the server's background jobs
+     */
+    public JobScheduler getJobScheduler() {
+        return jobScheduler;
     }
 
     /**
@@ -48,6 +241,9 @@ public class BParkServer extends AbstractServer {
      */
     @Override
     protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+        connectionRegistry.handling();
+        connectionRegistry.touch(client);
+        long start = System.nanoTime();
         try {
             // System-level requests (login, direct subscriber updates) may still use entity objects:
             if (msg instanceof LoginRequest request) {
@@ -63,18 +259,90 @@ public class BParkServer extends AbstractServer {
             System.err.println("Failed to send response to client");
             e.printStackTrace();
             sendError(client, "Server error: " + e.getMessage(), "GENERIC");
+        } finally {
+            connectionRegistry.handled(System.nanoTime() - start);
         }
     }
 
     /**
-     * Routes the incoming client request to the appropriate handler based on its command.
+     * Handles a client request. Requests rejected by the {@link AdmissionController} are answered
+     * with a BUSY response carrying the rejected command. Only the first chunk of a subscriber
+     * import is charged; the later chunks of an accepted import always get through. Requests of {@link #IDEMPOTENT_COMMANDS}
+     * that carry an idempotency key run at most once within {@link IdempotencyStore#WINDOW};
+     * retries get the original response.
      *
      * @param request the client request containing the command and optional parameters
      * @param client  the client connection to respond to
      */
     private void handleClientRequest(ClientRequest request, ConnectionToClient client) {
+        currentRequestId.set(request.getRequestId());
+        if (!isImportContinuation(request, client)
+                && admissionController.admit(client, request.getCommand()) != AdmissionController.Decision.ADMITTED) {
+            sendServerResponse(client, "BUSY", false,
+                    "Too many requests. Please slow down and try again.", request.getCommand());
+            currentRequestId.remove();
+            sentResponse.remove();
+            return;
+        }
+        try {
+            String key = request.getIdempotencyKey();
+            if (key != null && key.length() <= IdempotencyStore.MAX_KEY_LENGTH
+                    && IDEMPOTENT_COMMANDS.contains(request.getCommand())) {
+                handleIdempotentRequest(request, key, client);
+            } else {
+                dispatchClientRequest(request, client);
+            }
+        } finally {
+            currentRequestId.remove();
+            sentResponse.remove();
+        }
+    }
+
+    /**
+     * @return true if the request is a later chunk of a subscriber import the connection started
+     */
+    private static boolean isImportContinuation(ClientRequest request, ConnectionToClient client) {
+        return "import_subscribers".equals(request.getCommand()) && request.getParams() != null
+                && request.getParams().length > 1 && request.getParams()[1] instanceof ResultChunk<?> chunk
+                && chunk.getSequence() > 0 && client.getInfo("import:" + request.getParams()[0]) != null;
+    }
+
+    /**
+     * Runs a write command unless its idempotency key was used before, in which case the
+     * remembered response is sent again, or "in progress" if that request is still running.
+     *
+     * @param request the client request
+     * @param key     the idempotency key of the request
+     * @param client  the client connection to respond to
+     */
+    private void handleIdempotentRequest(ClientRequest request, String key, ConnectionToClient client) {
+        ServerResponse replay = idempotencyStore.begin(key, request.getCommand());
+        if (replay != null) {
+            System.out.println("Answering retry of " + request.getCommand() + " for idempotency key " + key + " without running it");
+            sendServerResponse(client, replay.getCommand(), replay.isSuccess(), replay.getMessage(), replay.getData());
+            return;
+        }
+
+        sentResponse.remove();
+        try {
+            dispatchClientRequest(request, client);
+        } finally {
+            idempotencyStore.complete(key, request.getCommand(), sentResponse.get());
+        }
+    }
+
+    /**
+     * Routes the incoming client request to the appropriate handler based on its command.
+     *
+     * @param request the client request containing the command and optional parameters
+     * @param client  the client connection to respond to
+     */
+    private void dispatchClientRequest(ClientRequest request, ConnectionToClient client) {
         try {
             switch (request.getCommand()) {
+                case "ping" -> sendServerResponse(client, "PONG", true, "pong", null);
+                case "resume_session" -> handleResumeSession(request, client);
+                case "negotiate_compression" -> handleNegotiateCompression(request, client);
                 case "get_available_spots" -> handleGetAvailableSpots(client);
                 case "get_random_spot" -> handleRandomSpotRequest(client);
                 case "car_deposit" -> handleCarDeposit(request, client);
@@ -90,10 +358,18 @@ public class BParkServer extends AbstractServer {
                 case "scan_tag_login" -> handleScanTagLogin(request, client);
                 case "get_parking_history_all_active" -> handleGetAllActiveParkings(client);
                 case "get_subscribers_all_active" -> handleGetAllSubscribers(client);
+                case "search_subscribers" -> handleSearchSubscribers(request, client);
+                case "search_active_parkings" -> handleSearchActiveParkings(request, client);
                 case "add_subscriber" -> handleAddSubscriber(request, client);
+                case "import_subscribers" -> handleImportSubscribers(request, client);
                 case "get_all_system_logs" -> handleGetLogs(client);
                 case "get_monthly_parking_time_report" -> handleMonthlyParkingTimeReport(request, client);
                 case "get_monthly_subscriber_report" -> handleMonthlySubscriberReport(request, client);
+                case "regenerate_reports" -> handleRegenerateReports(request, client);
+                case "get_unique_subscribers" -> handleUniqueSubscribers(request, client);
+                case "get_occupancy_series" -> handleOccupancySeries(request, client);
+                case "get_occupancy_heatmap" -> handleOccupancyHeatmap(request, client);
+                case "get_parking_duration_report" -> handleParkingDurationReport(request, client);
                 case "get_subscriber_contact" -> handleGetSubscriberContact(request, client);
                 case "CheckAndDepositReservedCar" -> handleDepositReservedCar(request, client);
                 case "CancelReservationByCode" -> handleCancelReservationByCode(request, client);
@@ -111,7 +387,8 @@ public class BParkServer extends AbstractServer {
     /**
      * Processes a client request for a monthly parking time report and sends the result.
      *
-     * @param request the client request containing year and month
+     * @param request the client request containing year and month, and optionally the ETag of
+     *                the report the client holds
      * @param client  the requesting client connection
      */
 
@@ -120,16 +397,9 @@ public class BParkServer extends AbstractServer {
             int year = (int) request.getParams()[0];
             int month = (int) request.getParams()[1];
 
-            MonthlyParkingTimeReport report = DBController.loadMonthlyParkingTimeReport(year, month);
-
-            boolean success = report != null;
-            sendServerResponse(
-                client,
-                "monthly_parking_time_report_result",
-                success,
-                success ? "Monthly parking time report loaded" : "No report found for that month",
-                report
-            );
+            ReportCache.Entry entry = ReportCache.getInstance().get("parking_time", YearMonth.of(year, month),
+                    () -> DBController.loadMonthlyParkingTimeReport(year, month));
+            sendReport(client, request, "monthly_parking_time_report_result", entry, "Monthly parking time report loaded");
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -140,7 +410,8 @@ public class BParkServer extends AbstractServer {
     /**
      * Handles a client request to load the monthly subscriber report and sends the result.
      *
-     * @param request the client request containing year and month parameters
+     * @param request the client request containing year and month parameters, and optionally
+     *                the ETag of the report the client holds
      * @param client  the client connection to respond to
      */
     private void handleMonthlySubscriberReport(ClientRequest request, ConnectionToClient client) {
@@ -148,16 +419,9 @@ public class BParkServer extends AbstractServer {
             int year = (int) request.getParams()[0];
             int month = (int) request.getParams()[1];
 
-            MonthlySubscriberReport report = DBController.loadMonthlySubscriberReport(year, month);
-
-            boolean success = report != null;
-            sendServerResponse(
-                client,
-                "monthly_subscriber_report_result",
-                success,
-                success ? "Monthly subscriber report loaded" : "No report found for that month",
-                report
-            );
+            ReportCache.Entry entry = ReportCache.getInstance().get("subscribers", YearMonth.of(year, month),
+                    () -> DBController.loadMonthlySubscriberReport(year, month));
+            sendReport(client, request, "monthly_subscriber_report_result", entry, "Monthly subscriber report loaded");
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -165,13 +429,203 @@ public class BParkServer extends AbstractServer {
         }
     }
 
+    /**
+     * Sends a monthly report with its ETag. If the client sent the same ETag as the third
+     * parameter, only "not modified" is sent.
+     *
+     * @param client  the client connection
+     * @param request the report request
+     * @param command the response command
+     * @param entry   the report and its ETag
+     * @param loaded  the message for a found report
+     */
+    private void sendReport(ConnectionToClient client, ClientRequest request, String command,
+                            ReportCache.Entry entry, String loaded) {
+        Object[] params = request.getParams();
+        boolean found = entry.getReport() != null;
+        ServerResponse response;
+        if (params.length > 2 && entry.getEtag().equals(params[2])) {
+            response = new ServerResponse(command, found, "Not modified", null);
+            response.setNotModified(true);
+        } else {
+            response = new ServerResponse(command, found, found ? loaded : "No report found for that month", entry.getReport());
+        }
+        response.setEtag(entry.getEtag());
+        sendServerResponse(client, response);
+    }
+
+
+
+    /**
+     * Handles an admin request to regenerate the monthly reports of a range of months.
+     * The reports are generated in the background and the response is sent when done,
+     * so other clients are not blocked meanwhile.
+     *
+     * @param request the client request containing the first and last {@link YearMonth}, inclusive
+     * @param client  the client connection to respond to
+     */
+    private void handleRegenerateReports(ClientRequest request, ConnectionToClient client) {
+        YearMonth from = (YearMonth) request.getParams()[0];
+        YearMonth to = (YearMonth) request.getParams()[1];
+
+        if (from == null || to == null || to.isBefore(from)) {
+            sendServerResponse(client, "regenerate_reports_result", false, "Invalid report range.", null);
+            return;
+        }
+        if (ChronoUnit.MONTHS.between(from, to) >= ReportEngine.MAX_MONTHS_PER_REQUEST) {
+            sendServerResponse(client, "regenerate_reports_result", false,
+                    "Range too long. At most " + ReportEngine.MAX_MONTHS_PER_REQUEST + " months per request.", null);
+            return;
+        }
+
+        ReportEngine.getInstance().generateAsync(from, to).whenComplete((stored, error) -> {
+            // Message handling holds the server monitor; hold it too so writes to the client never interleave
+            synchronized (this) {
+                if (error != null) {
+                    error.printStackTrace();
+                    sendServerResponse(client, "regenerate_reports_result", false,
+                            "Report regeneration failed: " + error.getMessage(), null);
+                    return;
+                }
+                String range = from.equals(to) ? from.toString() : from + " - " + to;
+                sendServerResponse(client, "regenerate_reports_result", true,
+                        "Regenerated " + stored + " month(s) of reports for " + range + ".", null);
+            }
+        });
+    }
+
+    /**
+     * Handles an admin request for the number of distinct subscribers who parked in a date range.
+     * The counts are estimated from the per-day subscriber sketches, without reading parking history.
+     *
+     * @param request the client request containing the first and last {@link LocalDate}, inclusive,
+     *                and the {@link UniqueSubscriberReport.Granularity} name
+     * @param client  the client connection to respond to
+     */
+    private void handleUniqueSubscribers(ClientRequest request, ConnectionToClient client) {
+        LocalDate from = (LocalDate) request.getParams()[0];
+        LocalDate to = (LocalDate) request.getParams()[1];
+        UniqueSubscriberReport.Granularity granularity;
+        try {
+            granularity = UniqueSubscriberReport.Granularity.valueOf((String) request.getParams()[2]);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            sendServerResponse(client, "unique_subscribers_result", false, "Unknown granularity.", null);
+            return;
+        }
+
+        if (from == null || to == null || to.isBefore(from)) {
+            sendServerResponse(client, "unique_subscribers_result", false, "Invalid date range.", null);
+            return;
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= SubscriberSketchStore.MAX_QUERY_DAYS) {
+            sendServerResponse(client, "unique_subscribers_result", false,
+                    "Range too long. At most " + SubscriberSketchStore.MAX_QUERY_DAYS + " days per request.", null);
+            return;
+        }
+
+        UniqueSubscriberReport report = subscriberSketches.query(from, to, granularity);
+        if (report == null) {
+            sendServerResponse(client, "unique_subscribers_result", false, "Failed to load subscriber counts.", null);
+            return;
+        }
+        sendServerResponse(client, "unique_subscribers_result", true,
+                "About " + report.getTotal() + " distinct subscriber(s) from " + from + " to " + to + ".", report);
+    }
+
+    /**
+     * Handles an admin request for the occupancy of the parking lot over a time range.
+     * The resolution (minute, hour or day) is chosen by the store from the length of the range.
+     *
+     * @param request the client request containing the start, inclusive, and end, exclusive, as {@link LocalDateTime}
+     * @param client  the client connection to respond to
+     */
+    private void handleOccupancySeries(ClientRequest request, ConnectionToClient client) {
+        LocalDateTime from = (LocalDateTime) request.getParams()[0];
+        LocalDateTime to = (LocalDateTime) request.getParams()[1];
+
+        if (from == null || to == null || !to.isAfter(from)) {
+            sendServerResponse(client, "occupancy_series_result", false, "Invalid time range.", null);
+            return;
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= OccupancyStore.MAX_RANGE_DAYS) {
+            sendServerResponse(client, "occupancy_series_result", false,
+                    "Range too long. At most " + OccupancyStore.MAX_RANGE_DAYS + " days per request.", null);
+            return;
+        }
+
+        try {
+            OccupancySeries series = occupancyRecorder.getStore().query(from, to);
+            sendServerResponse(client, "occupancy_series_result", true,
+                    series.getPoints().size() + " point(s) at " + series.getResolution().name().toLowerCase() + " resolution.",
+                    series);
+        } catch (IOException e) {
+            e.printStackTrace();
+            sendServerResponse(client, "occupancy_series_result", false, "Failed to read occupancy: " + e.getMessage(), null);
+        }
+    }
+
+    /**
+     * Handles an admin request for the weekday and hour-of-day heatmap of a range of months.
+     * The heatmap is built from the occupancy cube, without reading parking history.
+     *
+     * @param request the client request containing the first and last {@link YearMonth}, inclusive
+     * @param client  the client connection to respond to
+     */
+    private void handleOccupancyHeatmap(ClientRequest request, ConnectionToClient client) {
+        YearMonth from = (YearMonth) request.getParams()[0];
+        YearMonth to = (YearMonth) request.getParams()[1];
+
+        if (from == null || to == null || to.isBefore(from)) {
+            sendServerResponse(client, "occupancy_heatmap_result", false, "Invalid month range.", null);
+            return;
+        }
+        if (ChronoUnit.MONTHS.between(from, to) >= OccupancyCube.MAX_MONTHS) {
+            sendServerResponse(client, "occupancy_heatmap_result", false,
+                    "Range too long. At most " + OccupancyCube.MAX_MONTHS + " months per request.", null);
+            return;
+        }
+
+        OccupancyHeatmap heatmap = occupancyCube.report(from, to);
+        sendServerResponse(client, "occupancy_heatmap_result", true,
+                "Occupancy heatmap from " + from + " to " + to + ".", heatmap);
+    }
+
+    /**
+     * Handles an admin request for the parking time percentiles, overstay and extensions of a
+     * range of months, for the whole lot and per spot. The report is merged from the stored
+     * per-month duration sketches, without reading parking history.
+     *
+     * @param request the client request containing the first and last {@link YearMonth}, inclusive
+     * @param client  the client connection to respond to
+     */
+    private void handleParkingDurationReport(ClientRequest request, ConnectionToClient client) {
+        YearMonth from = (YearMonth) request.getParams()[0];
+        YearMonth to = (YearMonth) request.getParams()[1];
+
+        if (from == null || to == null || to.isBefore(from)) {
+            sendServerResponse(client, "parking_duration_result", false, "Invalid month range.", null);
+            return;
+        }
+        if (ChronoUnit.MONTHS.between(from, to) >= ParkingDurationStore.MAX_MONTHS) {
+            sendServerResponse(client, "parking_duration_result", false,
+                    "Range too long. At most " + ParkingDurationStore.MAX_MONTHS + " months per request.", null);
+            return;
+        }
 
+        ParkingDurationReport report = durationStore.report(from, to);
+        if (report == null) {
+            sendServerResponse(client, "parking_duration_result", false, "Failed to load parking durations.", null);
+            return;
+        }
+        sendServerResponse(client, "parking_duration_result", true,
+                report.getTotal().getSessions() + " completed session(s) from " + from + " to " + to + ".", report);
+    }
 
     /**
      * Handles available parking spots request.
      */
     private void handleGetAvailableSpots(ConnectionToClient client) {
-        List<ParkingSpace> spots = dbController.getAvailableParkingSpaces();
+        List<ParkingSpace> spots = spotTable.snapshot();
         sendServerResponse(client, "AVAILABLE_SPOTS", true, "Available spots fetched", spots);
     }
     
@@ -181,7 +635,7 @@ public class BParkServer extends AbstractServer {
      * If no spot is found, returns a ParkingSpace with ID -1.
      */
     private void handleRandomSpotRequest(ConnectionToClient client) {
-        int spotId = dbController.getRandomAvailableSpotWithoutA();
+        int spotId = spotTable.pickRandomFree();
         ParkingSpace spot = new ParkingSpace(spotId, spotId != -1);
         sendServerResponse(client, "RANDOM_SPOT", spot.isAvailable(), spot.isAvailable() ? "Spot found" : "No spot available", spot);
     }
@@ -204,8 +658,20 @@ public class BParkServer extends AbstractServer {
             sendError(client, "You already have an active parking reservation.", "PARKING_DEPOSIT");
             return;
         }
-        dbController.insertParkingHistory(history);
-        dbController.setSpotAvailability(history.getParkingSpaceId(), false);
+        if (!spotTable.claim(history.getParkingSpaceId())) {
+            sendError(client, "Spot " + history.getParkingSpaceId() + " was just taken. Please request a new spot.", "PARKING_DEPOSIT");
+            return;
+        }
+        int historyId = dbController.insertParkingHistory(history);
+        if (historyId < 0) {
+            spotTable.release(history.getParkingSpaceId());
+            sendError(client, "Failed to save the parking deposit.", "PARKING_DEPOSIT");
+            return;
+        }
+        parkingJournal.deposited(historyId, history.getParkingSpaceId(), history.getSubscriberCode(), history.getExitTime());
+        expirySweeper.scheduleSession(historyId, history.getExitTime());
+        subscriberSketches.record(history.getSubscriberCode(), history.getEntryTime());
+        occupancyCube.recordArrival(history.getEntryTime());
         dbController.insertSystemLog("Deposit", "Spot " + history.getParkingSpaceId(), history.getSubscriberCode());
         sendServerResponse(client, "PARKING_DEPOSIT", true, "Parking deposited successfully.", null);
     }
@@ -257,6 +723,8 @@ public class BParkServer extends AbstractServer {
         }
         int rowsUpdated = dbController.updateExitTime(subscriberCode, newExitTime);
         if (rowsUpdated > 0) {
+            parkingJournal.extended(activeParking, newExitTime);
+            expirySweeper.scheduleSession(activeParking.getHistoryId(), newExitTime);
             sendServerResponse(client, "EXTEND_PARKING", true, "Parking time extended successfully!", null);
         } else {
             sendServerResponse(client, "EXTEND_PARKING", false, "Error occurred while extending parking time.", null);
@@ -290,7 +758,11 @@ public class BParkServer extends AbstractServer {
         int rowsUpdated = dbController.completePickup(subscriberCode, parkingSpaceId, wasLate, roundedNow);
 
         if (rowsUpdated > 0) {
-            dbController.setSpotAvailability(parkingSpaceId, true);
+            spotTable.release(parkingSpaceId);
+            parkingJournal.pickedUp(pending);
+            occupancyCube.recordPickup(pending.getEntryTime(), roundedNow);
+            durationStore.recordPickup(parkingSpaceId, pending.getEntryTime(), pending.getExitTime(), roundedNow,
+                    pending.getExtendedHours() / DBController.EXTEND_HOURS_PER_REQUEST);
             dbController.insertSystemLog(
                 wasLate ? "Pickup (Late)" : "Pickup",
                 "Spot " + parkingSpaceId,
@@ -342,14 +814,23 @@ public class BParkServer extends AbstractServer {
 
     /**
      * Handles a request to fetch parking history for a subscriber.
+     * Archived sessions are only read when the request asks for them.
      *
-     * @param request the client request containing the subscriber code
+     * @param request the client request containing the subscriber code and, optionally, a Boolean
+     *                that is true to include archived sessions
      * @param client  the client connection to send the response to
      */
     private void handleParkingHistoryRequest(ClientRequest request, ConnectionToClient client) {
         String code = (String) request.getParams()[0];
-        List<ParkingHistory> history = dbController.getParkingHistoryForSubscriber(code);
-        sendServerResponse(client, "HISTORY_LIST", true, "Parking history fetched.", history);
+        boolean includeArchived = request.getParams().length > 1 && Boolean.TRUE.equals(request.getParams()[1]);
+        ChunkSender<ParkingHistory> sender = new ChunkSender<>(client, "HISTORY_LIST", "Parking history fetched.");
+        try {
+            if (dbController.streamParkingHistoryForSubscriber(code, includeArchived, STREAM_CHUNK_SIZE, sender) < 0) {
+                sender.fail("Failed to fetch parking history.");
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to stream parking history to client: " + e.getMessage());
+        }
     }
 
     /**
@@ -396,7 +877,64 @@ public class BParkServer extends AbstractServer {
     }
 
     /**
-     * Handles a new client connection and updates the GUI with client info.
+     * Agrees to compress large responses to a client if it uses the same codec and dictionary.
+     *
+     * @param request the request holding the codec name and the checksum of the client's dictionary
+     * @param client  the client
+     */
+    private void handleNegotiateCompression(ClientRequest request, ConnectionToClient client) {
+        String codec = (String) request.getParams()[0];
+        int checksum = (int) request.getParams()[1];
+        boolean accepted = PayloadCompressor.accepts(codec, checksum);
+        if (accepted) {
+            OutboundQueue.of(client).enableCompression();
+        }
+        sendServerResponse(client, "COMPRESSION", accepted, accepted ? codec : "Uncompressed", null);
+    }
+
+    /**
+     * Resumes the session of a client that reconnected, by checking the login it was opened with
+     * again. Unlike a login, nothing else is sent, since the client still shows its screens.
+     *
+     * @param request the request holding the {@link LoginRequest} of the session
+     * @param client  the reconnected client
+     */
+    private void handleResumeSession(ClientRequest request, ConnectionToClient client) {
+        LoginRequest login = (LoginRequest) request.getParams()[0];
+        String role = dbController.checkUserCredentials(login.getUsername(), login.getPassword());
+        if (role == null) {
+            sendServerResponse(client, "SESSION_RESUMED", false, "Invalid credentials", null);
+            return;
+        }
+        client.setInfo("username", login.getUsername());
+        sendServerResponse(client, "SESSION_RESUMED", true, role, null);
+    }
+
+    /**
+     * Forgets a client that disconnected and stops its writer.
+     *
+     * @param client the disconnected client
+     */
+    @Override
+    protected synchronized void clientDisconnected(ConnectionToClient client) {
+        connectionRegistry.unregister(client);
+        OutboundQueue.close(client);
+    }
+
+    /**
+     * Forgets a client whose connection failed and stops its writer.
+     *
+     * @param client    the client
+     * @param exception the failure
+     */
+    @Override
+    protected synchronized void clientException(ConnectionToClient client, Throwable exception) {
+        connectionRegistry.unregister(client);
+        OutboundQueue.close(client);
+    }
+
+    /**
+     * Registers a new client connection; the GUI picks it up from the {@link ConnectionRegistry}.
      *
      * @param client the connected client
      */
@@ -404,17 +942,27 @@ public class BParkServer extends AbstractServer {
     protected void clientConnected(ConnectionToClient client) {
         String ip = client.getInetAddress().getHostAddress();
         String host = client.getInetAddress().getCanonicalHostName();
-        int id = client.hashCode();
 
-        if (guiController != null) {
-            guiController.addClient(ip, host, id);
-        }
+        connectionRegistry.register(client, ip, host);
         System.out.println("Client connected: " + ip + " / " + host);
     }
 
 
     /**
-     * Utility method for sending a ServerResponse to a client.
+     * Queues a message for a client. The message is written by the connection's writer thread,
+     * so the handler does not wait for the client's network.
+     *
+     * @param client  the client connection
+     * @param message the message
+     * @throws IOException if the connection is closed, or was closed because the client reads too slowly
+     */
+    private static void send(ConnectionToClient client, Object message) throws IOException {
+        OutboundQueue.of(client).send(message);
+    }
+
+    /**
+     * Utility method for sending a ServerResponse to a client. Responses sent while handling a
+     * client request carry its request id.
      *
      * @param client     the client connection
      * @param command    response command/type
@@ -423,8 +971,21 @@ public class BParkServer extends AbstractServer {
      * @param data       optional data object (can be null)
      */
     private void sendServerResponse(ConnectionToClient client, String command, boolean success, String message, Object data) {
+        sendServerResponse(client, new ServerResponse(command, success, message, data));
+    }
+
+    /**
+     * Sends a prepared ServerResponse to a client, stamped with the request id like
+     * {@link #sendServerResponse(ConnectionToClient, String, boolean, String, Object)}.
+     *
+     * @param client   the client connection
+     * @param response the response
+     */
+    private void sendServerResponse(ConnectionToClient client, ServerResponse response) {
         try {
-            client.sendToClient(new ServerResponse(command, success, message, data));
+            response.setRequestId(currentRequestId.get());
+            sentResponse.set(response);
+            send(client, response);
         } catch (IOException e) {
             System.err.println("Failed to send ServerResponse to client: " + e.getMessage());
             e.printStackTrace();
@@ -462,7 +1023,7 @@ public class BParkServer extends AbstractServer {
                 message,
                 isPossible
             );
-            client.sendToClient(response);
+            send(client, response);
         } catch (Exception e) {
             sendError(client, "Error checking reservation availability: " + e.getMessage(), "check_reservation_availability");
             e.printStackTrace();
@@ -504,7 +1065,7 @@ public class BParkServer extends AbstractServer {
             validStartTimes
         );
         try {
-            client.sendToClient(response);
+            send(client, response);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -520,7 +1081,6 @@ public class BParkServer extends AbstractServer {
      * @param client  The client connection.
      */
     private void handleReservation(ClientRequest request, ConnectionToClient client) {
-        ServerResponse response;
         try {
             // Get Reservation object from request
             Reservation reservation = (Reservation) request.getParams()[0];
@@ -529,6 +1089,9 @@ public class BParkServer extends AbstractServer {
             boolean success = dbController.addReservationRandomSpotWithConfirmation(reservation);
 
             if (success) {
+                parkingJournal.reserved(reservation);
+                expirySweeper.scheduleReservation(reservation.getReservationId(), reservation.getReservationDate());
+
                 // Add to system log
                 dbController.insertSystemLog(
                     "Add Reservation",
@@ -538,7 +1101,8 @@ public class BParkServer extends AbstractServer {
             }
 
             // Send response to client with result
-            response = new ServerResponse(
+            sendServerResponse(
+                client,
                 "add_reservation",
                 success,
                 success
@@ -546,7 +1110,6 @@ public class BParkServer extends AbstractServer {
                     : "Reservation failed. No available spots or another error occurred.",
                 null
             );
-            client.sendToClient(response);
 
         } catch (Exception ex) {
             // Optional: log message only, without full stack trace
@@ -556,16 +1119,7 @@ public class BParkServer extends AbstractServer {
                 ? ex.getMessage()
                 : "Server error during reservation. Please try again later.";
 
-            response = new ServerResponse(
-                "add_reservation",
-                false,
-                errorMessage,
-                null
-            );
-
-            try {
-                client.sendToClient(response);
-            } catch (Exception ignored) {}
+            sendServerResponse(client, "add_reservation", false, errorMessage, null);
         }
     }
 
@@ -590,7 +1144,7 @@ public class BParkServer extends AbstractServer {
                 response = new ServerResponse(
                     "send_code_email", false, "No active parking session found for your code.", null
                 );
-                client.sendToClient(response);
+                send(client, response);
                 return;
             }
 
@@ -600,7 +1154,7 @@ public class BParkServer extends AbstractServer {
                 response = new ServerResponse(
                     "send_code_email", false, "Email not found for subscriber.", null
                 );
-                client.sendToClient(response);
+                send(client, response);
                 return;
             }
 
@@ -624,14 +1178,14 @@ public class BParkServer extends AbstractServer {
             }
 
             // 5. Respond to client
-            client.sendToClient(response);
+            send(client, response);
 
         } catch (Exception ex) {
             ex.printStackTrace();
             response = new ServerResponse(
                 "send_code_email", false, "Server error while sending parking code.", null
             );
-            try { client.sendToClient(response); } catch (Exception ignore) {}
+            try { send(client, response); } catch (Exception ignore) {}
         }
     }
 
@@ -653,7 +1207,7 @@ public class BParkServer extends AbstractServer {
                     "User data found for scanned ID.",
                     userData
                 );
-                client.sendToClient(response);
+                send(client, response);
             } else {
                 ServerResponse response = new ServerResponse(
                     "scan_tag_login",
@@ -661,12 +1215,12 @@ public class BParkServer extends AbstractServer {
                     "ID not found.",
                     null
                 );
-                client.sendToClient(response);
+                send(client, response);
             }
         } catch (Exception e) {
             e.printStackTrace();
             try {
-                client.sendToClient(new ServerResponse(
+                send(client, new ServerResponse(
                     "scan_tag_login",
                     false,
                     "Server error while processing scan tag login.",
@@ -694,10 +1248,83 @@ public class BParkServer extends AbstractServer {
      * @param client the client connection to respond to
      */
     private void handleGetAllSubscribers(ConnectionToClient client) {
-        List<Subscriber> activeList = dbController.getAllSubscribers();
-        sendServerResponse(client, "ADMIN_SUBSCRIBERS", true, "All Subscribers fetched.", activeList);
+        ChunkSender<Subscriber> sender = new ChunkSender<>(client, "ADMIN_SUBSCRIBERS", "All Subscribers fetched.");
+        try {
+            if (dbController.streamAllSubscribers(STREAM_CHUNK_SIZE, sender) < 0) {
+                sender.fail("Failed to fetch subscribers.");
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to stream subscribers to client: " + e.getMessage());
+        }
     }
     
+    /**
+     * Handles a server-side subscriber search and sends back one sorted page of results.
+     *
+     * <p>Expected request format:</p>
+     * <pre>{@code
+     * new ClientRequest("search_subscribers", new Object[] {String query, String sortKey, Boolean ascending, Integer offset, Integer limit})
+     * }</pre>
+     *
+     * @param request the client request containing the query, sort key and page window
+     * @param client  the client connection to respond to
+     */
+    private void handleSearchSubscribers(ClientRequest request, ConnectionToClient client) {
+        Object[] params = request.getParams();
+        String query = (String) params[0];
+        String sortKey = (String) params[1];
+        boolean ascending = (Boolean) params[2];
+        int offset = Math.max(0, (Integer) params[3]);
+        int limit = clampPageSize((Integer) params[4]);
+
+        ResultPage<Subscriber> page = dbController.searchSubscribers(query, sortKey, ascending, offset, limit);
+        if (page == null) {
+            sendServerResponse(client, "ADMIN_SUBSCRIBERS_PAGE", false, "Subscriber search failed.", null);
+            return;
+        }
+        sendServerResponse(client, "ADMIN_SUBSCRIBERS_PAGE", true,
+            page.getTotalCount() + " subscriber(s) matched.", page);
+    }
+
+    /**
+     * Handles a server-side search over active parking sessions and sends back one sorted page of results.
+     *
+     * <p>Expected request format:</p>
+     * <pre>{@code
+     * new ClientRequest("search_active_parkings", new Object[] {String codePrefix, Integer spotId, String sortKey, Boolean ascending, Integer offset, Integer limit})
+     * }</pre>
+     *
+     * @param request the client request containing the filters, sort key and page window
+     * @param client  the client connection to respond to
+     */
+    private void handleSearchActiveParkings(ClientRequest request, ConnectionToClient client) {
+        Object[] params = request.getParams();
+        String codePrefix = (String) params[0];
+        Integer spotId = (Integer) params[1];
+        String sortKey = (String) params[2];
+        boolean ascending = (Boolean) params[3];
+        int offset = Math.max(0, (Integer) params[4]);
+        int limit = clampPageSize((Integer) params[5]);
+
+        ResultPage<ParkingHistory> page = dbController.searchActiveParkings(codePrefix, spotId, sortKey, ascending, offset, limit);
+        if (page == null) {
+            sendServerResponse(client, "ADMIN_ACTIVE_SESSIONS_PAGE", false, "Session search failed.", null);
+            return;
+        }
+        sendServerResponse(client, "ADMIN_ACTIVE_SESSIONS_PAGE", true,
+            page.getTotalCount() + " active session(s) matched.", page);
+    }
+
+    /**
+     * Limits a client-requested page size to a sane range.
+     *
+     * @param requested the page size requested by the client
+     * @return the page size to use
+     */
+    private int clampPageSize(int requested) {
+        return Math.min(Math.max(requested, 1), MAX_PAGE_SIZE);
+    }
+
     /**
      * Handles adding a new subscriber and logs the action if successful.
      *
@@ -710,16 +1337,17 @@ public class BParkServer extends AbstractServer {
             String password = (String) request.getParams()[1];
             String firstName = (String) request.getParams()[2];
             String lastName = (String) request.getParams()[3];
-            boolean success = dbController.addSubscriber(subscriber, password, firstName, lastName);
+            int newId = dbController.addSubscriber(subscriber, password, firstName, lastName);
+            boolean success = newId > 0;
             
             if(success == true) {
             	String username = (String) client.getInfo("username");
             	int byUserId = dbController.getUserIdByUsername(username);
-            	String target = "Target-" + subscriber.getId();//dbController.getNextSystemLogId();
+            	String target = "Target-" + newId;
             	dbController.insertSubscriberSystemLog("Add User", target, byUserId);
             }
             
-            String message = success ? "Subscriber added successfully." : "Failed to add subscriber.";
+            String message = success ? "Subscriber added successfully with ID " + newId + " (code SUB" + newId + ")." : "Failed to add subscriber.";
             sendServerResponse(client, "ADMIN_SUBSCRIBERS", success, message, dbController.getAllSubscribers());
         } catch (Exception e) {
             sendError(client, "Server error: " + e.getMessage(), "ADMIN_SUBSCRIBERS");
@@ -727,15 +1355,91 @@ public class BParkServer extends AbstractServer {
         }
     }
     
+    /**
+     * Handles one chunk of a bulk subscriber import. The chunks of an import share an
+     * import ID and are numbered from 0; the first chunk starts the import and the last
+     * one completes it, after which a single {@link ImportSummary} is sent back.
+     * Processing happens in the background so other clients are not blocked meanwhile.
+     *
+     * @param request the client request containing the import ID and a {@link ResultChunk} of CSV lines
+     * @param client  the client connection to respond to
+     */
+    @SuppressWarnings("unchecked")
+    private void handleImportSubscribers(ClientRequest request, ConnectionToClient client) {
+        String importId = (String) request.getParams()[0];
+        ResultChunk<String> chunk = (ResultChunk<String>) request.getParams()[1];
+        String infoKey = "import:" + importId;
+
+        SubscriberImporter.Session session = (SubscriberImporter.Session) client.getInfo(infoKey);
+        if (chunk.getSequence() == 0) {
+            session = subscriberImporter.begin();
+            client.setInfo(infoKey, session);
+        }
+        if (session == null || !session.accept(chunk.getSequence())
+                || chunk.getRows().size() > SubscriberImporter.MAX_CHUNK_ROWS) {
+            client.setInfo(infoKey, null);
+            String reason = "Import aborted: chunk " + chunk.getSequence() + " was out of order or too large.";
+            if (session == null) {
+                sendServerResponse(client, "import_subscribers_result", false, reason, null);
+            } else {
+                replyImportSummary(client, subscriberImporter.abort(session), reason);
+            }
+            return;
+        }
+
+        subscriberImporter.submit(session, chunk.getRows());
+        if (!chunk.isLast()) {
+            return;
+        }
+        client.setInfo(infoKey, null);
+        replyImportSummary(client, subscriberImporter.finish(session), null);
+    }
+
+    /**
+     * Sends the summary of an import once it completes, and logs the imported subscribers.
+     *
+     * @param client      the client that sent the import
+     * @param summary     the future summary of the import
+     * @param abortReason the reason the import was aborted, or null if it ran to completion
+     */
+    private void replyImportSummary(ConnectionToClient client, CompletableFuture<ImportSummary> summary,
+                                    String abortReason) {
+        String username = (String) client.getInfo("username");
+        summary.whenComplete((result, error) -> {
+            // Message handling holds the server monitor; hold it too so writes to the client never interleave
+            synchronized (this) {
+                if (error != null) {
+                    error.printStackTrace();
+                    sendServerResponse(client, "import_subscribers_result", false,
+                            "Import failed: " + error.getMessage(), null);
+                    return;
+                }
+                if (result.getImportedCount() > 0) {
+                    int byUserId = dbController.getUserIdByUsername(username);
+                    dbController.insertSubscriberSystemLog("Import Users",
+                            "Imported-" + result.getImportedCount(), byUserId);
+                }
+                String counts = "Imported " + result.getImportedCount() + " of " + result.getTotalRows()
+                        + " subscriber(s), " + result.getFailedCount() + " failed.";
+                sendServerResponse(client, "import_subscribers_result", abortReason == null,
+                        abortReason == null ? counts : abortReason + " " + counts, result);
+            }
+        });
+    }
+
     /**
      * Handles a request to fetch all system logs and sends them to the admin client.
      *
      * @param client the client connection to respond to
      */
     private void handleGetLogs(ConnectionToClient client) {
+        ChunkSender<SystemLog> sender = new ChunkSender<>(client, "ADMIN_LOGS", "System logs fetched.");
         try {
-            List<SystemLog> logs = dbController.getAllSystemLogs();
-            sendServerResponse(client, "ADMIN_LOGS", true, "System logs fetched.", logs);
+            if (dbController.streamAllSystemLogs(STREAM_CHUNK_SIZE, sender) < 0) {
+                sender.fail("Failed to retrieve logs.");
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to stream system logs to client: " + e.getMessage());
         } catch (Exception e) {
             e.printStackTrace();
             sendServerResponse(client, "ADMIN_LOGS", false, "Failed to retrieve logs.", null);
@@ -774,7 +1478,7 @@ public class BParkServer extends AbstractServer {
                     "Contact info retrieved.",
                     contactInfo
                 );
-                client.sendToClient(response);
+                send(client, response);
             } else {
                 ServerResponse response = new ServerResponse(
                     "get_subscriber_contact",
@@ -782,7 +1486,7 @@ public class BParkServer extends AbstractServer {
                     "Subscriber not found or missing email.",
                     null
                 );
-                client.sendToClient(response);
+                send(client, response);
             }
 
         } catch (Exception e) {
@@ -822,6 +1526,7 @@ public class BParkServer extends AbstractServer {
 
             if (now.isAfter(maxTime)) {
                 dbController.markReservationExpired(reservation.getReservationId());
+                parkingJournal.expired(List.of(reservation.getReservationId()));
                 sendServerResponse(client, "CheckAndDepositReservedCar", false,
                         "You arrived too late. The reservation has expired.", null);
                 return;
@@ -831,9 +1536,14 @@ public class BParkServer extends AbstractServer {
             LocalDateTime entryTime = now;
             LocalDateTime exitTime = start.plusHours(4);
 
-            dbController.insertParkingFromReservation(reservation, entryTime, exitTime);
-            dbController.setSpotAvailability(reservation.getParkingSpaceId(), false);
+            int historyId = dbController.insertParkingFromReservation(reservation, entryTime, exitTime);
+            parkingJournal.deposited(historyId, reservation.getParkingSpaceId(), reservation.getSubscriberCode(), exitTime);
+            expirySweeper.scheduleSession(historyId, exitTime);
+            subscriberSketches.record(reservation.getSubscriberCode(), entryTime);
+            occupancyCube.recordArrival(entryTime);
+            spotTable.occupy(reservation.getParkingSpaceId());
             dbController.markReservationExpired(reservation.getReservationId());
+            parkingJournal.expired(List.of(reservation.getReservationId()));
 
             dbController.insertSystemLog("Deposit Reserved", "Reserved spot " + reservation.getParkingSpaceId(), reservation.getSubscriberCode());
 
@@ -876,10 +1586,54 @@ public class BParkServer extends AbstractServer {
         }
 
         dbController.cancelReservation(reservation.getReservationId());
+        parkingJournal.cancelled(reservation);
 
         sendServerResponse(client, "CancelReservationByCode", true,
             "Reservation cancelled successfully.", null);
     }
 
+    /**
+     * Sends the chunks of a streamed result to one client as {@link ResultChunk}s under a single
+     * response command. Each chunk is queued for the connection's writer, which resets the output
+     * stream after it; when the queue is full the query waits, so a slow client slows it down
+     * instead of growing server memory.
+     *
+     * @param <T> the row type
+     */
+    private static class ChunkSender<T extends Serializable> implements ChunkSink<T> {
+
+        private final ConnectionToClient client;
+        private final String command;
+        private final String message;
+        private int sequence;
+        private boolean finished;
+
+        ChunkSender(ConnectionToClient client, String command, String message) {
+            this.client = client;
+            this.command = command;
+            this.message = message;
+        }
 
+        @Override
+        public void accept(List<T> chunk, boolean last) throws IOException {
+            OutboundQueue.of(client).sendAndWait(new ServerResponse(command, true, message,
+                    new ResultChunk<>(chunk, sequence++, last)));
+            finished = last;
+        }
+
+        /**
+         * Terminates an unfinished stream with a failed, empty last chunk,
+         * so the client discards the rows received so far.
+         *
+         * @param error the error message for the client
+         * @throws IOException if the chunk could not be sent
+         */
+        void fail(String error) throws IOException {
+            if (!finished) {
+                OutboundQueue.of(client).sendAndWait(new ServerResponse(command, false, error,
+                        new ResultChunk<T>(new ArrayList<>(), sequence++, true)));
+                finished = true;
+            }
+        }
+    }
 }
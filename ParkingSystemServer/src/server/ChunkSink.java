@@ -0,0 +1,23 @@
+package server;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the chunks of a streamed query result, in order.
+ *
+ * @param <T> the type of the rows
+ */
+@FunctionalInterface
+public interface ChunkSink<T> {
+
+    /**
+     * Accepts the next chunk. The call may block, which slows the query down to the
+     * pace of the consumer; only one chunk is held in memory at a time.
+     *
+     * @param chunk the rows of the chunk; the list is not reused after the call
+     * @param last  true for the final chunk, which may be empty
+     * @throws IOException if the chunk could not be delivered; the query is aborted
+     */
+    void accept(List<T> chunk, boolean last) throws IOException;
+}
@@ -0,0 +1,181 @@
+package server;
+
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Allocates reservation confirmation codes without probing the database.
+ * <p>
+ * Codes are produced by passing a counter through a keyed Feistel permutation of the
+ * 900,000 six-digit codes (100000-999999). A permutation maps distinct counter values to
+ * distinct codes, so codes never collide until the whole code space has been handed out,
+ * and consecutive reservations still get unrelated-looking codes.
+ * </p>
+ * <p>
+ * The counter is the {@link IdAllocator.Sequence#CONFIRMATION_CODE} sequence, reserved in
+ * blocks by the {@link IdAllocator}. Because the permutation is invertible, a code can be
+ * checked without a table lookup: it maps back to its counter value, which must lie below
+ * the sequence's high-water mark.
+ * </p>
+ * <p>
+ * The permutation key is read from the {@code bpark.confirmation.key} system property.
+ * Changing it on a populated database requires resetting the confirmation_code sequence,
+ * since codes issued under the old key would otherwise be treated as unknown.
+ * </p>
+ */
+public class ConfirmationCodeAllocator {
+
+    /** Smallest confirmation code. */
+    public static final int MIN_CODE = 100000;
+
+    /** Number of distinct confirmation codes. */
+    public static final int CODE_SPACE = 900000;
+
+    private static final int HALF_BITS = 10;
+    private static final int HALF_MASK = (1 << HALF_BITS) - 1;
+    private static final int ROUNDS = 4;
+    private static final long DEFAULT_KEY = 0x5EED_B9A2_7C41_3D6FL;
+
+    private final IdAllocator idAllocator;
+    private final int[] roundKeys = new int[ROUNDS];
+
+    /** Active codes issued before this allocator existed; honoured until they expire. */
+    private final Set<Integer> legacyCodes;
+
+    private volatile long highWater;
+
+    /**
+     * Constructs an allocator with the configured permutation key, loading the high-water mark
+     * and the active legacy codes through the given DB controller.
+     *
+     * @param dbController the database controller
+     * @param idAllocator  the allocator of the counter values
+     */
+    public ConfirmationCodeAllocator(DBController dbController, IdAllocator idAllocator) {
+        this.idAllocator = idAllocator;
+        SplittableRandom random = new SplittableRandom(Long.getLong("bpark.confirmation.key", DEFAULT_KEY));
+        for (int i = 0; i < ROUNDS; i++) {
+            roundKeys[i] = random.nextInt();
+        }
+        this.highWater = dbController.getSequenceValue(IdAllocator.Sequence.CONFIRMATION_CODE.getSequenceName());
+        this.legacyCodes = dbController.getActiveConfirmationCodes();
+        legacyCodes.removeIf(code -> isWithinIssuedRange(code));
+    }
+
+    /**
+     * Allocates the next confirmation code.
+     *
+     * @return a six-digit confirmation code
+     * @throws SQLException if a new block of counter values could not be reserved
+     */
+    public int nextCode() throws SQLException {
+        while (true) {
+            long counter = idAllocator.nextId(IdAllocator.Sequence.CONFIRMATION_CODE);
+            raiseHighWater(idAllocator.getReservedLimit(IdAllocator.Sequence.CONFIRMATION_CODE));
+            int code = MIN_CODE + permute((int) (counter % CODE_SPACE));
+            if (!legacyCodes.contains(code)) {
+                return code;
+            }
+        }
+    }
+
+    /**
+     * Raises the high-water mark; it never moves down.
+     */
+    private synchronized void raiseHighWater(long limit) {
+        highWater = Math.max(highWater, limit);
+    }
+
+    /**
+     * Checks whether a code may have been issued, without a database lookup.
+     * A false result means the code was certainly never issued.
+     *
+     * @param code the code entered by the user
+     * @return true if the code lies within the issued range or is an active legacy code
+     */
+    public boolean isIssued(String code) {
+        try {
+            return isIssued(Integer.parseInt(code.trim()));
+        } catch (NumberFormatException | NullPointerException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether a code may have been issued, without a database lookup.
+     *
+     * @param code the code entered by the user
+     * @return true if the code lies within the issued range or is an active legacy code
+     */
+    public boolean isIssued(int code) {
+        return isWithinIssuedRange(code) || legacyCodes.contains(code);
+    }
+
+    /**
+     * @param code the code
+     * @return true if the code's counter value is below the high-water mark
+     */
+    private boolean isWithinIssuedRange(int code) {
+        if (code < MIN_CODE || code >= MIN_CODE + CODE_SPACE) {
+            return false;
+        }
+        long issued = highWater;
+        return issued >= CODE_SPACE || unpermute(code - MIN_CODE) < issued;
+    }
+
+    /**
+     * Maps a counter value to a code offset; a bijection on [0, CODE_SPACE).
+     * The 20-bit Feistel network is applied repeatedly until the value falls
+     * inside the code space (cycle walking).
+     */
+    private int permute(int value) {
+        do {
+            value = encrypt(value);
+        } while (value >= CODE_SPACE);
+        return value;
+    }
+
+    /**
+     * Inverse of {@link #permute(int)}.
+     */
+    private int unpermute(int value) {
+        do {
+            value = decrypt(value);
+        } while (value >= CODE_SPACE);
+        return value;
+    }
+
+    private int encrypt(int value) {
+        int left = value >>> HALF_BITS;
+        int right = value & HALF_MASK;
+        for (int i = 0; i < ROUNDS; i++) {
+            int next = left ^ round(right, i);
+            left = right;
+            right = next;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    private int decrypt(int value) {
+        int left = value >>> HALF_BITS;
+        int right = value & HALF_MASK;
+        for (int i = ROUNDS - 1; i >= 0; i--) {
+            int previous = right ^ round(left, i);
+            right = left;
+            left = previous;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    /**
+     * Keyed round function: a 32-bit integer mix truncated to half a block.
+     */
+    private int round(int half, int round) {
+        int h = half * 0x9E3779B1 ^ roundKeys[round];
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h & HALF_MASK;
+    }
+}
@@ -0,0 +1,219 @@
+package server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ocsf.server.ConnectionToClient;
+
+/**
+ * The live client connections by id, with the time each was last heard from.
+ * <p>
+ * Clients send a heartbeat every {@link #HEARTBEAT_INTERVAL_SECONDS} seconds, so a connection
+ * that sent nothing for {@link #IDLE_TIMEOUT_SECONDS} seconds belongs to a client that crashed
+ * or lost its network without closing the socket. A reaper thread closes such connections,
+ * which frees their threads and buffers. Connections are removed when they close, so the
+ * registry only holds live clients. Since messages are handled one at a time, a long-running
+ * handler delays the heartbeats of everyone: nothing is reaped while a handler is stalled, and
+ * after the stall every connection gets the full timeout again before it can be reaped.
+ * </p>
+ * <p>
+ * The server monitor polls {@link #snapshot()}, rebuilding its table only when the
+ * {@link #getVersion() version} changed, instead of being notified for every connection.
+ * </p>
+ */
+public class ConnectionRegistry {
+
+    /** Interval at which clients send a heartbeat. */
+    public static final int HEARTBEAT_INTERVAL_SECONDS = 10;
+
+    /** Silence after which a connection is closed. */
+    public static final int IDLE_TIMEOUT_SECONDS = Integer.getInteger("bpark.idle.timeoutSeconds", 45);
+
+    /** Handling time after which a message counts as a stall of the whole server. */
+    private static final long STALL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final String ID_INFO = "registry.id";
+
+    private final Map<Integer, Entry> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+    private volatile long lastStallEnd = System.nanoTime();
+
+    /** When the running message handler started, or 0 if no message is being handled. */
+    private volatile long handlerRunningSince;
+    private ScheduledExecutorService reaper;
+
+    /**
+     * A registered connection.
+     */
+    private static class Entry {
+        final ConnectionToClient client;
+        final ClientInfo info;
+        final long sequence;
+        volatile long lastSeen = System.nanoTime();
+
+        Entry(ConnectionToClient client, ClientInfo info, long sequence) {
+            this.client = client;
+            this.info = info;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Returns the id of a connection, as shown in the server monitor. Ids are assigned in
+     * order by {@link #register} and kept with the connection, so no two connections share one.
+     *
+     * @param client the connection
+     * @return its id, or null if it was never registered
+     */
+    public static Integer idOf(ConnectionToClient client) {
+        return (Integer) client.getInfo(ID_INFO);
+    }
+
+    /**
+     * Starts closing idle connections.
+     */
+    public synchronized void start() {
+        if (reaper == null) {
+            reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "idle-connection-reaper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reaper.scheduleWithFixedDelay(this::reapIdle, 5, 5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops closing idle connections and forgets all connections.
+     */
+    public synchronized void stop() {
+        if (reaper != null) {
+            reaper.shutdown();
+            reaper = null;
+        }
+        connections.clear();
+        version.incrementAndGet();
+    }
+
+    /**
+     * Registers a new connection.
+     *
+     * @param client the connection
+     * @param ip     the client's address
+     * @param host   the client's host name
+     */
+    public void register(ConnectionToClient client, String ip, String host) {
+        int id = nextId.incrementAndGet();
+        client.setInfo(ID_INFO, id);
+        connections.put(id, new Entry(client, new ClientInfo(ip, host, "Connected", id), version.incrementAndGet()));
+    }
+
+    /**
+     * Removes a closed connection.
+     *
+     * @param client the connection
+     */
+    public void unregister(ConnectionToClient client) {
+        Integer id = idOf(client);
+        if (id != null && connections.remove(id) != null) {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records that a message was received from a connection.
+     *
+     * @param client the connection
+     */
+    public void touch(ConnectionToClient client) {
+        Integer id = idOf(client);
+        Entry entry = id == null ? null : connections.get(id);
+        if (entry != null) {
+            entry.lastSeen = System.nanoTime();
+        }
+    }
+
+    /**
+     * Records that handling a message started; {@link #handled(long)} must follow.
+     */
+    public void handling() {
+        handlerRunningSince = System.nanoTime();
+    }
+
+    /**
+     * Records how long handling a message took. A stall postpones reaping for all connections.
+     *
+     * @param nanos the handling time
+     */
+    public void handled(long nanos) {
+        handlerRunningSince = 0;
+        if (nanos > STALL_NANOS) {
+            lastStallEnd = System.nanoTime();
+        }
+    }
+
+    /**
+     * @return a number that changes whenever a connection is added or removed
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @return the number of live connections
+     */
+    public int size() {
+        return connections.size();
+    }
+
+    /**
+     * @return the live connections, oldest first
+     */
+    public List<ClientInfo> snapshot() {
+        List<Entry> entries = new ArrayList<>(connections.values());
+        entries.sort(Comparator.comparingLong(entry -> entry.sequence));
+        List<ClientInfo> infos = new ArrayList<>();
+        for (Entry entry : entries) {
+            infos.add(entry.info);
+        }
+        return infos;
+    }
+
+    /**
+     * Closes the connections that were silent for longer than the idle timeout. Nothing is
+     * closed while a handler is stalled, since the heartbeats are waiting behind it.
+     */
+    private void reapIdle() {
+        long now = System.nanoTime();
+        long runningSince = handlerRunningSince;
+        if (runningSince != 0 && now - runningSince > STALL_NANOS) {
+            return;
+        }
+        long cutoff = now - TimeUnit.SECONDS.toNanos(IDLE_TIMEOUT_SECONDS);
+        if (lastStallEnd - cutoff > 0) {
+            return;
+        }
+        for (Entry entry : connections.values()) {
+            if (entry.lastSeen - cutoff < 0) {
+                System.out.println("Closing idle connection " + entry.info.getIp() + " / " + entry.info.getHost());
+                connections.remove(entry.info.getId());
+                version.incrementAndGet();
+                try {
+                    entry.client.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
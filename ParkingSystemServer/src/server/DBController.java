@@ -9,11 +9,12 @@ import entities.Subscriber;
 import entities.SystemLog;
 import utils.EmailUtil;
 import utils.DBConnection;
-
-import java.util.Random;
+import bpark_common.ResultPage;
+import bpark_common.ServerResponse;
 
 import javax.mail.MessagingException;
 
+import java.io.IOException;
 import java.sql.*;
 import java.time.Duration;
 import java.time.LocalDate;
@@ -22,8 +23,10 @@ import java.time.LocalTime;
 import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
 /**
@@ -37,7 +40,35 @@ import java.util.Map;
  */
 public class DBController {
 
-	private static final int EXTEND_HOURS_PER_REQUEST = 4;
+	/** Hours added to a session by each extension, and by a late pickup. */
+	static final int EXTEND_HOURS_PER_REQUEST = 4;
+
+	/** Sessions that ended before this time may have been moved to parking_history_archive. */
+	private static volatile LocalDateTime archiveHorizon;
+
+	/** Assigns the IDs of new rows; set by the server before it handles requests. */
+	private IdAllocator idAllocator;
+
+	/** Issues and checks reservation confirmation codes; set by the server before it handles requests. */
+	private ConfirmationCodeAllocator confirmationCodeAllocator;
+
+	/**
+	 * Sets the allocator that assigns the IDs of new rows.
+	 *
+	 * @param idAllocator the ID allocator
+	 */
+	public void setIdAllocator(IdAllocator idAllocator) {
+	    this.idAllocator = idAllocator;
+	}
+
+	/**
+	 * Sets the allocator that issues and checks reservation confirmation codes.
+	 *
+	 * @param confirmationCodeAllocator the confirmation code allocator
+	 */
+	public void setConfirmationCodeAllocator(ConfirmationCodeAllocator confirmationCodeAllocator) {
+	    this.confirmationCodeAllocator = confirmationCodeAllocator;
+	}
 	
     /**
      * Retrieves a database connection from the singleton {@link DBConnection} utility.
@@ -113,6 +144,25 @@ public class DBController {
 		return new Subscriber(id, fullName, username, email, phone, subscriberCode);
 	}
 
+
+	/**
+	 * Maps a row from the system_log table to a SystemLog object.
+	 *
+	 * @param rs the result set positioned at the current row
+	 * @return a SystemLog object
+	 * @throws SQLException if a database access error occurs
+	 */
+	public SystemLog mapSystemLog(ResultSet rs) throws SQLException {
+	    SystemLog log = new SystemLog();
+	    log.setLogId(rs.getInt("log_id"));
+	    log.setAction(rs.getString("action"));
+	    log.setTarget(rs.getString("target"));
+	    log.setByUser(rs.getInt("by_user"));
+	    log.setLogTime(rs.getTimestamp("log_time").toLocalDateTime());
+	    log.setNote(rs.getString("note"));
+	    return log;
+	}
+
 	// -------------------------------------
 
 	/**
@@ -172,33 +222,6 @@ public class DBController {
 	    return null;
 	}
 
-	
-	/**
-	 * Retrieves a list of all available parking spaces.
-	 *
-	 * @return list of available ParkingSpace objects
-	 */
-	public List<ParkingSpace> getAvailableParkingSpaces() {
-	    List<ParkingSpace> spots = new ArrayList<>();
-	    String sql = "SELECT * FROM parking_space WHERE is_available = TRUE";
-	    Connection conn = null;
-	    try {
-	        conn = getConnection();
-	        try (PreparedStatement stmt = conn.prepareStatement(sql);
-	             ResultSet rs = stmt.executeQuery()) {
-	            while (rs.next()) {
-	                spots.add(mapParkingSpace(rs));
-	            }
-	        }
-	    } catch (SQLException e) {
-	        e.printStackTrace();
-	    } finally {
-	        releaseConnection(conn);
-	    }
-	    return spots;
-	}
-
-	
 
 	/**
 	 * Retrieves a Subscriber object from the database using their username.
@@ -268,85 +291,203 @@ public class DBController {
 	 */
 	public List<ParkingHistory> getParkingHistoryForSubscriber(String subscriberCode) {
 	    List<ParkingHistory> history = new ArrayList<>();
+	    try {
+	        streamParkingHistoryForSubscriber(subscriberCode, Integer.MAX_VALUE, (chunk, last) -> history.addAll(chunk));
+	    } catch (IOException e) {
+	        e.printStackTrace();
+	    }
+	    return history;
+	}
+
+
+	/**
+	 * Streams the recent parking history of a subscriber, most recent first, in chunks.
+	 * Only the hot parking_history table is read.
+	 *
+	 * @param subscriberCode the subscriber's unique code
+	 * @param chunkSize      the maximum number of rows per chunk
+	 * @param sink           the receiver of the chunks
+	 * @return the number of rows streamed, or -1 if a database error occurred
+	 * @throws IOException if the sink failed to deliver a chunk
+	 */
+	public int streamParkingHistoryForSubscriber(String subscriberCode, int chunkSize, ChunkSink<ParkingHistory> sink)
+	        throws IOException {
+	    return streamParkingHistoryForSubscriber(subscriberCode, false, chunkSize, sink);
+	}
+
+	/**
+	 * Streams the parking history of a subscriber, most recent first, in chunks.
+	 *
+	 * @param subscriberCode  the subscriber's unique code
+	 * @param includeArchived whether sessions moved to parking_history_archive are included
+	 * @param chunkSize       the maximum number of rows per chunk
+	 * @param sink            the receiver of the chunks
+	 * @return the number of rows streamed, or -1 if a database error occurred
+	 * @throws IOException if the sink failed to deliver a chunk
+	 */
+	public int streamParkingHistoryForSubscriber(String subscriberCode, boolean includeArchived, int chunkSize,
+	                                             ChunkSink<ParkingHistory> sink) throws IOException {
+	    String columns = "history_id, subscriber_code, parking_space_id, entry_time, exit_time, extended, extended_hours, was_late, picked_up";
+	    if (!includeArchived) {
+	        String sql = "SELECT " + columns + " FROM parking_history WHERE subscriber_code = ? ORDER BY entry_time DESC";
+	        return streamQuery(sql, List.<Object>of(subscriberCode), this::mapParkingHistory, chunkSize, sink);
+	    }
+	    String sql = "SELECT " + columns + " FROM parking_history WHERE subscriber_code = ? " +
+	                 "UNION ALL SELECT " + columns + " FROM parking_history_archive WHERE subscriber_code = ? " +
+	                 "ORDER BY entry_time DESC";
+	    return streamQuery(sql, List.<Object>of(subscriberCode, subscriberCode), this::mapParkingHistory, chunkSize, sink);
+	}
+
+
+	
+	/**
+	 * Retrieves the availability of every parking space.
+	 * Used by the {@link SpotStateTable} to load its initial state.
+	 *
+	 * @return a map of parking space ID to availability
+	 */
+	public Map<Integer, Boolean> getAllSpotAvailability() {
+	    String sql = "SELECT parking_space_id, is_available FROM parking_space";
+	    Map<Integer, Boolean> spots = new HashMap<>();
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql);
+	             ResultSet rs = stmt.executeQuery()) {
+	            while (rs.next()) {
+	                spots.put(rs.getInt("parking_space_id"), rs.getBoolean("is_available"));
+	            }
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	    return spots;
+	}
+
+
+	/**
+	 * Retrieves the parking spaces that have an open parking session, i.e. a car that was
+	 * deposited and not picked up yet. Used by {@link SpotStateTable#reconcile()}.
+	 *
+	 * @return the occupied parking space IDs, or null if a database error occurred
+	 */
+	public Set<Integer> getOccupiedSpotIds() {
 	    String sql = """
-	            SELECT history_id, subscriber_code, parking_space_id, entry_time, exit_time, extended, extended_hours, was_late, picked_up
-	            FROM parking_history
-	            WHERE subscriber_code = ?
-	            ORDER BY entry_time DESC
-	            """;
+	        SELECT DISTINCT parking_space_id
+	        FROM parking_history
+	        WHERE picked_up = 0
+	    """;
+	    Set<Integer> spots = new HashSet<>();
 	    Connection conn = null;
 	    try {
 	        conn = getConnection();
-	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-	            stmt.setString(1, subscriberCode);
-	            try (ResultSet rs = stmt.executeQuery()) {
-	                while (rs.next()) {
-	                    history.add(mapParkingHistory(rs));
-	                }
+	        try (PreparedStatement stmt = conn.prepareStatement(sql);
+	             ResultSet rs = stmt.executeQuery()) {
+	            while (rs.next()) {
+	                spots.add(rs.getInt("parking_space_id"));
 	            }
 	        }
+	        return spots;
 	    } catch (SQLException e) {
 	        e.printStackTrace();
+	        return null;
 	    } finally {
 	        releaseConnection(conn);
 	    }
-	    return history;
 	}
 
 
 	/**
-	 * Retrieves a random available parking space ID that does not have an active session
-	 * overlapping the next 4 hours.
+	 * Retrieves every open parking session, i.e. every car that was deposited and not picked
+	 * up yet. Used to seed a new {@link ParkingJournal}.
 	 *
-	 * @return the parking space ID, or -1 if none available
+	 * @return the open sessions, or null if a database error occurred
 	 */
-	public int getRandomAvailableSpotWithoutA() {
+	public List<ParkingHistory> getOpenParkingSessions() {
 	    String sql = """
-	            SELECT ps.parking_space_id
-	            FROM parking_space ps
-	            WHERE ps.is_available = TRUE
-	              AND ps.parking_space_id NOT IN (
-	                  SELECT parking_space_id
-	                  FROM parking_history
-	                  WHERE NOW() < exit_time
-	                    AND entry_time < DATE_ADD(NOW(), INTERVAL 4 HOUR)
-	              )
-	            ORDER BY RAND()
-	            LIMIT 1
-	            """;
+	        SELECT *
+	        FROM parking_history
+	        WHERE picked_up = 0
+	    """;
+	    List<ParkingHistory> sessions = new ArrayList<>();
 	    Connection conn = null;
 	    try {
 	        conn = getConnection();
 	        try (PreparedStatement stmt = conn.prepareStatement(sql);
 	             ResultSet rs = stmt.executeQuery()) {
-	            if (rs.next()) {
-	                return rs.getInt("parking_space_id");
+	            while (rs.next()) {
+	                sessions.add(mapParkingHistory(rs));
 	            }
 	        }
+	        return sessions;
 	    } catch (SQLException e) {
 	        e.printStackTrace();
+	        return null;
 	    } finally {
 	        releaseConnection(conn);
 	    }
-	    return -1; // No suitable spot found
 	}
 
-	
+
+	/**
+	 * Retrieves every active reservation. Used to seed a new {@link ParkingJournal}.
+	 *
+	 * @return the active reservations, or null if a database error occurred
+	 */
+	public List<Reservation> getActiveReservations() {
+	    String sql = """
+	        SELECT *
+	        FROM reservation
+	        WHERE status = 'active'
+	    """;
+	    List<Reservation> reservations = new ArrayList<>();
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql);
+	             ResultSet rs = stmt.executeQuery()) {
+	            while (rs.next()) {
+	                reservations.add(new Reservation(
+	                    rs.getInt("reservation_id"),
+	                    rs.getString("subscriber_code"),
+	                    rs.getInt("parking_space_id"),
+	                    rs.getTimestamp("reservation_date").toLocalDateTime(),
+	                    rs.getInt("confirmation_code"),
+	                    rs.getString("status")
+	                ));
+	            }
+	        }
+	        return reservations;
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	        return null;
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	}
+
+
 	/**
-	 * Updates the availability status of a parking space.
+	 * Updates the availability of several parking spaces in one batch.
 	 *
-	 * @param parkingSpaceId the ID of the parking space
-	 * @param isAvailable    true to mark as available, false to mark as occupied
+	 * @param changes a map of parking space ID to its new availability
+	 * @return true if the batch was written, false if a database error occurred
 	 */
-	public void setSpotAvailability(int parkingSpaceId, boolean isAvailable) {
+	public boolean updateSpotAvailability(Map<Integer, Boolean> changes) {
 	    String sql = "UPDATE parking_space SET is_available = ? WHERE parking_space_id = ?";
 	    Connection conn = null;
 	    try {
 	        conn = getConnection();
 	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-	            stmt.setBoolean(1, isAvailable);
-	            stmt.setInt(2, parkingSpaceId);
-	            stmt.executeUpdate();
+	            for (Map.Entry<Integer, Boolean> change : changes.entrySet()) {
+	                stmt.setBoolean(1, change.getValue());
+	                stmt.setInt(2, change.getKey());
+	                stmt.addBatch();
+	            }
+	            stmt.executeBatch();
+	            return true;
 	        }
 	    } catch (SQLException e) {
 	        System.err.println("Failed to update spot availability.");
@@ -354,6 +495,7 @@ public class DBController {
 	    } finally {
 	        releaseConnection(conn);
 	    }
+	    return false;
 	}
 
 
@@ -393,8 +535,8 @@ public class DBController {
 	 */
 	public void insertSystemLog(String action, String target, String subscriberCode) {
 	    String sql = """
-	            INSERT INTO system_log (action, target, by_user, log_time, note)
-	            SELECT ?, ?, u.id, NOW(), 'Car Deposit'
+	            INSERT INTO system_log (log_id, action, target, by_user, log_time, note)
+	            SELECT ?, ?, ?, u.id, NOW(), 'Car Deposit'
 	            FROM users u
 	            JOIN subscriber s ON s.subscriber_id = u.id
 	            WHERE s.subscriber_code = ?
@@ -403,9 +545,10 @@ public class DBController {
 	    try {
 	        conn = getConnection();
 	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-	            stmt.setString(1, action);
-	            stmt.setString(2, target);
-	            stmt.setString(3, subscriberCode);
+	            stmt.setInt(1, idAllocator.nextIntId(IdAllocator.Sequence.SYSTEM_LOG));
+	            stmt.setString(2, action);
+	            stmt.setString(3, target);
+	            stmt.setString(4, subscriberCode);
 	            stmt.executeUpdate();
 	        }
 	    } catch (SQLException e) {
@@ -421,8 +564,9 @@ public class DBController {
 	 * Inserts a new parking history record into the database.
 	 *
 	 * @param history the parking history to insert
+	 * @return the generated history ID, or -1 if the insert failed
 	 */
-	public void insertParkingHistory(ParkingHistory history) {
+	public int insertParkingHistory(ParkingHistory history) {
 	    String sql = """
 	            INSERT INTO parking_history (
 	                subscriber_code,
@@ -438,7 +582,7 @@ public class DBController {
 	    Connection conn = null;
 	    try {
 	        conn = getConnection();
-	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 	            stmt.setString(1, history.getSubscriberCode());
 	            stmt.setInt(2, history.getParkingSpaceId());
 	            stmt.setTimestamp(3, Timestamp.valueOf(history.getEntryTime()));
@@ -449,6 +593,7 @@ public class DBController {
 	            stmt.setBoolean(8, history.isPickedUp());
 	            stmt.executeUpdate();
 	            System.out.println("Parking deposit saved for " + history.getSubscriberCode());
+	            return getGeneratedId(stmt);
 	        }
 	    } catch (SQLException e) {
 	        System.err.println("Failed to insert parking deposit");
@@ -456,6 +601,7 @@ public class DBController {
 	    } finally {
 	        releaseConnection(conn);
 	    }
+	    return -1;
 	}
 
 
@@ -630,7 +776,7 @@ public class DBController {
 
 	/**
 	 * Marks the parking session as picked up, updates exit time, and (if late) sets
-	 * extended/was_late flags.
+	 * extended/was_late flags and records the minutes past the due time.
 	 *
 	 * @param subscriberCode The subscriber's code
 	 * @param parkingSpaceId The parking spot ID
@@ -641,7 +787,9 @@ public class DBController {
 	public int completePickup(String subscriberCode, int parkingSpaceId, boolean wasLate, LocalDateTime pickupTime) {
 	    String query;
 	    if (wasLate) {
-	        query = "UPDATE parking_history SET exit_time = ?, picked_up = 1, extended = 1, was_late = 1, extended_hours = extended_hours + ? " +
+	        // overstay_minutes is assigned first, while exit_time still holds the due time
+	        query = "UPDATE parking_history SET overstay_minutes = GREATEST(0, TIMESTAMPDIFF(MINUTE, exit_time, ?)), " +
+	                "exit_time = ?, picked_up = 1, extended = 1, was_late = 1, extended_hours = extended_hours + ? " +
 	                "WHERE subscriber_code = ? AND parking_space_id = ? AND picked_up = 0 ORDER BY entry_time DESC LIMIT 1";
 	    } else {
 	        query = "UPDATE parking_history SET exit_time = ?, picked_up = 1 " +
@@ -652,12 +800,14 @@ public class DBController {
 	    try {
 	        conn = getConnection();
 	        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-	            stmt.setTimestamp(1, Timestamp.valueOf(pickupTime));
 	            if (wasLate) {
-	                stmt.setInt(2, EXTEND_HOURS_PER_REQUEST);
-	                stmt.setString(3, subscriberCode);
-	                stmt.setInt(4, parkingSpaceId);
+	                stmt.setTimestamp(1, Timestamp.valueOf(pickupTime));
+	                stmt.setTimestamp(2, Timestamp.valueOf(pickupTime));
+	                stmt.setInt(3, EXTEND_HOURS_PER_REQUEST);
+	                stmt.setString(4, subscriberCode);
+	                stmt.setInt(5, parkingSpaceId);
 	            } else {
+	                stmt.setTimestamp(1, Timestamp.valueOf(pickupTime));
 	                stmt.setString(2, subscriberCode);
 	                stmt.setInt(3, parkingSpaceId);
 	            }
@@ -919,17 +1069,22 @@ public class DBController {
 	        }
 
 	        // Step 2: Generate a unique confirmation code
-	        int confirmationCode = generateUniqueConfirmationCode(conn);
+	        int confirmationCode = generateUniqueConfirmationCode();
 
 	        // Step 3: Insert the reservation into the reservation table
-	        String reservationSql = "INSERT INTO reservation (subscriber_code, parking_space_id, reservation_date, confirmation_code, status) VALUES (?, ?, ?, ?, ?)";
+	        int reservationId = idAllocator.nextIntId(IdAllocator.Sequence.RESERVATION);
+	        String reservationSql = "INSERT INTO reservation (reservation_id, subscriber_code, parking_space_id, reservation_date, confirmation_code, status) VALUES (?, ?, ?, ?, ?, ?)";
 	        try (PreparedStatement stmt = conn.prepareStatement(reservationSql)) {
-	            stmt.setString(1, reservationRequest.getSubscriberCode());
-	            stmt.setInt(2, spotId);
-	            stmt.setTimestamp(3, Timestamp.valueOf(reservationRequest.getReservationDate()));
-	            stmt.setInt(4, confirmationCode);
-	            stmt.setString(5, reservationRequest.getStatus());
+	            stmt.setInt(1, reservationId);
+	            stmt.setString(2, reservationRequest.getSubscriberCode());
+	            stmt.setInt(3, spotId);
+	            stmt.setTimestamp(4, Timestamp.valueOf(reservationRequest.getReservationDate()));
+	            stmt.setInt(5, confirmationCode);
+	            stmt.setString(6, reservationRequest.getStatus());
 	            stmt.executeUpdate();
+	            reservationRequest.setReservationId(reservationId);
+	            reservationRequest.setParkingSpaceId(spotId);
+	            reservationRequest.setConfirmationCode(confirmationCode);
 	        }
 
 	        // Step 4: Get subscriber email address
@@ -1056,33 +1211,14 @@ public class DBController {
 	}
 
 	/**
-	 * Generates a unique 6-digit confirmation code that does not exist in the
-	 * reservation table.
+	 * Generates a unique 6-digit confirmation code.
+	 * Codes come from the {@link ConfirmationCodeAllocator}, so no probe queries are needed.
 	 *
-	 * @param conn Active database connection
 	 * @return A unique confirmation code
-	 * @throws SQLException If a database access error occurs
+	 * @throws SQLException If a new block of codes could not be reserved
 	 */
-	public int generateUniqueConfirmationCode(Connection conn) throws SQLException {
-		Random random = new Random();
-		int code;
-
-		while (true) {
-			code = 100000 + random.nextInt(900000); // Generates a number between 100000 and 999999
-
-			String sql = "SELECT COUNT(*) FROM reservation WHERE confirmation_code = ?";
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				stmt.setInt(1, code);
-				try (ResultSet rs = stmt.executeQuery()) {
-					if (rs.next() && rs.getInt(1) == 0) {
-						// Code is unique
-						break;
-					}
-				}
-			}
-		}
-
-		return code;
+	public int generateUniqueConfirmationCode() throws SQLException {
+		return confirmationCodeAllocator.nextCode();
 	}
 
 	/**
@@ -1193,6 +1329,25 @@ public class DBController {
 	 * @return a list of Subscriber objects
 	 */
 	public List<Subscriber> getAllSubscribers() {
+	    List<Subscriber> list = new ArrayList<>();
+	    try {
+	        streamAllSubscribers(Integer.MAX_VALUE, (chunk, last) -> list.addAll(chunk));
+	    } catch (IOException e) {
+	        e.printStackTrace();
+	    }
+	    return list;
+	}
+
+
+	/**
+	 * Streams all subscribers along with user account details, in chunks.
+	 *
+	 * @param chunkSize the maximum number of rows per chunk
+	 * @param sink      the receiver of the chunks
+	 * @return the number of rows streamed, or -1 if a database error occurred
+	 * @throws IOException if the sink failed to deliver a chunk
+	 */
+	public int streamAllSubscribers(int chunkSize, ChunkSink<Subscriber> sink) throws IOException {
 	    String sql = """
 	        SELECT
 	            s.subscriber_id AS id,
@@ -1207,523 +1362,2022 @@ public class DBController {
 	        JOIN
 	            users u ON s.subscriber_id = u.id
 	        """;
-	    List<Subscriber> list = new ArrayList<>();
-	    Connection conn = null;
-	    try {
-	        conn = getConnection();
-	        try (PreparedStatement stmt = conn.prepareStatement(sql);
-	             ResultSet rs = stmt.executeQuery()) {
-	            while (rs.next()) {
-	                list.add(mapSubscriber(rs));
-	            }
-	        }
-	    } catch (SQLException e) {
-	        e.printStackTrace();
-	    } finally {
-	        releaseConnection(conn);
-	    }
-	    return list;
+	    return streamQuery(sql, List.of(), this::mapSubscriber, chunkSize, sink);
 	}
 
-	
 
 	/**
-	 * Adds a new subscriber to the system by inserting into both users and subscriber tables.
-	 * Rolls back the transaction on failure.
+	 * Parses a search query as a user ID.
 	 *
-	 * @param subscriber  the subscriber entity
-	 * @param password    the account password
-	 * @param firstName   the user's first name
-	 * @param lastName    the user's last name
-	 * @return true if successfully added, false otherwise
+	 * @param text the trimmed search query
+	 * @return the ID, or null if the query is not a number that fits in an int
 	 */
-	public boolean addSubscriber(Subscriber subscriber, String password, String firstName, String lastName) {
-	    String insertUser = "INSERT INTO users (id, username, password, role, first_name, last_name) VALUES (?, ?, ?, 'subscriber', ?, ?)";
-	    String insertSub = "INSERT INTO subscriber (subscriber_id, email, phone_number, subscriber_code) VALUES (?, ?, ?, ?)";
-	    Connection conn = null;
+	private static Integer parseId(String text) {
+	    if (!text.chars().allMatch(Character::isDigit)) {
+	        return null;
+	    }
 	    try {
-	        conn = getConnection();
-	        conn.setAutoCommit(false);
-
-	        try (PreparedStatement userStmt = conn.prepareStatement(insertUser);
-	             PreparedStatement subStmt = conn.prepareStatement(insertSub)) {
-
-	            String subscriberCode = "SUB" + subscriber.getId();
-
-	            userStmt.setInt(1, subscriber.getId());
-	            userStmt.setString(2, subscriberCode);
-	            userStmt.setString(3, password);
-	            userStmt.setString(4, firstName);
-	            userStmt.setString(5, lastName);
-	            userStmt.executeUpdate();
-
-	            subStmt.setInt(1, subscriber.getId());
-	            subStmt.setString(2, subscriber.getEmail());
-	            subStmt.setString(3, subscriber.getPhone());
-	            subStmt.setString(4, subscriberCode);
-	            subStmt.executeUpdate();
-
-	            conn.commit();
-	            return true;
-
-	        } catch (SQLException e) {
-	            conn.rollback();
-	            e.printStackTrace();
-	            return false;
-	        } finally {
-	            conn.setAutoCommit(true);
-	        }
-
-	    } catch (SQLException e) {
-	        e.printStackTrace();
-	        return false;
-	    } finally {
-	        releaseConnection(conn);
+	        return Integer.parseInt(text);
+	    } catch (NumberFormatException e) {
+	        return null;
 	    }
 	}
 
-	
+
 	/**
-	 * Inserts a system log record for subscriber insertion.
+	 * Searches subscribers on the server side and returns one sorted page of the result.
+	 * <p>
+	 * A numeric query matches the user ID exactly or a subscriber code prefix; any other
+	 * query matches a subscriber code prefix or requires every whitespace-separated token
+	 * to prefix the first or last name. All predicates are prefix/equality matches so they
+	 * can be served by the primary keys and the {@code idx_users_name} index.
+	 * </p>
 	 *
-	 * @param action    the action performed
-	 * @param target    the affected object
-	 * @param byUserId  the ID of the user who performed the action
+	 * @param query     the search text (empty or null matches every subscriber)
+	 * @param sortKey   one of "id", "code", "name", "username" (unknown keys fall back to "id")
+	 * @param ascending true for ascending order, false for descending
+	 * @param offset    index of the first row to return
+	 * @param limit     maximum number of rows to return
+	 * @return the requested page of matching subscribers, or null if a database error occurred
 	 */
-	public void insertSubscriberSystemLog(String action, String target, int byUserId) {
-	    String sql = """
-	        INSERT INTO system_log (action, target, by_user, log_time, note)
-	        VALUES (?, ?, ?, NOW(), ?)
+	public ResultPage<Subscriber> searchSubscribers(String query, String sortKey, boolean ascending, int offset, int limit) {
+	    String from = """
+	        FROM subscriber s
+	        JOIN users u ON s.subscriber_id = u.id
 	        """;
+	    StringBuilder where = new StringBuilder();
+	    List<Object> params = new ArrayList<>();
+	    String text = query == null ? "" : query.trim();
+
+	    if (!text.isEmpty()) {
+	        Integer id = parseId(text);
+	        if (id != null) {
+	            where.append(" WHERE (u.id = ? OR s.subscriber_code LIKE ?)");
+	            params.add(id);
+	            params.add(escapeLike(text) + "%");
+	        } else if (text.chars().allMatch(Character::isDigit)) {
+	            // Too long to be an ID; can still be a subscriber code prefix
+	            where.append(" WHERE s.subscriber_code LIKE ?");
+	            params.add(escapeLike(text) + "%");
+	        } else {
+	            where.append(" WHERE (s.subscriber_code LIKE ?");
+	            params.add(escapeLike(text) + "%");
+	            where.append(" OR (TRUE");
+	            for (String token : text.split("\\s+")) {
+	                where.append(" AND (u.first_name LIKE ? OR u.last_name LIKE ?)");
+	                params.add(escapeLike(token) + "%");
+	                params.add(escapeLike(token) + "%");
+	            }
+	            where.append("))");
+	        }
+	    }
+
+	    String orderBy = switch (sortKey == null ? "" : sortKey) {
+	        case "code" -> "s.subscriber_code";
+	        case "name" -> "u.last_name %1$s, u.first_name";
+	        case "username" -> "u.username";
+	        default -> "u.id";
+	    };
+	    String direction = ascending ? "ASC" : "DESC";
+	    orderBy = orderBy.formatted(direction) + " " + direction;
+
+	    String countSql = "SELECT COUNT(*) " + from + where;
+	    String pageSql = """
+	        SELECT s.subscriber_id AS id, s.subscriber_code, s.email, s.phone_number,
+	               u.first_name, u.last_name, u.username
+	        """ + from + where + " ORDER BY " + orderBy + " LIMIT ? OFFSET ?";
+
+	    List<Subscriber> rows = new ArrayList<>();
+	    int total = 0;
 	    Connection conn = null;
 	    try {
 	        conn = getConnection();
-	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-	            stmt.setString(1, action);
-	            stmt.setString(2, target);
-	            stmt.setInt(3, byUserId);
-	            stmt.setString(4, "Subscriber inserted");
-	            stmt.executeUpdate();
+	        try (PreparedStatement stmt = conn.prepareStatement(countSql)) {
+	            bindParams(stmt, params);
+	            try (ResultSet rs = stmt.executeQuery()) {
+	                if (rs.next()) {
+	                    total = rs.getInt(1);
+	                }
+	            }
+	        }
+	        try (PreparedStatement stmt = conn.prepareStatement(pageSql)) {
+	            int next = bindParams(stmt, params);
+	            stmt.setInt(next++, limit);
+	            stmt.setInt(next, offset);
+	            try (ResultSet rs = stmt.executeQuery()) {
+	                while (rs.next()) {
+	                    rows.add(mapSubscriber(rs));
+	                }
+	            }
 	        }
 	    } catch (SQLException e) {
-	        System.err.println("Failed to insert system log.");
 	        e.printStackTrace();
+	        return null;
 	    } finally {
 	        releaseConnection(conn);
 	    }
+	    return new ResultPage<>(rows, offset, limit, total);
 	}
 
-	
 
 	/**
-	 * Retrieves the next available system log ID (max + 1).
+	 * Searches the currently active parking sessions on the server side and returns
+	 * one sorted page of the result.
+	 * <p>
+	 * The subscriber code is matched as a prefix and the spot as an exact ID, so the
+	 * {@code idx_active_sessions} and {@code parking_space_id} indexes can be used.
+	 * </p>
 	 *
-	 * @return the next log ID, or 1 if the table is empty or error occurs
+	 * @param subscriberCode subscriber code prefix (empty or null matches every subscriber)
+	 * @param spotId         parking space ID to match, or null for every spot
+	 * @param sortKey        one of "entry", "exit", "code", "spot" (unknown keys fall back to "entry")
+	 * @param ascending      true for ascending order, false for descending
+	 * @param offset         index of the first row to return
+	 * @param limit          maximum number of rows to return
+	 * @return the requested page of matching active sessions, or null if a database error occurred
 	 */
-	public int getNextSystemLogId() {
-	    String sql = "SELECT MAX(log_id) FROM system_log";
+	public ResultPage<ParkingHistory> searchActiveParkings(String subscriberCode, Integer spotId, String sortKey,
+			boolean ascending, int offset, int limit) {
+	    StringBuilder where = new StringBuilder(
+	        " FROM parking_history WHERE picked_up = 0 AND entry_time <= NOW() AND exit_time >= NOW()");
+	    List<Object> params = new ArrayList<>();
+
+	    if (subscriberCode != null && !subscriberCode.isBlank()) {
+	        where.append(" AND subscriber_code LIKE ?");
+	        params.add(escapeLike(subscriberCode.trim()) + "%");
+	    }
+	    if (spotId != null) {
+	        where.append(" AND parking_space_id = ?");
+	        params.add(spotId);
+	    }
+
+	    String orderBy = switch (sortKey == null ? "" : sortKey) {
+	        case "exit" -> "exit_time";
+	        case "code" -> "subscriber_code";
+	        case "spot" -> "parking_space_id";
+	        default -> "entry_time";
+	    };
+	    orderBy += ascending ? " ASC" : " DESC";
+
+	    String countSql = "SELECT COUNT(*)" + where;
+	    String pageSql = "SELECT *" + where + " ORDER BY " + orderBy + ", history_id LIMIT ? OFFSET ?";
+
+	    List<ParkingHistory> rows = new ArrayList<>();
+	    int total = 0;
 	    Connection conn = null;
 	    try {
 	        conn = getConnection();
-	        try (PreparedStatement stmt = conn.prepareStatement(sql);
-	             ResultSet rs = stmt.executeQuery()) {
-	            if (rs.next()) {
-	                return rs.getInt(1) + 1;
+	        try (PreparedStatement stmt = conn.prepareStatement(countSql)) {
+	            bindParams(stmt, params);
+	            try (ResultSet rs = stmt.executeQuery()) {
+	                if (rs.next()) {
+	                    total = rs.getInt(1);
+	                }
 	            }
 	        }
-	    } catch (SQLException e) {
-	        e.printStackTrace();
+	        try (PreparedStatement stmt = conn.prepareStatement(pageSql)) {
+	            int next = bindParams(stmt, params);
+	            stmt.setInt(next++, limit);
+	            stmt.setInt(next, offset);
+	            try (ResultSet rs = stmt.executeQuery()) {
+	                while (rs.next()) {
+	                    rows.add(mapParkingHistory(rs));
+	                }
+	            }
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	        return null;
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	    return new ResultPage<>(rows, offset, limit, total);
+	}
+
+
+	/**
+	 * Binds the given values to the statement placeholders in order.
+	 *
+	 * @param stmt   the statement to bind
+	 * @param params the values to bind (Integer or String)
+	 * @return the index of the next unbound placeholder
+	 * @throws SQLException if a parameter cannot be set
+	 */
+	private int bindParams(PreparedStatement stmt, List<Object> params) throws SQLException {
+		int index = 1;
+		for (Object param : params) {
+			if (param instanceof Integer value) {
+				stmt.setInt(index++, value);
+			} else {
+				stmt.setString(index++, String.valueOf(param));
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Escapes the LIKE wildcards in user input so it is matched literally.
+	 *
+	 * @param text the raw search text
+	 * @return the escaped text
+	 */
+	private String escapeLike(String text) {
+		return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+	}
+
+	/**
+	 * Reserves a block of values from a named counter in the id_sequence table.
+	 * The counter is advanced atomically with LAST_INSERT_ID, so concurrent callers
+	 * always receive disjoint blocks. A missing counter row is created starting at 0.
+	 *
+	 * @param sequenceName the counter name
+	 * @param blockSize    the number of values to reserve
+	 * @return the first value of the reserved block, or -1 if a database error occurred
+	 */
+	public long reserveSequenceBlock(String sequenceName, int blockSize) {
+	    String sql = """
+	        INSERT INTO id_sequence (seq_name, next_value) VALUES (?, LAST_INSERT_ID(?))
+	        ON DUPLICATE KEY UPDATE next_value = LAST_INSERT_ID(next_value + ?)
+	    """;
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            stmt.setString(1, sequenceName);
+	            stmt.setLong(2, blockSize);
+	            stmt.setLong(3, blockSize);
+	            stmt.executeUpdate();
+	        }
+	        try (PreparedStatement stmt = conn.prepareStatement("SELECT LAST_INSERT_ID()");
+	             ResultSet rs = stmt.executeQuery()) {
+	            if (rs.next()) {
+	                return rs.getLong(1) - blockSize;
+	            }
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	    return -1;
+	}
+
+
+	/**
+	 * Creates a named counter starting after the largest ID in a table, unless it already exists.
+	 * Table and column names come from {@link IdAllocator.Sequence}, never from user input.
+	 *
+	 * @param sequenceName the counter name
+	 * @param table        the table whose IDs the counter assigns
+	 * @param column       the ID column of the table
+	 */
+	public void initSequenceFromTable(String sequenceName, String table, String column) {
+	    String sql = "INSERT IGNORE INTO id_sequence (seq_name, next_value) " +
+	                 "SELECT ?, COALESCE(MAX(" + column + "), 0) + 1 FROM " + table;
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            stmt.setString(1, sequenceName);
+	            stmt.executeUpdate();
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	}
+
+
+	/**
+	 * Retrieves the next unreserved value of a named counter.
+	 *
+	 * @param sequenceName the counter name
+	 * @return the next value, or 0 if the counter does not exist yet
+	 */
+	public long getSequenceValue(String sequenceName) {
+	    String sql = "SELECT next_value FROM id_sequence WHERE seq_name = ?";
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            stmt.setString(1, sequenceName);
+	            try (ResultSet rs = stmt.executeQuery()) {
+	                if (rs.next()) {
+	                    return rs.getLong(1);
+	                }
+	            }
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	    return 0;
+	}
+
+
+	/**
+	 * Retrieves the confirmation codes of all active reservations.
+	 *
+	 * @return the set of active confirmation codes
+	 */
+	public java.util.Set<Integer> getActiveConfirmationCodes() {
+	    String sql = "SELECT confirmation_code FROM reservation WHERE status = 'active'";
+	    java.util.Set<Integer> codes = java.util.concurrent.ConcurrentHashMap.newKeySet();
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql);
+	             ResultSet rs = stmt.executeQuery()) {
+	            while (rs.next()) {
+	                codes.add(rs.getInt(1));
+	            }
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	    return codes;
+	}
+
+
+	/**
+	 * Runs a query in streaming mode and hands the mapped rows to the sink in chunks.
+	 * <p>
+	 * The driver fetches rows from the socket as they are read instead of buffering the
+	 * whole result, and only the current chunk is kept in memory, so heap use is bounded
+	 * by the chunk size rather than the table size. The sink is always called once with
+	 * {@code last = true}, even for an empty result.
+	 * </p>
+	 * <p>
+	 * A streaming result occupies its connection until it is fully read, so the sink
+	 * must not run other queries on the same thread.
+	 * </p>
+	 *
+	 * @param sql       the query
+	 * @param params    the query parameters, bound in order
+	 * @param mapper    maps each row to an object
+	 * @param chunkSize the maximum number of rows per chunk
+	 * @param sink      the receiver of the chunks
+	 * @param <T>       the row type
+	 * @return the number of rows streamed, or -1 if a database error occurred
+	 * @throws IOException if the sink failed to deliver a chunk; the query is aborted
+	 */
+	public <T> int streamQuery(String sql, List<Object> params, RowMapper<T> mapper, int chunkSize, ChunkSink<T> sink)
+	        throws IOException {
+	    int total = 0;
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = prepareStreaming(conn, sql)) {
+	            bindParams(stmt, params);
+	            try (ResultSet rs = stmt.executeQuery()) {
+	                List<T> chunk = new ArrayList<>();
+	                while (rs.next()) {
+	                    chunk.add(mapper.map(rs));
+	                    total++;
+	                    if (chunk.size() >= chunkSize) {
+	                        sink.accept(chunk, false);
+	                        chunk = new ArrayList<>();
+	                    }
+	                }
+	                sink.accept(chunk, true);
+	            }
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	        return -1;
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	    return total;
+	}
+
+
+	/**
+	 * Prepares a forward-only, read-only statement whose result is streamed row by row.
+	 * With MySQL Connector/J a fetch size of {@link Integer#MIN_VALUE} selects streaming mode.
+	 *
+	 * @param conn the connection
+	 * @param sql  the query
+	 * @return the prepared statement
+	 * @throws SQLException if a database access error occurs
+	 */
+	private static PreparedStatement prepareStreaming(Connection conn, String sql) throws SQLException {
+		PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		stmt.setFetchSize(Integer.MIN_VALUE);
+		return stmt;
+	}
+
+
+	/**
+	 * Reads the auto-increment key generated by the last executed insert.
+	 *
+	 * @param stmt a statement prepared with {@link Statement#RETURN_GENERATED_KEYS}
+	 * @return the generated key, or -1 if none was returned
+	 * @throws SQLException if a database access error occurs
+	 */
+	private int getGeneratedId(PreparedStatement stmt) throws SQLException {
+		try (ResultSet keys = stmt.getGeneratedKeys()) {
+			return keys.next() ? keys.getInt(1) : -1;
+		}
+	}
+
+
+
+	/**
+	 * Adds a new subscriber to the system by inserting into both users and subscriber tables.
+	 * The user ID is assigned by the {@link IdAllocator}; the ID in the given entity is ignored.
+	 * Rolls back the transaction on failure.
+	 *
+	 * @param subscriber  the subscriber entity
+	 * @param password    the account password
+	 * @param firstName   the user's first name
+	 * @param lastName    the user's last name
+	 * @return the new subscriber's ID, or -1 if the subscriber could not be added
+	 */
+	public int addSubscriber(Subscriber subscriber, String password, String firstName, String lastName) {
+	    String insertUser = "INSERT INTO users (id, username, password, role, first_name, last_name) VALUES (?, ?, ?, 'subscriber', ?, ?)";
+	    String insertSub = "INSERT INTO subscriber (subscriber_id, email, phone_number, subscriber_code) VALUES (?, ?, ?, ?)";
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        conn.setAutoCommit(false);
+
+	        try (PreparedStatement userStmt = conn.prepareStatement(insertUser);
+	             PreparedStatement subStmt = conn.prepareStatement(insertSub)) {
+
+	            int id = idAllocator.nextIntId(IdAllocator.Sequence.SUBSCRIBER);
+	            String subscriberCode = "SUB" + id;
+
+	            userStmt.setInt(1, id);
+	            userStmt.setString(2, subscriberCode);
+	            userStmt.setString(3, password);
+	            userStmt.setString(4, firstName);
+	            userStmt.setString(5, lastName);
+	            userStmt.executeUpdate();
+
+	            subStmt.setInt(1, id);
+	            subStmt.setString(2, subscriber.getEmail());
+	            subStmt.setString(3, subscriber.getPhone());
+	            subStmt.setString(4, subscriberCode);
+	            subStmt.executeUpdate();
+
+	            conn.commit();
+	            return id;
+
+	        } catch (SQLException e) {
+	            conn.rollback();
+	            e.printStackTrace();
+	            return -1;
+	        } finally {
+	            conn.setAutoCommit(true);
+	        }
+
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	        return -1;
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	}
+
+
+	/**
+	 * Adds a batch of imported subscribers in a single transaction, using one batched
+	 * INSERT per table. The user IDs are assigned by the {@link IdAllocator} and stored
+	 * in the rows. If any insert fails the whole batch is rolled back.
+	 *
+	 * @param rows the validated rows to insert
+	 * @return true if all rows were inserted, false if the batch was rolled back
+	 */
+	public boolean addSubscribersBatch(List<SubscriberImportRow> rows) {
+	    String insertUser = "INSERT INTO users (id, username, password, role, first_name, last_name) VALUES (?, ?, ?, 'subscriber', ?, ?)";
+	    String insertSub = "INSERT INTO subscriber (subscriber_id, email, phone_number, subscriber_code) VALUES (?, ?, ?, ?)";
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        conn.setAutoCommit(false);
+
+	        try (PreparedStatement userStmt = conn.prepareStatement(insertUser);
+	             PreparedStatement subStmt = conn.prepareStatement(insertSub)) {
+
+	            for (SubscriberImportRow row : rows) {
+	                int id = idAllocator.nextIntId(IdAllocator.Sequence.SUBSCRIBER);
+	                String subscriberCode = "SUB" + id;
+	                row.setId(id);
+
+	                userStmt.setInt(1, id);
+	                userStmt.setString(2, subscriberCode);
+	                userStmt.setString(3, row.getPassword());
+	                userStmt.setString(4, row.getFirstName());
+	                userStmt.setString(5, row.getLastName());
+	                userStmt.addBatch();
+
+	                subStmt.setInt(1, id);
+	                subStmt.setString(2, row.getEmail());
+	                subStmt.setString(3, row.getPhone());
+	                subStmt.setString(4, subscriberCode);
+	                subStmt.addBatch();
+	            }
+	            userStmt.executeBatch();
+	            subStmt.executeBatch();
+
+	            conn.commit();
+	            return true;
+
+	        } catch (SQLException e) {
+	            conn.rollback();
+	            for (SubscriberImportRow row : rows) {
+	                row.setId(0);
+	            }
+	            System.err.println("Subscriber batch rolled back: " + e.getMessage());
+	            return false;
+	        } finally {
+	            conn.setAutoCommit(true);
+	        }
+
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	        return false;
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	}
+
+	/**
+	 * Returns which of the given email addresses already belong to a subscriber. Addresses
+	 * are compared ignoring case, through the case-insensitive collation of the column.
+	 *
+	 * @param emails the addresses to check
+	 * @return the addresses already in use, in lower case, or null on a database error
+	 */
+	public java.util.Set<String> getExistingEmails(java.util.Collection<String> emails) {
+	    java.util.Set<String> existing = new java.util.HashSet<>();
+	    if (emails.isEmpty()) {
+	        return existing;
+	    }
+	    String sql = "SELECT email FROM subscriber WHERE email IN (" + placeholders(emails.size()) + ")";
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            int i = 1;
+	            for (String email : emails) {
+	                stmt.setString(i++, email);
+	            }
+	            try (ResultSet rs = stmt.executeQuery()) {
+	                while (rs.next()) {
+	                    existing.add(rs.getString("email").toLowerCase());
+	                }
+	            }
+	        }
+	        return existing;
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	        return null;
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	}
+
+	
+	/**
+	 * Inserts a system log record for subscriber insertion.
+	 *
+	 * @param action    the action performed
+	 * @param target    the affected object
+	 * @param byUserId  the ID of the user who performed the action
+	 */
+	public void insertSubscriberSystemLog(String action, String target, int byUserId) {
+	    String sql = """
+	        INSERT INTO system_log (log_id, action, target, by_user, log_time, note)
+	        VALUES (?, ?, ?, ?, NOW(), ?)
+	        """;
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            stmt.setInt(1, idAllocator.nextIntId(IdAllocator.Sequence.SYSTEM_LOG));
+	            stmt.setString(2, action);
+	            stmt.setString(3, target);
+	            stmt.setInt(4, byUserId);
+	            stmt.setString(5, "Subscriber inserted");
+	            stmt.executeUpdate();
+	        }
+	    } catch (SQLException e) {
+	        System.err.println("Failed to insert system log.");
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	}
+
+	
+
+	/**
+	 * Retrieves the user ID by username.
+	 *
+	 * @param username the username to search for
+	 * @return the user ID if found, or -1 if not found or error occurs
+	 */
+	public int getUserIdByUsername(String username) {
+	    String sql = "SELECT id FROM users WHERE username = ?";
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            stmt.setString(1, username);
+	            try (ResultSet rs = stmt.executeQuery()) {
+	                if (rs.next()) {
+	                    return rs.getInt("id");
+	                }
+	            }
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	    return -1; // Not found
+	}
+
+
+	/**
+	 * Retrieves all system logs from the database, ordered by most recent first.
+	 *
+	 * @return a list of SystemLog objects
+	 */
+	public List<SystemLog> getAllSystemLogs() {
+	    List<SystemLog> logs = new ArrayList<>();
+	    try {
+	        streamAllSystemLogs(Integer.MAX_VALUE, (chunk, last) -> logs.addAll(chunk));
+	    } catch (IOException e) {
+	        e.printStackTrace();
+	    }
+	    return logs;
+	}
+
+
+	/**
+	 * Streams all system logs, most recent first, in chunks.
+	 *
+	 * @param chunkSize the maximum number of rows per chunk
+	 * @param sink      the receiver of the chunks
+	 * @return the number of rows streamed, or -1 if a database error occurred
+	 * @throws IOException if the sink failed to deliver a chunk
+	 */
+	public int streamAllSystemLogs(int chunkSize, ChunkSink<SystemLog> sink) throws IOException {
+	    String sql = "SELECT log_id, action, target, by_user, log_time, note FROM system_log ORDER BY log_time DESC";
+	    return streamQuery(sql, List.of(), this::mapSystemLog, chunkSize, sink);
+	}
+
+
+	/**
+	 * Retrieves the email and phone number of a subscriber by their subscriber code.
+	 *
+	 * @param subscriberCode The unique subscriber code.
+	 * @return A map containing "email" and "phone" keys if found, or null otherwise.
+	 * @throws SQLException if a database access error occurs
+	 */
+	public Map<String, String> getSubscriberContactByCode(String subscriberCode) throws SQLException {
+	    String sql = "SELECT email, phone_number FROM subscriber WHERE subscriber_code = ?";
+	    Connection conn = null;
+
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            stmt.setString(1, subscriberCode);
+	            try (ResultSet rs = stmt.executeQuery()) {
+	                if (rs.next()) {
+	                    Map<String, String> contact = new HashMap<>();
+	                    contact.put("email", rs.getString("email"));
+	                    contact.put("phone", rs.getString("phone_number"));
+	                    return contact;
+	                }
+	            }
+	        }
+	    } finally {
+	        releaseConnection(conn);
+	    }
+
+	    return null; // No subscriber found
+	}
+
+
+	/**
+	 * Retrieves an active reservation from the database by confirmation code.
+	 *
+	 * @param code the confirmation code entered by the subscriber
+	 * @return a Reservation object if found and active; otherwise null
+	 */
+	public Reservation getReservationByConfirmationCode(String code) {
+	    if (!confirmationCodeAllocator.isIssued(code)) {
+	        return null; // never issued, no need to query
+	    }
+	    String sql = "SELECT * FROM reservation WHERE confirmation_code = ? AND status = 'active'";
+	    Connection conn = null;
+
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            stmt.setString(1, code);
+	            try (ResultSet rs = stmt.executeQuery()) {
+	                if (rs.next()) {
+	                    return new Reservation(
+	                        rs.getInt("reservation_id"),
+	                        rs.getString("subscriber_code"),
+	                        rs.getInt("parking_space_id"),
+	                        rs.getTimestamp("reservation_date").toLocalDateTime(),
+	                        rs.getInt("confirmation_code"),
+	                        rs.getString("status")
+	                    );
+	                }
+	            }
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+
+	    return null;
+	}
+
+
+	/**
+	 * Marks a reservation as expired (used or time has passed).
+	 *
+	 * @param reservationId the reservation ID to update
+	 */
+	public void markReservationExpired(int reservationId) {
+	    String sql = "UPDATE reservation SET status = 'expired' WHERE reservation_id = ?";
+	    Connection conn = null;
+
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            stmt.setInt(1, reservationId);
+	            stmt.executeUpdate();
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	}
+
+
+	/**
+	 * Inserts a parking history record using reservation data.
+	 *
+	 * @param reservation the reservation object to base the parking on
+	 * @param entryTime   the actual time the subscriber entered
+	 * @param exitTime    the planned exit time (usually 4 hours after reservation)
+	 * @return the generated history ID, or -1 if the insert failed
+	 */
+	public int insertParkingFromReservation(Reservation reservation, LocalDateTime entryTime, LocalDateTime exitTime) {
+	    String sql = """
+	        INSERT INTO parking_history (
+	            subscriber_code,
+	            parking_space_id,
+	            entry_time,
+	            exit_time,
+	            extended,
+	            was_late,
+	            picked_up
+	        ) VALUES (?, ?, ?, ?, ?, ?, ?)
+	    """;
+	    Connection conn = null;
+
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+	            stmt.setString(1, reservation.getSubscriberCode());
+	            stmt.setInt(2, reservation.getParkingSpaceId());
+	            stmt.setTimestamp(3, Timestamp.valueOf(entryTime));
+	            stmt.setTimestamp(4, Timestamp.valueOf(exitTime));
+	            stmt.setBoolean(5, false); // extended
+	            stmt.setBoolean(6, false); // was_late
+	            stmt.setBoolean(7, false); // picked_up
+	            stmt.executeUpdate();
+	            return getGeneratedId(stmt);
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	    return -1;
+	}
+
+
+	/**
+	 * Cancels a reservation by updating its status to 'cancelled'.
+	 *
+	 * @param reservationId the ID of the reservation to cancel
+	 */
+	public void cancelReservation(int reservationId) {
+	    String sql = "UPDATE reservation SET status = 'cancelled' WHERE reservation_id = ?";
+	    Connection conn = null;
+
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            stmt.setInt(1, reservationId);
+	            stmt.executeUpdate();
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	}
+
+
+	/**
+	 * Retrieves the start time of every active reservation, keyed by reservation ID.
+	 * Used by the {@link ExpirySweeper} to rebuild its deadlines at startup.
+	 *
+	 * @return a map of reservation ID to reservation start time, or null if a database error occurred
+	 */
+	public Map<Integer, LocalDateTime> getActiveReservationStartTimes() {
+	    return getActiveReservationStartTimes(null);
+	}
+
+
+	/**
+	 * Retrieves the start time of the listed reservations that are still active, keyed by
+	 * reservation ID. Used by the {@link ExpirySweeper} to re-queue deadlines its sweep did not apply.
+	 *
+	 * @param reservationIds the reservation IDs, or null for every active reservation
+	 * @return a map of reservation ID to reservation start time, or null if a database error occurred
+	 */
+	public Map<Integer, LocalDateTime> getActiveReservationStartTimes(List<Integer> reservationIds) {
+	    return queryTimesById("SELECT reservation_id, reservation_date FROM reservation WHERE status = 'active'",
+	            "reservation_id", reservationIds);
+	}
+
+
+	/**
+	 * Counts the active reservations whose four-hour window covers the given time.
+	 *
+	 * @param time the time to check
+	 * @return the number of reservations, or -1 if a database error occurred
+	 */
+	public int countReservationsAt(LocalDateTime time) {
+	    String sql = """
+	        SELECT COUNT(*) FROM reservation
+	        WHERE status = 'active' AND reservation_date <= ? AND DATE_ADD(reservation_date, INTERVAL 4 HOUR) > ?
+	        """;
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            stmt.setTimestamp(1, Timestamp.valueOf(time));
+	            stmt.setTimestamp(2, Timestamp.valueOf(time));
+	            try (ResultSet rs = stmt.executeQuery()) {
+	                return rs.next() ? rs.getInt(1) : 0;
+	            }
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	        return -1;
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	}
+
+
+	/**
+	 * Retrieves the expected exit time of every open session not yet flagged late, keyed by history ID.
+	 * Used by the {@link ExpirySweeper} to rebuild its deadlines at startup.
+	 *
+	 * @return a map of history ID to expected exit time, or null if a database error occurred
+	 */
+	public Map<Integer, LocalDateTime> getOpenSessionExitTimes() {
+	    return getOpenSessionExitTimes(null);
+	}
+
+
+	/**
+	 * Retrieves the expected exit time of the listed sessions that are still open and not
+	 * flagged late, keyed by history ID. Used by the {@link ExpirySweeper} to re-queue
+	 * deadlines its sweep did not apply.
+	 *
+	 * @param historyIds the parking history IDs, or null for every open session
+	 * @return a map of history ID to expected exit time, or null if a database error occurred
+	 */
+	public Map<Integer, LocalDateTime> getOpenSessionExitTimes(List<Integer> historyIds) {
+	    return queryTimesById("SELECT history_id, exit_time FROM parking_history " +
+	            "WHERE picked_up = 0 AND was_late = 0 AND exit_time IS NOT NULL", "history_id", historyIds);
+	}
+
+
+	/**
+	 * Runs a query of an ID and a time column, optionally restricted to the given IDs.
+	 *
+	 * @param sql      the query, selecting the ID and then the time, with a WHERE clause
+	 * @param idColumn the ID column, used to restrict the query
+	 * @param ids      the IDs to restrict the query to, or null for all rows
+	 * @return a map of ID to time, or null if a database error occurred
+	 */
+	private Map<Integer, LocalDateTime> queryTimesById(String sql, String idColumn, List<Integer> ids) {
+	    Map<Integer, LocalDateTime> result = new HashMap<>();
+	    if (ids != null) {
+	        if (ids.isEmpty()) {
+	            return result;
+	        }
+	        sql += " AND " + idColumn + " IN (" + placeholders(ids.size()) + ")";
+	    }
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            if (ids != null) {
+	                bindParams(stmt, new ArrayList<Object>(ids));
+	            }
+	            try (ResultSet rs = stmt.executeQuery()) {
+	                while (rs.next()) {
+	                    result.put(rs.getInt(1), rs.getTimestamp(2).toLocalDateTime());
+	                }
+	            }
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	        return null;
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	    return result;
+	}
+
+
+	/**
+	 * Expires every listed reservation that is still active and whose deposit grace period
+	 * has passed. Reservations used or cancelled meanwhile are left untouched.
+	 *
+	 * @param reservationIds the reservation IDs whose deadline is due
+	 * @return the IDs of the reservations expired
+	 */
+	public List<Integer> expireReservations(List<Integer> reservationIds) {
+	    String due = "status = 'active' " +
+	                 "AND reservation_date <= DATE_SUB(NOW(), INTERVAL " + ExpirySweeper.RESERVATION_GRACE_MINUTES + " MINUTE)";
+	    return updateDueIds("reservation", "reservation_id", due, "status = 'expired'", reservationIds);
+	}
+
+
+	/**
+	 * Flags every listed session that is still not picked up at or after its exit time.
+	 * Sessions extended or picked up meanwhile are left untouched.
+	 *
+	 * @param historyIds the parking history IDs whose deadline is due
+	 * @return the IDs of the sessions flagged late
+	 */
+	public List<Integer> markSessionsLate(List<Integer> historyIds) {
+	    String due = "picked_up = 0 AND was_late = 0 AND exit_time <= NOW()";
+	    return updateDueIds("parking_history", "history_id", due, "was_late = 1", historyIds);
+	}
+
+
+	/**
+	 * Applies an update to the listed rows that match a condition, in one transaction, and
+	 * reports which rows it changed. The matching rows are locked first, so the IDs returned
+	 * are exactly the rows updated.
+	 *
+	 * @param table     the table
+	 * @param idColumn  the primary key column
+	 * @param condition the condition a row must match to be updated
+	 * @param set       the SET clause
+	 * @param ids       the candidate IDs
+	 * @return the IDs of the updated rows; empty if a database error occurred
+	 */
+	private List<Integer> updateDueIds(String table, String idColumn, String condition, String set, List<Integer> ids) {
+	    String select = "SELECT " + idColumn + " FROM " + table + " WHERE " + condition +
+	                    " AND " + idColumn + " IN (" + placeholders(ids.size()) + ") FOR UPDATE";
+	    List<Integer> updated = new ArrayList<>();
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        conn.setAutoCommit(false);
+	        try {
+	            try (PreparedStatement stmt = conn.prepareStatement(select)) {
+	                bindParams(stmt, new ArrayList<Object>(ids));
+	                try (ResultSet rs = stmt.executeQuery()) {
+	                    while (rs.next()) {
+	                        updated.add(rs.getInt(1));
+	                    }
+	                }
+	            }
+	            if (!updated.isEmpty()) {
+	                String update = "UPDATE " + table + " SET " + set +
+	                                " WHERE " + idColumn + " IN (" + placeholders(updated.size()) + ")";
+	                try (PreparedStatement stmt = conn.prepareStatement(update)) {
+	                    bindParams(stmt, new ArrayList<Object>(updated));
+	                    stmt.executeUpdate();
+	                }
+	            }
+	            conn.commit();
+	        } catch (SQLException e) {
+	            conn.rollback();
+	            throw e;
+	        } finally {
+	            conn.setAutoCommit(true);
+	        }
+	        return updated;
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	        return new ArrayList<>();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	}
+
+
+	/**
+	 * Retrieves the scheduled time of the last successful run of a background job.
+	 *
+	 * @param jobName the job name
+	 * @return the scheduled time of the last run, or null if the job never ran
+	 */
+	public LocalDateTime getJobLastRun(String jobName) {
+	    String sql = "SELECT last_run FROM job_run WHERE job_name = ?";
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            stmt.setString(1, jobName);
+	            try (ResultSet rs = stmt.executeQuery()) {
+	                if (rs.next()) {
+	                    return rs.getTimestamp("last_run").toLocalDateTime();
+	                }
+	            }
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	    return null;
+	}
+
+
+	/**
+	 * Records a completed run of a background job.
+	 *
+	 * @param jobName      the job name
+	 * @param scheduledFor the scheduled time of the run
+	 * @param status       the outcome of the run
+	 * @param durationMs   how long the run took, in milliseconds
+	 */
+	public void recordJobRun(String jobName, LocalDateTime scheduledFor, String status, long durationMs) {
+	    String sql = """
+	        INSERT INTO job_run (job_name, last_run, last_status, last_duration_ms, finished_at)
+	        VALUES (?, ?, ?, ?, NOW())
+	        ON DUPLICATE KEY UPDATE
+	            last_run = VALUES(last_run),
+	            last_status = VALUES(last_status),
+	            last_duration_ms = VALUES(last_duration_ms),
+	            finished_at = VALUES(finished_at)
+	    """;
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            stmt.setString(1, jobName);
+	            stmt.setTimestamp(2, Timestamp.valueOf(scheduledFor));
+	            stmt.setString(3, status);
+	            stmt.setLong(4, durationMs);
+	            stmt.executeUpdate();
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	}
+
+
+	/**
+	 * Deletes system log entries older than the given cutoff, from both the hot and the archive table.
+	 * Rows are deleted in small chunks so the tables are never locked for long.
+	 *
+	 * @param cutoff entries logged before this time are deleted
+	 * @return the number of deleted entries
+	 */
+	public int deleteSystemLogsBefore(LocalDateTime cutoff) {
+	    final int chunkSize = 1000;
+	    int total = 0;
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        for (String table : new String[] { "system_log", "system_log_archive" }) {
+	            String sql = "DELETE FROM " + table + " WHERE log_time < ? ORDER BY log_time LIMIT " + chunkSize;
+	            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	                stmt.setTimestamp(1, Timestamp.valueOf(cutoff));
+	                int deleted;
+	                do {
+	                    deleted = stmt.executeUpdate();
+	                    total += deleted;
+	                } while (deleted == chunkSize);
+	            }
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	    return total;
+	}
+
+
+	/**
+	 * Moves closed parking sessions that ended before the cutoff to parking_history_archive.
+	 * Active sessions are never moved, whatever their times. The archive horizon is recorded
+	 * before any row moves, so reports read the archive for those days even if a later chunk
+	 * fails and only part of the rows were moved.
+	 *
+	 * @param cutoff sessions whose exit time is before this time are archived
+	 * @return the number of archived sessions, or -1 if a database error occurred
+	 */
+	public int archiveParkingHistory(LocalDateTime cutoff) {
+	    if (!setArchiveHorizon(cutoff)) {
+	        return -1;
+	    }
+	    return moveToArchive("parking_history", "parking_history_archive", "history_id",
+	            "picked_up = 1 AND exit_time < ?", cutoff);
+	}
+
+	/**
+	 * Moves system log entries logged before the cutoff to system_log_archive.
+	 *
+	 * @param cutoff entries logged before this time are archived
+	 * @return the number of archived entries, or -1 if a database error occurred
+	 */
+	public int archiveSystemLogs(LocalDateTime cutoff) {
+	    return moveToArchive("system_log", "system_log_archive", "log_id", "log_time < ?", cutoff);
+	}
+
+	/**
+	 * Moves the rows matching a time condition from a hot table to its archive table, which
+	 * has the same columns. Each chunk is copied and deleted in its own transaction, so the
+	 * hot table is only locked briefly and a failure never loses or duplicates a row.
+	 *
+	 * @param table        the hot table
+	 * @param archiveTable the archive table
+	 * @param idColumn     the primary key column
+	 * @param condition    the WHERE condition, with one placeholder for the cutoff
+	 * @param cutoff       the cutoff time bound to the condition
+	 * @return the number of moved rows, or -1 if a database error occurred
+	 */
+	private int moveToArchive(String table, String archiveTable, String idColumn, String condition, LocalDateTime cutoff) {
+	    final int chunkSize = 1000;
+	    String selectIds = "SELECT " + idColumn + " FROM " + table + " WHERE " + condition +
+	                       " ORDER BY " + idColumn + " LIMIT " + chunkSize;
+	    int total = 0;
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        while (true) {
+	            List<Integer> ids = new ArrayList<>();
+	            try (PreparedStatement stmt = conn.prepareStatement(selectIds)) {
+	                stmt.setTimestamp(1, Timestamp.valueOf(cutoff));
+	                try (ResultSet rs = stmt.executeQuery()) {
+	                    while (rs.next()) {
+	                        ids.add(rs.getInt(1));
+	                    }
+	                }
+	            }
+	            if (ids.isEmpty()) {
+	                return total;
+	            }
+
+	            String in = " WHERE " + idColumn + " IN (" + placeholders(ids.size()) + ")";
+	            conn.setAutoCommit(false);
+	            try (PreparedStatement copy = conn.prepareStatement("INSERT INTO " + archiveTable + " SELECT * FROM " + table + in);
+	                 PreparedStatement delete = conn.prepareStatement("DELETE FROM " + table + in)) {
+	                bindParams(copy, new ArrayList<Object>(ids));
+	                bindParams(delete, new ArrayList<Object>(ids));
+	                copy.executeUpdate();
+	                total += delete.executeUpdate();
+	                conn.commit();
+	            } catch (SQLException e) {
+	                conn.rollback();
+	                throw e;
+	            } finally {
+	                conn.setAutoCommit(true);
+	            }
+
+	            if (ids.size() < chunkSize) {
+	                return total;
+	            }
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	        return -1;
 	    } finally {
 	        releaseConnection(conn);
 	    }
-	    return 1;
 	}
 
+	/**
+	 * Loads the archive horizon of parking_history, so report queries know whether a day
+	 * may have been archived. Called once when the server starts.
+	 */
+	public void loadArchiveHorizon() {
+	    String sql = "SELECT archived_before FROM archive_state WHERE table_name = 'parking_history'";
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql);
+	             ResultSet rs = stmt.executeQuery()) {
+	            if (rs.next()) {
+	                archiveHorizon = rs.getTimestamp(1).toLocalDateTime();
+	            }
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	}
 
 	/**
-	 * Retrieves the user ID by username.
+	 * Records that parking sessions ended before the given time may be in the archive.
+	 * The horizon only moves forward.
 	 *
-	 * @param username the username to search for
-	 * @return the user ID if found, or -1 if not found or error occurs
+	 * @param horizon the new archive horizon
+	 * @return true if the horizon was recorded
 	 */
-	public int getUserIdByUsername(String username) {
-	    String sql = "SELECT id FROM users WHERE username = ?";
+	private boolean setArchiveHorizon(LocalDateTime horizon) {
+	    String sql = """
+	        INSERT INTO archive_state (table_name, archived_before) VALUES ('parking_history', ?)
+	        ON DUPLICATE KEY UPDATE archived_before = GREATEST(archived_before, VALUES(archived_before))
+	        """;
 	    Connection conn = null;
 	    try {
 	        conn = getConnection();
 	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-	            stmt.setString(1, username);
+	            stmt.setTimestamp(1, Timestamp.valueOf(horizon));
+	            stmt.executeUpdate();
+	        }
+	        if (archiveHorizon == null || horizon.isAfter(archiveHorizon)) {
+	            archiveHorizon = horizon;
+	        }
+	        return true;
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	        return false;
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	}
+
+
+	/**
+	 * Builds a comma-separated list of JDBC placeholders.
+	 *
+	 * @param count the number of placeholders
+	 * @return a string such as "?, ?, ?"
+	 */
+	private String placeholders(int count) {
+		return String.join(", ", java.util.Collections.nCopies(count, "?"));
+	}
+
+	
+	/**
+	 * Loads a MonthlyParkingTimeReport from the database for the given year and month.
+	 * This retrieves the normal, extended, and delayed hours from the aggregated
+	 * monthly_parking_time_report table, and returns it as a MonthlyParkingTimeReport entity.
+	 *
+	 * @param year  the year to load
+	 * @param month the month to load
+	 * @return a MonthlyParkingTimeReport if found, null otherwise
+	 * @throws SQLException if a database error occurred, so it is not taken for a missing report
+	 */
+	public static MonthlyParkingTimeReport loadMonthlyParkingTimeReport(int year, int month) throws SQLException {
+	    MonthlyParkingTimeReport report = null;
+	    String sql = """
+	        SELECT normal_hours, extended_hours, delayed_hours
+	        FROM monthly_parking_time_report
+	        WHERE year = ? AND month = ?
+	    """;
+
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            stmt.setInt(1, year);
+	            stmt.setInt(2, month);
 	            try (ResultSet rs = stmt.executeQuery()) {
 	                if (rs.next()) {
-	                    return rs.getInt("id");
+	                    int normal = rs.getInt("normal_hours");
+	                    int extended = rs.getInt("extended_hours");
+	                    int delayed = rs.getInt("delayed_hours");
+	                    String ym = year + "-" + String.format("%02d", month);
+	                    report = new MonthlyParkingTimeReport(ym, normal, extended, delayed);
+	                }
+	            }
+	        }
+	    } finally {
+	        releaseConnection(conn);
+	    }
+
+	    return report;
+	}
+
+	
+	/**
+	 * Loads a MonthlySubscriberReport from the database for the given year and month.
+	 * This retrieves the CSV-like daily subscriber counts from the
+	 * monthly_subscriber_report table and converts them into a list of integers.
+	 *
+	 * @param year  the year to load
+	 * @param month the month to load
+	 * @return a MonthlySubscriberReport if found, null otherwise
+	 * @throws SQLException if a database error occurred, so it is not taken for a missing report
+	 */
+	public static MonthlySubscriberReport loadMonthlySubscriberReport(int year, int month) throws SQLException {
+	    MonthlySubscriberReport report = null;
+	    String sql = """
+	        SELECT daily_subscribers
+	        FROM monthly_subscriber_report
+	        WHERE year = ? AND month = ?
+	    """;
+
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+	            stmt.setInt(1, year);
+	            stmt.setInt(2, month);
+	            try (ResultSet rs = stmt.executeQuery()) {
+	                if (rs.next()) {
+	                    String raw = rs.getString("daily_subscribers");
+	                    List<Integer> counts = new ArrayList<>();
+	                    if (raw != null && !raw.isBlank()) {
+	                        for (String part : raw.split(",")) {
+	                            counts.add(Integer.parseInt(part.trim()));
+	                        }
+	                    }
+	                    String ym = year + "-" + String.format("%02d", month);
+	                    report = new MonthlySubscriberReport(ym, counts);
+	                }
+	            }
+	        }
+	    } finally {
+	        releaseConnection(conn);
+	    }
+
+	    return report;
+	}
+
+	
+	
+	/**
+	 * Generates and stores the monthly reports for a given year and month.
+	 * The month is aggregated in parallel day partitions by the {@link ReportEngine}.
+	 *
+	 * @param year  the year to generate
+	 * @param month the month to generate
+	 * @return true if both reports were stored, false if a database error occurred
+	 */
+	public static boolean generateMonthlyReports(int year, int month) {
+	    YearMonth ym = YearMonth.of(year, month);
+	    try {
+	        return ReportEngine.getInstance().generate(ym, ym) == 1;
+	    } catch (RuntimeException e) {
+	        e.printStackTrace();
+	        return false;
+	    }
+	}
+
+
+	/**
+	 * Aggregates the parking sessions that started on the given day.
+	 * It sums:
+	 *  - normal parking minutes
+	 *  - extended parking minutes
+	 *  - delayed parking minutes
+	 * collects the duration statistics of the completed sessions per spot,
+	 * and counts the distinct subscribers who parked that day, in a single streamed
+	 * pass over an index range on entry_time. Days older than the archive horizon also read
+	 * parking_history_archive. Runs on its own pooled connection so several days can be
+	 * aggregated concurrently.
+	 *
+	 * @param day the day to aggregate
+	 * @return the day's aggregate, or null if a database error occurred
+	 */
+	public static DailyParkingAggregate aggregateParkingDay(LocalDate day) {
+	    String sql = """
+	        SELECT subscriber_code, parking_space_id, entry_time, exit_time, extended, extended_hours, was_late, picked_up,
+	               overstay_minutes
+	        FROM parking_history
+	        WHERE entry_time >= ? AND entry_time < ?
+	    """;
+	    boolean archived = archiveHorizon != null && day.atStartOfDay().isBefore(archiveHorizon);
+	    if (archived) {
+	        sql += """
+	        UNION ALL
+	        SELECT subscriber_code, parking_space_id, entry_time, exit_time, extended, extended_hours, was_late, picked_up,
+	               overstay_minutes
+	        FROM parking_history_archive
+	        WHERE entry_time >= ? AND entry_time < ?
+	    """;
+	    }
+	    long normalMinutes = 0;
+	    long extendedMinutes = 0;
+	    long delayedMinutes = 0;
+	    java.util.Set<String> subscribers = new java.util.HashSet<>();
+	    HyperLogLog sketch = new HyperLogLog();
+	    int[] cubeCells = new int[OccupancyCube.CELLS];
+	    Map<Integer, ParkingDurationStats> durationStats = new HashMap<>();
+
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement ps = prepareStreaming(conn, sql)) {
+	            ps.setTimestamp(1, Timestamp.valueOf(day.atStartOfDay()));
+	            ps.setTimestamp(2, Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+	            if (archived) {
+	                ps.setTimestamp(3, Timestamp.valueOf(day.atStartOfDay()));
+	                ps.setTimestamp(4, Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+	            }
+	            try (ResultSet rs = ps.executeQuery()) {
+	                while (rs.next()) {
+	                    subscribers.add(rs.getString("subscriber_code"));
+	                    sketch.add(rs.getString("subscriber_code"));
+
+	                    Timestamp entry = rs.getTimestamp("entry_time");
+	                    Timestamp exit = rs.getTimestamp("exit_time");
+	                    LocalDateTime entryTime = entry.toLocalDateTime();
+	                    cubeCells[OccupancyCube.index(entryTime.getDayOfWeek(), entryTime.getHour(), OccupancyCube.ARRIVALS)]++;
+	                    if (exit == null) continue;
+	                    if (rs.getBoolean("picked_up")) {
+	                        // Open sessions are added by OccupancyCube.recordPickup when they end
+	                        OccupancyCube.addCompletedSession(cubeCells, entryTime, exit.toLocalDateTime());
+	                    }
+
+	                    long minutes = Duration.between(entry.toLocalDateTime(), exit.toLocalDateTime()).toMinutes();
+
+	                    if (rs.getBoolean("extended")) {
+	                        extendedMinutes += minutes;
+	                    } else if (rs.getBoolean("was_late")) {
+	                        delayedMinutes += minutes;
+	                    } else {
+	                        normalMinutes += minutes;
+	                    }
+
+	                    if (rs.getBoolean("picked_up")) {
+	                        boolean late = rs.getBoolean("was_late");
+	                        // A late pickup adds one extension of its own on top of those requested
+	                        int extensions = Math.max(0, rs.getInt("extended_hours") / EXTEND_HOURS_PER_REQUEST - (late ? 1 : 0));
+	                        durationStats.computeIfAbsent(rs.getInt("parking_space_id"), id -> new ParkingDurationStats())
+	                                     .add(minutes, rs.getInt("overstay_minutes"), late, extensions);
+	                    }
+	                }
+	            }
+	        }
+	        return new DailyParkingAggregate(day, normalMinutes, extendedMinutes, delayedMinutes, subscribers.size(), sketch,
+	                                         cubeCells, durationStats);
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	    return null;
+	}
+
+
+	/**
+	 * Merges per-day subscriber sketches into the stored ones. Merging is idempotent, so a
+	 * sketch may be merged again after it changed, and a sketch rebuilt from history may be
+	 * merged over a live one. The stored rows are locked for the duration of the merge.
+	 *
+	 * @param sketches the sketches to merge, by day; they are not modified
+	 * @return true if all sketches were stored
+	 */
+	public static boolean mergeSubscriberSketches(Map<LocalDate, HyperLogLog> sketches) {
+	    if (sketches.isEmpty()) {
+	        return true;
+	    }
+	    String select = "SELECT day, sketch FROM subscriber_day_sketch WHERE day IN (" +
+	                    String.join(", ", java.util.Collections.nCopies(sketches.size(), "?")) + ") FOR UPDATE";
+	    String upsert = """
+	        INSERT INTO subscriber_day_sketch (day, sketch) VALUES (?, ?)
+	        ON DUPLICATE KEY UPDATE sketch = VALUES(sketch)
+	        """;
+
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        conn.setAutoCommit(false);
+	        try {
+	            Map<LocalDate, HyperLogLog> merged = new HashMap<>();
+	            try (PreparedStatement ps = conn.prepareStatement(select)) {
+	                int i = 1;
+	                for (LocalDate day : sketches.keySet()) {
+	                    ps.setDate(i++, Date.valueOf(day));
+	                }
+	                try (ResultSet rs = ps.executeQuery()) {
+	                    while (rs.next()) {
+	                        merged.put(rs.getDate("day").toLocalDate(), HyperLogLog.fromBytes(rs.getBytes("sketch")));
+	                    }
+	                }
+	            }
+
+	            try (PreparedStatement ps = conn.prepareStatement(upsert)) {
+	                for (Map.Entry<LocalDate, HyperLogLog> entry : sketches.entrySet()) {
+	                    HyperLogLog sketch = merged.computeIfAbsent(entry.getKey(), d -> new HyperLogLog());
+	                    sketch.merge(entry.getValue());
+	                    ps.setDate(1, Date.valueOf(entry.getKey()));
+	                    ps.setBytes(2, sketch.toBytes());
+	                    ps.addBatch();
+	                }
+	                ps.executeBatch();
+	            }
+	            conn.commit();
+	            return true;
+	        } catch (SQLException | IllegalArgumentException e) {
+	            conn.rollback();
+	            e.printStackTrace();
+	            return false;
+	        } finally {
+	            conn.setAutoCommit(true);
+	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	        return false;
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	}
+
+	/**
+	 * Loads the stored per-day subscriber sketches of a date range.
+	 * Days without parking have no sketch.
+	 *
+	 * @param from the first day, inclusive
+	 * @param to   the last day, inclusive
+	 * @return the sketches by day in date order, or null if a database error occurred
+	 */
+	public java.util.TreeMap<LocalDate, HyperLogLog> getSubscriberSketches(LocalDate from, LocalDate to) {
+	    String sql = "SELECT day, sketch FROM subscriber_day_sketch WHERE day BETWEEN ? AND ?";
+	    java.util.TreeMap<LocalDate, HyperLogLog> sketches = new java.util.TreeMap<>();
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+	            ps.setDate(1, Date.valueOf(from));
+	            ps.setDate(2, Date.valueOf(to));
+	            try (ResultSet rs = ps.executeQuery()) {
+	                while (rs.next()) {
+	                    sketches.put(rs.getDate("day").toLocalDate(), HyperLogLog.fromBytes(rs.getBytes("sketch")));
+	                }
+	            }
+	        }
+	        return sketches;
+	    } catch (SQLException | IllegalArgumentException e) {
+	        e.printStackTrace();
+	        return null;
+	    } finally {
+	        releaseConnection(conn);
+	    }
+	}
+
+
+	/**
+	 * Loads the occupancy cube counters of a month.
+	 * Weekdays and hours without a row are left at zero.
+	 *
+	 * @param month the month
+	 * @return the counters as laid out by {@link OccupancyCube#index}, or null if a database error occurred
+	 */
+	public int[] getOccupancyCubeMonth(YearMonth month) {
+	    String sql = """
+	        SELECT weekday, hour, arrivals, dwell_count, dwell_minutes, occupied_minutes
+	        FROM occupancy_cube
+	        WHERE month = ?
+	        """;
+	    int[] cells = new int[OccupancyCube.CELLS];
+	    Connection conn = null;
+	    try {
+	        conn = getConnection();
+	        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+	            ps.setString(1, month.toString());
+	            try (ResultSet rs = ps.executeQuery()) {
+	                while (rs.next()) {
+	                    int base = OccupancyCube.index(java.time.DayOfWeek.of(rs.getInt("weekday")), rs.getInt("hour"), 0);
+	                    cells[base + OccupancyCube.ARRIVALS] = rs.getInt("arrivals");
+	                    cells[base + OccupancyCube.DWELL_COUNT] = rs.getInt("dwell_count");
+	                    cells[base + OccupancyCube.DWELL_MINUTES] = rs.getInt("dwell_minutes");
+	                    cells[base + OccupancyCube.OCCUPIED_MINUTES] = rs.getInt("occupied_minutes");
 	                }
 	            }
 	        }
+	        return cells;
 	    } catch (SQLException e) {
 	        e.printStackTrace();
+	        return null;
 	    } finally {
 	        releaseConnection(conn);
 	    }
-	    return -1; // Not found
 	}
 
-
 	/**
-	 * Retrieves all system logs from the database, ordered by most recent first.
+	 * Adds counter deltas to the occupancy cube in one transaction.
+	 * Only weekdays and hours with a non-zero delta are written.
 	 *
-	 * @return a list of SystemLog objects
+	 * @param deltas the deltas by month, laid out as the cube counters
+	 * @return true if all deltas were added
 	 */
-	public List<SystemLog> getAllSystemLogs() {
-	    List<SystemLog> logs = new ArrayList<>();
-	    String sql = "SELECT log_id, action, target, by_user, log_time, note FROM system_log ORDER BY log_time DESC";
-
+	public boolean addOccupancyCubeDeltas(Map<YearMonth, int[]> deltas) {
+	    String sql = """
+	        INSERT INTO occupancy_cube (month, weekday, hour, arrivals, dwell_count, dwell_minutes, occupied_minutes)
+	        VALUES (?, ?, ?, ?, ?, ?, ?)
+	        ON DUPLICATE KEY UPDATE
+	            arrivals = arrivals + VALUES(arrivals),
+	            dwell_count = dwell_count + VALUES(dwell_count),
+	            dwell_minutes = dwell_minutes + VALUES(dwell_minutes),
+	            occupied_minutes = occupied_minutes + VALUES(occupied_minutes)
+	        """;
 	    Connection conn = null;
 	    try {
 	        conn = getConnection();
-	        try (PreparedStatement ps = conn.prepareStatement(sql);
-	             ResultSet rs = ps.executeQuery()) {
-
-	            while (rs.next()) {
-	                SystemLog log = new SystemLog();
-	                log.setLogId(rs.getInt("log_id"));
-	                log.setAction(rs.getString("action"));
-	                log.setTarget(rs.getString("target"));
-	                log.setByUser(rs.getInt("by_user"));
-	                log.setLogTime(rs.getTimestamp("log_time").toLocalDateTime());
-	                log.setNote(rs.getString("note"));
-	                logs.add(log);
+	        conn.setAutoCommit(false);
+	        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+	            for (Map.Entry<YearMonth, int[]> entry : deltas.entrySet()) {
+	                addOccupancyCubeRows(ps, entry.getKey(), entry.getValue());
 	            }
-
+	            ps.executeBatch();
+	            conn.commit();
+	            return true;
+	        } catch (SQLException e) {
+	            conn.rollback();
+	            e.printStackTrace();
+	            return false;
+	        } finally {
+	            conn.setAutoCommit(true);
 	        }
 	    } catch (SQLException e) {
-	        System.err.println("Error fetching system logs: " + e.getMessage());
 	        e.printStackTrace();
+	        return false;
 	    } finally {
 	        releaseConnection(conn);
 	    }
-
-	    return logs;
 	}
 
-
 	/**
-	 * Retrieves the email and phone number of a subscriber by their subscriber code.
+	 * Replaces the occupancy cube counters of a month in one transaction.
 	 *
-	 * @param subscriberCode The unique subscriber code.
-	 * @return A map containing "email" and "phone" keys if found, or null otherwise.
-	 * @throws SQLException if a database access error occurs
+	 * @param month the month
+	 * @param cells the new counters, laid out as by {@link OccupancyCube#index}
+	 * @return true if the month was replaced
 	 */
-	public Map<String, String> getSubscriberContactByCode(String subscriberCode) throws SQLException {
-	    String sql = "SELECT email, phone_number FROM subscriber WHERE subscriber_code = ?";
+	public boolean replaceOccupancyCubeMonth(YearMonth month, int[] cells) {
+	    String delete = "DELETE FROM occupancy_cube WHERE month = ?";
+	    String insert = """
+	        INSERT INTO occupancy_cube (month, weekday, hour, arrivals, dwell_count, dwell_minutes, occupied_minutes)
+	        VALUES (?, ?, ?, ?, ?, ?, ?)
+	        """;
 	    Connection conn = null;
-
 	    try {
 	        conn = getConnection();
-	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-	            stmt.setString(1, subscriberCode);
-	            try (ResultSet rs = stmt.executeQuery()) {
-	                if (rs.next()) {
-	                    Map<String, String> contact = new HashMap<>();
-	                    contact.put("email", rs.getString("email"));
-	                    contact.put("phone", rs.getString("phone_number"));
-	                    return contact;
-	                }
-	            }
+	        conn.setAutoCommit(false);
+	        try (PreparedStatement del = conn.prepareStatement(delete);
+	             PreparedStatement ps = conn.prepareStatement(insert)) {
+	            del.setString(1, month.toString());
+	            del.executeUpdate();
+	            addOccupancyCubeRows(ps, month, cells);
+	            ps.executeBatch();
+	            conn.commit();
+	            return true;
+	        } catch (SQLException e) {
+	            conn.rollback();
+	            e.printStackTrace();
+	            return false;
+	        } finally {
+	            conn.setAutoCommit(true);
 	        }
+	    } catch (SQLException e) {
+	        e.printStackTrace();
+	        return false;
 	    } finally {
 	        releaseConnection(conn);
 	    }
+	}
 
-	    return null; // No subscriber found
+	/**
+	 * Adds one batch row per weekday and hour of a month's counters to an occupancy_cube insert,
+	 * leaving out the weekdays and hours whose counters are all zero.
+	 */
+	private static void addOccupancyCubeRows(PreparedStatement ps, YearMonth month, int[] cells) throws SQLException {
+	    for (java.time.DayOfWeek day : java.time.DayOfWeek.values()) {
+	        for (int hour = 0; hour < 24; hour++) {
+	            int base = OccupancyCube.index(day, hour, 0);
+	            boolean empty = true;
+	            for (int m = 0; m < OccupancyCube.MEASURES; m++) {
+	                empty &= cells[base + m] == 0;
+	            }
+	            if (empty) {
+	                continue;
+	            }
+	            ps.setString(1, month.toString());
+	            ps.setInt(2, day.getValue());
+	            ps.setInt(3, hour);
+	            ps.setInt(4, cells[base + OccupancyCube.ARRIVALS]);
+	            ps.setInt(5, cells[base + OccupancyCube.DWELL_COUNT]);
+	            ps.setInt(6, cells[base + OccupancyCube.DWELL_MINUTES]);
+	            ps.setInt(7, cells[base + OccupancyCube.OCCUPIED_MINUTES]);
+	            ps.addBatch();
+	        }
+	    }
 	}
 
 
 	/**
-	 * Retrieves an active reservation from the database by confirmation code.
+	 * Merges parking duration statistics into the stored ones in one transaction.
+	 * The stored rows are locked for the duration of the merge.
 	 *
-	 * @param code the confirmation code entered by the subscriber
-	 * @return a Reservation object if found and active; otherwise null
+	 * @param stats the statistics to merge, by month and spot; they are not modified
+	 * @return true if all statistics were stored
 	 */
-	public Reservation getReservationByConfirmationCode(String code) {
-	    String sql = "SELECT * FROM reservation WHERE confirmation_code = ? AND status = 'active'";
+	public boolean mergeParkingDurationStats(Map<YearMonth, Map<Integer, ParkingDurationStats>> stats) {
+	    String select = """
+	        SELECT duration_sketch, overstay_minutes, late_count, extension_count
+	        FROM parking_duration_stats
+	        WHERE month = ? AND parking_space_id = ?
+	        FOR UPDATE
+	        """;
+	    String upsert = """
+	        INSERT INTO parking_duration_stats
+	            (month, parking_space_id, sessions, duration_sketch, overstay_minutes, late_count, extension_count)
+	        VALUES (?, ?, ?, ?, ?, ?, ?)
+	        ON DUPLICATE KEY UPDATE
+	            sessions = VALUES(sessions),
+	            duration_sketch = VALUES(duration_sketch),
+	            overstay_minutes = VALUES(overstay_minutes),
+	            late_count = VALUES(late_count),
+	            extension_count = VALUES(extension_count)
+	        """;
 	    Connection conn = null;
-
 	    try {
 	        conn = getConnection();
-	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-	            stmt.setString(1, code);
-	            try (ResultSet rs = stmt.executeQuery()) {
-	                if (rs.next()) {
-	                    return new Reservation(
-	                        rs.getInt("reservation_id"),
-	                        rs.getString("subscriber_code"),
-	                        rs.getInt("parking_space_id"),
-	                        rs.getTimestamp("reservation_date").toLocalDateTime(),
-	                        rs.getInt("confirmation_code"),
-	                        rs.getString("status")
-	                    );
+	        conn.setAutoCommit(false);
+	        try (PreparedStatement sel = conn.prepareStatement(select);
+	             PreparedStatement ps = conn.prepareStatement(upsert)) {
+	            for (Map.Entry<YearMonth, Map<Integer, ParkingDurationStats>> month : stats.entrySet()) {
+	                for (Map.Entry<Integer, ParkingDurationStats> spot : month.getValue().entrySet()) {
+	                    ParkingDurationStats merged = new ParkingDurationStats();
+	                    sel.setString(1, month.getKey().toString());
+	                    sel.setInt(2, spot.getKey());
+	                    try (ResultSet rs = sel.executeQuery()) {
+	                        if (rs.next()) {
+	                            merged.merge(readParkingDurationStats(rs));
+	                        }
+	                    }
+	                    merged.merge(spot.getValue());
+	                    setParkingDurationRow(ps, month.getKey(), spot.getKey(), merged);
+	                    ps.addBatch();
 	                }
 	            }
+	            ps.executeBatch();
+	            conn.commit();
+	            return true;
+	        } catch (SQLException | IllegalArgumentException e) {
+	            conn.rollback();
+	            e.printStackTrace();
+	            return false;
+	        } finally {
+	            conn.setAutoCommit(true);
 	        }
 	    } catch (SQLException e) {
 	        e.printStackTrace();
+	        return false;
 	    } finally {
 	        releaseConnection(conn);
 	    }
-
-	    return null;
 	}
 
-
 	/**
-	 * Marks a reservation as expired (used or time has passed).
+	 * Replaces the parking duration statistics of a month in one transaction.
 	 *
-	 * @param reservationId the reservation ID to update
+	 * @param month the month
+	 * @param spots the new statistics by spot
+	 * @return true if the month was replaced
 	 */
-	public void markReservationExpired(int reservationId) {
-	    String sql = "UPDATE reservation SET status = 'expired' WHERE reservation_id = ?";
+	public boolean replaceParkingDurationMonth(YearMonth month, Map<Integer, ParkingDurationStats> spots) {
+	    String delete = "DELETE FROM parking_duration_stats WHERE month = ?";
+	    String insert = """
+	        INSERT INTO parking_duration_stats
+	            (month, parking_space_id, sessions, duration_sketch, overstay_minutes, late_count, extension_count)
+	        VALUES (?, ?, ?, ?, ?, ?, ?)
+	        """;
 	    Connection conn = null;
-
 	    try {
 	        conn = getConnection();
-	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-	            stmt.setInt(1, reservationId);
-	            stmt.executeUpdate();
+	        conn.setAutoCommit(false);
+	        try (PreparedStatement del = conn.prepareStatement(delete);
+	             PreparedStatement ps = conn.prepareStatement(insert)) {
+	            del.setString(1, month.toString());
+	            del.executeUpdate();
+	            for (Map.Entry<Integer, ParkingDurationStats> spot : spots.entrySet()) {
+	                setParkingDurationRow(ps, month, spot.getKey(), spot.getValue());
+	                ps.addBatch();
+	            }
+	            ps.executeBatch();
+	            conn.commit();
+	            return true;
+	        } catch (SQLException e) {
+	            conn.rollback();
+	            e.printStackTrace();
+	            return false;
+	        } finally {
+	            conn.setAutoCommit(true);
 	        }
 	    } catch (SQLException e) {
 	        e.printStackTrace();
+	        return false;
 	    } finally {
 	        releaseConnection(conn);
 	    }
 	}
 
-
 	/**
-	 * Inserts a parking history record using reservation data.
+	 * Loads the parking duration statistics of a range of months, merged per spot.
 	 *
-	 * @param reservation the reservation object to base the parking on
-	 * @param entryTime   the actual time the subscriber entered
-	 * @param exitTime    the planned exit time (usually 4 hours after reservation)
+	 * @param from the first month, inclusive
+	 * @param to   the last month, inclusive
+	 * @return the statistics by spot, or null if a database error occurred
 	 */
-	public void insertParkingFromReservation(Reservation reservation, LocalDateTime entryTime, LocalDateTime exitTime) {
+	public Map<Integer, ParkingDurationStats> getParkingDurationStats(YearMonth from, YearMonth to) {
 	    String sql = """
-	        INSERT INTO parking_history (
-	            subscriber_code,
-	            parking_space_id,
-	            entry_time,
-	            exit_time,
-	            extended,
-	            was_late,
-	            picked_up
-	        ) VALUES (?, ?, ?, ?, ?, ?, ?)
-	    """;
+	        SELECT parking_space_id, duration_sketch, overstay_minutes, late_count, extension_count
+	        FROM parking_duration_stats
+	        WHERE month BETWEEN ? AND ?
+	        """;
+	    Map<Integer, ParkingDurationStats> spots = new HashMap<>();
 	    Connection conn = null;
-
 	    try {
 	        conn = getConnection();
-	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-	            stmt.setString(1, reservation.getSubscriberCode());
-	            stmt.setInt(2, reservation.getParkingSpaceId());
-	            stmt.setTimestamp(3, Timestamp.valueOf(entryTime));
-	            stmt.setTimestamp(4, Timestamp.valueOf(exitTime));
-	            stmt.setBoolean(5, false); // extended
-	            stmt.setBoolean(6, false); // was_late
-	            stmt.setBoolean(7, false); // picked_up
-	            stmt.executeUpdate();
+	        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+	            ps.setString(1, from.toString());
+	            ps.setString(2, to.toString());
+	            try (ResultSet rs = ps.executeQuery()) {
+	                while (rs.next()) {
+	                    spots.computeIfAbsent(rs.getInt("parking_space_id"), id -> new ParkingDurationStats())
+	                         .merge(readParkingDurationStats(rs));
+	                }
+	            }
 	        }
-	    } catch (SQLException e) {
+	        return spots;
+	    } catch (SQLException | IllegalArgumentException e) {
 	        e.printStackTrace();
+	        return null;
 	    } finally {
 	        releaseConnection(conn);
 	    }
 	}
 
+	private static ParkingDurationStats readParkingDurationStats(ResultSet rs) throws SQLException {
+	    return new ParkingDurationStats(DurationSketch.fromBytes(rs.getBytes("duration_sketch")),
+	            rs.getLong("overstay_minutes"), rs.getInt("late_count"), rs.getInt("extension_count"));
+	}
+
+	private static void setParkingDurationRow(PreparedStatement ps, YearMonth month, int parkingSpaceId,
+	                                          ParkingDurationStats stats) throws SQLException {
+	    ps.setString(1, month.toString());
+	    ps.setInt(2, parkingSpaceId);
+	    ps.setLong(3, stats.getDurations().getCount());
+	    ps.setBytes(4, stats.getDurations().toBytes());
+	    ps.setLong(5, stats.getOverstayMinutes());
+	    ps.setInt(6, stats.getLateCount());
+	    ps.setInt(7, stats.getExtensionCount());
+	}
+
 
 	/**
-	 * Cancels a reservation by updating its status to 'cancelled'.
+	 * Looks up the stored response of a write command by its idempotency key.
 	 *
-	 * @param reservationId the ID of the reservation to cancel
+	 * @param idempotencyKey the key sent by the client
+	 * @param command        the client command the key was used with
+	 * @param notBefore      responses stored before this time are ignored
+	 * @return the stored response, or null if there is none or it could not be read
 	 */
-	public void cancelReservation(int reservationId) {
-	    String sql = "UPDATE reservation SET status = 'cancelled' WHERE reservation_id = ?";
+	public ServerResponse getIdempotentResponse(String idempotencyKey, String command, LocalDateTime notBefore) {
+	    String sql = """
+	        SELECT response_command, success, message
+	        FROM idempotency_key
+	        WHERE idempotency_key = ? AND command = ? AND created_at >= ?
+	        """;
 	    Connection conn = null;
-
 	    try {
 	        conn = getConnection();
-	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-	            stmt.setInt(1, reservationId);
-	            stmt.executeUpdate();
+	        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+	            ps.setString(1, idempotencyKey);
+	            ps.setString(2, command);
+	            ps.setTimestamp(3, Timestamp.valueOf(notBefore));
+	            try (ResultSet rs = ps.executeQuery()) {
+	                if (rs.next()) {
+	                    return new ServerResponse(rs.getString("response_command"), rs.getBoolean("success"),
+	                            rs.getString("message"), null);
+	                }
+	            }
 	        }
 	    } catch (SQLException e) {
 	        e.printStackTrace();
 	    } finally {
 	        releaseConnection(conn);
 	    }
+	    return null;
 	}
 
-	
 	/**
-	 * Loads a MonthlyParkingTimeReport from the database for the given year and month.
-	 * This retrieves the normal, extended, and delayed hours from the aggregated
-	 * monthly_parking_time_report table, and returns it as a MonthlyParkingTimeReport entity.
+	 * Stores the response of a write command under its idempotency key. The data of the
+	 * response is not stored; write commands answer without data.
 	 *
-	 * @param year  the year to load
-	 * @param month the month to load
-	 * @return a MonthlyParkingTimeReport if found, null otherwise
+	 * @param idempotencyKey the key sent by the client
+	 * @param command        the client command the key was used with
+	 * @param response       the response sent to the client
+	 * @param createdAt      the time the command was executed
+	 * @return true if the response was stored
 	 */
-	public static MonthlyParkingTimeReport loadMonthlyParkingTimeReport(int year, int month) {
-	    MonthlyParkingTimeReport report = null;
+	public boolean saveIdempotentResponse(String idempotencyKey, String command, ServerResponse response,
+	                                      LocalDateTime createdAt) {
 	    String sql = """
-	        SELECT normal_hours, extended_hours, delayed_hours
-	        FROM monthly_parking_time_report
-	        WHERE year = ? AND month = ?
-	    """;
-
+	        INSERT INTO idempotency_key (idempotency_key, command, response_command, success, message, created_at)
+	        VALUES (?, ?, ?, ?, ?, ?)
+	        ON DUPLICATE KEY UPDATE
+	            response_command = VALUES(response_command),
+	            success = VALUES(success),
+	            message = VALUES(message),
+	            created_at = VALUES(created_at)
+	        """;
 	    Connection conn = null;
 	    try {
 	        conn = getConnection();
-	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-	            stmt.setInt(1, year);
-	            stmt.setInt(2, month);
-	            try (ResultSet rs = stmt.executeQuery()) {
-	                if (rs.next()) {
-	                    int normal = rs.getInt("normal_hours");
-	                    int extended = rs.getInt("extended_hours");
-	                    int delayed = rs.getInt("delayed_hours");
-	                    String ym = year + "-" + String.format("%02d", month);
-	                    report = new MonthlyParkingTimeReport(ym, normal, extended, delayed);
-	                }
-	            }
+	        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+	            ps.setString(1, idempotencyKey);
+	            ps.setString(2, command);
+	            ps.setString(3, response.getCommand());
+	            ps.setBoolean(4, response.isSuccess());
+	            ps.setString(5, response.getMessage());
+	            ps.setTimestamp(6, Timestamp.valueOf(createdAt));
+	            ps.executeUpdate();
+	            return true;
 	        }
 	    } catch (SQLException e) {
 	        e.printStackTrace();
+	        return false;
 	    } finally {
 	        releaseConnection(conn);
 	    }
-
-	    return report;
 	}
 
-	
 	/**
-	 * Loads a MonthlySubscriberReport from the database for the given year and month.
-	 * This retrieves the CSV-like daily subscriber counts from the
-	 * monthly_subscriber_report table and converts them into a list of integers.
+	 * Deletes the idempotency keys stored before the given time.
 	 *
-	 * @param year  the year to load
-	 * @param month the month to load
-	 * @return a MonthlySubscriberReport if found, null otherwise
+	 * @param cutoff keys created before this time are deleted
+	 * @return the number of deleted keys
 	 */
-	public static MonthlySubscriberReport loadMonthlySubscriberReport(int year, int month) {
-	    MonthlySubscriberReport report = null;
-	    String sql = """
-	        SELECT daily_subscribers
-	        FROM monthly_subscriber_report
-	        WHERE year = ? AND month = ?
-	    """;
-
+	public int deleteIdempotencyKeysBefore(LocalDateTime cutoff) {
+	    String sql = "DELETE FROM idempotency_key WHERE created_at < ?";
 	    Connection conn = null;
 	    try {
 	        conn = getConnection();
-	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-	            stmt.setInt(1, year);
-	            stmt.setInt(2, month);
-	            try (ResultSet rs = stmt.executeQuery()) {
-	                if (rs.next()) {
-	                    String raw = rs.getString("daily_subscribers");
-	                    List<Integer> counts = new ArrayList<>();
-	                    if (raw != null && !raw.isBlank()) {
-	                        for (String part : raw.split(",")) {
-	                            counts.add(Integer.parseInt(part.trim()));
-	                        }
-	                    }
-	                    String ym = year + "-" + String.format("%02d", month);
-	                    report = new MonthlySubscriberReport(ym, counts);
-	                }
-	            }
+	        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+	            ps.setTimestamp(1, Timestamp.valueOf(cutoff));
+	            return ps.executeUpdate();
 	        }
 	    } catch (SQLException e) {
 	        e.printStackTrace();
+	        return 0;
 	    } finally {
 	        releaseConnection(conn);
 	    }
-
-	    return report;
 	}
 
-	
-	
 	/**
-	 * Generates and stores the monthly reports for a given year and month.
-	 * It aggregates:
-	 *  - normal parking hours
-	 *  - extended parking hours
-	 *  - delayed parking hours
-	 *  from the parking_history table, and also
-	 *  - daily subscriber parking counts
-	 * storing them into the monthly_parking_time_report and
-	 * monthly_subscriber_report tables with upsert logic.
+	 * Stores the monthly parking time and subscriber reports with upsert logic.
 	 *
-	 * @param year  the year to generate
-	 * @param month the month to generate
+	 * @param year          the report year
+	 * @param month         the report month
+	 * @param normalHours   total normal parking hours
+	 * @param extendedHours total extended parking hours
+	 * @param delayedHours  total delayed parking hours
+	 * @param dailyCounts   distinct subscribers per day, starting from the 1st
+	 * @return true if both reports were stored
 	 */
-	public static void generateMonthlyReports(int year, int month) {
-	    int normalHours = 0;
-	    int extendedHours = 0;
-	    int delayedHours = 0;
-	    List<Integer> dailyCounts = new ArrayList<>();
+	public static boolean storeMonthlyReports(int year, int month, int normalHours, int extendedHours,
+	                                          int delayedHours, List<Integer> dailyCounts) {
 	    String ymPrefix = year + "-" + String.format("%02d", month);
 
 	    Connection conn = null;
 	    try {
 	        conn = getConnection();
 
-	        // Aggregate parking hours
-	        String sql = """
-	            SELECT entry_time, exit_time, extended, was_late
-	            FROM parking_history
-	            WHERE DATE_FORMAT(entry_time, '%Y-%m') = ?
-	        """;
-	        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-	            ps.setString(1, ymPrefix);
-	            ResultSet rs = ps.executeQuery();
-	            while (rs.next()) {
-	                Timestamp entry = rs.getTimestamp("entry_time");
-	                Timestamp exit = rs.getTimestamp("exit_time");
-	                if (exit == null) continue;
-
-	                long hours = Duration.between(entry.toLocalDateTime(), exit.toLocalDateTime()).toHours();
-
-	                if (rs.getBoolean("extended")) {
-	                    extendedHours += hours;
-	                } else if (rs.getBoolean("was_late")) {
-	                    delayedHours += hours;
-	                } else {
-	                    normalHours += hours;
-	                }
-	            }
-	        }
-
-	        // Aggregate subscriber daily counts
-	        YearMonth ym = YearMonth.of(year, month);
-	        int lastDay = ym.lengthOfMonth();
-
-	        for (int day = 1; day <= lastDay; day++) {
-	            String date = String.format("%d-%02d-%02d", year, month, day);
-	            String countSql = """
-	                SELECT COUNT(DISTINCT subscriber_code)
-	                FROM parking_history
-	                WHERE DATE(entry_time) = ?
-	            """;
-	            try (PreparedStatement ps = conn.prepareStatement(countSql)) {
-	                ps.setString(1, date);
-	                ResultSet rs = ps.executeQuery();
-	                int count = 0;
-	                if (rs.next()) count = rs.getInt(1);
-	                dailyCounts.add(count);
-	            }
-	        }
-
 	        // Store into monthly_parking_time_report
 	        String storeTime = """
 	            INSERT INTO monthly_parking_time_report (year, month, normal_hours, extended_hours, delayed_hours)
@@ -1740,7 +3394,7 @@ public class DBController {
 	            ps.setInt(4, extendedHours);
 	            ps.setInt(5, delayedHours);
 	            ps.executeUpdate();
-	        } 
+	        }
 
 	        // Store into monthly_subscriber_report
 	        String csvCounts = dailyCounts.stream()
@@ -1762,12 +3416,14 @@ public class DBController {
 	        }
 
 	        System.out.printf("Monthly reports for %s generated successfully.%n", ymPrefix);
+	        return true;
 
 	    } catch (SQLException e) {
 	        e.printStackTrace();
 	    } finally {
 	        releaseConnection(conn);
 	    }
+	    return false;
 	}
 
 
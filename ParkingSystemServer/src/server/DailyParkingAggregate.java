@@ -0,0 +1,101 @@
+package server;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Aggregated parking activity of a single day, computed by the {@link ReportEngine}.
+ * Sessions are attributed to the day of their entry time.
+ */
+public class DailyParkingAggregate {
+
+    private final LocalDate date;
+    private final long normalMinutes;
+    private final long extendedMinutes;
+    private final long delayedMinutes;
+    private final int subscriberCount;
+    private final HyperLogLog subscriberSketch;
+    private final int[] cubeCells;
+    private final Map<Integer, ParkingDurationStats> durationStats;
+
+    /**
+     * Constructs a daily aggregate.
+     *
+     * @param date             the aggregated day
+     * @param normalMinutes    minutes of sessions that were neither extended nor late
+     * @param extendedMinutes  minutes of extended sessions
+     * @param delayedMinutes   minutes of late sessions
+     * @param subscriberCount  the number of distinct subscribers who parked that day
+     * @param subscriberSketch a sketch of the subscribers who parked that day
+     * @param cubeCells        the {@link OccupancyCube} counters of the sessions that started that day
+     * @param durationStats    the duration statistics of the completed sessions, by spot
+     */
+    public DailyParkingAggregate(LocalDate date, long normalMinutes, long extendedMinutes, long delayedMinutes,
+                                 int subscriberCount, HyperLogLog subscriberSketch, int[] cubeCells,
+                                 Map<Integer, ParkingDurationStats> durationStats) {
+        this.date = date;
+        this.normalMinutes = normalMinutes;
+        this.extendedMinutes = extendedMinutes;
+        this.delayedMinutes = delayedMinutes;
+        this.subscriberCount = subscriberCount;
+        this.subscriberSketch = subscriberSketch;
+        this.cubeCells = cubeCells;
+        this.durationStats = durationStats;
+    }
+
+    /**
+     * @return the aggregated day
+     */
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * @return minutes of sessions that were neither extended nor late
+     */
+    public long getNormalMinutes() {
+        return normalMinutes;
+    }
+
+    /**
+     * @return minutes of extended sessions
+     */
+    public long getExtendedMinutes() {
+        return extendedMinutes;
+    }
+
+    /**
+     * @return minutes of late sessions
+     */
+    public long getDelayedMinutes() {
+        return delayedMinutes;
+    }
+
+    /**
+     * @return the number of distinct subscribers who parked that day
+     */
+    public int getSubscriberCount() {
+        return subscriberCount;
+    }
+
+    /**
+     * @return a sketch of the subscribers who parked that day, mergeable with other days
+     */
+    public HyperLogLog getSubscriberSketch() {
+        return subscriberSketch;
+    }
+
+    /**
+     * @return the {@link OccupancyCube} counters of the sessions that started that day
+     */
+    public int[] getCubeCells() {
+        return cubeCells;
+    }
+
+    /**
+     * @return the duration statistics of the completed sessions that started that day, by spot
+     */
+    public Map<Integer, ParkingDurationStats> getDurationStats() {
+        return durationStats;
+    }
+}
@@ -0,0 +1,209 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Mergeable quantile sketch of parking durations in minutes.
+ * <p>
+ * Durations are counted in logarithmic buckets whose bounds grow by a factor of
+ * (1 + {@link #RELATIVE_ACCURACY}) / (1 - {@link #RELATIVE_ACCURACY}), so every quantile is
+ * returned within 1% of a duration that actually occurred at that rank, however skewed the
+ * distribution is. Merging adds bucket counts, which makes it exact and order-independent:
+ * the sketch of a month is the merge of its days or spots, and the sketch of a year the merge
+ * of its months. Bucket 0 holds durations up to a minute; durations beyond a year fall into the
+ * last bucket.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class DurationSketch {
+
+    /** Relative error of the returned quantiles. */
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final int BUCKETS = (int) Math.ceil(Math.log(366 * 24 * 60) / LOG_GAMMA) + 1;
+    private static final byte ENCODING_SPARSE = 1;
+
+    private final int[] counts = new int[BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * Adds a duration.
+     *
+     * @param minutes the duration in minutes; negative values are counted as zero
+     */
+    public void add(long minutes) {
+        minutes = Math.max(0, minutes);
+        counts[bucket(minutes)]++;
+        count++;
+        sum += minutes;
+        min = Math.min(min, minutes);
+        max = Math.max(max, minutes);
+    }
+
+    /**
+     * Adds all durations of another sketch.
+     *
+     * @param other the sketch to merge; it is not modified
+     */
+    public void merge(DurationSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * @return the number of durations added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the exact sum of the durations in minutes
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * @return the average duration in minutes, or 0 if the sketch is empty
+     */
+    public double average() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Estimates a quantile of the durations.
+     *
+     * @param q the quantile, from 0 (shortest) to 1 (longest)
+     * @return the estimated duration in minutes, or 0 if the sketch is empty
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return 0;
+        }
+        if (q <= 0) {
+            return min;
+        }
+        if (q >= 1) {
+            return max;
+        }
+        double rank = q * (count - 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                double value = i == 0 ? 1 : 2 * Math.pow(GAMMA, i) / (GAMMA + 1);
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Serializes the sketch: the sum, minimum and maximum, then the non-empty buckets as
+     * index gaps and counts, all as varints. A month of one spot takes a few hundred bytes.
+     *
+     * @return the serialized sketch
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ENCODING_SPARSE);
+        writeVarint(out, sum);
+        writeVarint(out, count == 0 ? 0 : min);
+        writeVarint(out, max);
+        int previous = -1;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                writeVarint(out, i - previous);
+                writeVarint(out, counts[i]);
+                previous = i;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Restores a sketch serialized by {@link #toBytes()}.
+     *
+     * @param data the serialized sketch
+     * @return the sketch
+     * @throws IllegalArgumentException if the data is not a serialized sketch
+     */
+    public static DurationSketch fromBytes(byte[] data) {
+        DurationSketch sketch = new DurationSketch();
+        if (data == null || data.length == 0) {
+            return sketch;
+        }
+        if (data[0] != ENCODING_SPARSE) {
+            throw new IllegalArgumentException("Unknown sketch encoding");
+        }
+        int[] cursor = { 1 };
+        long sum = readVarint(data, cursor);
+        long min = readVarint(data, cursor);
+        long max = readVarint(data, cursor);
+        int index = -1;
+        while (cursor[0] < data.length) {
+            index += (int) readVarint(data, cursor);
+            if (index < 0 || index >= BUCKETS) {
+                throw new IllegalArgumentException("Bucket out of range: " + index);
+            }
+            int bucketCount = (int) readVarint(data, cursor);
+            sketch.counts[index] += bucketCount;
+            sketch.count += bucketCount;
+        }
+        if (sketch.count > 0) {
+            sketch.sum = sum;
+            sketch.min = min;
+            sketch.max = max;
+        }
+        return sketch;
+    }
+
+    /**
+     * Returns the bucket of a duration: the smallest i with minutes <= GAMMA^i.
+     */
+    private static int bucket(long minutes) {
+        if (minutes <= 1) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, (int) Math.ceil(Math.log(minutes) / LOG_GAMMA));
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] data, int[] cursor) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (cursor[0] >= data.length || shift > 63) {
+                throw new IllegalArgumentException("Truncated sketch");
+            }
+            b = data[cursor[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
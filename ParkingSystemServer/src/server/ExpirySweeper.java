@@ -0,0 +1,366 @@
+package server;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Background sweeper that expires reservations and flags overdue parking sessions.
+ * <p>
+ * Every reservation is keyed by its start time plus the deposit grace period, and every
+ * open parking session by its exit time. The deadlines are kept in a {@link DelayQueue},
+ * so the worker thread sleeps until the earliest one is due and then drains every deadline
+ * that is due at that moment into a single batched UPDATE per table.
+ * </p>
+ * <p>
+ * The UPDATE statements re-check the row state, so a deadline that became stale (the
+ * reservation was used or cancelled, the session was extended or picked up) is a no-op.
+ * A deadline the database does not consider due yet, because its clock is behind or
+ * truncated to the second, is queued again {@link #RETRY_DELAY_MS} later.
+ * Expired reservations are recorded in the {@link ParkingJournal}.
+ * </p>
+ */
+public class ExpirySweeper {
+
+    /** Minutes after the reservation start during which the car may still be deposited. */
+    public static final int RESERVATION_GRACE_MINUTES = 15;
+
+    /** Maximum number of deadlines handled in one batch. */
+    private static final int MAX_BATCH = 500;
+
+    /** Delay before a deadline the database did not consider due is swept again. */
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final DBController dbController;
+    private final ParkingJournal journal;
+    private final DelayQueue<Deadline> queue = new DelayQueue<>();
+
+    private Thread worker;
+    private volatile boolean running;
+
+    private final AtomicLong sweeps = new AtomicLong();
+    private final AtomicLong expiredReservations = new AtomicLong();
+    private final AtomicLong lateSessions = new AtomicLong();
+    private volatile long lastLagMillis;
+    private volatile long maxLagMillis;
+
+    /**
+     * Constructs a sweeper that applies its updates through the given DB controller.
+     *
+     * @param dbController the database controller used for loading and updating rows
+     * @param journal      the journal that records expired reservations
+     */
+    public ExpirySweeper(DBController dbController, ParkingJournal journal) {
+        this.dbController = dbController;
+        this.journal = journal;
+    }
+
+    /**
+     * Loads the pending deadlines from the database and starts the worker thread.
+     * Deadlines that already passed while the server was down are swept immediately.
+     * If they cannot be read, the worker starts empty and the next {@link #resync()} loads them.
+     */
+    public synchronized void start() {
+        start(dbController.getActiveReservationStartTimes(), dbController.getOpenSessionExitTimes());
+    }
+
+    /**
+     * Starts the worker thread with the given pending deadlines, for example the ones restored
+     * from the {@link ParkingJournal}. Deadlines that already passed are swept immediately.
+     *
+     * @param reservationStarts the start time of every active reservation, by reservation ID
+     * @param sessionExits      the expected exit of every open session, by parking history ID
+     */
+    public synchronized void start(Map<Integer, LocalDateTime> reservationStarts,
+                                   Map<Integer, LocalDateTime> sessionExits) {
+        if (running) {
+            return;
+        }
+        if (!schedule(reservationStarts, sessionExits)) {
+            System.err.println("Expiry sweeper could not load the pending deadlines; waiting for the next resync.");
+        }
+
+        running = true;
+        worker = new Thread(this::runLoop, "expiry-sweeper");
+        worker.setDaemon(true);
+        worker.start();
+        System.out.println("Expiry sweeper started with " + queue.size() + " pending deadline(s).");
+    }
+
+    /**
+     * Adds the deadlines of the pending rows in the database that are not queued yet, picking up
+     * rows created outside this server. Queued deadlines are kept: the ones of rows completed
+     * meanwhile are re-checked against the database when they fire and become no-ops, and a
+     * deadline scheduled by a handler while the rows were read is not lost. If the rows cannot
+     * be read, the queue is left as it is.
+     */
+    public void resync() {
+        if (!schedule(dbController.getActiveReservationStartTimes(), dbController.getOpenSessionExitTimes())) {
+            System.err.println("Expiry sweeper resync skipped: the pending deadlines could not be read.");
+        }
+    }
+
+    /**
+     * Queues the given deadlines, skipping the ones already queued.
+     *
+     * @return false if either map is null, in which case nothing is queued
+     */
+    private boolean schedule(Map<Integer, LocalDateTime> reservationStarts, Map<Integer, LocalDateTime> sessionExits) {
+        if (reservationStarts == null || sessionExits == null) {
+            return false;
+        }
+        Set<Deadline> queued = new HashSet<>(queue);
+        for (Map.Entry<Integer, LocalDateTime> entry : reservationStarts.entrySet()) {
+            if (entry.getValue() != null && !queued.contains(new Deadline(Kind.RESERVATION, entry.getKey(),
+                    entry.getValue().plusMinutes(RESERVATION_GRACE_MINUTES)))) {
+                scheduleReservation(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<Integer, LocalDateTime> entry : sessionExits.entrySet()) {
+            if (entry.getValue() != null && !queued.contains(new Deadline(Kind.SESSION, entry.getKey(), entry.getValue()))) {
+                scheduleSession(entry.getKey(), entry.getValue());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops the worker thread. Pending deadlines are reloaded from the database on the next start.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    /**
+     * Schedules the expiry of an active reservation.
+     *
+     * @param reservationId   the reservation ID
+     * @param reservationDate the reservation start time
+     */
+    public void scheduleReservation(int reservationId, LocalDateTime reservationDate) {
+        if (reservationId > 0 && reservationDate != null) {
+            queue.put(new Deadline(Kind.RESERVATION, reservationId,
+                    reservationDate.plusMinutes(RESERVATION_GRACE_MINUTES)));
+        }
+    }
+
+    /**
+     * Schedules the overdue check of an open parking session. Call again with the new
+     * exit time when a session is extended; the old deadline becomes a no-op.
+     *
+     * @param historyId the parking history ID
+     * @param exitTime  the expected exit time
+     */
+    public void scheduleSession(int historyId, LocalDateTime exitTime) {
+        if (historyId > 0 && exitTime != null) {
+            queue.put(new Deadline(Kind.SESSION, historyId, exitTime));
+        }
+    }
+
+    /**
+     * Main worker loop: waits for the next due deadline, then sweeps all due deadlines in one batch.
+     */
+    private void runLoop() {
+        while (running) {
+            try {
+                Deadline first = queue.take();
+                List<Deadline> due = new ArrayList<>();
+                due.add(first);
+                queue.drainTo(due, MAX_BATCH - 1);
+                sweep(due);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                System.err.println("Expiry sweep failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Applies one batch of due deadlines, re-queues the ones that were not due yet and records
+     * the sweep metrics.
+     *
+     * @param due the deadlines that are due
+     */
+    private void sweep(List<Deadline> due) {
+        Map<Integer, Deadline> reservations = new HashMap<>();
+        Map<Integer, Deadline> sessions = new HashMap<>();
+        long now = System.currentTimeMillis();
+        long lag = 0;
+
+        for (Deadline deadline : due) {
+            lag = Math.max(lag, now - deadline.dueAtMillis);
+            (deadline.kind == Kind.RESERVATION ? reservations : sessions).merge(deadline.id, deadline,
+                    (a, b) -> a.dueAtMillis >= b.dueAtMillis ? a : b);
+        }
+
+        List<Integer> expired = reservations.isEmpty() ? List.of()
+                : dbController.expireReservations(new ArrayList<>(reservations.keySet()));
+        if (!expired.isEmpty()) {
+            journal.expired(expired);
+        }
+        List<Integer> late = sessions.isEmpty() ? List.of()
+                : dbController.markSessionsLate(new ArrayList<>(sessions.keySet()));
+
+        int retried = retry(reservations, expired, dbController::getActiveReservationStartTimes, RESERVATION_GRACE_MINUTES)
+                + retry(sessions, late, dbController::getOpenSessionExitTimes, 0);
+
+        sweeps.incrementAndGet();
+        expiredReservations.addAndGet(expired.size());
+        lateSessions.addAndGet(late.size());
+        lastLagMillis = lag;
+        maxLagMillis = Math.max(maxLagMillis, lag);
+
+        if (!expired.isEmpty() || !late.isEmpty() || retried > 0) {
+            System.out.printf("Expiry sweep: %d reservation(s) expired, %d session(s) flagged late, %d retried, lag %d ms%n",
+                    expired.size(), late.size(), retried, lag);
+        }
+    }
+
+    /**
+     * Queues again the deadlines that the sweep did not apply although their row is still
+     * pending and its time has not moved past the deadline. Rows whose time moved later
+     * already have a newer deadline, and rows that were completed need none.
+     *
+     * @param deadlines    the swept deadlines by ID
+     * @param applied      the IDs the update applied to
+     * @param pendingTimes looks up the time of the listed rows that are still pending
+     * @param graceMinutes minutes from the row time to its deadline
+     * @return the number of deadlines queued again
+     */
+    private int retry(Map<Integer, Deadline> deadlines, List<Integer> applied,
+                      Function<List<Integer>, Map<Integer, LocalDateTime>> pendingTimes, int graceMinutes) {
+        List<Integer> missed = new ArrayList<>(deadlines.keySet());
+        missed.removeAll(applied);
+        if (missed.isEmpty()) {
+            return 0;
+        }
+        long retryAt = System.currentTimeMillis() + RETRY_DELAY_MS;
+        Map<Integer, LocalDateTime> pending = pendingTimes.apply(missed);
+        if (pending == null) {
+            // The rows could not be read; try all of them again rather than lose a deadline
+            for (int id : missed) {
+                Deadline deadline = deadlines.get(id);
+                queue.put(new Deadline(deadline.kind, deadline.id, Math.max(deadline.dueAtMillis, retryAt)));
+            }
+            return missed.size();
+        }
+        int retried = 0;
+        for (Map.Entry<Integer, LocalDateTime> entry : pending.entrySet()) {
+            Deadline deadline = deadlines.get(entry.getKey());
+            if (toMillis(entry.getValue().plusMinutes(graceMinutes)) <= deadline.dueAtMillis) {
+                queue.put(new Deadline(deadline.kind, deadline.id, Math.max(deadline.dueAtMillis, retryAt)));
+                retried++;
+            }
+        }
+        return retried;
+    }
+
+    /**
+     * @return the number of deadlines waiting in the queue
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of batches swept since start
+     */
+    public long getSweepCount() {
+        return sweeps.get();
+    }
+
+    /**
+     * @return the number of reservations expired by the sweeper
+     */
+    public long getExpiredReservationCount() {
+        return expiredReservations.get();
+    }
+
+    /**
+     * @return the number of sessions flagged late by the sweeper
+     */
+    public long getLateSessionCount() {
+        return lateSessions.get();
+    }
+
+    /**
+     * @return the delay between the oldest deadline and its sweep, for the last batch
+     */
+    public long getLastLagMillis() {
+        return lastLagMillis;
+    }
+
+    /**
+     * @return the largest sweep lag observed since start
+     */
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /** The kind of row a deadline refers to. */
+    private enum Kind {
+        RESERVATION, SESSION
+    }
+
+    /**
+     * A single expiry deadline held in the delay queue.
+     */
+    private static final class Deadline implements Delayed {
+        private final Kind kind;
+        private final int id;
+        private final long dueAtMillis;
+
+        Deadline(Kind kind, int id, LocalDateTime dueAt) {
+            this(kind, id, toMillis(dueAt));
+        }
+
+        Deadline(Kind kind, int id, long dueAtMillis) {
+            this.kind = kind;
+            this.id = id;
+            this.dueAtMillis = dueAtMillis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAtMillis, ((Deadline) other).dueAtMillis);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Deadline deadline && kind == deadline.kind && id == deadline.id
+                    && dueAtMillis == deadline.dueAtMillis;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, id, dueAtMillis);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A HyperLogLog sketch that estimates the number of distinct strings added to it.
+ * <p>
+ * The sketch keeps 2<sup>{@value #PRECISION}</sup> one-byte registers, so its size does not
+ * depend on the number of elements, and its standard error is about 1.6%. Two sketches are
+ * merged by taking the register-wise maximum; merging is idempotent and order-independent,
+ * so daily sketches can be combined into any week, month or quarter, and a sketch can be
+ * merged with an older copy of itself without counting anything twice.
+ * </p>
+ * <p>
+ * Sketches are serialized sparsely (index and value of the non-empty registers) while few
+ * registers are set, which is the normal case for a single day, and as packed 6-bit
+ * registers otherwise.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class HyperLogLog {
+
+    /** Number of index bits; the sketch has 2^PRECISION registers. */
+    public static final int PRECISION = 12;
+
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final int DENSE_BYTES = REGISTERS * 6 / 8;
+    private static final byte ENCODING_SPARSE = 1;
+    private static final byte ENCODING_DENSE = 2;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    /**
+     * Adds an element to the sketch.
+     *
+     * @param value the element, for example a subscriber code
+     */
+    public void add(String value) {
+        long hash = hash64(value);
+        int index = (int) (hash >>> (64 - PRECISION));
+        long rest = hash << PRECISION;
+        int rank = rest == 0 ? 64 - PRECISION + 1 : Long.numberOfLeadingZeros(rest) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Merges another sketch into this one, so this sketch counts the union of both.
+     *
+     * @param other the sketch to merge
+     */
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * @return the estimated number of distinct elements added
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        // Linear counting is more accurate while many registers are still empty
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return true if nothing was added to the sketch
+     */
+    public boolean isEmpty() {
+        for (byte register : registers) {
+            if (register != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Serializes the sketch, choosing the smaller of the sparse and dense encodings.
+     *
+     * @return the serialized sketch
+     */
+    public byte[] toBytes() {
+        int used = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                used++;
+            }
+        }
+
+        if (used * 3 < DENSE_BYTES) {
+            byte[] out = new byte[1 + used * 3];
+            out[0] = ENCODING_SPARSE;
+            int pos = 1;
+            for (int i = 0; i < REGISTERS; i++) {
+                if (registers[i] != 0) {
+                    out[pos++] = (byte) (i >>> 8);
+                    out[pos++] = (byte) i;
+                    out[pos++] = registers[i];
+                }
+            }
+            return out;
+        }
+
+        byte[] out = new byte[1 + DENSE_BYTES];
+        out[0] = ENCODING_DENSE;
+        // Four 6-bit registers per three bytes
+        for (int i = 0, pos = 1; i < REGISTERS; i += 4, pos += 3) {
+            int packed = registers[i] << 18 | registers[i + 1] << 12 | registers[i + 2] << 6 | registers[i + 3];
+            out[pos] = (byte) (packed >>> 16);
+            out[pos + 1] = (byte) (packed >>> 8);
+            out[pos + 2] = (byte) packed;
+        }
+        return out;
+    }
+
+    /**
+     * Restores a sketch serialized by {@link #toBytes()}.
+     *
+     * @param data the serialized sketch
+     * @return the sketch
+     * @throws IllegalArgumentException if the data is not a serialized sketch
+     */
+    public static HyperLogLog fromBytes(byte[] data) {
+        HyperLogLog sketch = new HyperLogLog();
+        if (data == null || data.length == 0) {
+            return sketch;
+        }
+        if (data[0] == ENCODING_SPARSE && (data.length - 1) % 3 == 0) {
+            for (int pos = 1; pos < data.length; pos += 3) {
+                int index = (data[pos] & 0xFF) << 8 | (data[pos + 1] & 0xFF);
+                sketch.registers[index & (REGISTERS - 1)] = data[pos + 2];
+            }
+        } else if (data[0] == ENCODING_DENSE && data.length == 1 + DENSE_BYTES) {
+            for (int i = 0, pos = 1; i < REGISTERS; i += 4, pos += 3) {
+                int packed = (data[pos] & 0xFF) << 16 | (data[pos + 1] & 0xFF) << 8 | (data[pos + 2] & 0xFF);
+                sketch.registers[i] = (byte) (packed >>> 18 & 0x3F);
+                sketch.registers[i + 1] = (byte) (packed >>> 12 & 0x3F);
+                sketch.registers[i + 2] = (byte) (packed >>> 6 & 0x3F);
+                sketch.registers[i + 3] = (byte) (packed & 0x3F);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown sketch encoding");
+        }
+        return sketch;
+    }
+
+    /**
+     * Hashes a string to 64 well-mixed bits: FNV-1a over the UTF-8 bytes, then the
+     * MurmurHash3 finalizer so that the high bits used for the register index are uniform.
+     */
+    private static long hash64(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe51a8753L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
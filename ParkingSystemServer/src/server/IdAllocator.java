@@ -0,0 +1,146 @@
+package server;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hands out primary keys and counters from memory using the hi/lo scheme.
+ * <p>
+ * Every {@link Sequence} is a row in the id_sequence table. When a server runs out of values
+ * it reserves the next block of {@link Sequence#blockSize} values with a single atomic UPDATE,
+ * then hands them out with an atomic counter and no further round trips. Blocks reserved by
+ * different servers never overlap. Values left in a block when the server stops are skipped,
+ * so IDs are unique and increasing per server but may have gaps.
+ * </p>
+ * <p>
+ * A sequence row that does not exist yet is created on first use, starting after the largest
+ * ID already present in its table.
+ * </p>
+ */
+public class IdAllocator {
+
+    /**
+     * The allocated sequences with the table whose IDs they assign.
+     */
+    public enum Sequence {
+        SYSTEM_LOG("system_log", "system_log", "log_id", 50),
+        SUBSCRIBER("subscriber", "users", "id", 10),
+        RESERVATION("reservation", "reservation", "reservation_id", 20),
+        CONFIRMATION_CODE("confirmation_code", null, null, 100);
+
+        private final String sequenceName;
+        private final String table;
+        private final String column;
+        private final int blockSize;
+
+        Sequence(String sequenceName, String table, String column, int blockSize) {
+            this.sequenceName = sequenceName;
+            this.table = table;
+            this.column = column;
+            this.blockSize = blockSize;
+        }
+
+        /**
+         * @return the row name in the id_sequence table
+         */
+        public String getSequenceName() {
+            return sequenceName;
+        }
+    }
+
+    /**
+     * A reserved block of values; the cursor may run past the limit when the block is exhausted.
+     */
+    private static final class Block {
+        private final AtomicLong cursor;
+        private final long limit;
+
+        Block(long start, long limit) {
+            this.cursor = new AtomicLong(start);
+            this.limit = limit;
+        }
+    }
+
+    private final DBController dbController;
+    private final AtomicReferenceArray<Block> blocks = new AtomicReferenceArray<>(Sequence.values().length);
+    private final boolean[] initialized = new boolean[Sequence.values().length];
+
+    /**
+     * Constructs an allocator that reserves its blocks through the given DB controller.
+     *
+     * @param dbController the database controller
+     */
+    public IdAllocator(DBController dbController) {
+        this.dbController = dbController;
+        for (int i = 0; i < blocks.length(); i++) {
+            blocks.set(i, new Block(0, 0));
+        }
+    }
+
+    /**
+     * Returns the next value of a sequence. Only the first call after a block is used up
+     * touches the database.
+     *
+     * @param sequence the sequence
+     * @return the next value
+     * @throws SQLException if a new block could not be reserved
+     */
+    public long nextId(Sequence sequence) throws SQLException {
+        Block block = blocks.get(sequence.ordinal());
+        long value = block.cursor.getAndIncrement();
+        if (value < block.limit) {
+            return value;
+        }
+        return nextFromNewBlock(sequence, block);
+    }
+
+    /**
+     * Returns the next value of a sequence as an int, for INT primary keys.
+     *
+     * @param sequence the sequence
+     * @return the next value
+     * @throws SQLException if a new block could not be reserved
+     */
+    public int nextIntId(Sequence sequence) throws SQLException {
+        return Math.toIntExact(nextId(sequence));
+    }
+
+    /**
+     * @param sequence the sequence
+     * @return the exclusive upper bound of the values reserved by this server so far
+     */
+    public long getReservedLimit(Sequence sequence) {
+        return blocks.get(sequence.ordinal()).limit;
+    }
+
+    /**
+     * Reserves a new block unless another thread already replaced the exhausted one,
+     * then takes the first value from the current block.
+     */
+    private synchronized long nextFromNewBlock(Sequence sequence, Block exhausted) throws SQLException {
+        while (true) {
+            Block current = blocks.get(sequence.ordinal());
+            if (current != exhausted) {
+                long value = current.cursor.getAndIncrement();
+                if (value < current.limit) {
+                    return value;
+                }
+                exhausted = current;
+                continue;
+            }
+
+            if (!initialized[sequence.ordinal()] && sequence.table != null) {
+                dbController.initSequenceFromTable(sequence.sequenceName, sequence.table, sequence.column);
+            }
+            initialized[sequence.ordinal()] = true;
+
+            long start = dbController.reserveSequenceBlock(sequence.sequenceName, sequence.blockSize);
+            if (start < 0) {
+                throw new SQLException("Failed to reserve a block of " + sequence.sequenceName + " IDs.");
+            }
+            blocks.set(sequence.ordinal(), new Block(start + 1, start + sequence.blockSize));
+            return start;
+        }
+    }
+}
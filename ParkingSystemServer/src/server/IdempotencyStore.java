@@ -0,0 +1,135 @@
+package server;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import bpark_common.ServerResponse;
+
+/**
+ * Remembers the responses of write commands by the idempotency key of their request, so a
+ * client that retries a command after losing its response gets the original response back
+ * instead of depositing, extending or reserving a second time.
+ * <p>
+ * Responses are kept for {@link #WINDOW} in a bounded in-memory map and in the idempotency_key
+ * table, which keeps them across server restarts and after they were evicted from memory. A
+ * retry that arrives while the original request is still being handled is answered that the
+ * request is in progress, without running it, so the client retries later. Only successful
+ * responses are remembered: a failed write changed nothing, so a retry runs it again.
+ * </p>
+ */
+public class IdempotencyStore {
+
+    /** How long a response is replayed for retries of its request. */
+    public static final Duration WINDOW = Duration.ofHours(24);
+
+    /** Longest idempotency key accepted, as stored in the database. */
+    public static final int MAX_KEY_LENGTH = 64;
+
+    /** Most responses kept in memory; older ones are still found in the database. */
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final DBController dbController;
+
+    /** Responses by command and key, oldest first. */
+    private final Map<String, Entry> entries = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * The response of one request; null while the request is being handled.
+     */
+    private static class Entry {
+        ServerResponse response;
+        LocalDateTime storedAt;
+
+        boolean isExpired(LocalDateTime now) {
+            return storedAt != null && storedAt.plus(WINDOW).isBefore(now);
+        }
+    }
+
+    /**
+     * @param dbController the database access used to persist the responses
+     */
+    public IdempotencyStore(DBController dbController) {
+        this.dbController = dbController;
+    }
+
+    /**
+     * Starts handling a write command. Returns the remembered response if the key was used
+     * before, or an "in progress" failure if that request is still being handled. Otherwise
+     * returns null, and the caller must run the command and then call
+     * {@link #complete(String, String, ServerResponse)} exactly once.
+     *
+     * @param key     the idempotency key of the request
+     * @param command the client command
+     * @return the response to send, or null if the command must run
+     */
+    public ServerResponse begin(String key, String command) {
+        String id = command + ':' + key;
+        LocalDateTime now = LocalDateTime.now();
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(id);
+            if (entry != null && entry.isExpired(now)) {
+                entries.remove(id);
+                entry = null;
+            }
+            if (entry != null) {
+                return entry.response != null ? entry.response
+                        : new ServerResponse(command, false, "The request is still being processed. Please try again.", null);
+            }
+            entry = new Entry();
+            entries.put(id, entry);
+        }
+
+        ServerResponse stored = dbController.getIdempotentResponse(key, command, now.minus(WINDOW));
+        if (stored != null) {
+            synchronized (this) {
+                entry.response = stored;
+                entry.storedAt = now;
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Finishes a write command started with {@link #begin(String, String)}. A successful response
+     * is remembered for retries; otherwise the key is released so a retry runs the command again.
+     *
+     * @param key      the idempotency key of the request
+     * @param command  the client command
+     * @param response the response sent to the client, or null if none was sent
+     */
+    public void complete(String key, String command, ServerResponse response) {
+        String id = command + ':' + key;
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (this) {
+            if (response == null || !response.isSuccess()) {
+                entries.remove(id);
+                return;
+            }
+            // Created again if it was evicted while the command ran
+            Entry entry = entries.computeIfAbsent(id, k -> new Entry());
+            entry.response = response;
+            entry.storedAt = now;
+        }
+        dbController.saveIdempotentResponse(key, command, response, now);
+    }
+
+    /**
+     * Drops the responses older than {@link #WINDOW} from memory and from the database.
+     */
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (this) {
+            entries.values().removeIf(entry -> entry.isExpired(now));
+        }
+        int deleted = dbController.deleteIdempotencyKeysBefore(now.minus(WINDOW));
+        System.out.println("Idempotency key expiry removed " + deleted + " key(s).");
+    }
+}
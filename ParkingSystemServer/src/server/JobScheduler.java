@@ -0,0 +1,217 @@
+package server;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link ScheduledJob}s in the background on a small pool of daemon threads.
+ * <p>
+ * The last completed run of every job is stored in the job_run table. When the scheduler
+ * starts, or a job is registered while it is running, any run that should have happened in
+ * the meantime is executed immediately before the next future run is scheduled. A failed run
+ * is not recorded, so it is retried after {@link #RETRY_DELAY}.
+ * </p>
+ * <p>
+ * Each job is rescheduled only after its current run finished, so a single job never
+ * overlaps with itself. Progress is forwarded to the registered listeners from the worker
+ * thread; GUI listeners must hand it over to their own thread.
+ * </p>
+ */
+public class JobScheduler {
+
+    /**
+     * Receives progress updates from all jobs.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * @param jobName  the name of the reporting job
+         * @param fraction the completed fraction, between 0 and 1
+         * @param message  a short human-readable status
+         */
+        void onProgress(String jobName, double fraction, String message);
+    }
+
+    /** Delay before a failed run is retried. */
+    private static final Duration RETRY_DELAY = Duration.ofMinutes(5);
+
+    private static final int POOL_SIZE = 2;
+
+    private final DBController dbController;
+    private final Map<String, ScheduledJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, ScheduledFuture<?>> pending = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * Constructs a scheduler that persists its bookkeeping through the given DB controller.
+     *
+     * @param dbController the database controller used to load and record job runs
+     */
+    public JobScheduler(DBController dbController) {
+        this.dbController = dbController;
+    }
+
+    /**
+     * Starts the worker threads and schedules every registered job, catching up missed runs first.
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newScheduledThreadPool(POOL_SIZE, runnable -> {
+            Thread thread = new Thread(runnable, "job-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (ScheduledJob job : jobs.values()) {
+            executor.execute(() -> runDue(job));
+        }
+    }
+
+    /**
+     * Cancels all pending runs and stops the worker threads. A run in progress is interrupted.
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        pending.clear();
+    }
+
+    /**
+     * Registers a job. If the scheduler is already running, the job is scheduled immediately.
+     *
+     * @param job the job to register; replaces any job with the same name
+     */
+    public synchronized void register(ScheduledJob job) {
+        ScheduledFuture<?> previous = pending.remove(job.getName());
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        jobs.put(job.getName(), job);
+        if (executor != null) {
+            executor.execute(() -> runDue(job));
+        }
+    }
+
+    /**
+     * Unregisters a job and cancels its pending run.
+     *
+     * @param name the job name
+     */
+    public synchronized void unregister(String name) {
+        jobs.remove(name);
+        ScheduledFuture<?> future = pending.remove(name);
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * @param listener the listener to notify about job progress
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener the listener to remove
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Executes every run of the job that is due, then schedules the next one.
+     *
+     * @param job the job to run
+     */
+    private void runDue(ScheduledJob job) {
+        if (jobs.get(job.getName()) != job) {
+            return; // unregistered or replaced
+        }
+        LocalDateTime lastRun = dbController.getJobLastRun(job.getName());
+        LocalDateTime next = job.nextRunAfter(lastRun);
+        LocalDateTime now = LocalDateTime.now();
+
+        while (!next.isAfter(now) && !Thread.currentThread().isInterrupted()) {
+            if (!job.catchUpMissedRuns()) {
+                LocalDateTime following = job.nextRunAfter(next);
+                while (!following.isAfter(now)) {
+                    next = following;
+                    following = job.nextRunAfter(next);
+                }
+            }
+            if (!execute(job, next)) {
+                reschedule(job, now.plus(RETRY_DELAY));
+                return;
+            }
+            next = job.nextRunAfter(next);
+            now = LocalDateTime.now();
+        }
+        reschedule(job, next);
+    }
+
+    /**
+     * Executes a single run of the job and records it on success.
+     *
+     * @param job          the job to run
+     * @param scheduledFor the scheduled time of the run
+     * @return true if the run completed successfully
+     */
+    private boolean execute(ScheduledJob job, LocalDateTime scheduledFor) {
+        String name = job.getName();
+        long started = System.currentTimeMillis();
+        try {
+            job.run(scheduledFor, (fraction, message) -> notifyListeners(name, fraction, message));
+            long duration = System.currentTimeMillis() - started;
+            dbController.recordJobRun(name, scheduledFor, "success", duration);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Job " + name + " failed for " + scheduledFor + ": " + e.getMessage());
+            e.printStackTrace();
+            notifyListeners(name, 1, "Job " + name + " failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Schedules the next run of a job.
+     *
+     * @param job    the job
+     * @param runAt  the time of the next run
+     */
+    private synchronized void reschedule(ScheduledJob job, LocalDateTime runAt) {
+        if (executor == null || jobs.get(job.getName()) != job) {
+            return;
+        }
+        long delay = Math.max(0, Duration.between(LocalDateTime.now(), runAt).toMillis());
+        pending.put(job.getName(), executor.schedule(() -> runDue(job), delay, TimeUnit.MILLISECONDS));
+        System.out.println("Job " + job.getName() + " scheduled for: " + runAt);
+    }
+
+    /**
+     * Forwards progress to all listeners, isolating listener failures from the job.
+     */
+    private void notifyListeners(String jobName, double fraction, String message) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onProgress(jobName, fraction, message);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.function.Consumer;
+
+/**
+ * One file of the {@link ParkingJournal}: an append-only, memory-mapped sequence of
+ * {@link ParkingEvent}s with consecutive sequence numbers.
+ * <p>
+ * Every event is a length-prefixed record of fixed-size fields followed by the subscriber code.
+ * As in {@link OccupancySegment}, the write position in the header is only advanced after a
+ * record is written, so a crash in the middle of an append leaves the file readable up to the
+ * previous event. A full segment is never appended to again; the journal starts the next one.
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class JournalSegment {
+
+    /** Magic number at the start of a segment file ("PJL1"). */
+    private static final int MAGIC = 0x504A4C31;
+
+    private static final int HEADER_BYTES = 32;
+    private static final int OFFSET_NUMBER = 4;
+    private static final int OFFSET_FIRST_SEQUENCE = 8;
+    private static final int OFFSET_COUNT = 16;
+    private static final int OFFSET_WRITE_POS = 20;
+
+    /** Size of a segment file; at about 60 bytes per event, some 70,000 events. */
+    private static final int CAPACITY = 4 * 1024 * 1024;
+
+    /** Bytes of an event record after the length prefix, without the subscriber code. */
+    private static final int FIXED_RECORD_BYTES = 1 + 8 + 8 + 4 + 4 + 8 + 2;
+
+    /** Stored instead of a time for events that have none. */
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final ParkingEvent.Type[] TYPES = ParkingEvent.Type.values();
+
+    private final int number;
+    private final MappedByteBuffer buffer;
+
+    private JournalSegment(int number, MappedByteBuffer buffer) {
+        this.number = number;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Opens a segment, creating it if it does not exist.
+     *
+     * @param file          the segment file
+     * @param number        the number of the segment within the journal
+     * @param firstSequence the sequence number of the first event, used when the segment is created
+     * @return the segment
+     * @throws IOException if the file cannot be mapped or is another segment
+     */
+    public static JournalSegment open(Path file, int number, long firstSequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, CAPACITY);
+            if (buffer.getInt(0) == 0) {
+                buffer.putInt(OFFSET_NUMBER, number);
+                buffer.putLong(OFFSET_FIRST_SEQUENCE, firstSequence);
+                buffer.putInt(OFFSET_WRITE_POS, HEADER_BYTES);
+                buffer.putInt(0, MAGIC);
+            } else if (buffer.getInt(0) != MAGIC || buffer.getInt(OFFSET_NUMBER) != number) {
+                throw new IOException("Not journal segment " + number + ": " + file);
+            }
+            return new JournalSegment(number, buffer);
+        }
+    }
+
+    /**
+     * Reads the sequence range of a segment from its header, without mapping the file.
+     *
+     * @param file   the segment file
+     * @param number the number of the segment within the journal
+     * @return the sequence number the next appended event must have, or 0 if the segment was
+     *         never initialized
+     * @throws IOException if the file cannot be read or is another segment
+     */
+    public static long readNextSequence(Path file, int number) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    break;
+                }
+            }
+        }
+        if (header.position() < HEADER_BYTES || header.getInt(0) == 0) {
+            return 0;
+        }
+        if (header.getInt(0) != MAGIC || header.getInt(OFFSET_NUMBER) != number) {
+            throw new IOException("Not journal segment " + number + ": " + file);
+        }
+        return header.getLong(OFFSET_FIRST_SEQUENCE) + header.getInt(OFFSET_COUNT);
+    }
+
+    /**
+     * @return the number of the segment within the journal
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * @return the sequence number of the first event
+     */
+    public long getFirstSequence() {
+        return buffer.getLong(OFFSET_FIRST_SEQUENCE);
+    }
+
+    /**
+     * @return the sequence number the next appended event must have
+     */
+    public long getNextSequence() {
+        return getFirstSequence() + buffer.getInt(OFFSET_COUNT);
+    }
+
+    /**
+     * Appends an event, whose sequence number must be {@link #getNextSequence()}.
+     *
+     * @param event the event
+     * @return false if the segment is full and the event was not stored
+     */
+    public boolean append(ParkingEvent event) {
+        byte[] code = event.getSubscriberCode() == null ? new byte[0]
+                : event.getSubscriberCode().getBytes(StandardCharsets.UTF_8);
+        int length = FIXED_RECORD_BYTES + code.length;
+        int pos = buffer.getInt(OFFSET_WRITE_POS);
+        if (pos + 2 + length > CAPACITY) {
+            return false;
+        }
+
+        buffer.putShort(pos, (short) length);
+        buffer.put(pos + 2, (byte) event.getType().ordinal());
+        buffer.putLong(pos + 3, event.getSequence());
+        buffer.putLong(pos + 11, event.getRecordedAt().toEpochMilli());
+        buffer.putInt(pos + 19, event.getId());
+        buffer.putInt(pos + 23, event.getParkingSpaceId());
+        buffer.putLong(pos + 27, event.getTime() == null ? NO_TIME : event.getTime().toEpochSecond(ZoneOffset.UTC));
+        buffer.putShort(pos + 35, (short) code.length);
+        buffer.put(pos + 37, code);
+
+        buffer.putInt(OFFSET_COUNT, buffer.getInt(OFFSET_COUNT) + 1);
+        // Commit point: the event becomes visible once the write position moves past it
+        buffer.putInt(OFFSET_WRITE_POS, pos + 2 + length);
+        return true;
+    }
+
+    /**
+     * Decodes every event in order.
+     *
+     * @param consumer the receiver of the events
+     * @throws IOException if a record is corrupt; the events before it were passed on
+     */
+    public void forEach(Consumer<ParkingEvent> consumer) throws IOException {
+        int end = buffer.getInt(OFFSET_WRITE_POS);
+        if (end < HEADER_BYTES || end > CAPACITY) {
+            throw new IOException("Corrupt write position " + end + " in journal segment " + number);
+        }
+        int pos = HEADER_BYTES;
+        while (pos < end) {
+            int length = pos + 2 + FIXED_RECORD_BYTES <= end ? buffer.getShort(pos) : -1;
+            int type = length > 0 ? buffer.get(pos + 2) : -1;
+            int codeLength = length > 0 ? buffer.getShort(pos + 35) : -1;
+            if (pos + 2 + length > end || type < 0 || type >= TYPES.length
+                    || codeLength < 0 || length != FIXED_RECORD_BYTES + codeLength) {
+                throw new IOException("Corrupt event at offset " + pos + " of journal segment " + number);
+            }
+            long time = buffer.getLong(pos + 27);
+            byte[] code = new byte[codeLength];
+            buffer.get(pos + 37, code);
+            consumer.accept(new ParkingEvent(
+                    buffer.getLong(pos + 3),
+                    TYPES[type],
+                    Instant.ofEpochMilli(buffer.getLong(pos + 11)),
+                    buffer.getInt(pos + 19),
+                    buffer.getInt(pos + 23),
+                    new String(code, StandardCharsets.UTF_8),
+                    time == NO_TIME ? null : LocalDateTime.ofEpochSecond(time, 0, ZoneOffset.UTC)));
+            pos += 2 + length;
+        }
+    }
+
+    /**
+     * Forces the written events to disk.
+     */
+    public void force() {
+        buffer.force();
+    }
+}
@@ -0,0 +1,45 @@
+package server;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+
+/**
+ * Generates the monthly parking time and subscriber reports.
+ * <p>
+ * The run for a month is scheduled shortly after midnight on the first day of the
+ * following month, so the whole month is already recorded. Missed months are replayed
+ * in order on startup.
+ * </p>
+ */
+public class MonthlyReportJob implements ScheduledJob {
+
+    /** Time of day on the first of the month at which the previous month is generated. */
+    private static final LocalTime RUN_TIME = LocalTime.of(0, 5);
+
+    @Override
+    public String getName() {
+        return "monthly-reports";
+    }
+
+    @Override
+    public LocalDateTime nextRunAfter(LocalDateTime lastRun) {
+        YearMonth base = lastRun == null ? YearMonth.now() : YearMonth.from(lastRun);
+        return base.plusMonths(1).atDay(1).atTime(RUN_TIME);
+    }
+
+    @Override
+    public boolean catchUpMissedRuns() {
+        return true;
+    }
+
+    @Override
+    public void run(LocalDateTime scheduledFor, Progress progress) {
+        YearMonth month = YearMonth.from(scheduledFor).minusMonths(1);
+        progress.report(0, "Generating monthly reports for " + month + "...");
+        if (!DBController.generateMonthlyReports(month.getYear(), month.getMonthValue())) {
+            throw new IllegalStateException("Failed to generate monthly reports for " + month);
+        }
+        progress.report(1, "Monthly reports for " + month + " generated and saved.");
+    }
+}
@@ -0,0 +1,260 @@
+package server;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import entities.OccupancyHeatmap;
+
+/**
+ * Rollup cube of parking activity by month, weekday and hour of day.
+ * <p>
+ * Every month is a primitive int array of {@link #CELLS} counters: for each weekday and hour,
+ * the arrivals, the number and total minutes of completed sessions that started in that hour,
+ * and the minutes during which cars occupied spots in that hour. Deposits and pickups add to
+ * the array of their month in memory and to a pending delta array; the deltas are added to
+ * the occupancy_cube table by {@link #flush()}. A report over any range of months is then
+ * built from at most one small array per month, without reading parking history.
+ * </p>
+ * <p>
+ * Sessions are attributed to the month of their entry time. Report generation rebuilds a
+ * month from history with {@link #replaceMonth(YearMonth, int[])}, which also fills in months
+ * from before the cube existed.
+ * </p>
+ * <p>
+ * The server owns one cube and hands it to the {@link ReportEngine}.
+ * </p>
+ */
+public class OccupancyCube {
+
+    /** Counter of arrivals in the hour. */
+    public static final int ARRIVALS = 0;
+
+    /** Counter of completed sessions that started in the hour. */
+    public static final int DWELL_COUNT = 1;
+
+    /** Total minutes of the completed sessions that started in the hour. */
+    public static final int DWELL_MINUTES = 2;
+
+    /** Minutes of occupied spots within the hour. */
+    public static final int OCCUPIED_MINUTES = 3;
+
+    /** Number of counters per weekday and hour. */
+    public static final int MEASURES = 4;
+
+    /** Size of the array of one month. */
+    public static final int CELLS = 7 * 24 * MEASURES;
+
+    /** Longest range of months accepted by a report. */
+    public static final int MAX_MONTHS = 120;
+
+    private final DBController dbController;
+    private final Map<YearMonth, int[]> months = new HashMap<>();
+    private final Map<YearMonth, int[]> pending = new HashMap<>();
+
+    /** Held while writing to the database, so a month is never replaced during a flush. */
+    private final Object writeLock = new Object();
+
+    /**
+     * Constructs a cube that loads and stores its months through the given controller.
+     *
+     * @param dbController the database controller
+     */
+    public OccupancyCube(DBController dbController) {
+        this.dbController = dbController;
+    }
+
+    /**
+     * Returns the index of a counter in a month array.
+     *
+     * @param day     the weekday
+     * @param hour    the hour of day, 0 to 23
+     * @param measure the counter, such as {@link #ARRIVALS}
+     * @return the array index
+     */
+    public static int index(DayOfWeek day, int hour, int measure) {
+        return ((day.getValue() - 1) * 24 + hour) * MEASURES + measure;
+    }
+
+    /**
+     * Adds a completed session to a month array: its dwell time to the hour it started in and
+     * its occupied minutes to every hour it spans. Arrivals are counted separately.
+     *
+     * @param cells the month array
+     * @param entry the entry time
+     * @param exit  the exit time
+     */
+    public static void addCompletedSession(int[] cells, LocalDateTime entry, LocalDateTime exit) {
+        if (exit == null || !exit.isAfter(entry)) {
+            return;
+        }
+        cells[index(entry.getDayOfWeek(), entry.getHour(), DWELL_COUNT)]++;
+        cells[index(entry.getDayOfWeek(), entry.getHour(), DWELL_MINUTES)] += (int) ChronoUnit.MINUTES.between(entry, exit);
+
+        LocalDateTime cursor = entry;
+        while (cursor.isBefore(exit)) {
+            LocalDateTime hourEnd = cursor.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            LocalDateTime end = hourEnd.isBefore(exit) ? hourEnd : exit;
+            cells[index(cursor.getDayOfWeek(), cursor.getHour(), OCCUPIED_MINUTES)] += (int) ChronoUnit.MINUTES.between(cursor, end);
+            cursor = end;
+        }
+    }
+
+    /**
+     * Records a deposit.
+     *
+     * @param entryTime the entry time of the session
+     */
+    public synchronized void recordArrival(LocalDateTime entryTime) {
+        YearMonth month = YearMonth.from(entryTime);
+        int cell = index(entryTime.getDayOfWeek(), entryTime.getHour(), ARRIVALS);
+        monthCells(month)[cell]++;
+        pending.computeIfAbsent(month, m -> new int[CELLS])[cell]++;
+    }
+
+    /**
+     * Records a pickup.
+     *
+     * @param entryTime the entry time of the session
+     * @param exitTime  the time the car was picked up
+     */
+    public synchronized void recordPickup(LocalDateTime entryTime, LocalDateTime exitTime) {
+        YearMonth month = YearMonth.from(entryTime);
+        addCompletedSession(monthCells(month), entryTime, exitTime);
+        addCompletedSession(pending.computeIfAbsent(month, m -> new int[CELLS]), entryTime, exitTime);
+    }
+
+    /**
+     * Replaces a month with counters rebuilt from parking history. Pending deltas of the month
+     * are dropped, since the events they hold are already in the history.
+     *
+     * @param month the month
+     * @param cells the rebuilt counters
+     * @return true if the month was stored
+     */
+    public boolean replaceMonth(YearMonth month, int[] cells) {
+        synchronized (writeLock) {
+            synchronized (this) {
+                if (!dbController.replaceOccupancyCubeMonth(month, cells)) {
+                    return false;
+                }
+                months.put(month, cells.clone());
+                pending.remove(month);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Adds the pending deltas to the database. If that fails they are kept for the next flush.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            Map<YearMonth, int[]> deltas;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                deltas = new HashMap<>(pending);
+                pending.clear();
+            }
+            if (!dbController.addOccupancyCubeDeltas(deltas)) {
+                synchronized (this) {
+                    for (Map.Entry<YearMonth, int[]> entry : deltas.entrySet()) {
+                        int[] target = pending.computeIfAbsent(entry.getKey(), m -> new int[CELLS]);
+                        for (int i = 0; i < CELLS; i++) {
+                            target[i] += entry.getValue()[i];
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the heatmap of a range of months.
+     *
+     * @param from the first month, inclusive
+     * @param to   the last month, inclusive
+     * @return the heatmap
+     */
+    public OccupancyHeatmap report(YearMonth from, YearMonth to) {
+        // Load the months not cached yet without holding the lock that deposits and pickups need
+        List<YearMonth> missing = new ArrayList<>();
+        synchronized (this) {
+            for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+                if (!months.containsKey(month)) {
+                    missing.add(month);
+                }
+            }
+        }
+        Map<YearMonth, int[]> loaded = new HashMap<>();
+        for (YearMonth month : missing) {
+            int[] cells = dbController.getOccupancyCubeMonth(month);
+            if (cells != null) {
+                loaded.put(month, cells);
+            }
+        }
+
+        long[] totals = new long[CELLS];
+        synchronized (this) {
+            // A month loaded or replaced meanwhile is newer than the one read above
+            loaded.forEach(months::putIfAbsent);
+            for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+                int[] cells = months.get(month);
+                if (cells == null) {
+                    continue;
+                }
+                for (int i = 0; i < CELLS; i++) {
+                    totals[i] += cells[i];
+                }
+            }
+        }
+
+        int[] weekdayCount = new int[7];
+        LocalDate today = LocalDate.now();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            // Only days that already started count towards the averages
+            for (LocalDate day = month.atDay(1); !day.isAfter(month.atEndOfMonth()) && !day.isAfter(today); day = day.plusDays(1)) {
+                weekdayCount[day.getDayOfWeek().getValue() - 1]++;
+            }
+        }
+
+        double[][] occupancy = new double[7][24];
+        double[][] dwell = new double[7][24];
+        int[][] arrivals = new int[7][24];
+        for (DayOfWeek day : DayOfWeek.values()) {
+            int d = day.getValue() - 1;
+            for (int hour = 0; hour < 24; hour++) {
+                long occupied = totals[index(day, hour, OCCUPIED_MINUTES)];
+                long dwellCount = totals[index(day, hour, DWELL_COUNT)];
+                occupancy[d][hour] = weekdayCount[d] == 0 ? 0 : occupied / (60.0 * weekdayCount[d]);
+                dwell[d][hour] = dwellCount == 0 ? 0 : (double) totals[index(day, hour, DWELL_MINUTES)] / dwellCount;
+                arrivals[d][hour] = (int) totals[index(day, hour, ARRIVALS)];
+            }
+        }
+        return new OccupancyHeatmap(from, to, occupancy, dwell, arrivals);
+    }
+
+    /**
+     * Returns the counters of a month, loading them from the database on first use.
+     */
+    private int[] monthCells(YearMonth month) {
+        int[] cells = months.get(month);
+        if (cells == null) {
+            cells = dbController.getOccupancyCubeMonth(month);
+            if (cells == null) {
+                // Not cached, so the next access retries the load
+                return new int[CELLS];
+            }
+            months.put(month, cells);
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,99 @@
+package server;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the occupancy of the parking lot once a minute into the {@link OccupancyStore}.
+ * <p>
+ * Occupied spots are read from the {@link SpotStateTable}. Reserved spots are those held by an
+ * active reservation whose four-hour window covers the sample time; they are still free in the
+ * spot table, so they are taken out of the free count.
+ * </p>
+ */
+public class OccupancyRecorder {
+
+    private final OccupancyStore store;
+    private final SpotStateTable spotTable;
+    private final DBController dbController;
+
+    private ScheduledExecutorService sampler;
+
+    /**
+     * Constructs a recorder.
+     *
+     * @param store        the store the samples are written to
+     * @param spotTable    the in-memory spot availability
+     * @param dbController the database controller used to count reservations
+     */
+    public OccupancyRecorder(OccupancyStore store, SpotStateTable spotTable, DBController dbController) {
+        this.store = store;
+        this.spotTable = spotTable;
+        this.dbController = dbController;
+    }
+
+    /**
+     * Opens the store and starts sampling at the start of every minute.
+     */
+    public synchronized void start() {
+        try {
+            store.open();
+        } catch (IOException e) {
+            System.err.println("Occupancy store could not be opened: " + e.getMessage());
+            e.printStackTrace();
+            return;
+        }
+        if (sampler == null) {
+            sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "occupancy-sampler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            LocalDateTime now = LocalDateTime.now();
+            long delay = ChronoUnit.MILLIS.between(now, now.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1));
+            sampler.scheduleAtFixedRate(this::sample, delay, TimeUnit.MINUTES.toMillis(1), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops sampling and forces the store to disk.
+     */
+    public synchronized void stop() {
+        if (sampler != null) {
+            sampler.shutdown();
+            sampler = null;
+        }
+        store.close();
+    }
+
+    /**
+     * @return the store holding the recorded samples
+     */
+    public OccupancyStore getStore() {
+        return store;
+    }
+
+    /**
+     * Takes one sample.
+     */
+    private void sample() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            int reserved = dbController.countReservationsAt(now);
+            if (reserved < 0) {
+                return;
+            }
+            int total = spotTable.getSpotCount();
+            int unoccupied = spotTable.countFree();
+            int free = Math.max(0, unoccupied - reserved);
+            store.append(now, total - unoccupied, unoccupied - free, free);
+        } catch (Exception e) {
+            System.err.println("Occupancy sample failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Minimum, maximum and sum of the occupied, reserved and free spot counts over a period,
+ * used for the hour and day rollups of the {@link OccupancyStore}.
+ * <p>
+ * A rollup is stored in a fixed-size slot of {@link #BYTES} bytes, so the rollup of a given
+ * hour or day is found by offset without any index.
+ * </p>
+ */
+public class OccupancyRollup {
+
+    /** Index of the occupied series. */
+    public static final int OCCUPIED = 0;
+
+    /** Index of the reserved series. */
+    public static final int RESERVED = 1;
+
+    /** Index of the free series. */
+    public static final int FREE = 2;
+
+    /** Size of a stored slot: the sample count, then min, max and sum of each series. */
+    public static final int BYTES = 4 + 3 * (2 + 2 + 4);
+
+    private int samples;
+    private final int[] min = new int[3];
+    private final int[] max = new int[3];
+    private final int[] sum = new int[3];
+
+    /**
+     * Adds one sample.
+     *
+     * @param occupied the occupied spots
+     * @param reserved the reserved spots
+     * @param free     the free spots
+     */
+    public void add(int occupied, int reserved, int free) {
+        int[] values = { occupied, reserved, free };
+        for (int i = 0; i < 3; i++) {
+            min[i] = samples == 0 ? values[i] : Math.min(min[i], values[i]);
+            max[i] = samples == 0 ? values[i] : Math.max(max[i], values[i]);
+            sum[i] += values[i];
+        }
+        samples++;
+    }
+
+    /**
+     * Adds all samples of another rollup.
+     *
+     * @param other the rollup to merge
+     */
+    public void merge(OccupancyRollup other) {
+        if (other.samples == 0) {
+            return;
+        }
+        for (int i = 0; i < 3; i++) {
+            min[i] = samples == 0 ? other.min[i] : Math.min(min[i], other.min[i]);
+            max[i] = samples == 0 ? other.max[i] : Math.max(max[i], other.max[i]);
+            sum[i] += other.sum[i];
+        }
+        samples += other.samples;
+    }
+
+    /**
+     * @return the number of samples in the period
+     */
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * @param series the series index
+     * @return the average of the series, or 0 if there are no samples
+     */
+    public double average(int series) {
+        return samples == 0 ? 0 : (double) sum[series] / samples;
+    }
+
+    /**
+     * @param series the series index
+     * @return the minimum of the series
+     */
+    public int min(int series) {
+        return min[series];
+    }
+
+    /**
+     * @param series the series index
+     * @return the maximum of the series
+     */
+    public int max(int series) {
+        return max[series];
+    }
+
+    /**
+     * Writes the rollup into its slot.
+     *
+     * @param buffer the rollup file
+     * @param slot   the slot index
+     */
+    public void writeTo(ByteBuffer buffer, int slot) {
+        int pos = slot * BYTES;
+        buffer.putInt(pos, samples);
+        pos += 4;
+        for (int i = 0; i < 3; i++) {
+            buffer.putShort(pos, (short) min[i]);
+            buffer.putShort(pos + 2, (short) max[i]);
+            buffer.putInt(pos + 4, sum[i]);
+            pos += 8;
+        }
+    }
+
+    /**
+     * Reads a rollup from its slot.
+     *
+     * @param buffer the rollup file
+     * @param slot   the slot index
+     * @return the rollup, or null if the slot was never written
+     */
+    public static OccupancyRollup readFrom(ByteBuffer buffer, int slot) {
+        int pos = slot * BYTES;
+        int samples = buffer.getInt(pos);
+        if (samples == 0) {
+            return null;
+        }
+        OccupancyRollup rollup = new OccupancyRollup();
+        rollup.samples = samples;
+        pos += 4;
+        for (int i = 0; i < 3; i++) {
+            rollup.min[i] = buffer.getShort(pos);
+            rollup.max[i] = buffer.getShort(pos + 2);
+            rollup.sum[i] = buffer.getInt(pos + 4);
+            pos += 8;
+        }
+        return rollup;
+    }
+}
@@ -0,0 +1,249 @@
+package server;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * The per-minute occupancy samples of one day, in an append-only memory-mapped file.
+ * <p>
+ * Each sample is stored as the difference to the previous one: the minute as an unsigned
+ * varint and the occupied, reserved and free counts as zig-zag varints. Counts change by a
+ * few spots per minute, so a sample usually takes four bytes and a full day about 6 KB.
+ * The write position in the header is only advanced after a sample is written, so a crash
+ * in the middle of an append leaves the file readable up to the previous sample. The last
+ * sample and the count kept in the header are derived from the samples; opening a segment
+ * rebuilds them from the samples up to the write position, so a crash between the header
+ * writes never skews the deltas that follow.
+ * </p>
+ * <p>
+ * A segment is sealed once its hour and day rollups were written; a sealed segment is
+ * never appended to again. Instances are not thread-safe.
+ * </p>
+ */
+public class OccupancySegment {
+
+    /** Magic number at the start of a segment file ("OCC1"). */
+    private static final int MAGIC = 0x4F434331;
+
+    private static final int HEADER_BYTES = 32;
+    private static final int OFFSET_DAY = 4;
+    private static final int OFFSET_COUNT = 8;
+    private static final int OFFSET_WRITE_POS = 12;
+    private static final int OFFSET_LAST = 16;
+    private static final int OFFSET_SEALED = 24;
+
+    /** Largest encoded sample: four varints of at most three bytes each. */
+    private static final int MAX_SAMPLE_BYTES = 12;
+
+    private static final int CAPACITY = HEADER_BYTES + 24 * 60 * MAX_SAMPLE_BYTES;
+
+    /**
+     * Receives the samples of a segment in time order.
+     */
+    @FunctionalInterface
+    public interface SampleConsumer {
+
+        /**
+         * @param minuteOfDay the minute of the day, 0 to 1439
+         * @param occupied    the occupied spots
+         * @param reserved    the reserved spots
+         * @param free        the free spots
+         */
+        void accept(int minuteOfDay, int occupied, int reserved, int free);
+    }
+
+    private final LocalDate day;
+    private final MappedByteBuffer buffer;
+
+    private OccupancySegment(LocalDate day, MappedByteBuffer buffer) {
+        this.day = day;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Opens the segment of a day, creating it if it does not exist.
+     *
+     * @param file the segment file
+     * @param day  the day the segment holds
+     * @return the segment
+     * @throws IOException if the file cannot be mapped or belongs to another day
+     */
+    public static OccupancySegment open(Path file, LocalDate day) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, CAPACITY);
+            if (buffer.getInt(0) == 0) {
+                buffer.putInt(OFFSET_DAY, (int) day.toEpochDay());
+                buffer.putInt(OFFSET_WRITE_POS, HEADER_BYTES);
+                buffer.putInt(0, MAGIC);
+            } else if (buffer.getInt(0) != MAGIC || buffer.getInt(OFFSET_DAY) != day.toEpochDay()) {
+                throw new IOException("Not an occupancy segment for " + day + ": " + file);
+            }
+            OccupancySegment segment = new OccupancySegment(day, buffer);
+            segment.recoverHeader();
+            return segment;
+        }
+    }
+
+    /**
+     * Opens an existing segment for reading.
+     *
+     * @param file the segment file
+     * @param day  the day the segment holds
+     * @return the segment, or null if the file does not exist
+     * @throws IOException if the file cannot be mapped or belongs to another day
+     */
+    public static OccupancySegment openIfExists(Path file, LocalDate day) throws IOException {
+        return Files.exists(file) ? open(file, day) : null;
+    }
+
+    /**
+     * @return the day the segment holds
+     */
+    public LocalDate getDay() {
+        return day;
+    }
+
+    /**
+     * @return the number of samples stored
+     */
+    public int getCount() {
+        return buffer.getInt(OFFSET_COUNT);
+    }
+
+    /**
+     * @return true if the rollups of this segment were written
+     */
+    public boolean isSealed() {
+        return buffer.get(OFFSET_SEALED) != 0;
+    }
+
+    /**
+     * Appends a sample. Samples for a minute at or before the last stored one are ignored.
+     *
+     * @param minuteOfDay the minute of the day, 0 to 1439
+     * @param occupied    the occupied spots
+     * @param reserved    the reserved spots
+     * @param free        the free spots
+     * @return true if the sample was stored
+     */
+    public boolean append(int minuteOfDay, int occupied, int reserved, int free) {
+        int count = getCount();
+        int lastMinute = buffer.getShort(OFFSET_LAST);
+        if (isSealed() || (count > 0 && minuteOfDay <= lastMinute)) {
+            return false;
+        }
+        int pos = buffer.getInt(OFFSET_WRITE_POS);
+        int prevMinute = count == 0 ? 0 : lastMinute;
+        int[] last = count == 0 ? new int[3] : new int[] {
+                buffer.getShort(OFFSET_LAST + 2), buffer.getShort(OFFSET_LAST + 4), buffer.getShort(OFFSET_LAST + 6) };
+
+        pos = putVarint(pos, minuteOfDay - prevMinute);
+        pos = putVarint(pos, zigzag(occupied - last[0]));
+        pos = putVarint(pos, zigzag(reserved - last[1]));
+        pos = putVarint(pos, zigzag(free - last[2]));
+
+        // Commit point: the sample becomes visible once the write position moves past it
+        buffer.putInt(OFFSET_WRITE_POS, pos);
+        putLast(count + 1, minuteOfDay, occupied, reserved, free);
+        return true;
+    }
+
+    /**
+     * Rebuilds the last sample and the count in the header from the committed samples, in case
+     * a crash left them behind the write position.
+     */
+    private void recoverHeader() {
+        int[] state = new int[5];
+        forEach((minuteOfDay, occupied, reserved, free) -> {
+            state[0]++;
+            state[1] = minuteOfDay;
+            state[2] = occupied;
+            state[3] = reserved;
+            state[4] = free;
+        });
+        if (state[0] != getCount() || (state[0] > 0 && (state[1] != buffer.getShort(OFFSET_LAST)
+                || state[2] != buffer.getShort(OFFSET_LAST + 2) || state[3] != buffer.getShort(OFFSET_LAST + 4)
+                || state[4] != buffer.getShort(OFFSET_LAST + 6)))) {
+            putLast(state[0], state[1], state[2], state[3], state[4]);
+        }
+    }
+
+    private void putLast(int count, int minuteOfDay, int occupied, int reserved, int free) {
+        buffer.putShort(OFFSET_LAST, (short) minuteOfDay);
+        buffer.putShort(OFFSET_LAST + 2, (short) occupied);
+        buffer.putShort(OFFSET_LAST + 4, (short) reserved);
+        buffer.putShort(OFFSET_LAST + 6, (short) free);
+        buffer.putInt(OFFSET_COUNT, count);
+    }
+
+    /**
+     * Decodes every sample in time order.
+     *
+     * @param consumer the receiver of the samples
+     */
+    public void forEach(SampleConsumer consumer) {
+        int end = buffer.getInt(OFFSET_WRITE_POS);
+        int[] cursor = { HEADER_BYTES };
+        int minute = 0;
+        int occupied = 0;
+        int reserved = 0;
+        int free = 0;
+        while (cursor[0] < end) {
+            minute += getVarint(cursor);
+            occupied += unzigzag(getVarint(cursor));
+            reserved += unzigzag(getVarint(cursor));
+            free += unzigzag(getVarint(cursor));
+            consumer.accept(minute, occupied, reserved, free);
+        }
+    }
+
+    /**
+     * Marks the segment as sealed and forces it to disk.
+     */
+    public void seal() {
+        buffer.put(OFFSET_SEALED, (byte) 1);
+        buffer.force();
+    }
+
+    /**
+     * Forces the written samples to disk.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    private int putVarint(int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put(pos++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put(pos++, (byte) value);
+        return pos;
+    }
+
+    private int getVarint(int[] cursor) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(cursor[0]++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
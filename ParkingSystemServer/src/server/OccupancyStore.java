@@ -0,0 +1,296 @@
+package server;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import entities.OccupancySeries;
+import entities.OccupancySeries.Resolution;
+
+/**
+ * File-based time series of the occupied, reserved and free spot counts.
+ * <p>
+ * Samples are taken once a minute and appended to one {@link OccupancySegment} per day
+ * ({@code yyyy-MM-dd.min}). When a day is over its segment is sealed: its 24 hour rollups are
+ * written to the month's rollup file ({@code yyyy-MM.hour}) and its day rollup to the year's
+ * ({@code yyyy.day}). Rollup files are memory-mapped arrays of fixed-size
+ * {@link OccupancyRollup} slots indexed by hour or day, so a range query only touches the
+ * slots it needs. The current day is rolled up on the fly from its segment.
+ * </p>
+ * <p>
+ * The files live in {@code <bpark.data.dir>/occupancy}, {@code data/occupancy} by default.
+ * </p>
+ */
+public class OccupancyStore {
+
+    /** Longest range served at minute resolution. */
+    private static final long MAX_MINUTE_RANGE_DAYS = 2;
+
+    /** Longest range served at hour resolution. */
+    private static final long MAX_HOUR_RANGE_DAYS = 93;
+
+    /** Longest range accepted by a query. */
+    public static final long MAX_RANGE_DAYS = 3660;
+
+    private final Path directory;
+    private final Map<String, MappedByteBuffer> rollupFiles = new HashMap<>();
+    private OccupancySegment current;
+
+    /**
+     * Constructs a store in the configured data directory.
+     */
+    public OccupancyStore() {
+        this(Paths.get(System.getProperty("bpark.data.dir", "data"), "occupancy"));
+    }
+
+    /**
+     * Constructs a store in the given directory.
+     *
+     * @param directory the directory holding the segment and rollup files
+     */
+    public OccupancyStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates the directory and seals the segments of past days that were left unsealed,
+     * for example because the server was down at midnight. Files whose name is not a date
+     * are skipped.
+     *
+     * @throws IOException if the directory cannot be created or a segment cannot be read
+     */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        LocalDate today = LocalDate.now();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.min")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                LocalDate day;
+                try {
+                    day = LocalDate.parse(name.substring(0, name.length() - ".min".length()));
+                } catch (DateTimeParseException e) {
+                    System.err.println("Skipping " + file + ": not an occupancy segment name.");
+                    continue;
+                }
+                if (day.isBefore(today)) {
+                    OccupancySegment segment = OccupancySegment.open(file, day);
+                    if (!segment.isSealed()) {
+                        seal(segment);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Forces the current segment and the rollup files to disk.
+     */
+    public synchronized void close() {
+        if (current != null) {
+            current.force();
+        }
+        rollupFiles.values().forEach(MappedByteBuffer::force);
+    }
+
+    /**
+     * Appends a sample for the minute containing the given time, sealing the previous day
+     * when the day changes.
+     *
+     * @param time     the sample time
+     * @param occupied the occupied spots
+     * @param reserved the reserved spots
+     * @param free     the free spots
+     * @throws IOException if a segment or rollup file cannot be written
+     */
+    public synchronized void append(LocalDateTime time, int occupied, int reserved, int free) throws IOException {
+        LocalDate day = time.toLocalDate();
+        if (current == null || !current.getDay().equals(day)) {
+            if (current != null && current.getDay().isBefore(day) && !current.isSealed()) {
+                seal(current);
+            }
+            current = OccupancySegment.open(segmentFile(day), day);
+        }
+        current.append(time.getHour() * 60 + time.getMinute(), occupied, reserved, free);
+    }
+
+    /**
+     * Returns the samples of a time range at a resolution chosen by its length: minutes for
+     * up to {@value #MAX_MINUTE_RANGE_DAYS} days, hours for up to {@value #MAX_HOUR_RANGE_DAYS}
+     * days, and days beyond that.
+     *
+     * @param from the start of the range, inclusive
+     * @param to   the end of the range, exclusive
+     * @return the series
+     * @throws IOException if a file cannot be read
+     */
+    public synchronized OccupancySeries query(LocalDateTime from, LocalDateTime to) throws IOException {
+        long days = ChronoUnit.DAYS.between(from.toLocalDate(), to.toLocalDate()) + 1;
+        Resolution resolution = days <= MAX_MINUTE_RANGE_DAYS ? Resolution.MINUTE
+                : days <= MAX_HOUR_RANGE_DAYS ? Resolution.HOUR : Resolution.DAY;
+
+        List<OccupancySeries.Point> points = new ArrayList<>();
+        for (LocalDate day = from.toLocalDate(); day.atStartOfDay().isBefore(to); day = day.plusDays(1)) {
+            switch (resolution) {
+                case MINUTE -> addMinutes(day, from, to, points);
+                case HOUR -> addHours(day, from, to, points);
+                case DAY -> addDay(day, points);
+            }
+        }
+        return new OccupancySeries(from, to, resolution, points);
+    }
+
+    private void addMinutes(LocalDate day, LocalDateTime from, LocalDateTime to, List<OccupancySeries.Point> points)
+            throws IOException {
+        OccupancySegment segment = segmentFor(day);
+        if (segment == null) {
+            return;
+        }
+        segment.forEach((minute, occupied, reserved, free) -> {
+            LocalDateTime time = day.atStartOfDay().plusMinutes(minute);
+            if (!time.isBefore(from) && time.isBefore(to)) {
+                points.add(new OccupancySeries.Point(time, occupied, reserved, free, occupied));
+            }
+        });
+    }
+
+    private void addHours(LocalDate day, LocalDateTime from, LocalDateTime to, List<OccupancySeries.Point> points)
+            throws IOException {
+        OccupancyRollup[] hours = new OccupancyRollup[24];
+        OccupancySegment unsealed = unsealedSegment(day);
+        if (unsealed != null) {
+            hours = rollUpHours(unsealed);
+        } else {
+            MappedByteBuffer file = rollupFile(YearMonth.from(day) + ".hour", 31 * 24, false);
+            for (int hour = 0; file != null && hour < 24; hour++) {
+                hours[hour] = OccupancyRollup.readFrom(file, (day.getDayOfMonth() - 1) * 24 + hour);
+            }
+        }
+        for (int hour = 0; hour < 24; hour++) {
+            LocalDateTime time = day.atTime(hour, 0);
+            if (hours[hour] != null && time.plusHours(1).isAfter(from) && time.isBefore(to)) {
+                points.add(toPoint(time, hours[hour]));
+            }
+        }
+    }
+
+    private void addDay(LocalDate day, List<OccupancySeries.Point> points) throws IOException {
+        OccupancyRollup rollup = null;
+        OccupancySegment unsealed = unsealedSegment(day);
+        if (unsealed != null) {
+            rollup = new OccupancyRollup();
+            for (OccupancyRollup hour : rollUpHours(unsealed)) {
+                if (hour != null) {
+                    rollup.merge(hour);
+                }
+            }
+        } else {
+            MappedByteBuffer file = rollupFile(day.getYear() + ".day", 366, false);
+            if (file != null) {
+                rollup = OccupancyRollup.readFrom(file, day.getDayOfYear() - 1);
+            }
+        }
+        if (rollup != null && rollup.getSamples() > 0) {
+            points.add(toPoint(day.atStartOfDay(), rollup));
+        }
+    }
+
+    /**
+     * Writes the hour and day rollups of a finished day and seals its segment.
+     */
+    private void seal(OccupancySegment segment) throws IOException {
+        LocalDate day = segment.getDay();
+        OccupancyRollup[] hours = rollUpHours(segment);
+        MappedByteBuffer hourFile = rollupFile(YearMonth.from(day) + ".hour", 31 * 24, true);
+        MappedByteBuffer dayFile = rollupFile(day.getYear() + ".day", 366, true);
+
+        OccupancyRollup total = new OccupancyRollup();
+        for (int hour = 0; hour < 24; hour++) {
+            OccupancyRollup rollup = hours[hour] == null ? new OccupancyRollup() : hours[hour];
+            rollup.writeTo(hourFile, (day.getDayOfMonth() - 1) * 24 + hour);
+            total.merge(rollup);
+        }
+        total.writeTo(dayFile, day.getDayOfYear() - 1);
+        hourFile.force();
+        dayFile.force();
+        segment.seal();
+    }
+
+    private static OccupancyRollup[] rollUpHours(OccupancySegment segment) {
+        OccupancyRollup[] hours = new OccupancyRollup[24];
+        segment.forEach((minute, occupied, reserved, free) -> {
+            int hour = minute / 60;
+            if (hours[hour] == null) {
+                hours[hour] = new OccupancyRollup();
+            }
+            hours[hour].add(occupied, reserved, free);
+        });
+        return hours;
+    }
+
+    private static OccupancySeries.Point toPoint(LocalDateTime time, OccupancyRollup rollup) {
+        return new OccupancySeries.Point(time,
+                rollup.average(OccupancyRollup.OCCUPIED),
+                rollup.average(OccupancyRollup.RESERVED),
+                rollup.average(OccupancyRollup.FREE),
+                rollup.max(OccupancyRollup.OCCUPIED));
+    }
+
+    /**
+     * Returns the segment of a day whose rollups were not written yet. Only today and
+     * yesterday can be unsealed, since older segments are sealed when the store opens.
+     *
+     * @return the unsealed segment, or null if the day's rollups are in the rollup files
+     */
+    private OccupancySegment unsealedSegment(LocalDate day) throws IOException {
+        if (day.isBefore(LocalDate.now().minusDays(1))) {
+            return null;
+        }
+        OccupancySegment segment = segmentFor(day);
+        return segment != null && !segment.isSealed() ? segment : null;
+    }
+
+    private OccupancySegment segmentFor(LocalDate day) throws IOException {
+        if (current != null && current.getDay().equals(day)) {
+            return current;
+        }
+        return OccupancySegment.openIfExists(segmentFile(day), day);
+    }
+
+    private Path segmentFile(LocalDate day) {
+        return directory.resolve(day + ".min");
+    }
+
+    /**
+     * Maps a rollup file of the given number of slots.
+     *
+     * @return the mapped file, or null if it does not exist and create is false
+     */
+    private MappedByteBuffer rollupFile(String name, int slots, boolean create) throws IOException {
+        MappedByteBuffer buffer = rollupFiles.get(name);
+        if (buffer == null) {
+            if (!create && !Files.exists(directory.resolve(name))) {
+                return null;
+            }
+            try (FileChannel channel = FileChannel.open(directory.resolve(name), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) slots * OccupancyRollup.BYTES);
+            }
+            rollupFiles.put(name, buffer);
+        }
+        return buffer;
+    }
+}
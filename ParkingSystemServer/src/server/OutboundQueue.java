@@ -0,0 +1,344 @@
+package server;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ocsf.server.ConnectionToClient;
+
+/**
+ * Queue of messages waiting to be written to one client, drained by a writer thread of its own.
+ * <p>
+ * Message handling in the server is serialized, so a handler that wrote to a client on a bad
+ * link directly would block every other client until the write finished. Handlers put their
+ * messages into the queue of the connection instead and return; the writer thread does the
+ * socket writes in order. The queue is bounded by the size of its messages on the wire,
+ * {@link #MAX_BYTES}. Messages are not serialized just to be measured: the writer counts the
+ * bytes each write puts on the socket, and a queued message is charged the connection's
+ * running average of those. When a message does not fit, the {@link SlowConsumerPolicy} set with
+ * {@code -Dbpark.outbound.policy} decides: by default the client is disconnected, so it
+ * reconnects and asks again instead of holding server memory. Streamed results use
+ * {@link #sendAndWait(Object)}, which waits for room instead, slowing the stream down to the
+ * pace of the client. Streams are produced by the message handler, which holds the server
+ * monitor, so the wait is limited to {@link #SEND_WAIT_MS}; a client that stays full for longer
+ * gets the {@link SlowConsumerPolicy} too.
+ * </p>
+ * <p>
+ * Queue depth, bytes written, drops and write latency over all connections are kept for the
+ * server monitor.
+ * </p>
+ * <p>
+ * For clients that negotiated compression, the writer thread compresses large responses with
+ * the {@link PayloadCompressor} just before writing them, off the thread handling messages.
+ * </p>
+ */
+public class OutboundQueue {
+
+    /**
+     * What happens to a message that does not fit into a full queue.
+     */
+    public enum SlowConsumerPolicy {
+        /** Close the connection; the queued messages are discarded. */
+        DISCONNECT,
+        /** Discard the oldest queued messages until the new one fits. */
+        DROP_OLDEST,
+        /** Discard the new message. */
+        DROP_NEWEST
+    }
+
+    /** Most bytes of messages queued for one client, as charged at queueing time. */
+    public static final long MAX_BYTES = Long.getLong("bpark.outbound.maxBytes", 4L * 1024 * 1024);
+
+    /** Policy applied when a message does not fit into the queue. */
+    public static final SlowConsumerPolicy POLICY =
+            SlowConsumerPolicy.valueOf(System.getProperty("bpark.outbound.policy", SlowConsumerPolicy.DISCONNECT.name()));
+
+    /** Longest a streamed message waits for room before the {@link #POLICY} is applied. */
+    public static final long SEND_WAIT_MS = Long.getLong("bpark.outbound.sendWaitMs", 5_000);
+
+    private static final String QUEUE_INFO = "outbound.queue";
+
+    /** Size charged for a message before the connection's writer measured any. */
+    private static final long INITIAL_MESSAGE_BYTES = 1024;
+
+    private static final Set<OutboundQueue> openQueues = ConcurrentHashMap.newKeySet();
+    private static final AtomicLong sentCount = new AtomicLong();
+    private static final AtomicLong sentBytes = new AtomicLong();
+    private static final AtomicLong droppedCount = new AtomicLong();
+    private static final AtomicLong disconnectCount = new AtomicLong();
+    private static final AtomicLong writeNanosTotal = new AtomicLong();
+    private static final AtomicLong writeNanosMax = new AtomicLong();
+    private static final AtomicLong queuedNanosMax = new AtomicLong();
+
+    private final ConnectionToClient client;
+    private final Deque<Entry> entries = new ArrayDeque<>();
+
+    /** Bytes charged for the queued messages, including the one being written. */
+    private long queuedBytes;
+
+    /** Running average of the bytes the writer put on the socket per message. */
+    private volatile long averageBytes = INITIAL_MESSAGE_BYTES;
+    private boolean closed;
+
+    /** Whether the client negotiated compressed responses. */
+    private volatile boolean compressing;
+
+    /**
+     * A queued message with the bytes charged for it and the time it was queued.
+     */
+    private static class Entry {
+        final Object message;
+        final boolean reset;
+        final long bytes;
+        final long queuedAt = System.nanoTime();
+
+        Entry(Object message, boolean reset, long bytes) {
+            this.message = message;
+            this.reset = reset;
+            this.bytes = bytes;
+        }
+    }
+
+    private OutboundQueue(ConnectionToClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Returns the queue of a connection, creating it and starting its writer thread on first use.
+     * Only the thread handling the connection's messages calls this, so no two queues are created.
+     *
+     * @param client the connection
+     * @return its queue
+     */
+    public static OutboundQueue of(ConnectionToClient client) {
+        OutboundQueue queue = (OutboundQueue) client.getInfo(QUEUE_INFO);
+        if (queue == null) {
+            queue = new OutboundQueue(client);
+            client.setInfo(QUEUE_INFO, queue);
+            openQueues.add(queue);
+            Thread writer = new Thread(queue::drain, "outbound-writer-" + client.hashCode());
+            writer.setDaemon(true);
+            writer.start();
+        }
+        return queue;
+    }
+
+    /**
+     * Closes the queue of a connection, if it has one, and stops its writer thread.
+     *
+     * @param client the connection
+     */
+    public static void close(ConnectionToClient client) {
+        OutboundQueue queue = (OutboundQueue) client.getInfo(QUEUE_INFO);
+        if (queue != null) {
+            queue.close();
+        }
+    }
+
+    /**
+     * Queues a message without waiting. If it does not fit, the {@link #POLICY} is applied.
+     * A message larger than the bound is still queued when the queue is empty.
+     *
+     * @param message the message
+     * @throws IOException if the connection is closed or was closed by the policy
+     */
+    public void send(Object message) throws IOException {
+        Entry entry = new Entry(message, false, averageBytes);
+        boolean disconnect = false;
+        synchronized (this) {
+            checkOpen();
+            if (queuedBytes > 0 && queuedBytes + entry.bytes > MAX_BYTES) {
+                switch (POLICY) {
+                    case DROP_NEWEST -> {
+                        droppedCount.incrementAndGet();
+                        return;
+                    }
+                    case DROP_OLDEST -> {
+                        while (!entries.isEmpty() && queuedBytes + entry.bytes > MAX_BYTES) {
+                            queuedBytes -= entries.removeFirst().bytes;
+                            droppedCount.incrementAndGet();
+                        }
+                    }
+                    case DISCONNECT -> disconnect = true;
+                }
+            }
+            if (!disconnect) {
+                add(entry);
+                return;
+            }
+        }
+        disconnect();
+    }
+
+    /**
+     * Queues a message, waiting while the queue is full. The output stream is reset after the
+     * message is written, so it keeps no reference to it. Used for streamed results.
+     * <p>
+     * If there is still no room after {@link #SEND_WAIT_MS}, the {@link #POLICY} is applied:
+     * the client is disconnected, or with a dropping policy the message is dropped and the
+     * stream abandoned, since a stream with a gap cannot be used by the client.
+     * </p>
+     *
+     * @param message the message
+     * @throws IOException if the connection is closed, the wait is interrupted, or the message
+     *                     was not queued in time
+     */
+    public void sendAndWait(Object message) throws IOException {
+        Entry entry = new Entry(message, true, averageBytes);
+        long deadline = System.nanoTime() + SEND_WAIT_MS * 1_000_000;
+        synchronized (this) {
+            while (!closed && queuedBytes > 0 && queuedBytes + entry.bytes > MAX_BYTES) {
+                long remaining = (deadline - System.nanoTime()) / 1_000_000;
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting to send to client.", e);
+                }
+            }
+            checkOpen();
+            if (queuedBytes == 0 || queuedBytes + entry.bytes <= MAX_BYTES) {
+                add(entry);
+                return;
+            }
+            if (POLICY != SlowConsumerPolicy.DISCONNECT) {
+                droppedCount.incrementAndGet();
+                throw new IOException("Stream to slow client " + client + " abandoned after "
+                        + SEND_WAIT_MS + " ms without room.");
+            }
+        }
+        disconnect();
+    }
+
+    /**
+     * Discards the queued messages and stops the writer thread. The connection is not closed.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            entries.clear();
+            queuedBytes = 0;
+            notifyAll();
+        }
+        openQueues.remove(this);
+    }
+
+    /**
+     * Makes the writer compress large responses from now on.
+     */
+    public void enableCompression() {
+        compressing = true;
+    }
+
+    /**
+     * @return a line with the queue and write statistics over all connections, for the server monitor
+     */
+    public static String summary() {
+        long messages = 0;
+        long bytes = 0;
+        for (OutboundQueue queue : openQueues) {
+            synchronized (queue) {
+                messages += queue.entries.size();
+                bytes += queue.queuedBytes;
+            }
+        }
+        long sent = sentCount.get();
+        return String.format("Outbound: %d queued (~%d KB) | Sent: %d (%d KB) | Dropped: %d | Slow disconnects: %d"
+                        + " | Write avg %.1f ms, max %.1f ms | Queued max %.1f ms",
+                messages, bytes / 1024, sent, sentBytes.get() / 1024, droppedCount.get(), disconnectCount.get(),
+                sent == 0 ? 0 : writeNanosTotal.get() / 1_000_000.0 / sent,
+                writeNanosMax.get() / 1_000_000.0, queuedNanosMax.get() / 1_000_000.0);
+    }
+
+    private void add(Entry entry) {
+        entries.addLast(entry);
+        queuedBytes += entry.bytes;
+        notifyAll();
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Connection to client is closed.");
+        }
+    }
+
+    /**
+     * Body of the writer thread: writes the queued messages in order until the queue is closed.
+     * A failed write closes the connection.
+     */
+    private void drain() {
+        while (true) {
+            Entry entry;
+            synchronized (this) {
+                while (!closed && entries.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                entry = entries.removeFirst();
+            }
+
+            long start = System.nanoTime();
+            long bytesBefore = client.getBytesSent();
+            Object message = compressing ? PayloadCompressor.compress(entry.message) : entry.message;
+            try {
+                if (entry.reset) {
+                    client.sendToClientAndReset(message);
+                } else {
+                    client.sendToClient(message);
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to write to client " + client + ": " + e.getMessage());
+                closeConnection();
+                return;
+            }
+            long end = System.nanoTime();
+            long written = client.getBytesSent() - bytesBefore;
+            averageBytes = (averageBytes * 7 + written) / 8;
+            sentCount.incrementAndGet();
+            sentBytes.addAndGet(written);
+            writeNanosTotal.addAndGet(end - start);
+            writeNanosMax.accumulateAndGet(end - start, Math::max);
+            queuedNanosMax.accumulateAndGet(end - entry.queuedAt, Math::max);
+
+            synchronized (this) {
+                if (!closed) {
+                    queuedBytes -= entry.bytes;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the connection of a slow client.
+     *
+     * @throws IOException always, to stop the caller from sending more
+     */
+    private void disconnect() throws IOException {
+        System.err.println("Disconnecting slow client " + client + ": " + queuedBytes + " bytes queued.");
+        disconnectCount.incrementAndGet();
+        closeConnection();
+        throw new IOException("Client disconnected as a slow consumer.");
+    }
+
+    private void closeConnection() {
+        close();
+        try {
+            client.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
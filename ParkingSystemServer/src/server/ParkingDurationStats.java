@@ -0,0 +1,97 @@
+package server;
+
+/**
+ * Duration statistics of the completed parking sessions of one spot in one month:
+ * a {@link DurationSketch} of the parking times plus overstay and extension counters.
+ * Like the sketch, the counters merge by addition, so statistics of several spots or
+ * months are combined with {@link #merge(ParkingDurationStats)}.
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class ParkingDurationStats {
+
+    private final DurationSketch durations;
+    private long overstayMinutes;
+    private int lateCount;
+    private int extensionCount;
+
+    /**
+     * Constructs empty statistics.
+     */
+    public ParkingDurationStats() {
+        this(new DurationSketch(), 0, 0, 0);
+    }
+
+    /**
+     * Constructs statistics from stored values.
+     *
+     * @param durations       the sketch of the parking times
+     * @param overstayMinutes the total minutes cars stayed past their exit time
+     * @param lateCount       the number of late pickups
+     * @param extensionCount  the number of extensions requested
+     */
+    public ParkingDurationStats(DurationSketch durations, long overstayMinutes, int lateCount, int extensionCount) {
+        this.durations = durations;
+        this.overstayMinutes = overstayMinutes;
+        this.lateCount = lateCount;
+        this.extensionCount = extensionCount;
+    }
+
+    /**
+     * Adds a completed session.
+     *
+     * @param minutes         the parking time in minutes
+     * @param overstayMinutes the minutes the car stayed past its exit time, 0 if on time
+     * @param late            whether the pickup was late
+     * @param extensions      the number of extensions requested during the session
+     */
+    public void add(long minutes, long overstayMinutes, boolean late, int extensions) {
+        durations.add(minutes);
+        this.overstayMinutes += Math.max(0, overstayMinutes);
+        if (late) {
+            lateCount++;
+        }
+        extensionCount += extensions;
+    }
+
+    /**
+     * Adds the sessions of other statistics.
+     *
+     * @param other the statistics to merge; they are not modified
+     */
+    public void merge(ParkingDurationStats other) {
+        durations.merge(other.durations);
+        overstayMinutes += other.overstayMinutes;
+        lateCount += other.lateCount;
+        extensionCount += other.extensionCount;
+    }
+
+    /**
+     * @return the sketch of the parking times
+     */
+    public DurationSketch getDurations() {
+        return durations;
+    }
+
+    /**
+     * @return the total minutes cars stayed past their exit time
+     */
+    public long getOverstayMinutes() {
+        return overstayMinutes;
+    }
+
+    /**
+     * @return the number of late pickups
+     */
+    public int getLateCount() {
+        return lateCount;
+    }
+
+    /**
+     * @return the number of extensions requested
+     */
+    public int getExtensionCount() {
+        return extensionCount;
+    }
+}
@@ -0,0 +1,146 @@
+package server;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import entities.ParkingDurationReport;
+
+/**
+ * Keeps {@link ParkingDurationStats} of the completed parking sessions per month and spot.
+ * <p>
+ * Every pickup adds its session to pending statistics of its entry month and spot in memory.
+ * {@link #flush()}, which the server runs periodically and on shutdown, merges the pending
+ * statistics into the parking_duration_stats table. Report generation rebuilds a month from
+ * parking history with {@link #replaceMonth(YearMonth, Map)}, which also fills in months from
+ * before the statistics existed. Percentile reports over any range of months and spots are
+ * answered by merging the stored sketches, without reading parking history.
+ * </p>
+ * <p>
+ * The server owns one store and hands it to the {@link ReportEngine}.
+ * </p>
+ */
+public class ParkingDurationStore {
+
+    /** Longest range of months accepted by a report. */
+    public static final int MAX_MONTHS = 120;
+
+    private final DBController dbController;
+    private final Map<YearMonth, Map<Integer, ParkingDurationStats>> pending = new HashMap<>();
+
+    /** Held while writing to the database, so a month is never replaced during a flush. */
+    private final Object writeLock = new Object();
+
+    /**
+     * Constructs a store that reads and writes its statistics through the given controller.
+     *
+     * @param dbController the database controller
+     */
+    public ParkingDurationStore(DBController dbController) {
+        this.dbController = dbController;
+    }
+
+    /**
+     * Records a pickup.
+     *
+     * @param parkingSpaceId the spot
+     * @param entryTime      the entry time of the session
+     * @param dueTime        the exit time the session was booked until
+     * @param pickupTime     the time the car was picked up
+     * @param extensions     the number of extensions requested during the session
+     */
+    public synchronized void recordPickup(int parkingSpaceId, LocalDateTime entryTime, LocalDateTime dueTime,
+                                          LocalDateTime pickupTime, int extensions) {
+        long overstay = Math.max(0, ChronoUnit.MINUTES.between(dueTime, pickupTime));
+        pending.computeIfAbsent(YearMonth.from(entryTime), m -> new HashMap<>())
+               .computeIfAbsent(parkingSpaceId, s -> new ParkingDurationStats())
+               .add(ChronoUnit.MINUTES.between(entryTime, pickupTime), overstay, pickupTime.isAfter(dueTime), extensions);
+    }
+
+    /**
+     * Merges the pending statistics into the database. If that fails they are kept for the next flush.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            Map<YearMonth, Map<Integer, ParkingDurationStats>> changed;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                changed = new HashMap<>(pending);
+                pending.clear();
+            }
+            if (!dbController.mergeParkingDurationStats(changed)) {
+                synchronized (this) {
+                    changed.forEach((month, spots) -> spots.forEach((spot, stats) ->
+                            pending.computeIfAbsent(month, m -> new HashMap<>())
+                                   .computeIfAbsent(spot, s -> new ParkingDurationStats())
+                                   .merge(stats)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the statistics of a month with ones rebuilt from parking history. Pending
+     * statistics of the month are dropped, since the sessions they hold are already in the history.
+     *
+     * @param month the month
+     * @param spots the rebuilt statistics by spot
+     * @return true if the month was stored
+     */
+    public boolean replaceMonth(YearMonth month, Map<Integer, ParkingDurationStats> spots) {
+        synchronized (writeLock) {
+            synchronized (this) {
+                if (!dbController.replaceParkingDurationMonth(month, spots)) {
+                    return false;
+                }
+                pending.remove(month);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Builds the duration report of a range of months.
+     *
+     * @param from the first month, inclusive
+     * @param to   the last month, inclusive
+     * @return the report, or null if the statistics could not be loaded
+     */
+    public ParkingDurationReport report(YearMonth from, YearMonth to) {
+        Map<Integer, ParkingDurationStats> spots = dbController.getParkingDurationStats(from, to);
+        if (spots == null) {
+            return null;
+        }
+        // Include pickups that were not flushed yet
+        synchronized (this) {
+            pending.forEach((month, pendingSpots) -> {
+                if (!month.isBefore(from) && !month.isAfter(to)) {
+                    pendingSpots.forEach((spot, stats) ->
+                            spots.computeIfAbsent(spot, s -> new ParkingDurationStats()).merge(stats));
+                }
+            });
+        }
+
+        ParkingDurationStats total = new ParkingDurationStats();
+        List<ParkingDurationReport.Row> rows = new ArrayList<>();
+        for (Map.Entry<Integer, ParkingDurationStats> entry : new TreeMap<>(spots).entrySet()) {
+            total.merge(entry.getValue());
+            rows.add(toRow(entry.getKey(), entry.getValue()));
+        }
+        return new ParkingDurationReport(from, to, toRow(0, total), rows);
+    }
+
+    private static ParkingDurationReport.Row toRow(int parkingSpaceId, ParkingDurationStats stats) {
+        DurationSketch durations = stats.getDurations();
+        return new ParkingDurationReport.Row(parkingSpaceId, durations.getCount(), durations.average(),
+                durations.quantile(0.5), durations.quantile(0.9), durations.quantile(0.99),
+                stats.getOverstayMinutes(), stats.getLateCount(), stats.getExtensionCount());
+    }
+}
@@ -0,0 +1,113 @@
+package server;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/**
+ * An entry of the {@link ParkingJournal}: one change to a parking session or reservation.
+ */
+public class ParkingEvent {
+
+    /**
+     * The kinds of changes recorded in the journal.
+     */
+    public enum Type {
+        /** A car was deposited; the ID is the parking history ID and the time the expected exit. */
+        DEPOSITED,
+        /** A session was extended; the time is the new expected exit. */
+        EXTENDED,
+        /** A car was picked up. */
+        PICKED_UP,
+        /** A spot was reserved; the ID is the reservation ID and the time the reservation start. */
+        RESERVED,
+        /** A reservation was cancelled. */
+        CANCELLED,
+        /** A reservation ended, by its deposit or because its deposit window passed. */
+        EXPIRED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final Instant recordedAt;
+    private final int id;
+    private final int parkingSpaceId;
+    private final String subscriberCode;
+    private final LocalDateTime time;
+
+    /**
+     * Constructs an event.
+     *
+     * @param sequence       the position of the event in the journal, starting from 1
+     * @param type           the kind of change
+     * @param recordedAt     when the event was recorded
+     * @param id             the parking history ID or reservation ID
+     * @param parkingSpaceId the spot
+     * @param subscriberCode the subscriber
+     * @param time           the expected exit or reservation start, or null if the type has none
+     */
+    public ParkingEvent(long sequence, Type type, Instant recordedAt, int id, int parkingSpaceId,
+                        String subscriberCode, LocalDateTime time) {
+        this.sequence = sequence;
+        this.type = type;
+        this.recordedAt = recordedAt;
+        this.id = id;
+        this.parkingSpaceId = parkingSpaceId;
+        this.subscriberCode = subscriberCode;
+        this.time = time;
+    }
+
+    /**
+     * @return the position of the event in the journal
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the kind of change
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return when the event was recorded
+     */
+    public Instant getRecordedAt() {
+        return recordedAt;
+    }
+
+    /**
+     * @return the parking history ID for session events, the reservation ID for reservation events
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the spot
+     */
+    public int getParkingSpaceId() {
+        return parkingSpaceId;
+    }
+
+    /**
+     * @return the subscriber
+     */
+    public String getSubscriberCode() {
+        return subscriberCode;
+    }
+
+    /**
+     * @return the expected exit or reservation start, or null if the type has none
+     */
+    public LocalDateTime getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + recordedAt + " " + type + " id=" + id + " spot=" + parkingSpaceId
+                + " subscriber=" + subscriberCode + (time == null ? "" : " time=" + time);
+    }
+}
@@ -0,0 +1,463 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import entities.ParkingHistory;
+import entities.Reservation;
+
+/**
+ * Append-only journal of the changes to parking sessions and reservations, with snapshots.
+ * <p>
+ * Every deposit, extension, pickup, reservation, cancellation and reservation expiry is
+ * appended as a {@link ParkingEvent} to memory-mapped {@link JournalSegment} files
+ * ({@code 000001.seg}, ...) after the database was updated. The journal folds the events into
+ * its state: the open sessions and the active reservations. {@link #snapshot()} periodically
+ * writes that state in a compact binary file ({@code snapshot.bin}), together with the
+ * sequence number of the last event it includes.
+ * </p>
+ * <p>
+ * On startup the state is restored from the snapshot and the few events after it, without
+ * querying the database, and the expiry sweeper starts from it. The database stays the system
+ * of record: the spot table is always reconciled against it, and the periodic resync of the
+ * sweeper repairs any drift. Segments are kept after a snapshot, so {@link #replay(Consumer)}
+ * can walk the whole history for audits.
+ * </p>
+ * <p>
+ * Events are appended after the database commit, so a crash in between, or a segment that
+ * cannot be created, leaves the journal without them. An {@code incomplete} marker file exists
+ * while the journal is open and is only removed by a clean {@link #close()}; a start that finds
+ * it, like the first start without a journal, seeds the state from the database instead and
+ * continues the sequence after the existing segments.
+ * </p>
+ * <p>
+ * The files live in {@code <bpark.data.dir>/journal}, {@code data/journal} by default.
+ * </p>
+ */
+public class ParkingJournal {
+
+    /** Magic number at the start of a snapshot file ("PJS1"). */
+    private static final int SNAPSHOT_MAGIC = 0x504A5331;
+
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String INCOMPLETE_FILE = "incomplete";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final DBController dbController;
+    private final Path directory;
+
+    /** Open sessions by parking history ID. */
+    private final Map<Integer, ParkingHistory> openSessions = new HashMap<>();
+
+    /** Active reservations by reservation ID. */
+    private final Map<Integer, Reservation> activeReservations = new HashMap<>();
+
+    private JournalSegment current;
+    private long nextSequence = 1;
+
+    /** Sequence number of the last event included in the snapshot file. */
+    private long snapshotSequence;
+
+    private boolean opened;
+
+    /**
+     * Constructs a journal in the configured data directory.
+     *
+     * @param dbController the database controller used to seed a new journal
+     */
+    public ParkingJournal(DBController dbController) {
+        this(dbController, Paths.get(System.getProperty("bpark.data.dir", "data"), "journal"));
+    }
+
+    /**
+     * Constructs a journal in the given directory.
+     *
+     * @param dbController the database controller used to seed a new journal
+     * @param directory    the directory holding the segment and snapshot files
+     */
+    public ParkingJournal(DBController dbController, Path directory) {
+        this.dbController = dbController;
+        this.directory = directory;
+    }
+
+    /**
+     * Restores the state from the snapshot and the events after it, or seeds it from the
+     * database when there is no snapshot, the previous run did not close the journal cleanly or
+     * an event cannot be decoded. Only the segments with events after the snapshot are mapped
+     * and decoded.
+     *
+     * @return true if the journal is open; false if it could not be read, and events are not
+     *         recorded until the next start
+     */
+    public synchronized boolean open() {
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            Path marker = directory.resolve(INCOMPLETE_FILE);
+            boolean complete = !Files.exists(marker);
+            if (!complete) {
+                System.err.println("Parking journal was not closed cleanly; seeding it from the database.");
+            }
+            boolean restored = complete && readSnapshot();
+            int replayed = 0;
+            int last = 1;
+            for (Map.Entry<Integer, Path> segment : segmentFiles().entrySet()) {
+                // Segments the snapshot already covers are only read for their header
+                long segmentNext = JournalSegment.readNextSequence(segment.getValue(), segment.getKey());
+                nextSequence = Math.max(nextSequence, segmentNext);
+                last = segment.getKey();
+                if (!restored || segmentNext - 1 <= snapshotSequence) {
+                    continue;
+                }
+                current = JournalSegment.open(segment.getValue(), segment.getKey(), nextSequence);
+                int[] count = { 0 };
+                try {
+                    current.forEach(event -> {
+                        if (event.getSequence() > snapshotSequence) {
+                            apply(event);
+                            count[0]++;
+                        }
+                    });
+                    replayed += count[0];
+                } catch (IOException e) {
+                    System.err.println("Parking journal could not be replayed; seeding it from the database.");
+                    e.printStackTrace();
+                    openSessions.clear();
+                    activeReservations.clear();
+                    restored = false;
+                }
+            }
+
+            if (!restored) {
+                seed();
+            }
+            if (current == null || current.getNumber() != last) {
+                current = JournalSegment.open(segmentFile(last), last, nextSequence);
+            }
+            if (complete) {
+                Files.createFile(marker);
+            }
+            opened = true;
+            System.out.printf("Parking journal %s: %d open session(s), %d active reservation(s), %d event(s) replayed in %.1f ms%n",
+                    restored ? "restored" : "seeded from the database", openSessions.size(), activeReservations.size(),
+                    replayed, (System.nanoTime() - start) / 1_000_000.0);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Parking journal could not be opened; starting from the database.");
+            e.printStackTrace();
+            openSessions.clear();
+            activeReservations.clear();
+            return false;
+        }
+    }
+
+    /**
+     * Records a deposit.
+     *
+     * @param historyId      the parking history ID of the new session
+     * @param parkingSpaceId the spot
+     * @param subscriberCode the subscriber
+     * @param exitTime       the expected exit
+     */
+    public void deposited(int historyId, int parkingSpaceId, String subscriberCode, LocalDateTime exitTime) {
+        append(ParkingEvent.Type.DEPOSITED, historyId, parkingSpaceId, subscriberCode, exitTime);
+    }
+
+    /**
+     * Records an extension of an open session.
+     *
+     * @param session  the session before the extension
+     * @param exitTime the new expected exit
+     */
+    public void extended(ParkingHistory session, LocalDateTime exitTime) {
+        append(ParkingEvent.Type.EXTENDED, session.getHistoryId(), session.getParkingSpaceId(),
+                session.getSubscriberCode(), exitTime);
+    }
+
+    /**
+     * Records a pickup.
+     *
+     * @param session the session that ended
+     */
+    public void pickedUp(ParkingHistory session) {
+        append(ParkingEvent.Type.PICKED_UP, session.getHistoryId(), session.getParkingSpaceId(),
+                session.getSubscriberCode(), null);
+    }
+
+    /**
+     * Records a new reservation.
+     *
+     * @param reservation the reservation, with its ID and spot assigned
+     */
+    public void reserved(Reservation reservation) {
+        append(ParkingEvent.Type.RESERVED, reservation.getReservationId(), reservation.getParkingSpaceId(),
+                reservation.getSubscriberCode(), reservation.getReservationDate());
+    }
+
+    /**
+     * Records the cancellation of a reservation.
+     *
+     * @param reservation the cancelled reservation
+     */
+    public void cancelled(Reservation reservation) {
+        append(ParkingEvent.Type.CANCELLED, reservation.getReservationId(), reservation.getParkingSpaceId(),
+                reservation.getSubscriberCode(), null);
+    }
+
+    /**
+     * Records the end of active reservations. IDs of reservations that already ended, for
+     * example because the sweeper's deadline became stale, are skipped.
+     *
+     * @param reservationIds the reservation IDs
+     */
+    public synchronized void expired(List<Integer> reservationIds) {
+        for (int id : reservationIds) {
+            Reservation reservation = activeReservations.get(id);
+            if (reservation != null) {
+                append(ParkingEvent.Type.EXPIRED, id, reservation.getParkingSpaceId(),
+                        reservation.getSubscriberCode(), null);
+            }
+        }
+    }
+
+    /**
+     * @return the expected exit of every open session, by parking history ID
+     */
+    public synchronized Map<Integer, LocalDateTime> getSessionExitTimes() {
+        Map<Integer, LocalDateTime> exits = new HashMap<>();
+        openSessions.forEach((id, session) -> exits.put(id, session.getExitTime()));
+        return exits;
+    }
+
+    /**
+     * @return the start of every active reservation, by reservation ID
+     */
+    public synchronized Map<Integer, LocalDateTime> getReservationStartTimes() {
+        Map<Integer, LocalDateTime> starts = new HashMap<>();
+        activeReservations.forEach((id, reservation) -> starts.put(id, reservation.getReservationDate()));
+        return starts;
+    }
+
+    /**
+     * Writes the current state to the snapshot file, replacing the previous one atomically,
+     * and forces the current segment to disk.
+     */
+    public synchronized void snapshot() {
+        if (!opened || nextSequence - 1 == snapshotSequence) {
+            return;
+        }
+        current.force();
+        try {
+            writeSnapshot();
+        } catch (IOException e) {
+            System.err.println("Parking journal snapshot failed.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Passes every recorded event to a consumer, oldest first. Events from before the journal
+     * was seeded are not included.
+     *
+     * @param consumer the receiver of the events
+     * @throws IOException if a segment cannot be read
+     */
+    public synchronized void replay(Consumer<ParkingEvent> consumer) throws IOException {
+        for (Map.Entry<Integer, Path> segment : segmentFiles().entrySet()) {
+            JournalSegment file = current != null && current.getNumber() == segment.getKey()
+                    ? current : JournalSegment.open(segment.getValue(), segment.getKey(), 0);
+            file.forEach(consumer);
+        }
+    }
+
+    /**
+     * Writes a final snapshot and stops recording. The {@code incomplete} marker is removed only
+     * if the journal recorded every event of this run and the snapshot was written, so the next
+     * start can trust it.
+     */
+    public synchronized void close() {
+        if (opened) {
+            snapshot();
+            if (snapshotSequence == nextSequence - 1) {
+                try {
+                    Files.deleteIfExists(directory.resolve(INCOMPLETE_FILE));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        opened = false;
+    }
+
+    /**
+     * Appends an event to the current segment, starting a new one when it is full, and applies it.
+     */
+    private synchronized void append(ParkingEvent.Type type, int id, int parkingSpaceId, String subscriberCode,
+                                     LocalDateTime time) {
+        if (!opened || id <= 0) {
+            return;
+        }
+        ParkingEvent event = new ParkingEvent(nextSequence, type, Instant.now(), id, parkingSpaceId, subscriberCode, time);
+        try {
+            if (!current.append(event)) {
+                current.force();
+                int number = current.getNumber() + 1;
+                current = JournalSegment.open(segmentFile(number), number, nextSequence);
+                current.append(event);
+            }
+        } catch (IOException e) {
+            System.err.println("Parking journal segment could not be created; journal stopped until the next start.");
+            e.printStackTrace();
+            opened = false;
+            return;
+        }
+        nextSequence++;
+        apply(event);
+    }
+
+    /**
+     * Folds an event into the state.
+     */
+    private void apply(ParkingEvent event) {
+        switch (event.getType()) {
+            case DEPOSITED -> openSessions.put(event.getId(), new ParkingHistory(event.getId(), event.getSubscriberCode(),
+                    event.getParkingSpaceId(), LocalDateTime.ofInstant(event.getRecordedAt(), ZoneId.systemDefault()),
+                    event.getTime(), false, 0, false, false));
+            case EXTENDED -> {
+                ParkingHistory session = openSessions.get(event.getId());
+                if (session != null) {
+                    session.setExitTime(event.getTime());
+                }
+            }
+            case PICKED_UP -> openSessions.remove(event.getId());
+            case RESERVED -> activeReservations.put(event.getId(), new Reservation(event.getId(), event.getSubscriberCode(),
+                    event.getParkingSpaceId(), event.getTime(), null, "active"));
+            case CANCELLED, EXPIRED -> activeReservations.remove(event.getId());
+        }
+    }
+
+    /**
+     * Fills the state from the database and writes it as a snapshot covering the existing
+     * segments.
+     */
+    private void seed() throws IOException {
+        List<ParkingHistory> sessions = dbController.getOpenParkingSessions();
+        List<Reservation> reservations = dbController.getActiveReservations();
+        if (sessions == null || reservations == null) {
+            throw new IOException("Open sessions and active reservations could not be read.");
+        }
+        for (ParkingHistory session : sessions) {
+            openSessions.put(session.getHistoryId(), session);
+        }
+        for (Reservation reservation : reservations) {
+            activeReservations.put(reservation.getReservationId(), reservation);
+        }
+        writeSnapshot();
+    }
+
+    /**
+     * Reads the snapshot file, if there is one.
+     *
+     * @return true if a snapshot was read
+     */
+    private boolean readSnapshot() throws IOException {
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a parking journal snapshot: " + file);
+            }
+            snapshotSequence = in.readLong();
+            nextSequence = snapshotSequence + 1;
+            for (int i = in.readInt(); i > 0; i--) {
+                ParkingHistory session = new ParkingHistory(in.readInt(), in.readUTF(), in.readInt(),
+                        readTime(in), readTime(in), false, 0, false, false);
+                openSessions.put(session.getHistoryId(), session);
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                Reservation reservation = new Reservation(in.readInt(), in.readUTF(), in.readInt(),
+                        readTime(in), null, "active");
+                activeReservations.put(reservation.getReservationId(), reservation);
+            }
+        }
+        return true;
+    }
+
+    private void writeSnapshot() throws IOException {
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(nextSequence - 1);
+            out.writeInt(openSessions.size());
+            for (ParkingHistory session : openSessions.values()) {
+                out.writeInt(session.getHistoryId());
+                out.writeUTF(session.getSubscriberCode());
+                out.writeInt(session.getParkingSpaceId());
+                writeTime(out, session.getEntryTime());
+                writeTime(out, session.getExitTime());
+            }
+            out.writeInt(activeReservations.size());
+            for (Reservation reservation : activeReservations.values()) {
+                out.writeInt(reservation.getReservationId());
+                out.writeUTF(reservation.getSubscriberCode());
+                out.writeInt(reservation.getParkingSpaceId());
+                writeTime(out, reservation.getReservationDate());
+            }
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        snapshotSequence = nextSequence - 1;
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * @return the segment files by number, in order; files whose name is not a number are skipped
+     */
+    private Map<Integer, Path> segmentFiles() throws IOException {
+        Map<Integer, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int number;
+                try {
+                    number = Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    System.err.println("Skipping " + file + ": not a journal segment name.");
+                    continue;
+                }
+                segments.put(number, file);
+            }
+        }
+        return segments;
+    }
+
+    private Path segmentFile(int number) {
+        return directory.resolve(String.format("%06d%s", number, SEGMENT_SUFFIX));
+    }
+}
@@ -0,0 +1,94 @@
+package server;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bpark_common.CompressedPayload;
+import bpark_common.ServerResponse;
+
+/**
+ * Compresses the data of large responses for clients that negotiated compression.
+ * <p>
+ * A client asks for compression right after connecting, naming the codec and the checksum of
+ * its dictionary; the server agrees only if both match its own. From then on the writer of the
+ * connection's {@link OutboundQueue} replaces the data of every response whose serialized data
+ * is at least {@link #THRESHOLD} bytes with a {@link CompressedPayload}, unless compression
+ * does not make it smaller. Small responses are sent as they are, since compressing them
+ * costs more time than it saves on the wire. The bytes before and after compression are
+ * counted for the server monitor.
+ * </p>
+ */
+public class PayloadCompressor {
+
+    /** Smallest serialized data, in bytes, that is compressed. */
+    public static final int THRESHOLD = Integer.getInteger("bpark.compression.threshold", 8 * 1024);
+
+    private static final AtomicLong compressedCount = new AtomicLong();
+    private static final AtomicLong rawBytes = new AtomicLong();
+    private static final AtomicLong wireBytes = new AtomicLong();
+    private static final AtomicLong compressNanos = new AtomicLong();
+
+    private PayloadCompressor() {
+    }
+
+    /**
+     * Checks whether a client may receive compressed responses.
+     *
+     * @param codec    the codec the client asked for
+     * @param checksum the checksum of the client's dictionary
+     * @return true if the server compresses with the same codec and dictionary
+     */
+    public static boolean accepts(String codec, int checksum) {
+        return CompressedPayload.CODEC.equals(codec) && CompressedPayload.dictionaryChecksum() == checksum;
+    }
+
+    /**
+     * Returns the message to write for a client that negotiated compression: a copy of the
+     * response with compressed data if that pays off, otherwise the message itself.
+     *
+     * @param message the queued message
+     * @return the message to write
+     */
+    public static Object compress(Object message) {
+        if (!(message instanceof ServerResponse response) || response.getData() == null) {
+            return message;
+        }
+        long start = System.nanoTime();
+        byte[] raw;
+        try {
+            raw = CompressedPayload.serialize(response.getData());
+        } catch (IOException e) {
+            return message; // the write reports it
+        }
+        if (raw.length < THRESHOLD) {
+            return message;
+        }
+        CompressedPayload payload = CompressedPayload.compress(raw);
+        if (payload.getCompressedLength() >= raw.length) {
+            return message;
+        }
+        compressedCount.incrementAndGet();
+        rawBytes.addAndGet(raw.length);
+        wireBytes.addAndGet(payload.getCompressedLength());
+        compressNanos.addAndGet(System.nanoTime() - start);
+
+        ServerResponse compressed = new ServerResponse(response.getCommand(), response.isSuccess(),
+                response.getMessage(), payload);
+        compressed.setRequestId(response.getRequestId());
+        compressed.setEtag(response.getEtag());
+        compressed.setNotModified(response.isNotModified());
+        return compressed;
+    }
+
+    /**
+     * @return a line with the compression statistics, for the server monitor
+     */
+    public static String summary() {
+        long count = compressedCount.get();
+        long raw = rawBytes.get();
+        long wire = wireBytes.get();
+        return String.format("Compressed: %d responses | %d KB -> %d KB (%.0f%% saved) | Avg %.1f ms",
+                count, raw / 1024, wire / 1024, raw == 0 ? 0 : 100.0 * (raw - wire) / raw,
+                count == 0 ? 0 : compressNanos.get() / 1_000_000.0 / count);
+    }
+}
@@ -0,0 +1,149 @@
+package server;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bpark_common.CompressedPayload;
+
+/**
+ * In-memory cache of the monthly reports of sealed months, with an ETag per report.
+ * <p>
+ * Once a month is over, its reports only change when they are regenerated, so the reports of
+ * months before the current one are loaded once and kept, including the fact that a month has
+ * no report. A load that fails is never cached. {@link ReportEngine} invalidates a month whenever it stores it again. Reports of
+ * the current month are loaded from the database on every request.
+ * </p>
+ * <p>
+ * Every report carries an ETag, a hash of its serialized form. A client that already holds a
+ * report sends its ETag along and is answered "not modified" while it still matches.
+ * </p>
+ */
+public class ReportCache {
+
+    /** ETag of a month without a report. */
+    private static final String ABSENT_ETAG = "absent";
+
+    private static ReportCache instance;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /** Incremented by every invalidation, so a load that raced one is not cached. */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Loads a report from the database.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        /**
+         * @return the report, or null if the month has none
+         * @throws SQLException if the report could not be read
+         */
+        Serializable load() throws SQLException;
+    }
+
+    /**
+     * A report with its ETag.
+     */
+    public static class Entry {
+        private final Serializable report;
+        private final String etag;
+
+        Entry(Serializable report, String etag) {
+            this.report = report;
+            this.etag = etag;
+        }
+
+        /**
+         * @return the report, or null if the month has none
+         */
+        public Serializable getReport() {
+            return report;
+        }
+
+        /**
+         * @return the ETag of the report
+         */
+        public String getEtag() {
+            return etag;
+        }
+    }
+
+    private ReportCache() {
+    }
+
+    /**
+     * @return the singleton report cache
+     */
+    public static synchronized ReportCache getInstance() {
+        if (instance == null) {
+            instance = new ReportCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns a report of a month, loading it from the database unless the month is sealed and
+     * its report is cached.
+     *
+     * @param kind   the kind of report, one cache entry per kind and month
+     * @param month  the month
+     * @param loader loads the report from the database; returns null if there is none
+     * @return the report with its ETag
+     * @throws SQLException if the report could not be loaded; nothing is cached then
+     */
+    public Entry get(String kind, YearMonth month, Loader loader) throws SQLException {
+        if (!month.isBefore(YearMonth.now())) {
+            return load(loader);
+        }
+        String key = kind + ":" + month;
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        long loadedAt = generation.get();
+        entry = load(loader);
+        synchronized (this) {
+            if (generation.get() == loadedAt) {
+                entries.putIfAbsent(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Forgets the reports of a month, after they were stored again.
+     *
+     * @param month the month
+     */
+    public synchronized void invalidate(YearMonth month) {
+        generation.incrementAndGet();
+        entries.keySet().removeIf(key -> key.endsWith(":" + month));
+    }
+
+    private static Entry load(Loader loader) throws SQLException {
+        Serializable report = loader.load();
+        return new Entry(report, report == null ? ABSENT_ETAG : etagOf(report));
+    }
+
+    /**
+     * Returns the first 16 bytes of the SHA-256 hash of the report's serialized form, in hex.
+     */
+    private static String etagOf(Serializable report) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(CompressedPayload.serialize(report));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            return Long.toHexString(System.nanoTime()); // never matches, so the report is always sent
+        }
+    }
+}
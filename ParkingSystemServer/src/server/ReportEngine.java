@@ -0,0 +1,193 @@
+package server;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Generates monthly reports in parallel.
+ * <p>
+ * A range of months is split into day partitions by a fork/join task. Each partition is
+ * aggregated by {@link DBController#aggregateParkingDay(LocalDate)} on its own pooled
+ * connection, and the partial results are merged back up the task tree. The merged days
+ * are then folded into one parking time report and one subscriber report per month.
+ * </p>
+ */
+public class ReportEngine {
+
+    /** Upper bound on concurrent partitions, and so on connections taken from the pool. */
+    private static final int PARALLELISM = 4;
+
+    /** Largest range accepted by a single regeneration request. */
+    public static final int MAX_MONTHS_PER_REQUEST = 120;
+
+    private static ReportEngine instance;
+
+    private final ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+
+    /** The server's occupancy cube, whose months are rebuilt with the reports. */
+    private volatile OccupancyCube occupancyCube;
+
+    /** The server's parking duration statistics, whose months are rebuilt with the reports. */
+    private volatile ParkingDurationStore durationStore;
+
+    private ReportEngine() {
+    }
+
+    /**
+     * @return the singleton report engine
+     */
+    public static synchronized ReportEngine getInstance() {
+        if (instance == null) {
+            instance = new ReportEngine();
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the occupancy cube whose months are rebuilt together with the reports.
+     *
+     * @param occupancyCube the server's occupancy cube
+     */
+    public void setOccupancyCube(OccupancyCube occupancyCube) {
+        this.occupancyCube = occupancyCube;
+    }
+
+    /**
+     * Sets the parking duration statistics whose months are rebuilt together with the reports.
+     *
+     * @param durationStore the server's duration statistics
+     */
+    public void setDurationStore(ParkingDurationStore durationStore) {
+        this.durationStore = durationStore;
+    }
+
+    /**
+     * Regenerates and stores the reports of every month in the range, blocking until done.
+     *
+     * @param from the first month, inclusive
+     * @param to   the last month, inclusive
+     * @return the number of months stored successfully
+     * @throws IllegalArgumentException if the range is empty or too long
+     */
+    public int generate(YearMonth from, YearMonth to) {
+        long months = ChronoUnit.MONTHS.between(from, to) + 1;
+        if (months < 1 || months > MAX_MONTHS_PER_REQUEST) {
+            throw new IllegalArgumentException("Invalid report range " + from + " - " + to);
+        }
+
+        LocalDate firstDay = from.atDay(1);
+        LocalDate lastDay = to.atEndOfMonth();
+        TreeMap<LocalDate, DailyParkingAggregate> days = pool.invoke(new DayRangeTask(firstDay, lastDay.plusDays(1)));
+
+        int stored = 0;
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            if (storeMonth(month, days.subMap(month.atDay(1), true, month.atEndOfMonth(), true))) {
+                stored++;
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Regenerates the reports of every month in the range without blocking the caller.
+     *
+     * @param from the first month, inclusive
+     * @param to   the last month, inclusive
+     * @return a future completed with the number of months stored successfully
+     */
+    public CompletableFuture<Integer> generateAsync(YearMonth from, YearMonth to) {
+        return CompletableFuture.supplyAsync(() -> generate(from, to), pool);
+    }
+
+    /**
+     * Folds the days of a month into its two reports and stores them, together with
+     * the days' subscriber sketches, the month's occupancy cube counters and its duration
+     * statistics. Parking times are summed in minutes and rounded to hours once per month.
+     * The cached reports of the month are dropped afterwards, even if storing failed half way.
+     *
+     * @param month the month
+     * @param days  the aggregates of the month's days, in date order
+     * @return true if the month was stored
+     */
+    private boolean storeMonth(YearMonth month, Map<LocalDate, DailyParkingAggregate> days) {
+        long normalMinutes = 0;
+        long extendedMinutes = 0;
+        long delayedMinutes = 0;
+        List<Integer> dailyCounts = new ArrayList<>();
+        Map<LocalDate, HyperLogLog> sketches = new TreeMap<>();
+        int[] cubeCells = new int[OccupancyCube.CELLS];
+        Map<Integer, ParkingDurationStats> durationStats = new HashMap<>();
+        for (DailyParkingAggregate day : days.values()) {
+            normalMinutes += day.getNormalMinutes();
+            extendedMinutes += day.getExtendedMinutes();
+            delayedMinutes += day.getDelayedMinutes();
+            dailyCounts.add(day.getSubscriberCount());
+            if (!day.getSubscriberSketch().isEmpty()) {
+                sketches.put(day.getDate(), day.getSubscriberSketch());
+            }
+            for (int i = 0; i < cubeCells.length; i++) {
+                cubeCells[i] += day.getCubeCells()[i];
+            }
+            day.getDurationStats().forEach((spot, stats) ->
+                    durationStats.computeIfAbsent(spot, s -> new ParkingDurationStats()).merge(stats));
+        }
+        boolean stored = DBController.storeMonthlyReports(month.getYear(), month.getMonthValue(),
+                toHours(normalMinutes), toHours(extendedMinutes), toHours(delayedMinutes), dailyCounts)
+                && DBController.mergeSubscriberSketches(sketches)
+                && (occupancyCube == null || occupancyCube.replaceMonth(month, cubeCells))
+                && (durationStore == null || durationStore.replaceMonth(month, durationStats));
+        ReportCache.getInstance().invalidate(month);
+        return stored;
+    }
+
+    private static int toHours(long minutes) {
+        return (int) Math.round(minutes / 60.0);
+    }
+
+    /**
+     * Aggregates the days in [start, end), splitting the range in half until a single day remains.
+     */
+    private static class DayRangeTask extends RecursiveTask<TreeMap<LocalDate, DailyParkingAggregate>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final LocalDate start;
+        private final LocalDate end;
+
+        DayRangeTask(LocalDate start, LocalDate end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected TreeMap<LocalDate, DailyParkingAggregate> compute() {
+            long length = ChronoUnit.DAYS.between(start, end);
+            if (length <= 1) {
+                DailyParkingAggregate day = DBController.aggregateParkingDay(start);
+                if (day == null) {
+                    throw new IllegalStateException("Failed to aggregate parking day " + start);
+                }
+                TreeMap<LocalDate, DailyParkingAggregate> result = new TreeMap<>();
+                result.put(start, day);
+                return result;
+            }
+
+            LocalDate middle = start.plusDays(length / 2);
+            DayRangeTask left = new DayRangeTask(start, middle);
+            DayRangeTask right = new DayRangeTask(middle, end);
+            left.fork();
+            TreeMap<LocalDate, DailyParkingAggregate> result = right.compute();
+            result.putAll(left.join());
+            return result;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package server;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * A background job run by the {@link JobScheduler}.
+ * <p>
+ * A job describes its own timetable through {@link #nextRunAfter(LocalDateTime)}. The scheduler
+ * persists the last run of every job, so runs that were missed while the server was down are
+ * detected on startup and either replayed one by one or coalesced into a single run,
+ * depending on {@link #catchUpMissedRuns()}.
+ * </p>
+ */
+public interface ScheduledJob {
+
+    /**
+     * Receives progress updates while a job is running.
+     */
+    @FunctionalInterface
+    interface Progress {
+
+        /**
+         * Reports the progress of the current run.
+         *
+         * @param fraction the completed fraction, between 0 and 1
+         * @param message  a short human-readable status
+         */
+        void report(double fraction, String message);
+    }
+
+    /**
+     * @return a unique, stable name used to persist the job's last run
+     */
+    String getName();
+
+    /**
+     * Calculates the next scheduled run.
+     *
+     * @param lastRun the scheduled time of the last completed run, or null if the job never ran
+     * @return the next scheduled run time
+     */
+    LocalDateTime nextRunAfter(LocalDateTime lastRun);
+
+    /**
+     * Runs the job for the given scheduled time.
+     *
+     * @param scheduledFor the scheduled time of this run (may be in the past during catch-up)
+     * @param progress     the listener to report progress to
+     * @throws Exception if the run failed; the run is retried on the next schedule
+     */
+    void run(LocalDateTime scheduledFor, Progress progress) throws Exception;
+
+    /**
+     * @return true if every missed run must be replayed, false to coalesce missed runs into one
+     */
+    default boolean catchUpMissedRuns() {
+        return false;
+    }
+
+    /**
+     * Creates a job that runs at a fixed interval and coalesces missed runs.
+     *
+     * @param name     the job name
+     * @param interval the interval between runs
+     * @param task     the work to run
+     * @return the job
+     */
+    static ScheduledJob every(String name, Duration interval, Runnable task) {
+        return new ScheduledJob() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public LocalDateTime nextRunAfter(LocalDateTime lastRun) {
+                return lastRun == null ? LocalDateTime.now() : lastRun.plus(interval);
+            }
+
+            @Override
+            public void run(LocalDateTime scheduledFor, Progress progress) {
+                task.run();
+            }
+        };
+    }
+}
@@ -0,0 +1,338 @@
+package server;
+
+import entities.ParkingSpace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Authoritative in-memory availability of the parking spaces.
+ * <p>
+ * Availability is held in an atomic bitset indexed by spot ID (bit set = free). Claims and
+ * releases are single compare-and-set operations on one 64-bit word, so two kiosks can never
+ * claim the same spot and no lock is taken. A random free spot is found by starting at a random
+ * word and a random bit; with one word per 64 spots the bitset doubles as the free list.
+ * </p>
+ * <p>
+ * Listing returns an immutable snapshot that is rebuilt only after a change. Changes are written
+ * to the parking_space table behind the caller: changed spot IDs are collected and the current
+ * state of each is flushed in one batch every {@link #FLUSH_INTERVAL_MS} milliseconds, and once
+ * more when the table is stopped.
+ * </p>
+ * <p>
+ * Since the table is written behind, it can drift from the parking sessions, for example when
+ * the server stopped before a flush. {@link #reconcile()} recomputes which spots are occupied
+ * from the open parking_history rows and repairs the spots that differ; it runs on start and
+ * periodically. Flush latency and corrections are counted for the server monitor.
+ * </p>
+ */
+public class SpotStateTable {
+
+    /** Delay between write-behind flushes. */
+    private static final long FLUSH_INTERVAL_MS = 250;
+
+    private final DBController dbController;
+
+    private volatile AtomicLongArray freeBits = new AtomicLongArray(0);
+    private volatile int capacity;
+
+    /** Spot IDs that exist in the parking_space table. */
+    private volatile Set<Integer> knownSpots = Collections.emptySet();
+
+    /** Spot IDs changed since the last flush. */
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile long snapshotVersion = -1;
+    private volatile List<ParkingSpace> snapshot = List.of();
+
+    private ScheduledExecutorService writer;
+
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushedSpots = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong flushNanosTotal = new AtomicLong();
+    private final AtomicLong flushNanosMax = new AtomicLong();
+    private final AtomicLong reconcileCount = new AtomicLong();
+    private final AtomicLong correctionCount = new AtomicLong();
+
+    /**
+     * Constructs a spot table that loads from and persists to the database through the given controller.
+     *
+     * @param dbController the database controller
+     */
+    public SpotStateTable(DBController dbController) {
+        this.dbController = dbController;
+    }
+
+    /**
+     * Loads the current availability of every spot, reconciles it with the open parking sessions
+     * and starts the write-behind flusher.
+     */
+    public synchronized void start() {
+        Map<Integer, Boolean> spots = dbController.getAllSpotAvailability();
+        int maxId = spots.keySet().stream().mapToInt(Integer::intValue).max().orElse(0);
+
+        AtomicLongArray bits = new AtomicLongArray(maxId / 64 + 1);
+        for (Map.Entry<Integer, Boolean> spot : spots.entrySet()) {
+            if (spot.getValue()) {
+                int id = spot.getKey();
+                bits.set(id >>> 6, bits.get(id >>> 6) | (1L << id));
+            }
+        }
+        dirty.clear();
+        knownSpots = Set.copyOf(spots.keySet());
+        capacity = maxId + 1;
+        freeBits = bits;
+        version.incrementAndGet();
+        reconcile();
+
+        if (writer == null) {
+            writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "spot-state-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            writer.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        System.out.println("Spot table loaded: " + spots.size() + " spot(s), " + countFree() + " free.");
+    }
+
+    /**
+     * Stops the flusher after writing any pending changes.
+     */
+    public synchronized void stop() {
+        if (writer != null) {
+            writer.shutdown();
+            writer = null;
+        }
+        flush();
+    }
+
+    /**
+     * Picks a random free spot without claiming it.
+     *
+     * @return a free spot ID, or -1 if none is free
+     */
+    public int pickRandomFree() {
+        AtomicLongArray bits = freeBits;
+        int words = bits.length();
+        if (words == 0) {
+            return -1;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int start = random.nextInt(words);
+        for (int i = 0; i < words; i++) {
+            int index = (start + i) % words;
+            long word = bits.get(index);
+            if (word != 0) {
+                // rotate by a random amount so the lowest free bit is not always chosen
+                int shift = random.nextInt(64);
+                int bit = (Long.numberOfTrailingZeros(Long.rotateRight(word, shift)) + shift) & 63;
+                return (index << 6) | bit;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Atomically claims a random free spot.
+     *
+     * @return the claimed spot ID, or -1 if none is free
+     */
+    public int claimRandom() {
+        while (true) {
+            int id = pickRandomFree();
+            if (id < 0 || claim(id)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Atomically claims a spot if it is free.
+     *
+     * @param spotId the spot ID
+     * @return true if the spot was free and is now claimed by the caller
+     */
+    public boolean claim(int spotId) {
+        return update(spotId, false, true);
+    }
+
+    /**
+     * Marks a spot as occupied regardless of its current state.
+     *
+     * @param spotId the spot ID
+     */
+    public void occupy(int spotId) {
+        update(spotId, false, false);
+    }
+
+    /**
+     * Marks a spot as free.
+     *
+     * @param spotId the spot ID
+     */
+    public void release(int spotId) {
+        update(spotId, true, false);
+    }
+
+    /**
+     * @param spotId the spot ID
+     * @return true if the spot exists and is free
+     */
+    public boolean isFree(int spotId) {
+        AtomicLongArray bits = freeBits;
+        return spotId >= 0 && spotId < capacity && (bits.get(spotId >>> 6) & (1L << spotId)) != 0;
+    }
+
+    /**
+     * Returns the free spots as an immutable list, rebuilt only when availability changed.
+     *
+     * @return the free spots in ID order
+     */
+    public List<ParkingSpace> snapshot() {
+        long current = version.get();
+        if (snapshotVersion != current) {
+            List<ParkingSpace> spots = new ArrayList<>();
+            for (int id = 0; id < capacity; id++) {
+                if (isFree(id)) {
+                    spots.add(new ParkingSpace(id, true));
+                }
+            }
+            snapshot = Collections.unmodifiableList(spots);
+            snapshotVersion = current;
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the number of parking spaces
+     */
+    public int getSpotCount() {
+        return knownSpots.size();
+    }
+
+    /**
+     * @return the number of free spots
+     */
+    public int countFree() {
+        AtomicLongArray bits = freeBits;
+        int free = 0;
+        for (int i = 0; i < bits.length(); i++) {
+            free += Long.bitCount(bits.get(i));
+        }
+        return free;
+    }
+
+    /**
+     * Repairs the spots whose availability differs from the open parking sessions: a spot is
+     * occupied exactly when a parking_history row of it is not picked up yet. Repaired spots are
+     * written to the database by the next flush. The caller must make sure no deposit is between
+     * claiming its spot and inserting its session.
+     *
+     * @return the number of repaired spots, or -1 if the sessions could not be read
+     */
+    public int reconcile() {
+        Set<Integer> occupied = dbController.getOccupiedSpotIds();
+        if (occupied == null) {
+            return -1;
+        }
+        int corrected = 0;
+        for (int id : knownSpots) {
+            boolean free = !occupied.contains(id);
+            if (isFree(id) != free) {
+                System.out.println("Spot " + id + " was " + (free ? "occupied" : "free")
+                        + " without a matching parking session; corrected.");
+                update(id, free, false);
+                corrected++;
+            }
+        }
+        reconcileCount.incrementAndGet();
+        correctionCount.addAndGet(corrected);
+        return corrected;
+    }
+
+    /**
+     * @return a line with the free spots, flush latency and reconciliation counters, for the server monitor
+     */
+    public String summary() {
+        long flushes = flushCount.get();
+        return String.format("Spots: %d/%d free | Flushes: %d (%d spots, %d failed), avg %.1f ms, max %.1f ms"
+                        + " | Reconciled: %d runs, %d corrections",
+                countFree(), getSpotCount(), flushes, flushedSpots.get(), flushFailures.get(),
+                flushes == 0 ? 0 : flushNanosTotal.get() / 1_000_000.0 / flushes, flushNanosMax.get() / 1_000_000.0,
+                reconcileCount.get(), correctionCount.get());
+    }
+
+    /**
+     * Sets or clears a spot's free bit with a CAS loop.
+     *
+     * @param spotId      the spot ID
+     * @param free        the new state
+     * @param requireFree if true, fail instead of changing an already occupied spot
+     * @return true if the bit was changed (or already had the requested state when requireFree is false)
+     */
+    private boolean update(int spotId, boolean free, boolean requireFree) {
+        if (!knownSpots.contains(spotId)) {
+            return false;
+        }
+        AtomicLongArray bits = freeBits;
+        int index = spotId >>> 6;
+        long mask = 1L << spotId;
+        while (true) {
+            long word = bits.get(index);
+            boolean isFree = (word & mask) != 0;
+            if (requireFree && !isFree) {
+                return false;
+            }
+            if (isFree == free) {
+                return true;
+            }
+            long updated = free ? word | mask : word & ~mask;
+            if (bits.compareAndSet(index, word, updated)) {
+                dirty.add(spotId);
+                version.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Writes the current state of every changed spot to the database in one batch.
+     * Spots whose write failed are marked dirty again and retried on the next flush.
+     */
+    private void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        Map<Integer, Boolean> changes = new HashMap<>();
+        for (Integer id : dirty) {
+            dirty.remove(id);
+            changes.put(id, isFree(id));
+        }
+        long start = System.nanoTime();
+        boolean written = dbController.updateSpotAvailability(changes);
+        long nanos = System.nanoTime() - start;
+        flushCount.incrementAndGet();
+        flushNanosTotal.addAndGet(nanos);
+        flushNanosMax.accumulateAndGet(nanos, Math::max);
+        if (written) {
+            flushedSpots.addAndGet(changes.size());
+        } else {
+            flushFailures.incrementAndGet();
+            dirty.addAll(changes.keySet());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package server;
+
+/**
+ * One parsed row of a bulk subscriber import, as handled by the {@link SubscriberImporter}.
+ * The ID is assigned when the row is inserted.
+ */
+public class SubscriberImportRow {
+
+    private final int rowNumber;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+    private final String phone;
+    private final String password;
+    private int id;
+
+    /**
+     * Constructs an import row.
+     *
+     * @param rowNumber the 1-based line number in the imported file
+     * @param firstName the subscriber's first name
+     * @param lastName  the subscriber's last name
+     * @param email     the email address
+     * @param phone     the formatted phone number
+     * @param password  the initial account password
+     */
+    public SubscriberImportRow(int rowNumber, String firstName, String lastName, String email, String phone,
+                               String password) {
+        this.rowNumber = rowNumber;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.email = email;
+        this.phone = phone;
+        this.password = password;
+    }
+
+    /**
+     * @return the 1-based line number in the imported file
+     */
+    public int getRowNumber() {
+        return rowNumber;
+    }
+
+    /**
+     * @return the subscriber's first name
+     */
+    public String getFirstName() {
+        return firstName;
+    }
+
+    /**
+     * @return the subscriber's last name
+     */
+    public String getLastName() {
+        return lastName;
+    }
+
+    /**
+     * @return the email address
+     */
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * @return the formatted phone number
+     */
+    public String getPhone() {
+        return phone;
+    }
+
+    /**
+     * @return the initial account password
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * @return the assigned user ID, or 0 before the row was inserted
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @param id the assigned user ID
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+}
@@ -0,0 +1,324 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import bpark_common.ImportSummary;
+
+/**
+ * Imports subscribers in bulk from CSV lines sent by an admin client in chunks.
+ * <p>
+ * The expected columns are first_name, last_name, email, phone, password; a header line is
+ * skipped. The lines of a chunk are parsed and validated in parallel. Emails are then checked
+ * against the file and the database, and the valid rows are inserted in batches of
+ * {@link #BATCH_SIZE}, each batch in its own transaction. When a batch is rolled back its
+ * rows are retried one by one, so a single bad row does not reject its neighbours.
+ * </p>
+ * <p>
+ * The chunks of one import are processed in order, off the message thread, and the summary is
+ * completed after the last chunk. An aborted import skips its queued chunks and stops between
+ * batches; its summary counts the rows inserted until then.
+ * </p>
+ */
+public class SubscriberImporter {
+
+    /** Largest number of lines accepted in one chunk. */
+    public static final int MAX_CHUNK_ROWS = 500;
+
+    /** Largest number of data rows accepted in one import. */
+    public static final int MAX_IMPORT_ROWS = 50_000;
+
+    /** Rows inserted per transaction. */
+    private static final int BATCH_SIZE = 100;
+
+    /** Upper bound on the per-row errors returned in the summary. */
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    /** Upper bound on concurrent validation tasks. */
+    private static final int PARALLELISM = 4;
+
+    private final DBController dbController;
+    private final ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+
+    /**
+     * Constructs an importer that inserts through the given DB controller.
+     *
+     * @param dbController the database controller
+     */
+    public SubscriberImporter(DBController dbController) {
+        this.dbController = dbController;
+    }
+
+    /**
+     * Starts a new import.
+     *
+     * @return the session that collects the chunks and results of the import
+     */
+    public Session begin() {
+        return new Session();
+    }
+
+    /**
+     * Queues a chunk of CSV lines for processing after the previous chunks of the session.
+     *
+     * @param session the import session
+     * @param lines   the lines of the chunk, in file order
+     */
+    public void submit(Session session, List<String> lines) {
+        List<String> copy = new ArrayList<>(lines);
+        synchronized (session) {
+            session.tail = session.tail.thenRunAsync(() -> process(session, copy), pool);
+        }
+    }
+
+    /**
+     * Completes the import once every submitted chunk was processed.
+     *
+     * @param session the import session
+     * @return a future completed with the import summary
+     */
+    public CompletableFuture<ImportSummary> finish(Session session) {
+        synchronized (session) {
+            return session.tail.thenApply(v -> session.toSummary());
+        }
+    }
+
+    /**
+     * Aborts an import: chunks not processed yet are skipped, and a chunk being processed stops
+     * before its next batch.
+     *
+     * @param session the import session
+     * @return a future completed with the summary of the rows handled before the abort
+     */
+    public CompletableFuture<ImportSummary> abort(Session session) {
+        session.cancelled = true;
+        return finish(session);
+    }
+
+    /**
+     * Validates and inserts one chunk.
+     */
+    private void process(Session session, List<String> lines) {
+        if (session.cancelled) {
+            return;
+        }
+        int firstRow = session.nextRowNumber;
+        session.nextRowNumber += lines.size();
+
+        // Parse and validate independently per line
+        List<Parsed> parsed = pool.submit(() -> IntStream.range(0, lines.size())
+                .parallel()
+                .mapToObj(i -> parse(firstRow + i, lines.get(i)))
+                .collect(Collectors.toList())).join();
+
+        Map<String, SubscriberImportRow> candidates = new LinkedHashMap<>();
+        for (Parsed p : parsed) {
+            if (p == null) {
+                continue;
+            }
+            session.totalRows++;
+            if (session.totalRows > MAX_IMPORT_ROWS) {
+                session.fail(p.rowNumber, "import exceeds " + MAX_IMPORT_ROWS + " rows");
+            } else if (p.error != null) {
+                session.fail(p.rowNumber, p.error);
+            } else if (!session.emails.add(p.row.getEmail().toLowerCase())) {
+                session.fail(p.rowNumber, "duplicate email " + p.row.getEmail() + " in file");
+            } else {
+                candidates.put(p.row.getEmail(), p.row);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        Set<String> existing = dbController.getExistingEmails(candidates.keySet());
+        if (existing == null) {
+            for (SubscriberImportRow row : candidates.values()) {
+                session.fail(row.getRowNumber(), "database error");
+            }
+            return;
+        }
+
+        List<SubscriberImportRow> valid = new ArrayList<>();
+        for (SubscriberImportRow row : candidates.values()) {
+            if (existing.contains(row.getEmail().toLowerCase())) {
+                session.fail(row.getRowNumber(), "email " + row.getEmail() + " already registered");
+            } else {
+                valid.add(row);
+            }
+        }
+
+        for (int from = 0; from < valid.size() && !session.cancelled; from += BATCH_SIZE) {
+            insertBatch(session, valid.subList(from, Math.min(from + BATCH_SIZE, valid.size())));
+        }
+    }
+
+    /**
+     * Inserts one batch, falling back to single-row inserts if the batch is rolled back.
+     */
+    private void insertBatch(Session session, List<SubscriberImportRow> batch) {
+        if (dbController.addSubscribersBatch(batch)) {
+            session.imported += batch.size();
+            return;
+        }
+        for (SubscriberImportRow row : batch) {
+            if (dbController.addSubscribersBatch(List.of(row))) {
+                session.imported++;
+            } else {
+                session.fail(row.getRowNumber(), "insert failed");
+            }
+        }
+    }
+
+    /**
+     * Parses and validates one CSV line.
+     *
+     * @return the parsed row or its error, or null for a blank or header line
+     */
+    private static Parsed parse(int rowNumber, String line) {
+        if (line == null || line.isBlank()) {
+            return null;
+        }
+        List<String> fields = splitCsv(line);
+        if (rowNumber == 1 && fields.get(0).trim().equalsIgnoreCase("first_name")) {
+            return null;
+        }
+        if (fields.size() != 5) {
+            return new Parsed(rowNumber, null, "expected 5 columns, found " + fields.size());
+        }
+
+        String firstName = fields.get(0).trim();
+        String lastName = fields.get(1).trim();
+        String email = fields.get(2).trim();
+        String phoneDigits = fields.get(3).trim().replace("-", "").replace(" ", "");
+        String password = fields.get(4).trim();
+
+        if (firstName.isEmpty() || lastName.isEmpty() || email.isEmpty() || phoneDigits.isEmpty() || password.isEmpty()) {
+            return new Parsed(rowNumber, null, "all fields are required");
+        }
+        if (firstName.chars().anyMatch(Character::isDigit) || lastName.chars().anyMatch(Character::isDigit)) {
+            return new Parsed(rowNumber, null, "names must not contain digits");
+        }
+        if (!isValidEmail(email)) {
+            return new Parsed(rowNumber, null, "invalid email " + email);
+        }
+        if (phoneDigits.length() != 10 || !phoneDigits.chars().allMatch(Character::isDigit)) {
+            return new Parsed(rowNumber, null, "phone number must be exactly 10 digits");
+        }
+
+        String phone = phoneDigits.substring(0, 3) + "-" + phoneDigits.substring(3, 6) + "-" + phoneDigits.substring(6);
+        return new Parsed(rowNumber, new SubscriberImportRow(rowNumber, firstName, lastName, email, phone, password), null);
+    }
+
+    /**
+     * Checks the same email form as the add subscriber screen: one '@' followed by a dotted domain.
+     */
+    private static boolean isValidEmail(String email) {
+        int atIndex = email.indexOf('@');
+        if (atIndex <= 0 || atIndex == email.length() - 1 || email.lastIndexOf('@') != atIndex) {
+            return false;
+        }
+        int dotIndex = email.indexOf('.', atIndex + 1);
+        return dotIndex > atIndex + 1 && dotIndex < email.length() - 1;
+    }
+
+    /**
+     * Splits a CSV line on commas, honouring double-quoted fields and doubled quotes inside them.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * The state of one import. Its chunks are processed one at a time, so the
+     * counters are only touched by a single task at once.
+     */
+    public static final class Session {
+        private final long startedAt = System.currentTimeMillis();
+        private final Set<String> emails = new HashSet<>();
+        private final List<String> errors = new ArrayList<>();
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+        private int nextRowNumber = 1;
+        private int nextSequence;
+        private int totalRows;
+        private int imported;
+        private int failed;
+        private volatile boolean cancelled;
+
+        private Session() {
+        }
+
+        /**
+         * Checks that a chunk arrives in order and advances the expected sequence.
+         *
+         * @param sequence the sequence number of the received chunk
+         * @return true if the chunk is the next one expected
+         */
+        public synchronized boolean accept(int sequence) {
+            if (sequence != nextSequence) {
+                return false;
+            }
+            nextSequence++;
+            return true;
+        }
+
+        private void fail(int rowNumber, String reason) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("Row " + rowNumber + ": " + reason);
+            }
+        }
+
+        private ImportSummary toSummary() {
+            return new ImportSummary(totalRows, imported, failed, new ArrayList<>(errors),
+                    System.currentTimeMillis() - startedAt);
+        }
+    }
+
+    /**
+     * The outcome of parsing one line: either a row or an error.
+     */
+    private static final class Parsed {
+        private final int rowNumber;
+        private final SubscriberImportRow row;
+        private final String error;
+
+        Parsed(int rowNumber, SubscriberImportRow row, String error) {
+            this.rowNumber = rowNumber;
+            this.row = row;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package server;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import entities.UniqueSubscriberReport;
+import entities.UniqueSubscriberReport.Granularity;
+
+/**
+ * Keeps a {@link HyperLogLog} sketch of the subscribers who parked on each day.
+ * <p>
+ * Every deposit adds the subscriber to the sketch of its entry day in memory. Changed
+ * sketches are merged into the subscriber_day_sketch table by {@link #flush()}, which the
+ * server runs periodically and on shutdown. Days before the server started are filled in
+ * when their monthly reports are generated. Distinct counts over any range are answered
+ * by merging the stored day sketches, without reading parking history.
+ * </p>
+ */
+public class SubscriberSketchStore {
+
+    /** Largest range accepted by a single query, in days. */
+    public static final int MAX_QUERY_DAYS = 3660;
+
+    private final DBController dbController;
+    private final Map<LocalDate, HyperLogLog> live = new HashMap<>();
+    private final Set<LocalDate> dirty = new HashSet<>();
+
+    /**
+     * Constructs a sketch store that persists through the given DB controller.
+     *
+     * @param dbController the database controller
+     */
+    public SubscriberSketchStore(DBController dbController) {
+        this.dbController = dbController;
+    }
+
+    /**
+     * Records that a subscriber parked.
+     *
+     * @param subscriberCode the subscriber's code
+     * @param entryTime      the entry time of the parking session
+     */
+    public synchronized void record(String subscriberCode, LocalDateTime entryTime) {
+        if (subscriberCode == null || entryTime == null) {
+            return;
+        }
+        LocalDate day = entryTime.toLocalDate();
+        live.computeIfAbsent(day, d -> new HyperLogLog()).add(subscriberCode);
+        dirty.add(day);
+    }
+
+    /**
+     * Merges the changed day sketches into the database. Sketches of days before
+     * yesterday are dropped from memory once stored.
+     */
+    public void flush() {
+        Map<LocalDate, HyperLogLog> changed = new TreeMap<>();
+        synchronized (this) {
+            for (LocalDate day : dirty) {
+                HyperLogLog copy = new HyperLogLog();
+                copy.merge(live.get(day));
+                changed.put(day, copy);
+            }
+            dirty.clear();
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        if (!DBController.mergeSubscriberSketches(changed)) {
+            // Keep them dirty; the merge is idempotent, so retrying is safe
+            synchronized (this) {
+                dirty.addAll(changed.keySet());
+            }
+            return;
+        }
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        synchronized (this) {
+            live.keySet().removeIf(day -> day.isBefore(yesterday) && !dirty.contains(day));
+        }
+    }
+
+    /**
+     * Estimates the distinct subscribers who parked in a date range, per period and in total.
+     *
+     * @param from        the first day, inclusive
+     * @param to          the last day, inclusive
+     * @param granularity the period to group the counts by
+     * @return the report, or null if the sketches could not be loaded
+     */
+    public UniqueSubscriberReport query(LocalDate from, LocalDate to, Granularity granularity) {
+        TreeMap<LocalDate, HyperLogLog> days = dbController.getSubscriberSketches(from, to);
+        if (days == null) {
+            return null;
+        }
+        // Include deposits that were not flushed yet
+        synchronized (this) {
+            for (Map.Entry<LocalDate, HyperLogLog> entry : live.entrySet()) {
+                LocalDate day = entry.getKey();
+                if (!day.isBefore(from) && !day.isAfter(to)) {
+                    days.computeIfAbsent(day, d -> new HyperLogLog()).merge(entry.getValue());
+                }
+            }
+        }
+
+        Map<LocalDate, HyperLogLog> periods = new LinkedHashMap<>();
+        for (LocalDate start = periodStart(from, granularity); !start.isAfter(to); start = nextPeriod(start, granularity)) {
+            periods.put(start, new HyperLogLog());
+        }
+        HyperLogLog total = new HyperLogLog();
+        for (Map.Entry<LocalDate, HyperLogLog> entry : days.entrySet()) {
+            periods.get(periodStart(entry.getKey(), granularity)).merge(entry.getValue());
+            total.merge(entry.getValue());
+        }
+
+        Map<LocalDate, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<LocalDate, HyperLogLog> entry : periods.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().estimate());
+        }
+        return new UniqueSubscriberReport(from, to, granularity, counts, total.estimate());
+    }
+
+    /**
+     * Returns the first day of the period containing the day; weeks start on Sunday.
+     */
+    private static LocalDate periodStart(LocalDate day, Granularity granularity) {
+        return switch (granularity) {
+            case DAY -> day;
+            case WEEK -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.SUNDAY));
+            case MONTH -> day.withDayOfMonth(1);
+        };
+    }
+
+    /**
+     * Returns the first day of the period after the one starting at the given day.
+     */
+    private static LocalDate nextPeriod(LocalDate start, Granularity granularity) {
+        return switch (granularity) {
+            case DAY -> start.plusDays(1);
+            case WEEK -> start.plusWeeks(1);
+            case MONTH -> start.plusMonths(1);
+        };
+    }
+}
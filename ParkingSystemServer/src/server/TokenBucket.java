@@ -0,0 +1,43 @@
+package server;
+
+/**
+ * Token bucket rate limiter: holds up to a capacity of tokens, refills at a fixed rate, and
+ * admits a request if a token is left. A full bucket allows a burst of capacity requests;
+ * after that requests are admitted at the refill rate.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Constructs a full bucket.
+     *
+     * @param capacity        the most tokens the bucket holds
+     * @param tokensPerSecond the rate at which tokens are added
+     */
+    public TokenBucket(double capacity, double tokensPerSecond) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000.0;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @return true if a token was taken, false if the bucket is empty
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
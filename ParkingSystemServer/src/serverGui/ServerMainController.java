@@ -1,13 +1,18 @@
 package serverGui;
 
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.collections.*;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.util.Duration;
 import server.BParkServer;
 import server.ClientInfo;
-import server.DBController;
+import server.ConnectionRegistry;
+import server.OutboundQueue;
+import server.PayloadCompressor;
 
 import java.net.InetAddress;
 import java.sql.Connection;
@@ -15,7 +20,9 @@ import java.sql.DriverManager;
 /**
  * Main controller for the server-side GUI.
  * Handles server startup, shutdown, and monthly report scheduling.
- * Also updates the status label and manages connections to the database.
+ * Also updates the status label and manages connections to the database,
+ * and shows the live clients and the admission control and outbound queue counters
+ * while the server runs.
  */
 
 
@@ -23,7 +30,7 @@ public class ServerMainController {
 
     @FXML private TextField serverIpField, serverPortField, dbIpField, dbPortField, dbUserField;
     @FXML private PasswordField dbPassField;
-    @FXML private Label statusLabel;
+    @FXML private Label statusLabel, admissionLabel, outboundLabel, compressionLabel, spotLabel;
     @FXML private Button connectButton, disconnectButton;
     @FXML private TableView<ClientInfo> clientTable;
     @FXML private TableColumn<ClientInfo, String> ipColumn, hostColumn, statusColumn;
@@ -32,6 +39,12 @@ public class ServerMainController {
     private ObservableList<ClientInfo> clients = FXCollections.observableArrayList();
     private MonthlyReportScheduler reportScheduler;
 
+    /** Version of the connection registry the client table was last built from. */
+    private long shownConnectionsVersion = -1;
+
+    /** Refreshes the client table and the counters while the server runs. */
+    private final Timeline monitorRefresh = new Timeline(new KeyFrame(Duration.seconds(1), e -> refreshMonitor()));
+
     
     
     /**
@@ -59,6 +72,7 @@ public class ServerMainController {
         statusColumn.setCellValueFactory(new PropertyValueFactory<>("status"));
 
         clientTable.setItems(clients);
+        monitorRefresh.setCycleCount(Timeline.INDEFINITE);
     }
 
     
@@ -68,7 +82,7 @@ public class ServerMainController {
      * 
      * Connects to the MySQL database using the provided credentials,
      * starts the server on the selected port, and launches the background 
-     * monthly report scheduler. Also tests manual report generation.
+     * monthly report scheduler.
      */
     @FXML
     void handleConnect() {
@@ -83,7 +97,7 @@ public class ServerMainController {
         String pass = dbPassField.getText();
         int serverPort = Integer.parseInt(serverPortField.getText());
 
-        String jdbcUrl = "jdbc:mysql://" + dbIp + ":" + dbPort + "/bpark?serverTimezone=Asia/Jerusalem&useSSL=false&allowPublicKeyRetrieval=true";
+        String jdbcUrl = "jdbc:mysql://" + dbIp + ":" + dbPort + "/bpark?serverTimezone=Asia/Jerusalem&useSSL=false&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true";
 
         try {
             Connection conn = DriverManager.getConnection(jdbcUrl, user, pass);
@@ -96,11 +110,10 @@ public class ServerMainController {
 
             statusLabel.setText("Server running on port " + serverPort);
 
-            reportScheduler = new MonthlyReportScheduler(() ->
-                    statusLabel.setText("Monthly reports generated and saved."));
+            reportScheduler = new MonthlyReportScheduler(server.getJobScheduler(), statusLabel::setText);
             reportScheduler.start();
 
-            testGenerateReportsNow(); // Optional: for development
+            monitorRefresh.play();
 
         } catch (Exception e) {
             statusLabel.setText("Error: " + e.getMessage());
@@ -114,7 +127,7 @@ public class ServerMainController {
      * Handles server shutdown.
      * 
      * Stops the server listener, cancels the monthly report scheduler if active,
-     * and updates all connected client statuses to "Disconnected".
+     * and clears the client table.
      */
     @FXML
     void handleDisconnect() {
@@ -123,17 +136,19 @@ public class ServerMainController {
                 server.close();
                 server = null;
                 statusLabel.setText("Server stopped running.");
+                monitorRefresh.stop();
+                admissionLabel.setText("Admission: server not running");
+                outboundLabel.setText("Outbound: server not running");
+                compressionLabel.setText("Compression: server not running");
+                spotLabel.setText("Spots: server not running");
 
-                for (ClientInfo client : clients) {
-                    client.setStatus("Disconnected");
-                }
+                clients.clear();
+                shownConnectionsVersion = -1;
 
                 if (reportScheduler != null) {
                     reportScheduler.stop();
                     reportScheduler = null;
                 }
-
-                clientTable.refresh();
             } catch (Exception e) {
                 statusLabel.setText("Failed to stop server.");
                 e.printStackTrace();
@@ -156,59 +171,23 @@ public class ServerMainController {
     
     
     /**
-     * Adds a client entry to the connection table.
-     * 
-     * Removes any existing entries with the same IP/host or ID to avoid duplicates,
-     * and refreshes the table UI with the new entry.
-     *
-     * @param ip   the IP address of the connected client
-     * @param host the hostname of the connected client
-     * @param id   a unique identifier for the client (used for distinguishing entries)
-     */
-    public void addClient(String ip, String host, int id) {
-        Platform.runLater(() -> {
-            clients.removeIf(client -> client.getId() == id);
-            clients.removeIf(client -> client.getIp().equals(ip) && client.getHost().equals(host));
-            clients.add(new ClientInfo(ip, host, "Connected", id));
-            clientTable.refresh();
-        });
-    }
-
-    
-    
-    /**
-     * Updates a client's connection status in the UI table.
-     * 
-     * Searches the client list by unique ID and changes the status text,
-     * then refreshes the table to reflect the change.
-     *
-     * @param id     the unique identifier of the client
-     * @param status the updated status label ("Connected" or "Disconnected")
-     */
-    public void updateClientStatus(int id, String status) {
-        Platform.runLater(() -> {
-            for (ClientInfo client : clients) {
-                if (client.getId() == id) {
-                    client.setStatus(status);
-                    clientTable.refresh();
-                    break;
-                }
-            }
-        });
-    }
-
-    
-    
-    /**
-     * Triggers a one-time manual report generation.
-     * 
-     * This is useful for development and validation purposes,
-     * generating reports for a fixed date range (June 2025).
+     * Shows the live connections and the admission, outbound queue, compression and spot table
+     * counters. The client table is rebuilt only when a client connected or disconnected since
+     * the last refresh.
      */
-    public void testGenerateReportsNow() {
-        int year = 2025;
-        int month = 6;
-        DBController.generateMonthlyReports(year, month);
-        System.out.println("Manual generation done for " + year + "-" + String.format("%02d", month));
+    private void refreshMonitor() {
+        if (server == null) {
+            return;
+        }
+        ConnectionRegistry registry = server.getConnectionRegistry();
+        long version = registry.getVersion();
+        if (version != shownConnectionsVersion) {
+            shownConnectionsVersion = version;
+            clients.setAll(registry.snapshot());
+        }
+        admissionLabel.setText(server.getAdmissionController().summary());
+        outboundLabel.setText(OutboundQueue.summary());
+        compressionLabel.setText(PayloadCompressor.summary());
+        spotLabel.setText(server.getSpotTable().summary());
     }
 }
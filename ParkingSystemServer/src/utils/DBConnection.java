@@ -15,7 +15,7 @@ public class DBConnection {
 
     private static DBConnection instance;
 
-    private static final String URL = "jdbc:mysql://localhost:3306/bpark?serverTimezone=Asia/Jerusalem&useSSL=false&allowPublicKeyRetrieval=true";
+    private static final String URL = "jdbc:mysql://localhost:3306/bpark?serverTimezone=Asia/Jerusalem&useSSL=false&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true";
     private static final String USER = "root";
     private static final String PASSWORD = "Aa123456";
 
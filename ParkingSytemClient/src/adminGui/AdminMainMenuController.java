@@ -6,13 +6,14 @@ import client.MainMenuController;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
+import utils.ReusableView;
 import utils.SceneNavigator;
 
 /**
  * Controller for the Admin Main Menu screen.
  * Handles navigation to system logs, active parking orders, and subscriber management.
  */
-public class AdminMainMenuController {
+public class AdminMainMenuController implements ReusableView {
 
     private ClientController client;
 
@@ -36,6 +37,15 @@ public class AdminMainMenuController {
     @FXML private Button btnLogs;
     @FXML private Button btnReports;
 
+    /**
+     * Shows the buttons hidden for the previous user's role; setClient() hides them again if needed.
+     */
+    @Override
+    public void resetView() {
+        btnLogs.setVisible(true);
+        btnReports.setVisible(true);
+    }
+
     /**
      * Handles the exit button by sending a disconnect request to the server and closing the app.
      */
@@ -12,9 +12,9 @@ import utils.SceneNavigator;
 
 import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import bpark_common.ClientRequest;
+import bpark_common.ResultPage;
 import common.ChatIF;
 import entities.ParkingHistory;
 
@@ -35,6 +35,9 @@ public class AdminOrdersController implements ChatIF {
         Platform.runLater(() -> lblStatus.setText(message));
     }
 
+    /** Maximum number of search results requested from the server at once. */
+    private static final int SEARCH_PAGE_SIZE = 100;
+
     private ClientController client;
 
     @FXML private TableView<ParkingHistory> tableActiveParking;
@@ -116,20 +119,52 @@ public class AdminOrdersController implements ChatIF {
     }
     
     /**
-     * Filters the active parking table based on subscriber ID and/or spot ID.
-     * Updates the table and status label with the filtered results.
+     * Asks the server to filter the active parking sessions by subscriber code prefix and/or spot ID.
+     * The table and status label are updated when the page of results arrives.
      */
     private void handleSearch() {
     	String subId = txtSearchSubId.getText().trim();
         String spot = txtSearchSpot.getText().trim();
 
-        List<ParkingHistory> filtered = allActiveSessions.stream()
-            .filter(p -> (subId.isEmpty() || p.getSubscriberCode().contains(subId)) &&
-                         (spot.isEmpty() || String.valueOf(p.getParkingSpaceId()).contains(spot)))
-            .collect(Collectors.toList());
+        Integer spotId = null;
+        if (!spot.isEmpty()) {
+            try {
+                spotId = Integer.parseInt(spot);
+            } catch (NumberFormatException e) {
+                lblStatus.setText("Parking spot must be a number.");
+                return;
+            }
+        }
+
+        lblStatus.setText("Searching...");
+        Object[] params = { subId, spotId, "entry", false, 0, SEARCH_PAGE_SIZE };
+        ClientController.getClient().sendObjectToServer(new ClientRequest("search_active_parkings", params));
+    }
+
+    /**
+     * Displays a page of active parking sessions filtered by the server.
+     *
+     * @param page the page of matching sessions
+     */
+    public void setSearchResults(ResultPage<ParkingHistory> page) {
+        Platform.runLater(() -> {
+            tableActiveParking.setItems(FXCollections.observableArrayList(page.getRows()));
+            if (page.hasNext()) {
+                lblStatus.setText("Showing first " + page.getRows().size() + " of " + page.getTotalCount() + " results.");
+            } else {
+                lblStatus.setText("Showing " + page.getRows().size() + " filtered results.");
+            }
+        });
+    }
 
-        tableActiveParking.setItems(FXCollections.observableArrayList(filtered));
-        lblStatus.setText("Showing " + filtered.size() + " filtered results.");
+    /**
+     * Shows that a session search failed.
+     *
+     * @param message the reason reported by the server
+     */
+    public void showSearchError(String message) {
+        Platform.runLater(() ->
+            lblStatus.setText(message != null ? message : "Session search failed."));
     }
     
     /**
@@ -128,8 +128,9 @@ public class AdminParkingHistoryController {
         Platform.runLater(() -> {
             if (selectedSubscriber != null) {
                 String code = selectedSubscriber.getSubscriberCode();
+                // Admins see the full record, including archived sessions
                 ClientController.getClient().sendObjectToServer(
-                    new ClientRequest("get_parking_history", new Object[]{code})
+                    new ClientRequest("get_parking_history", new Object[]{code, true})
                 );
             } else {
                 System.out.println("No subscriber selected for history.");
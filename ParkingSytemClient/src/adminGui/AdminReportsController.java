@@ -1,27 +1,47 @@
 package adminGui;
 
 import bpark_common.ClientRequest;
+import bpark_common.ServerResponse;
 import client.ClientController;
+import client.MonthlyReportCache;
 import entities.MonthlyParkingTimeReport;
 import entities.MonthlySubscriberReport;
+import entities.OccupancyHeatmap;
+import entities.OccupancySeries;
+import entities.ParkingDurationReport;
+import entities.UniqueSubscriberReport;
 import javafx.application.Platform;
+import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.chart.*;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.DatePicker;
 import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.layout.GridPane;
+import utils.ReusableView;
 import utils.SceneNavigator;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
 import java.time.Year;
+import java.time.YearMonth;
+import java.time.format.TextStyle;
+import java.time.temporal.IsoFields;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  * Controller for AdminReports.fxml.
  * Displays monthly parking time and subscriber reports using charts.
  */
-public class AdminReportsController {
+public class AdminReportsController implements ReusableView {
 
     private ClientController client;
 
@@ -31,9 +51,45 @@ public class AdminReportsController {
     @FXML private ComboBox<Integer> comboYear;
     @FXML private ComboBox<String> comboMonth;
     @FXML private Button btnBack;
+    @FXML private Button btnRegenerate;
+    @FXML private Label labelRegenerateStatus;
+    @FXML private DatePicker pickerUniqueFrom;
+    @FXML private DatePicker pickerUniqueTo;
+    @FXML private ComboBox<UniqueSubscriberReport.Granularity> comboGranularity;
+    @FXML private Label labelUniqueTotal;
+    @FXML private BarChart<String, Number> uniqueSubscribersChart;
+    @FXML private DatePicker pickerOccupancyFrom;
+    @FXML private DatePicker pickerOccupancyTo;
+    @FXML private Label labelOccupancyStatus;
+    @FXML private LineChart<String, Number> occupancyChart;
+    @FXML private ComboBox<YearMonth> comboHeatmapFrom;
+    @FXML private ComboBox<YearMonth> comboHeatmapTo;
+    @FXML private ComboBox<String> comboHeatmapMeasure;
+    @FXML private Label labelHeatmapStatus;
+    @FXML private GridPane heatmapGrid;
+    @FXML private ComboBox<YearMonth> comboDurationFrom;
+    @FXML private ComboBox<YearMonth> comboDurationTo;
+    @FXML private Label labelDurationStatus;
+    @FXML private TableView<ParkingDurationReport.Row> tableDurations;
+    @FXML private TableColumn<ParkingDurationReport.Row, String> colDurationSpot;
+    @FXML private TableColumn<ParkingDurationReport.Row, String> colDurationSessions;
+    @FXML private TableColumn<ParkingDurationReport.Row, String> colDurationAverage;
+    @FXML private TableColumn<ParkingDurationReport.Row, String> colDurationP50;
+    @FXML private TableColumn<ParkingDurationReport.Row, String> colDurationP90;
+    @FXML private TableColumn<ParkingDurationReport.Row, String> colDurationP99;
+    @FXML private TableColumn<ParkingDurationReport.Row, String> colDurationOverstay;
+    @FXML private TableColumn<ParkingDurationReport.Row, String> colDurationLate;
+    @FXML private TableColumn<ParkingDurationReport.Row, String> colDurationExtensions;
+
+    private static final String PARKING_TIME_REPORT = "get_monthly_parking_time_report";
+    private static final String SUBSCRIBER_REPORT = "get_monthly_subscriber_report";
+
+    /** Measures the heatmap can show, in the order of the measure combo box. */
+    private static final List<String> HEATMAP_MEASURES = List.of("Average occupied spots", "Average parking minutes", "Arrivals");
 
     private int selectedYear;
     private int selectedMonth;
+    private OccupancyHeatmap heatmap;
 
     /**
      * Sets the client controller, initializes year and month dropdowns,
@@ -62,18 +118,108 @@ public class AdminReportsController {
         selectedYear = comboYear.getValue();
         selectedMonth = comboMonth.getSelectionModel().getSelectedIndex() + 1;
 
+        // default distinct-subscriber range: the current quarter, per week
+        LocalDate today = LocalDate.now();
+        pickerUniqueFrom.setValue(today.with(IsoFields.DAY_OF_QUARTER, 1));
+        pickerUniqueTo.setValue(today);
+        comboGranularity.setItems(FXCollections.observableArrayList(UniqueSubscriberReport.Granularity.values()));
+        comboGranularity.setValue(UniqueSubscriberReport.Granularity.WEEK);
+
+        // default occupancy range: today
+        pickerOccupancyFrom.setValue(today);
+        pickerOccupancyTo.setValue(today);
+
+        // heatmap months: the last two years, default range the last three months
+        List<YearMonth> months = new java.util.ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            months.add(YearMonth.now().minusMonths(i));
+        }
+        comboHeatmapFrom.setItems(FXCollections.observableArrayList(months));
+        comboHeatmapTo.setItems(FXCollections.observableArrayList(months));
+        comboHeatmapFrom.setValue(YearMonth.now().minusMonths(2));
+        comboHeatmapTo.setValue(YearMonth.now());
+        comboHeatmapMeasure.setItems(FXCollections.observableArrayList(HEATMAP_MEASURES));
+        comboHeatmapMeasure.getSelectionModel().selectFirst();
+
+        // duration months: same choices, default range the current month
+        comboDurationFrom.setItems(FXCollections.observableArrayList(months));
+        comboDurationTo.setItems(FXCollections.observableArrayList(months));
+        comboDurationFrom.setValue(YearMonth.now());
+        comboDurationTo.setValue(YearMonth.now());
+        bindDurationColumn(colDurationSpot, row -> row.getParkingSpaceId() == 0 ? "All" : String.valueOf(row.getParkingSpaceId()));
+        bindDurationColumn(colDurationSessions, row -> String.valueOf(row.getSessions()));
+        bindDurationColumn(colDurationAverage, row -> String.format("%.0f", row.getAverageMinutes()));
+        bindDurationColumn(colDurationP50, row -> String.format("%.0f", row.getP50Minutes()));
+        bindDurationColumn(colDurationP90, row -> String.format("%.0f", row.getP90Minutes()));
+        bindDurationColumn(colDurationP99, row -> String.format("%.0f", row.getP99Minutes()));
+        bindDurationColumn(colDurationOverstay, row -> String.valueOf(row.getOverstayMinutes()));
+        bindDurationColumn(colDurationLate, row -> String.valueOf(row.getLateCount()));
+        bindDurationColumn(colDurationExtensions, row -> String.valueOf(row.getExtensionCount()));
+
         requestBothReports(selectedYear, selectedMonth);
     }
 
     /**
-     * Sends requests to the server for both parking time and subscriber reports.
+     * Clears the charts, tables and status messages of the previous visit.
+     * setClient() then restores the default selections and requests the reports again.
+     */
+    @Override
+    public void resetView() {
+        labelTotalHours.setText("Total hours: ---");
+        parkingTimePieChart.getData().clear();
+        subscribersBarChart.getData().clear();
+        btnRegenerate.setDisable(false);
+        labelRegenerateStatus.setText("");
+        uniqueSubscribersChart.getData().clear();
+        labelUniqueTotal.setText("Distinct subscribers: ---");
+        occupancyChart.getData().clear();
+        labelOccupancyStatus.setText("Occupancy: ---");
+        heatmap = null;
+        heatmapGrid.getChildren().clear();
+        labelHeatmapStatus.setText("Heatmap: ---");
+        tableDurations.getItems().clear();
+        labelDurationStatus.setText("Durations: ---");
+    }
+
+    /**
+     * Shows both the parking time and subscriber reports of a month. Cached reports are shown
+     * right away and revalidated with the server; the adjacent months are prefetched, so the
+     * next selection is shown from the cache.
      *
      * @param year  the selected year
      * @param month the selected month (1-based)
      */
     private void requestBothReports(int year, int month) {
-        client.sendObjectToServer(new ClientRequest("get_monthly_parking_time_report", new Object[]{year, month}));
-        client.sendObjectToServer(new ClientRequest("get_monthly_subscriber_report", new Object[]{year, month}));
+        YearMonth selected = YearMonth.of(year, month);
+        MonthlyReportCache cache = client.getMonthlyReportCache();
+        for (String command : List.of(PARKING_TIME_REPORT, SUBSCRIBER_REPORT)) {
+            ServerResponse cached = cache.getCached(command, selected);
+            if (cached != null) {
+                showReport(command, cached);
+            }
+            cache.fetch(command, selected).whenComplete((response, error) -> Platform.runLater(() -> {
+                if (error != null) {
+                    System.out.println("Loading " + command + " " + selected + " failed: " + error.getMessage());
+                } else if (response != cached && selected.equals(YearMonth.of(selectedYear, selectedMonth))) {
+                    showReport(command, response);
+                }
+            }));
+        }
+
+        for (YearMonth adjacent : List.of(selected.minusMonths(1), selected.plusMonths(1))) {
+            if (!adjacent.isAfter(YearMonth.now())) {
+                cache.prefetch(PARKING_TIME_REPORT, adjacent);
+                cache.prefetch(SUBSCRIBER_REPORT, adjacent);
+            }
+        }
+    }
+
+    private void showReport(String command, ServerResponse response) {
+        if (PARKING_TIME_REPORT.equals(command)) {
+            loadParkingTimeReport((MonthlyParkingTimeReport) response.getData());
+        } else {
+            loadSubscriberReport((MonthlySubscriberReport) response.getData());
+        }
     }
 
     /**
@@ -89,6 +235,265 @@ public class AdminReportsController {
         requestBothReports(selectedYear, selectedMonth);
     }
 
+    /**
+     * Handles the Regenerate button click.
+     * Asks the server to rebuild the reports from January of the selected year
+     * up to the selected month, then reloads the selected month when done.
+     *
+     * @param event the action event triggered by the button click
+     */
+    @FXML
+    private void handleRegenerate(ActionEvent event) {
+        btnRegenerate.setDisable(true);
+        labelRegenerateStatus.setText("Regenerating reports...");
+        client.sendObjectToServer(new ClientRequest("regenerate_reports", new Object[]{
+                YearMonth.of(selectedYear, 1), YearMonth.of(selectedYear, selectedMonth)
+        }));
+    }
+
+    /**
+     * Displays the result of a report regeneration and reloads the selected month.
+     *
+     * @param success whether the regeneration succeeded
+     * @param message the server message
+     */
+    public void onReportsRegenerated(boolean success, String message) {
+        Platform.runLater(() -> {
+            btnRegenerate.setDisable(false);
+            labelRegenerateStatus.setText(message);
+        });
+        if (success) {
+            requestBothReports(selectedYear, selectedMonth);
+        }
+    }
+
+    /**
+     * Handles the Count button of the distinct subscribers tab.
+     * Asks the server for the distinct subscribers in the selected range and granularity.
+     *
+     * @param event the action event triggered by the button click
+     */
+    @FXML
+    private void handleUniqueSubscribers(ActionEvent event) {
+        LocalDate from = pickerUniqueFrom.getValue();
+        LocalDate to = pickerUniqueTo.getValue();
+        if (from == null || to == null || to.isBefore(from)) {
+            labelUniqueTotal.setText("Please select a valid date range.");
+            return;
+        }
+        labelUniqueTotal.setText("Counting...");
+        client.sendObjectToServer(new ClientRequest("get_unique_subscribers", new Object[]{
+                from, to, comboGranularity.getValue().name()
+        }));
+    }
+
+    /**
+     * Loads and displays the distinct subscriber counts in the admin UI.
+     * Populates the bar chart with the count of each period and shows the total.
+     *
+     * @param report  the UniqueSubscriberReport received from the server, or null on failure
+     * @param message the server message
+     */
+    public void loadUniqueSubscriberReport(UniqueSubscriberReport report, String message) {
+        Platform.runLater(() -> {
+            uniqueSubscribersChart.getData().clear();
+            if (report == null) {
+                labelUniqueTotal.setText(message);
+                return;
+            }
+            labelUniqueTotal.setText(String.format("%s – %s: about %d distinct subscribers",
+                    report.getFrom(), report.getTo(), report.getTotal()));
+
+            XYChart.Series<String, Number> series = new XYChart.Series<>();
+            series.setName("Distinct subscribers per " + report.getGranularity().name().toLowerCase());
+            for (Map.Entry<LocalDate, Long> entry : report.getPeriodCounts().entrySet()) {
+                series.getData().add(new XYChart.Data<>(entry.getKey().toString(), entry.getValue()));
+            }
+            uniqueSubscribersChart.getData().add(series);
+        });
+    }
+
+    /**
+     * Handles the Show button of the occupancy tab.
+     * Asks the server for the occupancy from the start of the first selected day
+     * to the end of the last one.
+     *
+     * @param event the action event triggered by the button click
+     */
+    @FXML
+    private void handleOccupancy(ActionEvent event) {
+        LocalDate from = pickerOccupancyFrom.getValue();
+        LocalDate to = pickerOccupancyTo.getValue();
+        if (from == null || to == null || to.isBefore(from)) {
+            labelOccupancyStatus.setText("Please select a valid date range.");
+            return;
+        }
+        labelOccupancyStatus.setText("Loading occupancy...");
+        client.sendObjectToServer(new ClientRequest("get_occupancy_series", new Object[]{
+                from.atStartOfDay(), to.plusDays(1).atStartOfDay()
+        }));
+    }
+
+    /**
+     * Loads and displays an occupancy time series in the admin UI.
+     * Populates the line chart with the occupied, reserved and free series.
+     *
+     * @param series  the OccupancySeries received from the server, or null on failure
+     * @param message the server message
+     */
+    public void loadOccupancySeries(OccupancySeries series, String message) {
+        Platform.runLater(() -> {
+            occupancyChart.getData().clear();
+            labelOccupancyStatus.setText(message);
+            if (series == null) {
+                return;
+            }
+
+            XYChart.Series<String, Number> occupied = new XYChart.Series<>();
+            occupied.setName("Occupied");
+            XYChart.Series<String, Number> reserved = new XYChart.Series<>();
+            reserved.setName("Reserved");
+            XYChart.Series<String, Number> free = new XYChart.Series<>();
+            free.setName("Free");
+
+            for (OccupancySeries.Point point : series.getPoints()) {
+                String label = switch (series.getResolution()) {
+                    case MINUTE, HOUR -> point.getTime().toString().replace('T', ' ');
+                    case DAY -> point.getTime().toLocalDate().toString();
+                };
+                occupied.getData().add(new XYChart.Data<>(label, point.getOccupied()));
+                reserved.getData().add(new XYChart.Data<>(label, point.getReserved()));
+                free.getData().add(new XYChart.Data<>(label, point.getFree()));
+            }
+            occupancyChart.getData().addAll(List.of(occupied, reserved, free));
+        });
+    }
+
+    /**
+     * Handles the Show button of the heatmap tab.
+     * Asks the server for the weekday and hour heatmap of the selected months.
+     *
+     * @param event the action event triggered by the button click
+     */
+    @FXML
+    private void handleHeatmap(ActionEvent event) {
+        YearMonth from = comboHeatmapFrom.getValue();
+        YearMonth to = comboHeatmapTo.getValue();
+        if (from == null || to == null || to.isBefore(from)) {
+            labelHeatmapStatus.setText("Please select a valid month range.");
+            return;
+        }
+        labelHeatmapStatus.setText("Loading heatmap...");
+        client.sendObjectToServer(new ClientRequest("get_occupancy_heatmap", new Object[]{from, to}));
+    }
+
+    /**
+     * Redraws the loaded heatmap when another measure is selected.
+     *
+     * @param event the action event triggered by the selection
+     */
+    @FXML
+    private void handleHeatmapMeasure(ActionEvent event) {
+        if (heatmap != null) {
+            drawHeatmap();
+        }
+    }
+
+    /**
+     * Loads and displays a weekday and hour heatmap in the admin UI.
+     *
+     * @param heatmap the OccupancyHeatmap received from the server, or null on failure
+     * @param message the server message
+     */
+    public void loadOccupancyHeatmap(OccupancyHeatmap heatmap, String message) {
+        Platform.runLater(() -> {
+            this.heatmap = heatmap;
+            labelHeatmapStatus.setText(message);
+            heatmapGrid.getChildren().clear();
+            if (heatmap != null) {
+                drawHeatmap();
+            }
+        });
+    }
+
+    /**
+     * Fills the heatmap grid with one cell per weekday and hour of the selected measure,
+     * shaded from white to red relative to the largest value.
+     */
+    private void drawHeatmap() {
+        heatmapGrid.getChildren().clear();
+        int measure = Math.max(0, comboHeatmapMeasure.getSelectionModel().getSelectedIndex());
+        double[][] values = new double[7][24];
+        double max = 0;
+        for (int day = 0; day < 7; day++) {
+            for (int hour = 0; hour < 24; hour++) {
+                values[day][hour] = switch (measure) {
+                    case 0 -> heatmap.getAverageOccupancy()[day][hour];
+                    case 1 -> heatmap.getAverageDwellMinutes()[day][hour];
+                    default -> heatmap.getArrivals()[day][hour];
+                };
+                max = Math.max(max, values[day][hour]);
+            }
+        }
+
+        for (int hour = 0; hour < 24; hour++) {
+            heatmapGrid.add(new Label(String.format("%02d", hour)), hour + 1, 0);
+        }
+        for (int day = 0; day < 7; day++) {
+            heatmapGrid.add(new Label(DayOfWeek.of(day + 1).getDisplayName(TextStyle.SHORT, Locale.ENGLISH)), 0, day + 1);
+            for (int hour = 0; hour < 24; hour++) {
+                double value = values[day][hour];
+                int shade = max == 0 ? 255 : (int) Math.round(255 * (1 - value / max));
+                Label cell = new Label(measure == 2 ? String.valueOf((int) value) : String.format("%.1f", value));
+                cell.setMinSize(34, 26);
+                cell.setStyle(String.format("-fx-background-color: rgb(255,%d,%d); -fx-alignment: center; -fx-font-size: 10px;", shade, shade));
+                heatmapGrid.add(cell, hour + 1, day + 1);
+            }
+        }
+    }
+
+    /**
+     * Handles the Show button of the durations tab.
+     * Asks the server for the parking duration report of the selected months.
+     *
+     * @param event the action event triggered by the button click
+     */
+    @FXML
+    private void handleDurations(ActionEvent event) {
+        YearMonth from = comboDurationFrom.getValue();
+        YearMonth to = comboDurationTo.getValue();
+        if (from == null || to == null || to.isBefore(from)) {
+            labelDurationStatus.setText("Please select a valid month range.");
+            return;
+        }
+        labelDurationStatus.setText("Loading durations...");
+        client.sendObjectToServer(new ClientRequest("get_parking_duration_report", new Object[]{from, to}));
+    }
+
+    /**
+     * Loads and displays a parking duration report in the admin UI.
+     * The first row holds all spots together, followed by one row per spot.
+     *
+     * @param report  the ParkingDurationReport received from the server, or null on failure
+     * @param message the server message
+     */
+    public void loadParkingDurationReport(ParkingDurationReport report, String message) {
+        Platform.runLater(() -> {
+            labelDurationStatus.setText(message);
+            tableDurations.getItems().clear();
+            if (report == null) {
+                return;
+            }
+            tableDurations.getItems().add(report.getTotal());
+            tableDurations.getItems().addAll(report.getSpots());
+        });
+    }
+
+    private static void bindDurationColumn(TableColumn<ParkingDurationReport.Row, String> column,
+                                           Function<ParkingDurationReport.Row, String> value) {
+        column.setCellValueFactory(cell -> new SimpleStringProperty(value.apply(cell.getValue())));
+    }
+
     /**
      * Handles the Back button click.
      * Navigates back to the Admin Main Menu screen.
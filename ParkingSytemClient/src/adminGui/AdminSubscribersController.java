@@ -1,9 +1,16 @@
 package adminGui;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.UUID;
 
 import bpark_common.ClientRequest;
+import bpark_common.ImportSummary;
+import bpark_common.ResultChunk;
+import bpark_common.ResultPage;
 import client.ClientController;
 import entities.Subscriber;
 import javafx.collections.FXCollections;
@@ -17,6 +24,7 @@ import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.stage.FileChooser;
 import utils.SceneNavigator;
 
 /**
@@ -25,6 +33,15 @@ import utils.SceneNavigator;
  */
 public class AdminSubscribersController {
 
+	/** Maximum number of search results requested from the server at once. */
+	private static final int SEARCH_PAGE_SIZE = 100;
+
+	/** Lines sent per chunk when importing subscribers from a CSV file. */
+	private static final int IMPORT_CHUNK_SIZE = 500;
+
+	/** Number of per-row import errors shown in the status line. */
+	private static final int IMPORT_ERRORS_SHOWN = 3;
+
 	private ClientController client;
 
     @FXML private TableView<Subscriber> subscriberTable;
@@ -36,7 +53,6 @@ public class AdminSubscribersController {
     @FXML private TableColumn<Subscriber, String> colPhone;
 
     @FXML private TextField txtSearchId;
-    @FXML private TextField txtID;
     //@FXML private TextField txtUsername;
     @FXML private PasswordField txtPassword;
     @FXML private TextField txtFirstName;
@@ -48,6 +64,7 @@ public class AdminSubscribersController {
     @FXML private Button btnRefresh;
     @FXML private Button btnParkingHistory;
     @FXML private Button btnAddSubscriber;
+    @FXML private Button btnImport;
     
     @FXML private Label lblStatus;
 
@@ -79,6 +96,7 @@ public class AdminSubscribersController {
     	btnSearch.setOnAction(e -> handleSearch());
         btnRefresh.setOnAction(e -> loadAllSubscribers());
         btnAddSubscriber.setOnAction(e -> handleAddSubscriber());
+        btnImport.setOnAction(e -> handleImport());
     }
 
     /**
@@ -108,17 +126,42 @@ public class AdminSubscribersController {
     }
 
     /**
-     * Handles the search operation based on ID entered in the search field.
+     * Handles the search operation based on the text entered in the search field.
+     * The filter, sort order and page window are applied by the server, which matches
+     * the ID, a subscriber code prefix or name prefixes.
      */
     private void handleSearch() {
-    	String idText = txtSearchId.getText().trim();
+    	String query = txtSearchId.getText().trim();
+        lblStatus.setText("Searching...");
 
-        List<Subscriber> filtered = allSubscribers.stream()
-            .filter(s -> (idText.isEmpty() || String.valueOf(s.getId()).equals(idText)))
-            .collect(Collectors.toList());
+        Object[] params = { query, "id", true, 0, SEARCH_PAGE_SIZE };
+        ClientController.getClient().sendObjectToServer(new ClientRequest("search_subscribers", params));
+    }
 
-        subscriberTable.setItems(FXCollections.observableArrayList(filtered));
-        lblStatus.setText("Showing " + filtered.size() + " filtered result(s).");
+    /**
+     * Displays a page of subscriber search results computed by the server.
+     *
+     * @param page the page of matching subscribers
+     */
+    public void setSearchResults(ResultPage<Subscriber> page) {
+        javafx.application.Platform.runLater(() -> {
+            subscriberTable.setItems(FXCollections.observableArrayList(page.getRows()));
+            if (page.hasNext()) {
+                lblStatus.setText("Showing first " + page.getRows().size() + " of " + page.getTotalCount() + " result(s).");
+            } else {
+                lblStatus.setText("Showing " + page.getRows().size() + " filtered result(s).");
+            }
+        });
+    }
+
+    /**
+     * Shows that a subscriber search failed.
+     *
+     * @param message the reason reported by the server
+     */
+    public void showSearchError(String message) {
+        javafx.application.Platform.runLater(() ->
+            lblStatus.setText(message != null ? message : "Subscriber search failed."));
     }
 
     /**
@@ -148,7 +191,6 @@ public class AdminSubscribersController {
      * Handles the logic for adding a new subscriber after validating the input fields.
      */
     private void handleAddSubscriber() {
-    	String idText = txtID.getText().trim();
         String username = "";
         String password = txtPassword.getText().trim();
         String firstName = txtFirstName.getText().trim();
@@ -156,20 +198,12 @@ public class AdminSubscribersController {
         String email = txtEmail.getText().trim();
         String phoneTrim = txtPhone.getText().trim();
 
-        if (idText.isEmpty() || password.isEmpty() ||
+        if (password.isEmpty() ||
             firstName.isEmpty() || lastName.isEmpty() || email.isEmpty() || phoneTrim.isEmpty()) {
             lblStatus.setText("Please fill in all fields.");
             return;
         }
 
-        int id;
-        try {
-            id = Integer.parseInt(idText);
-        } catch (NumberFormatException e) {
-            lblStatus.setText("ID must be a number.");
-            return;
-        }
-
         int phoneNum;
         try {
             phoneNum = Integer.parseInt(phoneTrim);
@@ -211,14 +245,6 @@ public class AdminSubscribersController {
             return;
         }
 
-        boolean idExists = subscriberTable.getItems().stream()
-            .anyMatch(sub -> sub.getId() == id);
-
-        if (idExists) {
-            lblStatus.setText("A subscriber with this ID already exists.");
-            return;
-        }
-
         String phone;
         int len = phoneTrim.length();
         if (len <= 3) {
@@ -239,7 +265,8 @@ public class AdminSubscribersController {
             phone = phoneFormatted.toString();
         }
 
-        Subscriber newSubscriber = new Subscriber(id, firstName + " " + lastName, username, email, phone, null);
+        // The server assigns the subscriber ID and code
+        Subscriber newSubscriber = new Subscriber(0, firstName + " " + lastName, username, email, phone, null);
         Object[] params = { newSubscriber, password, firstName, lastName };
 
         ClientRequest request = new ClientRequest("add_subscriber", params);
@@ -253,7 +280,68 @@ public class AdminSubscribersController {
         txtLastName.clear();
         txtEmail.clear();
         txtPhone.clear();
-        txtID.clear();
+    }
+
+    /**
+     * Lets the admin pick a CSV file and sends its lines to the server in chunks.
+     * The expected columns are first_name, last_name, email, phone, password;
+     * validation is done by the server, which replies with a single summary.
+     */
+    private void handleImport() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Subscribers");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        File file = chooser.showOpenDialog(btnImport.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            lblStatus.setText("Could not read " + file.getName() + ": " + e.getMessage());
+            return;
+        }
+        if (lines.isEmpty()) {
+            lblStatus.setText(file.getName() + " is empty.");
+            return;
+        }
+
+        String importId = UUID.randomUUID().toString();
+        int chunks = (lines.size() + IMPORT_CHUNK_SIZE - 1) / IMPORT_CHUNK_SIZE;
+        for (int i = 0; i < chunks; i++) {
+            List<String> rows = new java.util.ArrayList<>(
+                    lines.subList(i * IMPORT_CHUNK_SIZE, Math.min((i + 1) * IMPORT_CHUNK_SIZE, lines.size())));
+            Object[] params = { importId, new ResultChunk<>(rows, i, i == chunks - 1) };
+            ClientController.getClient().sendObjectToServer(new ClientRequest("import_subscribers", params));
+        }
+
+        btnImport.setDisable(true);
+        lblStatus.setText("Importing " + file.getName() + "...");
+    }
+
+    /**
+     * Shows the summary of a bulk import. The full error list is printed to the console.
+     *
+     * @param success whether the import ran to completion
+     * @param message the server's summary or error message
+     * @param summary the import summary, or null if the import was aborted
+     */
+    public void onImportFinished(boolean success, String message, ImportSummary summary) {
+        javafx.application.Platform.runLater(() -> {
+            btnImport.setDisable(false);
+            StringBuilder status = new StringBuilder(message);
+            if (summary != null && !summary.getErrors().isEmpty()) {
+                List<String> errors = summary.getErrors();
+                status.append(' ').append(String.join("; ", errors.subList(0, Math.min(IMPORT_ERRORS_SHOWN, errors.size()))));
+                if (summary.getFailedCount() > IMPORT_ERRORS_SHOWN) {
+                    status.append("; ...");
+                }
+                errors.forEach(System.err::println);
+            }
+            lblStatus.setText(status.toString());
+        });
     }
 
     /**
@@ -1,5 +1,10 @@
 package client;
 
+import bpark_common.ClientRequest;
+import bpark_common.CompressedPayload;
+import bpark_common.ImportSummary;
+import bpark_common.ResultChunk;
+import bpark_common.ResultPage;
 import bpark_common.ServerResponse;
 import entities.*;
 import guestGui.PublicAvailabilityController;
@@ -15,10 +20,20 @@ import subscriberGui.DepositReservedParkingController;
 import utils.SceneNavigator;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import adminGui.AdminLogsController;
 import adminGui.AdminOrdersController;
@@ -36,6 +51,18 @@ import adminGui.AdminSubscribersController;
  */
 public class ClientController extends AbstractClient {
 
+    /** How long screens wait for the server to answer a request before offering a retry. */
+    public static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    /** Prints the round-trip time of every request; enabled with {@code -Dbpark.debug.requests=true}. */
+    private static final boolean DEBUG_REQUESTS = Boolean.getBoolean("bpark.debug.requests");
+
+    /** Interval of the heartbeat that tells the server this client is still alive. */
+    private static final long HEARTBEAT_INTERVAL_SECONDS = 10;
+
+    /** Whether to ask the server for compressed responses; off with {@code -Dbpark.compression=false}. */
+    private static final boolean COMPRESSION = Boolean.parseBoolean(System.getProperty("bpark.compression", "true"));
+
     private static ClientController clientInstance;
     private MainMenuController guiController;
     private EditSubscriberDetailsController editSubscriberDetailsController;
@@ -55,6 +82,38 @@ public class ClientController extends AbstractClient {
     private adminGui.AdminLogsController adminLogsController;
     private adminGui.AdminParkingHistoryController adminParkingHistoryController;
 
+    /** Rows of streamed results still being received, keyed by response command. */
+    private final Map<String, List<Object>> pendingChunks = new HashMap<>();
+
+    /** Requests sent with {@link #request(ClientRequest, Duration)} that were not answered yet, by request id. */
+    private final Map<Long, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextRequestId = new AtomicLong();
+
+    /** Serializes writes to the server, which come from the JavaFX thread and the heartbeat. */
+    private final Object sendLock = new Object();
+
+    private ScheduledExecutorService heartbeat;
+
+    private final ConnectionManager connectionManager = new ConnectionManager(this);
+
+    private final MonthlyReportCache monthlyReportCache = new MonthlyReportCache(this);
+
+    /** The last login sent, remembered for the session once the server accepts it. */
+    private volatile LoginRequest attemptedLogin;
+
+    /**
+     * A request waiting for its response.
+     */
+    private static class PendingRequest {
+        final ClientRequest request;
+        final CompletableFuture<ServerResponse> future = new CompletableFuture<>();
+
+        PendingRequest(ClientRequest request) {
+            this.request = request;
+        }
+    }
+
 
 
     /**
@@ -177,6 +236,23 @@ public class ClientController extends AbstractClient {
      */
     public void setUserRole(String userRole) {
         this.userRole = userRole;
+        if (userRole == null) {
+            connectionManager.setSessionLogin(null);
+        }
+    }
+
+    /**
+     * @return the manager that reconnects this client when the connection is lost
+     */
+    public ConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    /**
+     * @return the cache of the monthly reports fetched by this client
+     */
+    public MonthlyReportCache getMonthlyReportCache() {
+        return monthlyReportCache;
     }
 
     /**
@@ -304,9 +380,207 @@ public class ClientController extends AbstractClient {
      */
     public void sendObjectToServer(Object msg) {
         try {
+            send(msg);
+        } catch (IOException e) {
+            System.err.println("Message could not be sent: " + e.getMessage());
+            connectionManager.connectionLost();
+        }
+    }
+
+    /**
+     * Sends a request and returns a future of the server's response to it.
+     * <p>
+     * The request gets a new request id on every call, which the server echoes in its response,
+     * so the future completes with exactly the response to this attempt. The response is not
+     * passed to the command handlers of this class. The future fails with a
+     * {@link java.util.concurrent.TimeoutException} if no response arrives within the timeout,
+     * and with an {@link IOException} if the request cannot be sent or the connection closes.
+     * Sending the same request object again retries it with the same idempotency key.
+     * With {@code -Dbpark.debug.requests=true}, the time from sending to the response is
+     * printed when the future completes.
+     * </p>
+     * <p>
+     * The future completes on the connection thread; screens switch to the JavaFX thread
+     * with {@link Platform#runLater(Runnable)}.
+     * </p>
+     *
+     * @param request the request to send
+     * @param timeout how long to wait for the response
+     * @return the future response
+     */
+    public CompletableFuture<ServerResponse> request(ClientRequest request, Duration timeout) {
+        long requestId = nextRequestId.incrementAndGet();
+        request.setRequestId(requestId);
+        PendingRequest pending = new PendingRequest(request);
+        CompletableFuture<ServerResponse> future = pending.future;
+        pendingRequests.put(requestId, pending);
+
+        long start = System.nanoTime();
+        future.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS).whenComplete((response, error) -> {
+            pendingRequests.remove(requestId);
+            if (DEBUG_REQUESTS) {
+                System.out.printf("Request %s #%d %s after %.1f ms%n", request.getCommand(), requestId,
+                        error == null ? "answered" : "failed (" + error.getClass().getSimpleName() + ")",
+                        (System.nanoTime() - start) / 1_000_000.0);
+            }
+        });
+
+        try {
+            send(request);
+        } catch (IOException e) {
+            System.err.println("Request " + request.getCommand() + " could not be sent: " + e.getMessage());
+            if (!holdForReplay(request)) {
+                future.completeExceptionally(e);
+            }
+            connectionManager.connectionLost();
+        }
+        return future;
+    }
+
+    /**
+     * Sends a request held while disconnected again, with its original request id, unless it was
+     * answered or timed out meanwhile.
+     *
+     * @param request the request
+     */
+    void replay(ClientRequest request) {
+        PendingRequest pending = pendingRequests.get(request.getRequestId());
+        if (pending == null) {
+            return;
+        }
+        try {
+            send(request);
+        } catch (IOException e) {
+            if (!holdForReplay(request)) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Keeps a request to be sent again after reconnecting, if it is safe to repeat.
+     *
+     * @return false if the request has no idempotency key or the replay queue is full
+     */
+    private boolean holdForReplay(ClientRequest request) {
+        return request.getIdempotencyKey() != null && connectionManager.queueForReplay(request);
+    }
+
+    /**
+     * Sends a login request; the login is remembered to resume the session after reconnecting.
+     *
+     * @param login the login request
+     * @throws IOException if the request could not be sent
+     */
+    public void sendLogin(LoginRequest login) throws IOException {
+        attemptedLogin = login;
+        send(login);
+    }
+
+    /**
+     * Checks whether a request failed because the server did not answer in time, in which
+     * case its outcome is unknown and the same request may be retried.
+     *
+     * @param error the failure of a future returned by {@link #request(ClientRequest, Duration)}
+     * @return true if the request timed out
+     */
+    public static boolean isTimeout(Throwable error) {
+        return (error instanceof CompletionException ? error.getCause() : error) instanceof TimeoutException;
+    }
+
+    /**
+     * Returns a message for the user about a request that got no response.
+     *
+     * @param error the failure of a future returned by {@link #request(ClientRequest, Duration)}
+     * @return the message to show
+     */
+    public static String describeFailure(Throwable error) {
+        return isTimeout(error)
+                ? "The server did not answer in time. Please try again."
+                : "Could not reach the server. Please check the connection and try again.";
+    }
+
+    /**
+     * Writes a message to the server.
+     */
+    private void send(Object msg) throws IOException {
+        synchronized (sendLock) {
             super.sendToServer(msg);
+        }
+    }
+
+    /**
+     * Asks for compressed responses and starts the heartbeat once the connection is open. The
+     * server closes connections that stay silent for longer than a few heartbeat intervals.
+     */
+    @Override
+    protected synchronized void connectionEstablished() {
+        if (COMPRESSION) {
+            try {
+                send(new ClientRequest("negotiate_compression",
+                        new Object[]{CompressedPayload.CODEC, CompressedPayload.dictionaryChecksum()}));
+            } catch (IOException e) {
+                System.err.println("Compression could not be negotiated: " + e.getMessage());
+            }
+        }
+        if (heartbeat == null) {
+            heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "client-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            });
+            heartbeat.scheduleAtFixedRate(this::sendHeartbeat, HEARTBEAT_INTERVAL_SECONDS,
+                    HEARTBEAT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private void sendHeartbeat() {
+        try {
+            send(new ClientRequest("ping", new Object[0]));
         } catch (IOException e) {
-            e.printStackTrace();
+            System.err.println("Heartbeat could not be sent: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the heartbeat and fails the requests still waiting for a response once the
+     * connection is closed on purpose. A broken connection closed by the reconnect thread keeps
+     * the requests that are safe to repeat for replay instead.
+     */
+    @Override
+    protected void connectionClosed() {
+        connectionLost(new IOException("Connection to the server was closed."), connectionManager.isReconnecting());
+    }
+
+    /**
+     * Stops the heartbeat and starts reconnecting when the connection breaks.
+     *
+     * @param exception the failure
+     */
+    @Override
+    protected void connectionException(Exception exception) {
+        System.err.println("Connection to the server failed: " + exception.getMessage());
+        connectionLost(new IOException("Connection to the server failed.", exception), true);
+    }
+
+    /**
+     * Stops the heartbeat and fails the requests still waiting for a response. When reconnecting,
+     * the requests that are safe to repeat are kept for replay instead.
+     */
+    private void connectionLost(IOException cause, boolean reconnect) {
+        synchronized (this) {
+            if (heartbeat != null) {
+                heartbeat.shutdownNow();
+                heartbeat = null;
+            }
+        }
+        for (PendingRequest pending : pendingRequests.values()) {
+            if (!reconnect || !holdForReplay(pending.request)) {
+                pending.future.completeExceptionally(cause);
+            }
+        }
+        if (reconnect) {
+            connectionManager.connectionLost();
         }
     }
 
@@ -319,12 +593,33 @@ public class ClientController extends AbstractClient {
     @Override
     protected void handleMessageFromServer(Object msg) {
         if (msg instanceof ServerResponse response) {
+            if (response.getData() instanceof CompressedPayload payload && !inflate(response, payload)) {
+                return;
+            }
             handleServerResponse(response);
         } else {
             System.out.println("Unknown message type from server: " + msg.getClass().getSimpleName());
         }
     }
 
+    /**
+     * Replaces the compressed data of a response with the data it holds.
+     *
+     * @return false if the payload could not be read and the response is dropped
+     */
+    private boolean inflate(ServerResponse response, CompressedPayload payload) {
+        long start = System.nanoTime();
+        try {
+            response.setData(payload.decompress());
+        } catch (IOException e) {
+            System.err.println("Dropping " + response.getCommand() + ": " + e.getMessage());
+            return false;
+        }
+        PayloadStats.record(response.getCommand(), payload.getCompressedLength(), payload.getRawLength(),
+                System.nanoTime() - start);
+        return true;
+    }
+
     /**
      * Unified handler for {@link ServerResponse} messages from the server.
      * Decodes the command and routes to the appropriate GUI logic.
@@ -332,11 +627,26 @@ public class ClientController extends AbstractClient {
      * @param response the {@link ServerResponse} object
      */
     private void handleServerResponse(ServerResponse response) {
+        PendingRequest pending = pendingRequests.remove(response.getRequestId());
+        if (pending != null) {
+            pending.future.complete(response);
+            return;
+        }
+
         String command = response.getCommand();
         boolean success = response.isSuccess();
         String message = response.getMessage();
         Object data = response.getData();
 
+        if (data instanceof ResultChunk<?> chunk) {
+            data = assembleChunk(command, success, chunk);
+            if (data == null) {
+                return; // more chunks to come
+            }
+        } else {
+            pendingChunks.remove(command);
+        }
+
         switch (command) {
             case "LOGIN" -> handleLoginResponse(success, message);
             case "SUBSCRIBER_DATA" -> handleSubscriberData(data);
@@ -358,15 +668,64 @@ public class ClientController extends AbstractClient {
             case "CancelReservationByCode" -> handleCancelReservationByCodeResponse(message);
             case "ADMIN_ACTIVE_SESSIONS" -> handleAdminActiveSessionsResponse(data);
             case "ADMIN_SUBSCRIBERS" -> handleAdminSubscribersResponse(data);
+            case "ADMIN_SUBSCRIBERS_PAGE" -> handleAdminSubscribersPageResponse(message, data);
+            case "ADMIN_ACTIVE_SESSIONS_PAGE" -> handleAdminActiveSessionsPageResponse(message, data);
             case "ADMIN_LOGS" -> handleAdminLogsResponse(data);
             case "monthly_parking_time_report_result" -> handleMonthlyParkingTimeReport(response);
             case "monthly_subscriber_report_result" -> handleMonthlySubscriberReport(response);
+            case "regenerate_reports_result" -> handleRegenerateReports(success, message);
+            case "import_subscribers_result" -> handleImportSubscribersResult(success, message, data);
+            case "unique_subscribers_result" -> handleUniqueSubscribers(success, message, data);
+            case "occupancy_series_result" -> handleOccupancySeries(success, message, data);
+            case "occupancy_heatmap_result" -> handleOccupancyHeatmap(success, message, data);
+            case "parking_duration_result" -> handleParkingDurationReport(success, message, data);
             case "get_subscriber_contact" -> handleSubscriberContactResponse(success, message, data);
+            case "BUSY" -> handleBusyResponse(message, data);
+            case "PONG" -> { } // heartbeat answered
+            case "COMPRESSION" -> System.out.println(success ? "Server compresses large responses with " + message + "."
+                    : "Server sends uncompressed responses.");
 
             default -> System.out.println("Unknown server response command: " + command);
         }
 
     }
+    /**
+     * Handles a request the server rejected because it was overloaded or the client sent too
+     * many requests. Screens waiting on a future receive the BUSY response themselves; a
+     * rejected subscriber import is reported as failed; other requests are only logged, since
+     * their screens keep their previous data.
+     *
+     * @param message the reason given by the server
+     * @param data    the rejected command
+     */
+    private void handleBusyResponse(String message, Object data) {
+        System.out.println("Server rejected " + data + ": " + message);
+        if ("import_subscribers".equals(data)) {
+            handleImportSubscribersResult(false, "Import failed: " + message, null);
+        }
+    }
+
+    /**
+     * Appends a chunk of a streamed result to the rows received so far for its command.
+     *
+     * @param command the response command the chunk belongs to
+     * @param success false if the server aborted the stream
+     * @param chunk   the received chunk
+     * @return the complete list of rows after the last chunk (empty if the stream failed), or null if more chunks follow
+     */
+    private List<Object> assembleChunk(String command, boolean success, ResultChunk<?> chunk) {
+        if (chunk.getSequence() == 0) {
+            pendingChunks.remove(command);
+        }
+        List<Object> rows = pendingChunks.computeIfAbsent(command, key -> new ArrayList<>());
+        rows.addAll(chunk.getRows());
+        if (!chunk.isLast()) {
+            return null;
+        }
+        pendingChunks.remove(command);
+        return success ? rows : new ArrayList<>();
+    }
+
     /**
      * Handles the server response for the monthly parking time report.
      * Delegates the data to the adminReportsController to display.
@@ -393,6 +752,90 @@ public class ClientController extends AbstractClient {
         }
     }
 
+    /**
+     * Handles the server response for a distinct subscriber count request.
+     * Delegates the result to the adminReportsController to display.
+     *
+     * @param success whether the counts were computed
+     * @param message the server message
+     * @param data    the {@link UniqueSubscriberReport}, or null on failure
+     */
+    private void handleUniqueSubscribers(boolean success, String message, Object data) {
+        if (adminReportsController != null) {
+            adminReportsController.loadUniqueSubscriberReport(success ? (UniqueSubscriberReport) data : null, message);
+        }
+    }
+
+    /**
+     * Handles the server response for an occupancy time series request.
+     * Delegates the result to the adminReportsController to display.
+     *
+     * @param success whether the series was read
+     * @param message the server message
+     * @param data    the {@link OccupancySeries}, or null on failure
+     */
+    private void handleOccupancySeries(boolean success, String message, Object data) {
+        if (adminReportsController != null) {
+            adminReportsController.loadOccupancySeries(success ? (OccupancySeries) data : null, message);
+        }
+    }
+
+    /**
+     * Handles the server response for an occupancy heatmap request.
+     * Delegates the result to the adminReportsController to display.
+     *
+     * @param success whether the heatmap was built
+     * @param message the server message
+     * @param data    the {@link OccupancyHeatmap}, or null on failure
+     */
+    private void handleOccupancyHeatmap(boolean success, String message, Object data) {
+        if (adminReportsController != null) {
+            adminReportsController.loadOccupancyHeatmap(success ? (OccupancyHeatmap) data : null, message);
+        }
+    }
+
+    /**
+     * Handles the server response for a parking duration report request.
+     * Delegates the result to the adminReportsController to display.
+     *
+     * @param success whether the report was built
+     * @param message the server message
+     * @param data    the {@link ParkingDurationReport}, or null on failure
+     */
+    private void handleParkingDurationReport(boolean success, String message, Object data) {
+        if (adminReportsController != null) {
+            adminReportsController.loadParkingDurationReport(success ? (ParkingDurationReport) data : null, message);
+        }
+    }
+
+    /**
+     * Handles the server response for a report regeneration request.
+     * Delegates the result to the adminReportsController to display.
+     *
+     * @param success whether the regeneration succeeded
+     * @param message the server message
+     */
+    private void handleRegenerateReports(boolean success, String message) {
+        if (adminReportsController != null) {
+            adminReportsController.onReportsRegenerated(success, message);
+        }
+    }
+
+    /**
+     * Handles the summary of a bulk subscriber import.
+     * Passes it to the {@link AdminSubscribersController} for display.
+     *
+     * @param success whether the import ran to completion
+     * @param message the server's summary or error message
+     * @param data    the {@link ImportSummary}, or null if the import was aborted
+     */
+    private void handleImportSubscribersResult(boolean success, String message, Object data) {
+        AdminSubscribersController controller = getAdminSubscribersController();
+        if (controller != null) {
+            controller.onImportFinished(success, message, data instanceof ImportSummary summary ? summary : null);
+        }
+    }
+
 	/**
      * Handles the login response.
      * 
@@ -405,6 +848,7 @@ public class ClientController extends AbstractClient {
                 guiController.handleLoginResponse(success, message);
             }
             if (success) {
+                connectionManager.setSessionLogin(attemptedLogin);
                 String prefix = "Login successful: ";
                 if (message.startsWith(prefix)) {
                     setUserRole(message.substring(prefix.length()));
@@ -550,25 +994,24 @@ public class ClientController extends AbstractClient {
 
 
     /**
-     * Handles the result of a parking deposit attempt.
+     * Handles the result of a parking deposit attempt that arrived after the deposit screen
+     * stopped waiting for it, so the subscriber still learns the outcome.
      *
      * @param success success flag
      * @param message message text
      */
     private void handleParkingDeposit(boolean success, String message) {
         Platform.runLater(() -> {
-            if (!success && "You already have an active parking reservation.".equals(message)) {
-                CarDepositController controller = getCarDepositController();
-                if (controller != null) {
-                    controller.setDepositRejected(true);
-                }
-            }
-            
+            Alert alert = new Alert(success ? Alert.AlertType.INFORMATION : Alert.AlertType.ERROR);
+            alert.setTitle(success ? "Deposit Confirmed" : "Deposit Failed");
+            alert.setHeaderText(null);
+            alert.setContentText(message);
+            alert.showAndWait();
         });
     }
 
     /**
-     * Handles the result of an extend parking request.
+     * Handles the result of an extend parking request that arrived after the screen stopped waiting for it.
      *
      * @param success success flag
      * @param message message text
@@ -582,7 +1025,7 @@ public class ClientController extends AbstractClient {
     }
 
     /**
-     * Handles the result of a car pickup request.
+     * Handles the result of a car pickup request that arrived after the screen stopped waiting for it.
      *
      * @param success success flag
      * @param message message text
@@ -657,8 +1100,8 @@ public class ClientController extends AbstractClient {
     }
 
     /**
-     * Handles the server response for a reservation attempt.
-     * Shows a confirmation or error message to the user.
+     * Handles the server response for a reservation attempt that arrived after the reservation
+     * screen stopped waiting for it. Shows a confirmation or error message to the user.
      *
      * @param success True if reservation succeeded, false otherwise.
      * @param message The server message to show.
@@ -780,6 +1223,56 @@ public class ClientController extends AbstractClient {
         }
     }
     
+    /**
+     * Handles a page of subscriber search results computed by the server.
+     * Passes the page to the {@link AdminSubscribersController} for display.
+     *
+     * @param message The message from the server, shown if the search failed.
+     * @param data    The data object from the server, expected to be a {@link ResultPage} of {@link Subscriber}.
+     */
+    @SuppressWarnings("unchecked")
+    private void handleAdminSubscribersPageResponse(String message, Object data) {
+        AdminSubscribersController controller = getAdminSubscribersController();
+        if (!(data instanceof ResultPage<?> page)) {
+            System.err.println("Invalid or failed subscriber search data.");
+            if (controller != null) {
+                controller.showSearchError(message);
+            }
+            return;
+        }
+
+        if (controller != null) {
+            controller.setSearchResults((ResultPage<Subscriber>) page);
+        } else {
+            System.err.println("AdminSubscribersController not registered.");
+        }
+    }
+
+    /**
+     * Handles a page of active parking session search results computed by the server.
+     * Passes the page to the {@link AdminOrdersController} for display.
+     *
+     * @param message The message from the server, shown if the search failed.
+     * @param data    The data object from the server, expected to be a {@link ResultPage} of {@link ParkingHistory}.
+     */
+    @SuppressWarnings("unchecked")
+    private void handleAdminActiveSessionsPageResponse(String message, Object data) {
+        AdminOrdersController controller = getAdminOrdersController();
+        if (!(data instanceof ResultPage<?> page)) {
+            System.err.println("Invalid or failed session search data.");
+            if (controller != null) {
+                controller.showSearchError(message);
+            }
+            return;
+        }
+
+        if (controller != null) {
+            controller.setSearchResults((ResultPage<ParkingHistory>) page);
+        } else {
+            System.err.println("AdminOrdersController not registered.");
+        }
+    }
+
     private void handleAdminLogsResponse(Object data) {
         if (!(data instanceof List<?> rawList)) {
             System.err.println("Invalid or missing log data.");
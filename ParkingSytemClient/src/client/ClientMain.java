@@ -5,6 +5,7 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import utils.SceneNavigator;
 
 /**
  * Entry point for the BPARK client application.
@@ -14,7 +15,8 @@ public class ClientMain extends Application {
 
     /**
      * Initializes the primary stage of the application.
-     * Loads the ConnectView.fxml and sets it as the main scene.
+     * Loads the ConnectView.fxml and sets it as the main scene, and starts preloading
+     * the other screens while the user enters the server details.
      *
      * @param primaryStage the primary window for the JavaFX application
      * @throws Exception if the FXML cannot be loaded
@@ -26,6 +28,25 @@ public class ClientMain extends Application {
         primaryStage.setTitle("Connect to Server");
         primaryStage.setScene(scene);
         primaryStage.show();
+
+        SceneNavigator.preload(
+                "/client/MainMenu.fxml",
+                "/guestGui/PublicAvailability.fxml",
+                "/subscriberGui/SubscriberDashboard.fxml",
+                "/subscriberGui/SubscriberSettings.fxml",
+                "/subscriberGui/EditSubscriberDetails.fxml",
+                "/subscriberGui/CarDeposit.fxml",
+                "/subscriberGui/CarDepositReserved.fxml",
+                "/subscriberGui/CarPickup.fxml",
+                "/subscriberGui/ExtendParking.fxml",
+                "/subscriberGui/ReservationRequest.fxml",
+                "/subscriberGui/ForgotCode.fxml",
+                "/adminGui/AdminMainMenu.fxml",
+                "/adminGui/AdminOrders.fxml",
+                "/adminGui/AdminLogs.fxml",
+                "/adminGui/AdminSubscriberManagement.fxml",
+                "/adminGui/AdminParkingHistory.fxml",
+                "/adminGui/AdminReports.fxml");
     }
 
     /**
@@ -4,9 +4,10 @@ import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
+import utils.ConnectivityBanner;
+import utils.SceneNavigator;
 
 import java.io.IOException;
 
@@ -73,11 +74,10 @@ public class ConnectViewController {
             Stage stage = (Stage) connectButton.getScene().getWindow();
             mainMenuController.setStage(stage);                   // Pass stage to controller
             ClientController.setPrimaryStage(stage);             // Save globally for reuse
+            ConnectivityBanner.install(stage, client.getConnectionManager());
 
             // Show main menu
-            stage.setScene(new Scene(root));
-            stage.setTitle("BPARK - Main Menu");
-            stage.show();
+            SceneNavigator.setRoot(stage, root, "BPARK - Main Menu");
 
         } catch (NumberFormatException e) {
             statusLabel.setText("Invalid port number.");
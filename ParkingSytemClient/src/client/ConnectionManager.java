@@ -0,0 +1,223 @@
+package client;
+
+import bpark_common.ClientRequest;
+import entities.LoginRequest;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps the connection of a {@link ClientController} to the server alive.
+ * <p>
+ * When the connection is lost, a background thread reconnects with exponential backoff and
+ * jitter: before attempt n it waits {@link #MIN_DELAY_MS} plus a random time between zero and
+ * min({@link #MAX_DELAY_MS}, {@link #BASE_DELAY_MS} * 2^n), so kiosks that lost the server at the
+ * same moment, for example during a deploy, come back spread out instead of all at once.
+ * Before the first attempt it waits for the reader thread of the broken connection to end,
+ * closing the connection if it does not, since opening a connection while the old one still
+ * counts as connected does nothing.
+ * </p>
+ * <p>
+ * Requests with an idempotency key that were not sent, or not answered, when the connection was
+ * lost are kept in a bounded queue and sent again after reconnecting; the server answers a
+ * repeated key with its original response. Other requests fail right away. After reconnecting,
+ * the session of the logged-in user is resumed with the login it was opened with, before the
+ * queued requests are replayed.
+ * </p>
+ * <p>
+ * The connection state and a status text are exposed as JavaFX properties, updated on the
+ * JavaFX thread.
+ * </p>
+ */
+public class ConnectionManager {
+
+    /**
+     * State of the connection to the server.
+     */
+    public enum ConnectionState {
+        /** Connected to the server. */
+        CONNECTED,
+        /** The connection was lost and is being re-established. */
+        RECONNECTING
+    }
+
+    /** Delay before every reconnect attempt, added to the random part. */
+    private static final long MIN_DELAY_MS = 200;
+
+    /** Cap of the random part of the delay of the first reconnect attempt. */
+    private static final long BASE_DELAY_MS = 500;
+
+    /** How long the reader thread of a broken connection is given to end before it is closed. */
+    private static final long READER_EXIT_TIMEOUT_MS = 2_000;
+
+    /** Largest delay between reconnect attempts. */
+    private static final long MAX_DELAY_MS = 30_000;
+
+    /** Most requests kept for replay; further ones fail. */
+    private static final int MAX_REPLAY_REQUESTS = 32;
+
+    private final ClientController client;
+    private final Deque<ClientRequest> replayQueue = new ArrayDeque<>();
+    private final ReadOnlyObjectWrapper<ConnectionState> state = new ReadOnlyObjectWrapper<>(ConnectionState.CONNECTED);
+    private final ReadOnlyStringWrapper statusText = new ReadOnlyStringWrapper("Connected");
+
+    /** The login of the current session, sent again to resume it after reconnecting. */
+    private volatile LoginRequest sessionLogin;
+
+    private Thread reconnector;
+
+    /**
+     * @param client the client whose connection is managed
+     */
+    public ConnectionManager(ClientController client) {
+        this.client = client;
+    }
+
+    /**
+     * @return the state of the connection
+     */
+    public ReadOnlyObjectProperty<ConnectionState> connectionStateProperty() {
+        return state.getReadOnlyProperty();
+    }
+
+    /**
+     * @return a text describing the connection state for the user
+     */
+    public ReadOnlyStringProperty statusTextProperty() {
+        return statusText.getReadOnlyProperty();
+    }
+
+    /**
+     * Remembers the login of the current session, or forgets it on logout.
+     *
+     * @param login the successful login, or null
+     */
+    public void setSessionLogin(LoginRequest login) {
+        this.sessionLogin = login;
+    }
+
+    /**
+     * Keeps a request to be sent again after reconnecting.
+     *
+     * @param request a request with an idempotency key
+     * @return false if the queue is full and the request was not kept
+     */
+    public synchronized boolean queueForReplay(ClientRequest request) {
+        if (replayQueue.contains(request)) {
+            return true;
+        }
+        if (replayQueue.size() >= MAX_REPLAY_REQUESTS) {
+            return false;
+        }
+        replayQueue.addLast(request);
+        return true;
+    }
+
+    /**
+     * @return true while the reconnect thread is running
+     */
+    public synchronized boolean isReconnecting() {
+        return reconnector != null;
+    }
+
+    /**
+     * Starts reconnecting in the background, unless that is already running.
+     */
+    public synchronized void connectionLost() {
+        if (reconnector != null) {
+            return;
+        }
+        setState(ConnectionState.RECONNECTING, "Connection lost. Reconnecting...");
+        reconnector = new Thread(this::reconnect, "client-reconnect");
+        reconnector.setDaemon(true);
+        reconnector.start();
+    }
+
+    /**
+     * Body of the reconnect thread: tries to reconnect until it succeeds, then resumes the
+     * session and replays the queued requests.
+     */
+    private void reconnect() {
+        try {
+            awaitDisconnected();
+            for (int attempt = 0; ; attempt++) {
+                long cap = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << Math.min(attempt, 16));
+                long delay = MIN_DELAY_MS + ThreadLocalRandom.current().nextLong(cap + 1);
+                setState(ConnectionState.RECONNECTING, String.format(
+                        "Connection lost. Reconnecting in %.1f s (attempt %d)...", delay / 1000.0, attempt + 1));
+                Thread.sleep(delay);
+
+                try {
+                    client.openConnection();
+                    if (client.isConnected()) {
+                        break;
+                    }
+                } catch (IOException e) {
+                    System.err.println("Reconnect attempt " + (attempt + 1) + " failed: " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                reconnector = null;
+            }
+            return;
+        }
+
+        LoginRequest login = sessionLogin;
+        if (login != null) {
+            client.request(new ClientRequest("resume_session", new Object[]{login}), ClientController.REQUEST_TIMEOUT)
+                  .whenComplete((response, error) -> System.out.println("Session resume "
+                          + (response != null && response.isSuccess() ? "succeeded." : "failed.")));
+        }
+
+        List<ClientRequest> replay;
+        synchronized (this) {
+            replay = new ArrayList<>(replayQueue);
+            replayQueue.clear();
+            reconnector = null;
+        }
+        setState(ConnectionState.CONNECTED, "Connected");
+        for (ClientRequest request : replay) {
+            client.replay(request);
+        }
+        if (!client.isConnected()) {
+            // Lost again while this thread was still marked as running
+            connectionLost();
+        }
+    }
+
+    /**
+     * Waits for the reader thread of the lost connection to end, and closes the connection if
+     * it is still running after {@link #READER_EXIT_TIMEOUT_MS}, for example because a send
+     * failed while the socket still reads.
+     */
+    private void awaitDisconnected() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + READER_EXIT_TIMEOUT_MS;
+        while (client.isConnected() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        if (client.isConnected()) {
+            try {
+                client.closeConnection();
+            } catch (IOException e) {
+                System.err.println("Closing the broken connection failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void setState(ConnectionState newState, String text) {
+        Platform.runLater(() -> {
+            state.set(newState);
+            statusText.set(text);
+        });
+    }
+}
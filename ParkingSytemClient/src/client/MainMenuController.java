@@ -7,22 +7,19 @@ import entities.LoginRequest;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
 import subscriberGui.SubscriberDashboardController;
+import utils.ReusableView;
+import utils.SceneNavigator;
 
 import java.io.IOException;
-import java.net.URL;
 
 /**
  * Controller for the main client menu.
  * Handles login actions and access to public parking availability.
  */
-public class MainMenuController implements ChatIF {
+public class MainMenuController implements ChatIF, ReusableView {
 
     private ClientController client;
     private Stage stage; // The window used to change scenes
@@ -95,6 +92,20 @@ public class MainMenuController implements ChatIF {
         btnCheckAvailability.setOnAction(this::checkAvailability);
     }
 
+    /**
+     * Clears the credentials, access mode and status left from the previous login.
+     */
+    @Override
+    public void resetView() {
+        txtUsername.clear();
+        txtPassword.clear();
+        txtAltId.clear();
+        toggleHome.setSelected(false);
+        toggleShop.setSelected(false);
+        statusLabel.setText("Status will appear here");
+        isScanTagLogin = false;
+    }
+
     /**
      * Sends a login request to the server with the entered username, password, and selected access mode.
      * Validates input and prevents login if access mode is not selected or fields are empty.
@@ -122,7 +133,7 @@ public class MainMenuController implements ChatIF {
         LoginRequest loginRequest = new LoginRequest(username, password, mode);
 
         try {
-            ClientController.getClient().sendToServer(loginRequest);
+            ClientController.getClient().sendLogin(loginRequest);
         } catch (IOException e) {
             showAlert("Failed to send login request.");
             e.printStackTrace();
@@ -198,34 +209,21 @@ public class MainMenuController implements ChatIF {
      */
     public void redirectBasedOnRole(String role) {
         try {
-            FXMLLoader loader;
-            Parent root;
+            String fxmlPath;
 
             switch (role) {
                 case "admin":
-                	loader = new FXMLLoader(getClass().getResource("/adminGui/AdminMainMenu.fxml"));
-                	break;
                 case "supervisor":
-                    loader = new FXMLLoader(getClass().getResource("/adminGui/AdminMainMenu.fxml"));
+                    fxmlPath = "/adminGui/AdminMainMenu.fxml";
                     break;
                 case "subscriber":
-                    loader = new FXMLLoader(getClass().getResource("/subscriberGui/SubscriberDashboard.fxml"));
+                    fxmlPath = "/subscriberGui/SubscriberDashboard.fxml";
                     break;
                 default:
                     showAlert("Unknown role: " + role);
                     return;
             }
 
-            root = loader.load();
-            Object controller = loader.getController();
-
-            // Pass client to the correct controller
-            if (controller instanceof AdminMainMenuController adminController) {
-                adminController.setClient(client);
-            } else if (controller instanceof SubscriberDashboardController subscriberController) {
-                subscriberController.setClient(client);
-            }
-
             // Reuse the current login stage instead of opening a new window
             Stage currentStage = this.stage;
             if (currentStage == null && txtUsername != null && txtUsername.getScene() != null) {
@@ -235,15 +233,22 @@ public class MainMenuController implements ChatIF {
                 currentStage = ClientController.getPrimaryStage(); // fallback
             }
 
-            if (currentStage != null) {
-                //Set primary stage for future event-less navigation
-                ClientController.setPrimaryStage(currentStage);
-
-                currentStage.setScene(new Scene(root));
-                currentStage.setTitle("BPARK - " + role);
-                currentStage.show();
-            } else {
+            if (currentStage == null) {
                 showAlert("Could not find a valid window to load the scene.");
+                return;
+            }
+
+            //Set primary stage for future event-less navigation
+            ClientController.setPrimaryStage(currentStage);
+            Object controller = SceneNavigator.navigateToAndGetController(null, fxmlPath, "BPARK - " + role);
+
+            // Pass client to the correct controller
+            if (controller instanceof AdminMainMenuController adminController) {
+                adminController.setClient(client);
+            } else if (controller instanceof SubscriberDashboardController subscriberController) {
+                subscriberController.setClient(client);
+            } else if (controller == null) {
+                showAlert("Failed to load " + role + " dashboard.");
             }
 
         } catch (Exception e) {
@@ -260,26 +265,9 @@ public class MainMenuController implements ChatIF {
      */
     @FXML
     private void checkAvailability(ActionEvent event) {
-        try {
-            URL fxmlLocation = getClass().getResource("/guestGui/PublicAvailability.fxml");
-
-            if (fxmlLocation == null) {
-                throw new IOException("FXML file not found: /guestGui/PublicAvailability.fxml");
-            }
-
-            FXMLLoader loader = new FXMLLoader(fxmlLocation);
-            Parent root = loader.load();
-
-            Stage currentStage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-            currentStage.setScene(new Scene(root));
-            currentStage.setTitle("Parking Availability");
-            currentStage.show();
-
-        } catch (IOException e) {
-            e.printStackTrace();
-            showAlert("Failed to load Public Availability screen.");
-        }
+        SceneNavigator.navigateTo(event, "/guestGui/PublicAvailability.fxml", "Parking Availability");
     }
+
     
     /**
      * Handles login using a scanned tag (ID input). Sends a request to the server to retrieve login credentials.
@@ -0,0 +1,94 @@
+package client;
+
+import bpark_common.ClientRequest;
+import bpark_common.ServerResponse;
+
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client-side cache of monthly reports, revalidated with the server by ETag.
+ * <p>
+ * A cached report is shown right away and then revalidated: the request carries its ETag, and
+ * the server answers "not modified" without sending the report again while it is current.
+ * Reports of sealed months come from the server's own cache, so revalidating them costs no
+ * database query. Adjacent months can be prefetched in the background, so flipping through
+ * the months shows each report without waiting.
+ * </p>
+ */
+public class MonthlyReportCache {
+
+    private final ClientController client;
+
+    /** The last response with a report, or with the absence of one, by command and month. */
+    private final Map<String, ServerResponse> responses = new ConcurrentHashMap<>();
+
+    /**
+     * @param client the client used to request reports
+     */
+    public MonthlyReportCache(ClientController client) {
+        this.client = client;
+    }
+
+    /**
+     * Returns the cached response for a report, without asking the server.
+     *
+     * @param command the report request command
+     * @param month   the month
+     * @return the cached response, or null if the report was never fetched
+     */
+    public ServerResponse getCached(String command, YearMonth month) {
+        return responses.get(key(command, month));
+    }
+
+    /**
+     * Fetches a report, revalidating the cached one if there is one.
+     *
+     * @param command the report request command
+     * @param month   the month
+     * @return a future completed with the current response; its data is the report, or null if
+     *         the month has none. It fails if the server rejected or did not answer the request.
+     */
+    public CompletableFuture<ServerResponse> fetch(String command, YearMonth month) {
+        String key = key(command, month);
+        ServerResponse cached = responses.get(key);
+        Object[] params = cached == null
+                ? new Object[]{month.getYear(), month.getMonthValue()}
+                : new Object[]{month.getYear(), month.getMonthValue(), cached.getEtag()};
+
+        return client.request(new ClientRequest(command, params), ClientController.REQUEST_TIMEOUT)
+                .thenApply(response -> {
+                    if (response.getEtag() == null) {
+                        throw new CompletionException(new IllegalStateException(
+                                response.getCommand() + ": " + response.getMessage()));
+                    }
+                    if (response.isNotModified() && cached != null && cached.getEtag().equals(response.getEtag())) {
+                        return cached;
+                    }
+                    responses.put(key, response);
+                    return response;
+                });
+    }
+
+    /**
+     * Fetches a report in the background if it is not cached yet.
+     *
+     * @param command the report request command
+     * @param month   the month
+     */
+    public void prefetch(String command, YearMonth month) {
+        if (!responses.containsKey(key(command, month))) {
+            fetch(command, month).exceptionally(error -> {
+                System.out.println("Prefetch of " + command + " " + month + " failed: " + error.getMessage());
+                return null;
+            });
+        }
+    }
+
+    private static String key(String command, YearMonth month) {
+        return command + ":" + month;
+    }
+}
@@ -0,0 +1,71 @@
+package client;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts the compressed responses received from the server, with the bytes they took on the
+ * wire, the bytes they inflated to and the time spent inflating them. With
+ * {@code -Dbpark.debug.requests=true} each response is also logged together with the garbage
+ * collections since the previous one, so the effect of compression on slow links and on the
+ * client's memory can be read from the log.
+ */
+public class PayloadStats {
+
+    /** Logs every inflated response; enabled with {@code -Dbpark.debug.requests=true}. */
+    private static final boolean DEBUG_REQUESTS = Boolean.getBoolean("bpark.debug.requests");
+
+    private static long responses;
+    private static long wireBytes;
+    private static long rawBytes;
+    private static long inflateNanos;
+    private static long lastGcCount = gcCount();
+    private static long lastGcMillis = gcMillis();
+
+    private PayloadStats() {
+    }
+
+    /**
+     * Records an inflated response, and logs it when debugging requests.
+     *
+     * @param command         the response command
+     * @param compressedBytes the size of the payload on the wire
+     * @param raw             the size of the payload after inflating
+     * @param nanos           the time spent inflating and deserializing
+     */
+    public static synchronized void record(String command, int compressedBytes, int raw, long nanos) {
+        responses++;
+        wireBytes += compressedBytes;
+        rawBytes += raw;
+        inflateNanos += nanos;
+        if (!DEBUG_REQUESTS) {
+            return;
+        }
+
+        long count = gcCount();
+        long millis = gcMillis();
+        System.out.printf("Inflated %s: %d KB -> %d KB in %.1f ms | Total %d responses, %d KB on the wire, %d KB saved,"
+                        + " avg %.1f ms | GC since last: %d collections, %d ms%n",
+                command, compressedBytes / 1024, raw / 1024, nanos / 1_000_000.0,
+                responses, wireBytes / 1024, (rawBytes - wireBytes) / 1024, inflateNanos / 1_000_000.0 / responses,
+                count - lastGcCount, millis - lastGcMillis);
+        lastGcCount = count;
+        lastGcMillis = millis;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+}
@@ -1,6 +1,7 @@
 package subscriberGui;
 
 import bpark_common.ClientRequest;
+import bpark_common.ServerResponse;
 import client.ClientController;
 import entities.ParkingHistory;
 import javafx.application.Platform;
@@ -11,6 +12,7 @@ import javafx.scene.control.Label;
 import utils.SceneNavigator;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 /**
  * Controller for the Car Deposit confirmation screen.
@@ -27,8 +29,14 @@ public class CarDepositController {
 
     private int selectedSpotId = -1;
 
-    /** Flag to track if the deposit was rejected by the server. */
-    private boolean depositRejected = false;
+    /**
+     * The deposit sent last whose outcome is unknown because the server did not answer in time.
+     * Confirming again resends it with the same idempotency key.
+     */
+    private ClientRequest unansweredDeposit;
+
+    /** Whether a deposit is waiting for the server's answer. */
+    private boolean depositInProgress = false;
 
     /**
      * Called manually after the client is injected.
@@ -53,15 +61,6 @@ public class CarDepositController {
         this.client = client;
     }
 
-    /**
-     * Sets the rejection flag for the current deposit attempt.
-     *
-     * @param rejected true if the deposit was rejected by the server
-     */
-    public void setDepositRejected(boolean rejected) {
-        this.depositRejected = rejected;
-    }
-
     /**
      * Sets the assigned parking spot number to display on screen and stores it for saving.
      *
@@ -79,24 +78,27 @@ public class CarDepositController {
 
     /**
      * Called when the user clicks "Finish" to confirm the deposit.
-     * Sends a deposit ClientRequest to the server. Waits briefly for any
-     * rejection response before showing a success alert and returning to dashboard.
-     *
-     * The entry and exit times are rounded to the nearest quarter hour.
+     * Sends a deposit ClientRequest to the server and shows the outcome once the server
+     * answers: on success a confirmation alert and the dashboard, otherwise the server's
+     * reason. If the server does not answer in time, confirming again retries the same
+     * deposit, which the server applies at most once.
      *
      * @param event The button click event
      */
     @FXML
     private void confirmDeposit(ActionEvent event) {
-        if (client != null && selectedSpotId != -1) {
-            depositRejected = false; // reset before sending
+        if (client == null || selectedSpotId == -1 || depositInProgress) {
+            return;
+        }
 
+        ClientRequest request = unansweredDeposit;
+        if (request == null) {
             String subscriberCode = client.getCurrentSubscriber().getSubscriberCode();
 
-            // Get current time and round to nearest quarter hour
+            // Get current time
             LocalDateTime now = LocalDateTime.now();
 
-         // Build the ParkingHistory for deposit (does not need history_id)
+            // Build the ParkingHistory for deposit (does not need history_id)
             ParkingHistory deposit = new ParkingHistory(
                     0,
                     subscriberCode,
@@ -108,35 +110,47 @@ public class CarDepositController {
                     false,
                     false
                 );
+            request = new ClientRequest("car_deposit", new Object[]{deposit}, UUID.randomUUID().toString());
+        }
 
+        ClientRequest sent = request;
+        depositInProgress = true;
+        client.request(sent, ClientController.REQUEST_TIMEOUT).whenComplete((response, error) ->
+            Platform.runLater(() -> {
+                depositInProgress = false;
+                unansweredDeposit = ClientController.isTimeout(error) ? sent : null;
+                onDepositCompleted(response, error);
+            }));
+    }
 
-            // Send deposit as a ClientRequest
-            client.sendObjectToServer(
-                new ClientRequest("car_deposit", new Object[]{deposit})
-            );
+    /**
+     * Shows the outcome of a deposit request.
+     *
+     * @param response the server's response, or null if the request failed
+     * @param error    the failure, or null if the server answered
+     */
+    private void onDepositCompleted(ServerResponse response, Throwable error) {
+        if (response != null && response.isSuccess()) {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle("Deposit Confirmed");
+            alert.setHeaderText(null);
+            alert.setContentText("Your vehicle was successfully deposited.");
+            alert.showAndWait();
+
+            SceneNavigator.navigateTo(null,
+                "/subscriberGui/SubscriberDashboard.fxml",
+                "BPARK - Subscriber Dashboard");
+            return;
+        }
 
-            // Wait briefly to allow server to respond with error if needed
-            new Thread(() -> {
-                try {
-                    Thread.sleep(300); // brief delay
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-
-                Platform.runLater(() -> {
-                    if (!depositRejected) {
-                        Alert alert = new Alert(Alert.AlertType.INFORMATION);
-                        alert.setTitle("Deposit Confirmed");
-                        alert.setHeaderText(null);
-                        alert.setContentText("Your vehicle was successfully deposited.");
-                        alert.showAndWait();
-
-                        SceneNavigator.navigateTo(null,
-                            "/subscriberGui/SubscriberDashboard.fxml",
-                            "BPARK - Subscriber Dashboard");
-                    }
-                });
-            }).start();
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Deposit Failed");
+        alert.setHeaderText(null);
+        if (response != null) {
+            alert.setContentText(response.getMessage());
+        } else {
+            alert.setContentText(ClientController.describeFailure(error));
         }
+        alert.showAndWait();
     }
 }
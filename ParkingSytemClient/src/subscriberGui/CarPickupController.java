@@ -10,6 +10,9 @@ import bpark_common.ClientRequest;
 import client.ClientController;
 import entities.Subscriber;
 
+import java.util.Arrays;
+import java.util.UUID;
+
 /**
  * Controller for the CarPickup.fxml screen.
  * Handles the retrieval of a parked vehicle using a parking code.
@@ -32,6 +35,12 @@ public class CarPickupController {
     /** The client controller used for server communication. */
     private ClientController client;
 
+    /**
+     * The pickup sent last whose outcome is unknown because the server did not answer in time.
+     * Retrieving the same spot again resends it with the same idempotency key.
+     */
+    private ClientRequest unansweredPickup;
+
     /**
      * Injects the active client controller.
      *
@@ -53,7 +62,8 @@ public class CarPickupController {
 
     /**
      * Handles the action of retrieving the car.
-     * Validates the input and sends a car pickup request to the server.
+     * Validates the input, sends a car pickup request to the server and shows the response
+     * once it arrives. The button is disabled while the request is in flight.
      *
      * @param event The ActionEvent triggered by the button click.
      */
@@ -74,9 +84,21 @@ public class CarPickupController {
     	    return;
     	}
         Object[] params = { subCode, spotId };
-        ClientRequest request = new ClientRequest("car_pickup", params);
+        ClientRequest request = unansweredPickup != null && Arrays.equals(unansweredPickup.getParams(), params)
+                ? unansweredPickup
+                : new ClientRequest("car_pickup", params, UUID.randomUUID().toString());
         if (client != null) {
-            client.sendObjectToServer(request);
+            btnRetrieve.setDisable(true);
+            client.request(request, ClientController.REQUEST_TIMEOUT).whenComplete((response, error) ->
+                javafx.application.Platform.runLater(() -> {
+                    btnRetrieve.setDisable(false);
+                    unansweredPickup = ClientController.isTimeout(error) ? request : null;
+                    if (response != null) {
+                        handlePickupResponse(response.isSuccess(), response.getMessage());
+                    } else {
+                        handlePickupResponse(false, ClientController.describeFailure(error));
+                    }
+                }));
         }
     }
 
@@ -8,12 +8,23 @@ import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 import utils.SceneNavigator;
 
+import java.util.UUID;
+
 /**
  * Controller for the Extend Parking screen.
  * Handles logic for extending parking time by 4 hours.
  */
 public class ExtendParkingController {
 
+    /**
+     * The extension sent last whose outcome is unknown because the server did not answer in time.
+     * Finishing again resends it with the same idempotency key, so it is not applied twice.
+     */
+    private ClientRequest unansweredExtension;
+
+    /** Whether an extension is waiting for the server's answer. */
+    private boolean extensionInProgress = false;
+
     /**
      * Handles the "Back" button action to return to the Subscriber Dashboard.
      * Uses the SceneNavigator to ensure consistent navigation.
@@ -27,7 +38,8 @@ public class ExtendParkingController {
 
     /**
      * Handles the "Finish" button click to extend parking time.
-     * Sends a ClientRequest with the "extend_parking" command to the server.
+     * Sends a ClientRequest with the "extend_parking" command to the server and shows
+     * the response once it arrives.
      *
      * @param event the action event triggered by the button click
      */
@@ -39,10 +51,27 @@ public class ExtendParkingController {
             System.out.println("No subscriber is currently logged in.");
             return;
         }
+        if (extensionInProgress) {
+            return;
+        }
 
         // Send as a ClientRequest for protocol consistency
-        ClientRequest request = new ClientRequest("extend_parking", new Object[]{currentSubscriber.getSubscriberCode()});
-        ClientController.getClient().sendObjectToServer(request);
+        ClientRequest request = unansweredExtension != null
+                ? unansweredExtension
+                : new ClientRequest("extend_parking", new Object[]{currentSubscriber.getSubscriberCode()},
+                        UUID.randomUUID().toString());
+        extensionInProgress = true;
+        ClientController.getClient().request(request, ClientController.REQUEST_TIMEOUT).whenComplete((response, error) -> {
+            javafx.application.Platform.runLater(() -> {
+                extensionInProgress = false;
+                unansweredExtension = ClientController.isTimeout(error) ? request : null;
+            });
+            if (response != null) {
+                onUpdateResponse(response.isSuccess(), response.getMessage());
+            } else {
+                onUpdateResponse(false, ClientController.describeFailure(error));
+            }
+        });
     }
 
     /**
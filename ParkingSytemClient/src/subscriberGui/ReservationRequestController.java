@@ -8,9 +8,12 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
+import java.util.UUID;
 
 import bpark_common.ClientRequest;
+import bpark_common.ServerResponse;
 import client.ClientController;
+import javafx.application.Platform;
 import entities.Reservation;
 
 
@@ -29,6 +32,15 @@ public class ReservationRequestController {
 	@FXML
 	private Label lblResult;
 
+    /**
+     * The reservation sent last whose outcome is unknown because the server did not answer in time.
+     * Reserving the same date and time again resends it with the same idempotency key.
+     */
+    private ClientRequest unansweredReservation;
+
+    /** Whether a reservation is waiting for the server's answer. */
+    private boolean reservationInProgress = false;
+
 
     /**
      * Handles the "Back" button action to return to the Subscriber Dashboard.
@@ -132,10 +144,15 @@ public class ReservationRequestController {
      * and sends it to the server for database insertion.
      *
      * If the date or time is not picked, displays an error message.
-     * Otherwise, builds the Reservation object and sends it to the server in a ClientRequest.
+     * Otherwise, builds the Reservation object, sends it to the server in a ClientRequest
+     * and shows the server's answer once it arrives.
      */
     @FXML
     private void onReservationClick() {
+        if (reservationInProgress) {
+            return;
+        }
+
         // Get selected date and time from the UI
         LocalDate selectedDate = datePicker.getValue();
         LocalTime selectedTime = timeCombo.getValue();
@@ -173,16 +190,49 @@ public class ReservationRequestController {
             "active"            // status
         );
 
-        // Send the reservation object to the server for DB insertion
-        ClientRequest request = new ClientRequest("add_reservation", new Object[]{reservation});
-        ClientController.getClient().sendObjectToServer(request);
+        // Send the reservation object to the server for DB insertion; a retry of an unanswered
+        // reservation for the same time keeps its idempotency key
+        ClientRequest request = unansweredReservation != null
+                && ((Reservation) unansweredReservation.getParams()[0]).getReservationDate().equals(reservationDate)
+                ? unansweredReservation
+                : new ClientRequest("add_reservation", new Object[]{reservation}, UUID.randomUUID().toString());
+        reservationInProgress = true;
+        ClientController.getClient().request(request, ClientController.REQUEST_TIMEOUT).whenComplete((response, error) ->
+            Platform.runLater(() -> {
+                reservationInProgress = false;
+                unansweredReservation = ClientController.isTimeout(error) ? request : null;
+                onReservationCompleted(response, error);
+            }));
 
         // Show a loading or confirmation message to the user
         lblResult.setText("Sending reservation request...");
         lblResult.setStyle("-fx-text-fill: blue;");
     }
 
-
-
-
+    /**
+     * Shows the outcome of a reservation request, and returns to the dashboard after a
+     * successful reservation.
+     *
+     * @param response the server's response, or null if the request failed
+     * @param error    the failure, or null if the server answered
+     */
+    private void onReservationCompleted(ServerResponse response, Throwable error) {
+        boolean success = response != null && response.isSuccess();
+        String message = response != null ? response.getMessage() : ClientController.describeFailure(error);
+
+        lblResult.setText(success ? "Reservation confirmed." : message);
+        lblResult.setStyle(success ? "-fx-text-fill: green;" : "-fx-text-fill: red;");
+
+        Alert alert = new Alert(success ? Alert.AlertType.INFORMATION : Alert.AlertType.ERROR);
+        alert.setTitle(success ? "Reservation Success" : "Reservation Failed");
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+
+        if (success) {
+            SceneNavigator.navigateTo(null,
+                "/subscriberGui/SubscriberDashboard.fxml",
+                "BPARK - Subscriber Dashboard");
+        }
+    }
 }
@@ -0,0 +1,45 @@
+package utils;
+
+import client.ConnectionManager;
+import client.ConnectionManager.ConnectionState;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.stage.Popup;
+import javafx.stage.Stage;
+
+/**
+ * Banner at the top of the main window that is shown while the connection to the server is
+ * lost, with the reconnect status of the {@link ConnectionManager}. It is a popup over the
+ * window, so it stays in place when screens are swapped.
+ */
+public class ConnectivityBanner {
+
+    private ConnectivityBanner() {
+    }
+
+    /**
+     * Shows the banner on a window whenever the connection is not established.
+     *
+     * @param stage             the main window
+     * @param connectionManager the manager of the client's connection
+     */
+    public static void install(Stage stage, ConnectionManager connectionManager) {
+        Label label = new Label();
+        label.setStyle("-fx-background-color: #c0392b; -fx-text-fill: white; "
+                + "-fx-padding: 6 12; -fx-font-size: 12px; -fx-font-weight: bold;");
+        label.setMouseTransparent(true);
+        label.textProperty().bind(connectionManager.statusTextProperty());
+
+        Popup popup = new Popup();
+        popup.getContent().add(label);
+
+        connectionManager.connectionStateProperty().addListener((obs, oldState, newState) -> {
+            if (newState == ConnectionState.CONNECTED) {
+                popup.hide();
+            } else if (stage.isShowing()) {
+                Scene scene = stage.getScene();
+                popup.show(stage, stage.getX() + scene.getX() + 8, stage.getY() + scene.getY() + 8);
+            }
+        });
+    }
+}
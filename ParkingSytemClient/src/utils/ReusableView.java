@@ -0,0 +1,20 @@
+package utils;
+
+/**
+ * Implemented by screen controllers whose view may be kept and shown again by the
+ * {@link SceneNavigator} instead of being loaded from FXML on every navigation.
+ * <p>
+ * A reused view keeps its nodes and its controller instance, including anything the
+ * previous visit typed or loaded. Before showing it again the navigator calls
+ * {@link #resetView()}, after which the caller injects the client as usual; setClient()
+ * is expected to request fresh data, exactly as on a newly loaded view.
+ * </p>
+ */
+public interface ReusableView {
+
+    /**
+     * Returns the view to the state of a freshly loaded one: clears inputs, selections,
+     * status messages and data left from the previous visit. Called on the JavaFX thread.
+     */
+    void resetView();
+}
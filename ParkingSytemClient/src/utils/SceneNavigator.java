@@ -1,20 +1,110 @@
 package utils;
 
 import client.ClientController;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.stage.Popup;
 import javafx.stage.Stage;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Utility class to handle general scene navigation within the application.
+ * <p>
+ * Navigation keeps one scene per window and swaps its root, so the window and its scene
+ * are reused across screens. Screens whose controller implements {@link ReusableView} are
+ * loaded once and kept: navigating back to them resets and shows the same nodes and
+ * controller instead of parsing the FXML again. {@link #preload(String...)} reads the FXML
+ * files and loads their controller classes on a background thread at startup, then builds
+ * the reusable screens while the application is idle.
+ * </p>
+ * <p>
+ * Running the client with {@code -Dbpark.debug.navigation=true} shows the time each
+ * navigation took, up to the first layout of the new screen, in an overlay at the top of
+ * the window.
+ * </p>
  */
 public class SceneNavigator {
 
+    /** Whether navigation timings are shown in the debug overlay. */
+    private static final boolean DEBUG_NAVIGATION = Boolean.getBoolean("bpark.debug.navigation");
+
+    private static final Pattern CONTROLLER_ATTRIBUTE = Pattern.compile("fx:controller=\"([^\"]+)\"");
+
+    /** FXML sources read by {@link #preload(String...)}, by path. */
+    private static final Map<String, byte[]> fxmlSources = new ConcurrentHashMap<>();
+
+    /** Loaded screens of {@link ReusableView} controllers, by path. Only used on the JavaFX thread. */
+    private static final Map<String, View> views = new HashMap<>();
+
+    private static Popup debugPopup;
+    private static Label debugLabel;
+
+    /**
+     * The root node and controller of a loaded screen.
+     */
+    private static class View {
+        final Parent root;
+        final Object controller;
+
+        View(Parent root, Object controller) {
+            this.root = root;
+            this.controller = controller;
+        }
+    }
+
+    /**
+     * Reads the given FXML files and loads their controller classes on a background thread,
+     * then builds the screens with a {@link ReusableView} controller on the JavaFX thread,
+     * one per event so the current screen stays responsive. Files that cannot be read are
+     * skipped and loaded normally on first navigation.
+     *
+     * @param fxmlPaths the FXML files to preload, e.g. "/adminGui/AdminReports.fxml"
+     */
+    public static void preload(String... fxmlPaths) {
+        Thread preloader = new Thread(() -> {
+            for (String fxmlPath : fxmlPaths) {
+                try (InputStream in = SceneNavigator.class.getResourceAsStream(fxmlPath)) {
+                    if (in == null) {
+                        System.err.println("FXML not found for preloading: " + fxmlPath);
+                        continue;
+                    }
+                    byte[] source = in.readAllBytes();
+                    fxmlSources.put(fxmlPath, source);
+
+                    Matcher matcher = CONTROLLER_ATTRIBUTE.matcher(new String(source, StandardCharsets.UTF_8));
+                    if (matcher.find()) {
+                        Class<?> controllerClass = Class.forName(matcher.group(1));
+                        if (ReusableView.class.isAssignableFrom(controllerClass)) {
+                            Platform.runLater(() -> {
+                                if (!views.containsKey(fxmlPath)) {
+                                    load(fxmlPath);
+                                }
+                            });
+                        }
+                    }
+                } catch (IOException | ClassNotFoundException | LinkageError e) {
+                    e.printStackTrace();
+                }
+            }
+        }, "fxml-preloader");
+        preloader.setDaemon(true);
+        preloader.start();
+    }
+
     /**
      * Navigates to the specified FXML scene and sets the window title.
      * If the destination is the SubscriberDashboard, it injects the ClientController.
@@ -26,81 +116,124 @@ public class SceneNavigator {
      * @param title    The title to display on the stage after navigation.
      */
     public static void navigateTo(ActionEvent event, String fxmlPath, String title) {
-        try {
-            FXMLLoader loader = new FXMLLoader(SceneNavigator.class.getResource(fxmlPath));
-            Parent root = loader.load();
-
-            // Check if it's the Subscriber Dashboard and inject the client
-            if (fxmlPath.equals("/subscriberGui/SubscriberDashboard.fxml")) {
-                Object controller = loader.getController();
-                if (controller instanceof subscriberGui.SubscriberDashboardController dashboardController) {
-                    dashboardController.setClient(ClientController.getClient());
-                }
-            }
-
-            Stage stage;
-
-            if (event != null && event.getSource() instanceof Node) {
-                stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-            } else {
-                stage = ClientController.getPrimaryStage();
-            }
-
-
-            if (stage != null) {
-                stage.setScene(new Scene(root));
-                stage.setTitle(title);
-                stage.show();
-            } else {
-                System.err.println("Could not determine a valid stage for navigation.");
-            }
+        Object controller = navigateToAndGetController(event, fxmlPath, title);
 
-        } catch (IOException e) {
-            e.printStackTrace();
+        // Check if it's the Subscriber Dashboard and inject the client
+        if (controller instanceof subscriberGui.SubscriberDashboardController dashboardController) {
+            dashboardController.setClient(ClientController.getClient());
         }
     }
 
     /**
-     * Loads the given FXML, returns its controller, and sets the window scene and title.
+     * Shows the given FXML, returns its controller, and sets the window scene and title.
      * Useful for retrieving the controller to call methods like setClient().
      *
      * @param <T>      The type of the controller class.
      * @param event    The ActionEvent that triggered the navigation, or null.
      * @param fxmlPath Path to the FXML file.
      * @param title    The window title.
-     * @return The controller of the loaded FXML, or null if there was an error.
+     * @return The controller of the shown FXML, or null if there was an error.
      */
+    @SuppressWarnings("unchecked")
     public static <T> T navigateToAndGetController(ActionEvent event, String fxmlPath, String title) {
-        try {
-            FXMLLoader loader = new FXMLLoader(SceneNavigator.class.getResource(fxmlPath));
-            Parent root = loader.load();
+        long start = System.nanoTime();
 
-            T controller = loader.getController();
-
-            Stage stage;
+        Stage stage;
+        if (event != null && event.getSource() instanceof Node) {
+            stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
+        } else {
+            stage = ClientController.getPrimaryStage();
+        }
+        if (stage == null) {
+            System.err.println("Could not determine a valid stage for navigation.");
+            return null;
+        }
 
-            if (event != null) {
-                stage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-            } else {
-                stage = ClientController.getPrimaryStage();
+        View view = views.get(fxmlPath);
+        boolean reused = view != null && (view.root.getScene() == null || view.root.getScene() == stage.getScene());
+        if (reused) {
+            ((ReusableView) view.controller).resetView();
+        } else {
+            view = load(fxmlPath);
+            if (view == null) {
+                return null;
             }
+        }
 
-            if (stage != null) {
-                stage.setScene(new Scene(root));
-                stage.setTitle(title);
-                stage.show();
-            } else {
-                System.err.println("Could not determine a valid stage for navigation.");
-            }
+        setRoot(stage, view.root, title);
+        if (DEBUG_NAVIGATION) {
+            reportTiming(stage, fxmlPath, start, reused);
+        }
+        return (T) view.controller;
+    }
 
-            return controller;
+    /**
+     * Shows a root node in the window, reusing the window's scene if it has one.
+     * For screens loaded outside the navigator.
+     *
+     * @param stage the window
+     * @param root  the root node of the screen
+     * @param title the window title
+     */
+    public static void setRoot(Stage stage, Parent root, String title) {
+        Scene scene = stage.getScene();
+        if (scene == null) {
+            stage.setScene(new Scene(root));
+        } else if (scene.getRoot() != root) {
+            scene.setRoot(root);
+            stage.sizeToScene();
+        }
+        stage.setTitle(title);
+        stage.show();
+    }
 
+    /**
+     * Loads a screen from its preloaded source, or from its resource if it was not preloaded,
+     * and keeps it if its controller is a {@link ReusableView}.
+     *
+     * @return the loaded screen, or null if the FXML could not be loaded
+     */
+    private static View load(String fxmlPath) {
+        try {
+            FXMLLoader loader = new FXMLLoader(SceneNavigator.class.getResource(fxmlPath));
+            byte[] source = fxmlSources.get(fxmlPath);
+            Parent root = source != null ? loader.load(new ByteArrayInputStream(source)) : loader.load();
+            View view = new View(root, loader.getController());
+            if (view.controller instanceof ReusableView) {
+                views.put(fxmlPath, view);
+            }
+            return view;
         } catch (IOException e) {
             e.printStackTrace();
             return null;
         }
-    } 
-    
-
+    }
 
+    /**
+     * Shows the time from the start of a navigation to the first layout of the new screen
+     * in the debug overlay, once that layout happened.
+     */
+    private static void reportTiming(Stage stage, String fxmlPath, long start, boolean reused) {
+        Scene scene = stage.getScene();
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            String screen = fxmlPath.substring(fxmlPath.lastIndexOf('/') + 1).replace(".fxml", "");
+            String text = String.format("%s: %.1f ms (%s)", screen, (System.nanoTime() - start) / 1_000_000.0,
+                    reused ? "reused" : "loaded");
+            System.out.println("Navigation " + text);
+
+            if (debugPopup == null) {
+                debugLabel = new Label();
+                debugLabel.setStyle("-fx-background-color: rgba(0,0,0,0.7); -fx-text-fill: #7CFC00; "
+                        + "-fx-padding: 4 8; -fx-font-family: monospace; -fx-font-size: 11px;");
+                debugLabel.setMouseTransparent(true);
+                debugPopup = new Popup();
+                debugPopup.getContent().add(debugLabel);
+            }
+            debugLabel.setText(text);
+            debugPopup.show(stage, stage.getX() + scene.getX() + 8, stage.getY() + scene.getY() + 8);
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
 }
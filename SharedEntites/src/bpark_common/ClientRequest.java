@@ -8,6 +8,11 @@ import java.io.Serializable;
  * needed to execute that command on the server side.
  * <p>
  * It implements {@link Serializable} to allow transmission over a network.
+ * <p>
+ * The client numbers every request it waits on with a request id, which the server copies
+ * into its responses so each response completes the request it answers. Requests that change
+ * data can carry an idempotency key: a retry of the same operation sends the same key.
+ * </p>
  */
 public class ClientRequest implements Serializable {
 
@@ -19,6 +24,12 @@ public class ClientRequest implements Serializable {
     /** The parameters associated with the command, if any. */
     private Object[] params;
 
+    /** Number of the request on its connection, echoed in the responses; 0 if no response is awaited. */
+    private long requestId;
+
+    /** Key that identifies the operation across retries, or null if the request is safe to repeat. */
+    private String idempotencyKey;
+
     /**
      * Constructs a new ClientRequest with the given command and parameters.
      *
@@ -30,6 +41,18 @@ public class ClientRequest implements Serializable {
         this.params = params;
     }
 
+    /**
+     * Constructs a new ClientRequest for an operation that must not be applied twice.
+     *
+     * @param command        the name of the command to execute
+     * @param params         an array of parameters needed for the command (may be null or empty)
+     * @param idempotencyKey the key of the operation, the same for all attempts of it
+     */
+    public ClientRequest(String command, Object[] params, String idempotencyKey) {
+        this(command, params);
+        this.idempotencyKey = idempotencyKey;
+    }
+
     /**
      * Returns the command string associated with this request.
      *
@@ -47,4 +70,31 @@ public class ClientRequest implements Serializable {
     public Object[] getParams() {
         return params;
     }
+
+    /**
+     * Returns the request id that the server echoes in its responses.
+     *
+     * @return the request id, or 0 if no response is awaited
+     */
+    public long getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Sets the request id. Assigned by the client for every attempt.
+     *
+     * @param requestId the request id
+     */
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    /**
+     * Returns the key that identifies the operation across retries.
+     *
+     * @return the idempotency key, or null if none was given
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
 }
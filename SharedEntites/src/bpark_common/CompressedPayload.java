@@ -0,0 +1,182 @@
+package bpark_common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The data of a {@link ServerResponse} in compressed form.
+ * <p>
+ * Large list responses repeat the same class descriptors, field names and values in every row,
+ * which Deflate compresses well. Since every response is compressed on its own, a preset
+ * dictionary built from the serialized shape of the entity classes lets even the first rows
+ * refer to those strings. Both sides build the dictionary from the same classes; its checksum
+ * is exchanged when compression is negotiated, so a client with different entity classes
+ * simply gets uncompressed responses.
+ * </p>
+ */
+public class CompressedPayload implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Name of the codec, sent when compression is negotiated. */
+    public static final String CODEC = "deflate-dict-v1";
+
+    /** Classes whose serialized form makes up the dictionary, most frequent last. */
+    private static final Class<?>[] DICTIONARY_CLASSES = {
+            ResultPage.class, ResultChunk.class,
+            entities.User.class, entities.ParkingSpace.class, entities.Reservation.class,
+            entities.Subscriber.class, entities.SystemLog.class, entities.ParkingHistory.class
+    };
+
+    private static final byte[] DICTIONARY = buildDictionary();
+
+    /** The deflated Java serialization of the data. */
+    private final byte[] bytes;
+
+    /** The length of the serialized data before compression. */
+    private final int rawLength;
+
+    private CompressedPayload(byte[] bytes, int rawLength) {
+        this.bytes = bytes;
+        this.rawLength = rawLength;
+    }
+
+    /**
+     * Compresses serialized data.
+     *
+     * @param raw the Java serialization of the data
+     * @return the compressed payload
+     */
+    public static CompressedPayload compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return new CompressedPayload(out.toByteArray(), raw.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Inflates and deserializes the data.
+     *
+     * @return the data
+     * @throws IOException if the payload is corrupt or was compressed with another dictionary
+     */
+    public Object decompress() throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            byte[] raw = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(raw, length, rawLength - length);
+                if (read == 0 && inflater.needsDictionary()) {
+                    if (inflater.getAdler() != dictionaryChecksum()) {
+                        throw new IOException("Payload was compressed with another dictionary.");
+                    }
+                    inflater.setDictionary(DICTIONARY);
+                } else if (read == 0 && inflater.needsInput()) {
+                    throw new IOException("Compressed payload is truncated.");
+                }
+                length += read;
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(raw, 0, length))) {
+                return in.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown class in compressed payload.", e);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Compressed payload is corrupt.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Returns the Java serialization of an object, as compressed by {@link #compress(byte[])}.
+     *
+     * @param data the object
+     * @return its serialized bytes
+     * @throws IOException if the object is not serializable
+     */
+    public static byte[] serialize(Object data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream objects = new ObjectOutputStream(out)) {
+            objects.writeObject(data);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the Adler-32 checksum of the dictionary, sent when compression is negotiated
+     */
+    public static int dictionaryChecksum() {
+        Adler32 adler = new Adler32();
+        adler.update(DICTIONARY);
+        return (int) adler.getValue();
+    }
+
+    /**
+     * @return the size of the compressed data in bytes
+     */
+    public int getCompressedLength() {
+        return bytes.length;
+    }
+
+    /**
+     * @return the size of the serialized data before compression in bytes
+     */
+    public int getRawLength() {
+        return rawLength;
+    }
+
+    /**
+     * Builds the dictionary from the strings Java serialization writes for the entity classes:
+     * class names, then each field's name and type signature, in the order the stream uses.
+     */
+    private static byte[] buildDictionary() {
+        StringBuilder dictionary = new StringBuilder("java.util.ArrayList").append("java.lang.Integer")
+                .append("java.lang.Number").append("java.lang.Boolean").append("java.time.Ser")
+                .append("Ljava/lang/String;").append("Ljava/lang/Object;").append("Ljava/util/List;");
+        for (Class<?> type : DICTIONARY_CLASSES) {
+            dictionary.append(type.getName());
+            Field[] fields = Arrays.stream(type.getDeclaredFields())
+                    .filter(field -> (field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) == 0)
+                    .sorted(Comparator.comparing((Field field) -> !field.getType().isPrimitive())
+                            .thenComparing(Field::getName))
+                    .toArray(Field[]::new);
+            for (Field field : fields) {
+                dictionary.append(field.getName());
+                if (!field.getType().isPrimitive()) {
+                    dictionary.append(signatureOf(field.getType()));
+                }
+            }
+        }
+        return dictionary.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String signatureOf(Class<?> type) {
+        return type.isArray() ? type.getName().replace('.', '/') : "L" + type.getName().replace('.', '/') + ";";
+    }
+}
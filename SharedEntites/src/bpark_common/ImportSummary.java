@@ -0,0 +1,81 @@
+package bpark_common;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Represents the outcome of a bulk subscriber import in the BPARK system.
+ * The server sends one summary when the last chunk of an import was processed.
+ * Only the first errors are listed; the failed count covers all of them.
+ */
+public class ImportSummary implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The number of data rows received, excluding the header. */
+    private int totalRows;
+
+    /** The number of subscribers that were added. */
+    private int importedCount;
+
+    /** The number of rows that were rejected or failed to insert. */
+    private int failedCount;
+
+    /** Per-row error messages in the form "Row N: reason", capped by the server. */
+    private List<String> errors;
+
+    /** The time spent on the import, in milliseconds. */
+    private long elapsedMillis;
+
+    /**
+     * Constructs a new import summary.
+     *
+     * @param totalRows     the number of data rows received
+     * @param importedCount the number of subscribers added
+     * @param failedCount   the number of rows that failed
+     * @param errors        the first per-row error messages
+     * @param elapsedMillis the time spent on the import, in milliseconds
+     */
+    public ImportSummary(int totalRows, int importedCount, int failedCount, List<String> errors, long elapsedMillis) {
+        this.totalRows = totalRows;
+        this.importedCount = importedCount;
+        this.failedCount = failedCount;
+        this.errors = errors;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return the number of data rows received, excluding the header
+     */
+    public int getTotalRows() {
+        return totalRows;
+    }
+
+    /**
+     * @return the number of subscribers that were added
+     */
+    public int getImportedCount() {
+        return importedCount;
+    }
+
+    /**
+     * @return the number of rows that were rejected or failed to insert
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * @return the first per-row error messages
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the time spent on the import, in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
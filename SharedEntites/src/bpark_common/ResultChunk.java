@@ -0,0 +1,59 @@
+package bpark_common;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Represents one chunk of a streamed query result in the BPARK system.
+ * The server sends a large result as a sequence of chunks under the same
+ * response command; the client appends them until it receives the last one.
+ *
+ * @param <T> the type of the rows in the chunk
+ */
+public class ResultChunk<T extends Serializable> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The rows of this chunk, in result order. */
+    private List<T> rows;
+
+    /** The position of this chunk in the stream, starting from 0. */
+    private int sequence;
+
+    /** Whether this is the final chunk of the stream. */
+    private boolean last;
+
+    /**
+     * Constructs a new result chunk.
+     *
+     * @param rows     the rows of this chunk
+     * @param sequence the position of this chunk in the stream
+     * @param last     whether this is the final chunk
+     */
+    public ResultChunk(List<T> rows, int sequence, boolean last) {
+        this.rows = rows;
+        this.sequence = sequence;
+        this.last = last;
+    }
+
+    /**
+     * @return the rows of this chunk
+     */
+    public List<T> getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the position of this chunk in the stream, starting from 0
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return true if this is the final chunk of the stream
+     */
+    public boolean isLast() {
+        return last;
+    }
+}
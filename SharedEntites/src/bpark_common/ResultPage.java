@@ -0,0 +1,78 @@
+package bpark_common;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Represents one page of a server-side query result in the BPARK system.
+ * The server applies the filter, sort key and page window before sending,
+ * so the client only receives the rows it is about to display.
+ *
+ * @param <T> the type of the rows in the page
+ */
+public class ResultPage<T extends Serializable> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The rows of this page, already filtered and sorted by the server. */
+    private List<T> rows;
+
+    /** The index of the first row of this page within the full result. */
+    private int offset;
+
+    /** The maximum number of rows requested for this page. */
+    private int limit;
+
+    /** The number of rows matching the query across all pages. */
+    private int totalCount;
+
+    /**
+     * Constructs a new result page.
+     *
+     * @param rows       the rows of this page
+     * @param offset     the index of the first row within the full result
+     * @param limit      the requested page size
+     * @param totalCount the number of rows matching the query across all pages
+     */
+    public ResultPage(List<T> rows, int offset, int limit, int totalCount) {
+        this.rows = rows;
+        this.offset = offset;
+        this.limit = limit;
+        this.totalCount = totalCount;
+    }
+
+    /**
+     * @return the rows of this page
+     */
+    public List<T> getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the index of the first row of this page within the full result
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the requested page size
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the number of rows matching the query across all pages
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return true if more rows exist after this page
+     */
+    public boolean hasNext() {
+        return offset + rows.size() < totalCount;
+    }
+}
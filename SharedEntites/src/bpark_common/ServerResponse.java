@@ -37,6 +37,21 @@ public class ServerResponse implements Serializable {
      */
     private Object data;
 
+    /**
+     * The request id of the {@link ClientRequest} this response answers, or 0 if it answers none.
+     */
+    private long requestId;
+
+    /**
+     * A version of the data for caching: equal data has an equal ETag, or null if not cached.
+     */
+    private String etag;
+
+    /**
+     * Whether the data is omitted because the client already holds the version named by the ETag.
+     */
+    private boolean notModified;
+
     /**
      * Constructs a ServerResponse with all properties.
      *
@@ -111,4 +126,49 @@ public class ServerResponse implements Serializable {
     public void setData(Object data) {
         this.data = data;
     }
+
+    /**
+     * @return The request id of the answered request, or 0 if none.
+     */
+    public long getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Sets the request id of the answered request.
+     * @param requestId The request id.
+     */
+    public void setRequestId(long requestId) {
+        this.requestId = requestId;
+    }
+
+    /**
+     * @return The ETag of the data, or null if the data is not meant to be cached.
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Sets the ETag of the data.
+     * @param etag The ETag.
+     */
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    /**
+     * @return true if the data was omitted because the client's cached version is current.
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /**
+     * Marks the response as answering a cached version that is still current.
+     * @param notModified true if the data was omitted.
+     */
+    public void setNotModified(boolean notModified) {
+        this.notModified = notModified;
+    }
 }
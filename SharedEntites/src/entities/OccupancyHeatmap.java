@@ -0,0 +1,39 @@
+package entities;
+
+import java.io.Serializable;
+import java.time.YearMonth;
+
+/**
+ * Parking activity by weekday and hour of day over a range of months. Rows are weekdays
+ * from Monday (0) to Sunday (6), columns are hours of the day.
+ */
+public class OccupancyHeatmap implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private YearMonth from;
+    private YearMonth to;
+    private double[][] averageOccupancy;
+    private double[][] averageDwellMinutes;
+    private int[][] arrivals;
+
+    public OccupancyHeatmap(YearMonth from, YearMonth to, double[][] averageOccupancy,
+            double[][] averageDwellMinutes, int[][] arrivals) {
+        this.from = from;
+        this.to = to;
+        this.averageOccupancy = averageOccupancy;
+        this.averageDwellMinutes = averageDwellMinutes;
+        this.arrivals = arrivals;
+    }
+
+    public YearMonth getFrom() { return from; }
+    public YearMonth getTo() { return to; }
+
+    /** @return the average number of occupied spots in each weekday and hour */
+    public double[][] getAverageOccupancy() { return averageOccupancy; }
+
+    /** @return the average parking time in minutes of sessions that started in each weekday and hour */
+    public double[][] getAverageDwellMinutes() { return averageDwellMinutes; }
+
+    /** @return the number of arrivals in each weekday and hour */
+    public int[][] getArrivals() { return arrivals; }
+}
@@ -0,0 +1,64 @@
+package entities;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Occupancy of the parking lot over a time range, as occupied, reserved and free spot counts.
+ * At minute resolution every point is one sample; at hour and day resolution the counts are
+ * averages over the period and the maximum occupancy is reported alongside.
+ */
+public class OccupancySeries implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** The period covered by each point. */
+    public enum Resolution { MINUTE, HOUR, DAY }
+
+    /**
+     * One point of the series.
+     */
+    public static class Point implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private LocalDateTime time;
+        private double occupied;
+        private double reserved;
+        private double free;
+        private int maxOccupied;
+
+        public Point(LocalDateTime time, double occupied, double reserved, double free, int maxOccupied) {
+            this.time = time;
+            this.occupied = occupied;
+            this.reserved = reserved;
+            this.free = free;
+            this.maxOccupied = maxOccupied;
+        }
+
+        /** @return the start of the period */
+        public LocalDateTime getTime() { return time; }
+        public double getOccupied() { return occupied; }
+        public double getReserved() { return reserved; }
+        public double getFree() { return free; }
+        public int getMaxOccupied() { return maxOccupied; }
+    }
+
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private Resolution resolution;
+    private List<Point> points;
+
+    public OccupancySeries(LocalDateTime from, LocalDateTime to, Resolution resolution, List<Point> points) {
+        this.from = from;
+        this.to = to;
+        this.resolution = resolution;
+        this.points = points;
+    }
+
+    public LocalDateTime getFrom() { return from; }
+    public LocalDateTime getTo() { return to; }
+    public Resolution getResolution() { return resolution; }
+
+    /** @return the points in time order; periods without samples are left out */
+    public List<Point> getPoints() { return points; }
+}
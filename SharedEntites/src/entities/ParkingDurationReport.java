@@ -0,0 +1,75 @@
+package entities;
+
+import java.io.Serializable;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Distribution of parking times over a range of months, for the whole lot and per spot.
+ * Percentiles are estimated from quantile sketches and are accurate to about 1%.
+ */
+public class ParkingDurationReport implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Statistics of the completed sessions of one spot, or of all spots.
+     */
+    public static class Row implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private int parkingSpaceId;
+        private long sessions;
+        private double averageMinutes;
+        private double p50Minutes;
+        private double p90Minutes;
+        private double p99Minutes;
+        private long overstayMinutes;
+        private int lateCount;
+        private int extensionCount;
+
+        public Row(int parkingSpaceId, long sessions, double averageMinutes, double p50Minutes, double p90Minutes,
+                   double p99Minutes, long overstayMinutes, int lateCount, int extensionCount) {
+            this.parkingSpaceId = parkingSpaceId;
+            this.sessions = sessions;
+            this.averageMinutes = averageMinutes;
+            this.p50Minutes = p50Minutes;
+            this.p90Minutes = p90Minutes;
+            this.p99Minutes = p99Minutes;
+            this.overstayMinutes = overstayMinutes;
+            this.lateCount = lateCount;
+            this.extensionCount = extensionCount;
+        }
+
+        /** @return the spot, or 0 for the row of all spots */
+        public int getParkingSpaceId() { return parkingSpaceId; }
+        public long getSessions() { return sessions; }
+        public double getAverageMinutes() { return averageMinutes; }
+        public double getP50Minutes() { return p50Minutes; }
+        public double getP90Minutes() { return p90Minutes; }
+        public double getP99Minutes() { return p99Minutes; }
+        public long getOverstayMinutes() { return overstayMinutes; }
+        public int getLateCount() { return lateCount; }
+        public int getExtensionCount() { return extensionCount; }
+    }
+
+    private YearMonth from;
+    private YearMonth to;
+    private Row total;
+    private List<Row> spots;
+
+    public ParkingDurationReport(YearMonth from, YearMonth to, Row total, List<Row> spots) {
+        this.from = from;
+        this.to = to;
+        this.total = total;
+        this.spots = spots;
+    }
+
+    public YearMonth getFrom() { return from; }
+    public YearMonth getTo() { return to; }
+
+    /** @return the statistics of all spots together */
+    public Row getTotal() { return total; }
+
+    /** @return the statistics of each spot with sessions, by spot number */
+    public List<Row> getSpots() { return spots; }
+}
@@ -0,0 +1,42 @@
+package entities;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Estimated numbers of distinct subscribers who parked in a date range,
+ * per period and over the whole range. The total is not the sum of the
+ * periods, since a subscriber who parked in several periods counts once.
+ */
+public class UniqueSubscriberReport implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Grouping of the per-period counts. */
+    public enum Granularity { DAY, WEEK, MONTH }
+
+    private LocalDate from;
+    private LocalDate to;
+    private Granularity granularity;
+    private Map<LocalDate, Long> periodCounts;
+    private long total;
+
+    public UniqueSubscriberReport(LocalDate from, LocalDate to, Granularity granularity,
+                                  Map<LocalDate, Long> periodCounts, long total) {
+        this.from = from;
+        this.to = to;
+        this.granularity = granularity;
+        this.periodCounts = periodCounts;
+        this.total = total;
+    }
+
+    public LocalDate getFrom() { return from; }
+    public LocalDate getTo() { return to; }
+    public Granularity getGranularity() { return granularity; }
+
+    /** @return the estimated count per period, keyed by the first day of the period, in date order */
+    public Map<LocalDate, Long> getPeriodCounts() { return periodCounts; }
+
+    /** @return the estimated number of distinct subscribers over the whole range */
+    public long getTotal() { return total; }
+}
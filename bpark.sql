@@ -17,6 +17,90 @@ USE `bpark`;
 /*!40101 SET @OLD_SQL_MODE=@@SQL_MODE, SQL_MODE='NO_AUTO_VALUE_ON_ZERO' */;
 /*!40111 SET @OLD_SQL_NOTES=@@SQL_NOTES, SQL_NOTES=0 */;
 
+--
+-- Table structure for table `id_sequence`
+--
+
+DROP TABLE IF EXISTS `id_sequence`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `id_sequence` (
+  `seq_name` varchar(64) NOT NULL,
+  `next_value` bigint NOT NULL DEFAULT '0',
+  PRIMARY KEY (`seq_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `id_sequence`
+--
+
+LOCK TABLES `id_sequence` WRITE;
+/*!40000 ALTER TABLE `id_sequence` DISABLE KEYS */;
+INSERT INTO `id_sequence` VALUES ('confirmation_code',0),('reservation',4),('subscriber',8),('system_log',31);
+/*!40000 ALTER TABLE `id_sequence` ENABLE KEYS */;
+UNLOCK TABLES;
+
+--
+-- Table structure for table `archive_state`
+--
+
+DROP TABLE IF EXISTS `archive_state`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `archive_state` (
+  `table_name` varchar(64) NOT NULL,
+  `archived_before` datetime NOT NULL,
+  PRIMARY KEY (`table_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `idempotency_key`
+--
+
+DROP TABLE IF EXISTS `idempotency_key`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `idempotency_key` (
+  `idempotency_key` varchar(64) NOT NULL,
+  `command` varchar(64) NOT NULL,
+  `response_command` varchar(64) NOT NULL,
+  `success` tinyint(1) NOT NULL,
+  `message` varchar(255) DEFAULT NULL,
+  `created_at` datetime NOT NULL,
+  PRIMARY KEY (`idempotency_key`,`command`),
+  KEY `idx_idempotency_key_created` (`created_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `job_run`
+--
+
+DROP TABLE IF EXISTS `job_run`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `job_run` (
+  `job_name` varchar(64) NOT NULL,
+  `last_run` datetime NOT NULL,
+  `last_status` varchar(16) NOT NULL,
+  `last_duration_ms` bigint DEFAULT '0',
+  `finished_at` datetime DEFAULT NULL,
+  PRIMARY KEY (`job_name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Dumping data for table `job_run`
+--
+
+LOCK TABLES `job_run` WRITE;
+/*!40000 ALTER TABLE `job_run` DISABLE KEYS */;
+INSERT INTO `job_run` VALUES ('monthly-reports','2025-08-01 00:05:00','success',0,NULL);
+/*!40000 ALTER TABLE `job_run` ENABLE KEYS */;
+UNLOCK TABLES;
+
 --
 -- Table structure for table `monthly_parking_time_report`
 --
@@ -69,6 +153,44 @@ INSERT INTO `monthly_subscriber_report` VALUES (2025,6,'3,0,0,0,0,0,0,0,0,5,0,0,
 /*!40000 ALTER TABLE `monthly_subscriber_report` ENABLE KEYS */;
 UNLOCK TABLES;
 
+--
+-- Table structure for table `occupancy_cube`
+--
+
+DROP TABLE IF EXISTS `occupancy_cube`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `occupancy_cube` (
+  `month` char(7) NOT NULL,
+  `weekday` tinyint NOT NULL,
+  `hour` tinyint NOT NULL,
+  `arrivals` int NOT NULL DEFAULT '0',
+  `dwell_count` int NOT NULL DEFAULT '0',
+  `dwell_minutes` int NOT NULL DEFAULT '0',
+  `occupied_minutes` int NOT NULL DEFAULT '0',
+  PRIMARY KEY (`month`,`weekday`,`hour`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
+--
+-- Table structure for table `parking_duration_stats`
+--
+
+DROP TABLE IF EXISTS `parking_duration_stats`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `parking_duration_stats` (
+  `month` char(7) NOT NULL,
+  `parking_space_id` int NOT NULL,
+  `sessions` int NOT NULL DEFAULT '0',
+  `duration_sketch` blob NOT NULL,
+  `overstay_minutes` bigint NOT NULL DEFAULT '0',
+  `late_count` int NOT NULL DEFAULT '0',
+  `extension_count` int NOT NULL DEFAULT '0',
+  PRIMARY KEY (`month`,`parking_space_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `parking_history`
 --
@@ -86,9 +208,12 @@ CREATE TABLE `parking_history` (
   `extended_hours` int DEFAULT '0',
   `was_late` tinyint(1) DEFAULT '0',
   `picked_up` tinyint(1) DEFAULT '0',
+  `overstay_minutes` int DEFAULT '0',
   PRIMARY KEY (`history_id`),
   KEY `subscriber_code` (`subscriber_code`),
   KEY `parking_space_id` (`parking_space_id`),
+  KEY `idx_active_sessions` (`picked_up`,`exit_time`),
+  KEY `idx_entry_time` (`entry_time`),
   CONSTRAINT `parking_history_ibfk_1` FOREIGN KEY (`subscriber_code`) REFERENCES `subscriber` (`subscriber_code`),
   CONSTRAINT `parking_history_ibfk_2` FOREIGN KEY (`parking_space_id`) REFERENCES `parking_space` (`parking_space_id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=35 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
@@ -100,10 +225,34 @@ CREATE TABLE `parking_history` (
 
 LOCK TABLES `parking_history` WRITE;
 /*!40000 ALTER TABLE `parking_history` DISABLE KEYS */;
-INSERT INTO `parking_history` VALUES (13,'SUB5',6,'2025-05-30 22:27:38','2025-05-31 02:27:38',0,0,0,0),(14,'SUB5',5,'2025-05-30 18:27:38','2025-05-30 21:27:38',0,0,0,0),(15,'SUB5',7,'2025-05-30 15:27:38','2025-05-30 19:27:38',0,0,1,0),(16,'SUB5',9,'2025-05-31 01:27:38','2025-05-31 05:27:38',0,0,1,0),(17,'SUB6',7,'2025-05-30 23:50:20','2025-05-31 03:50:20',0,0,1,0),(18,'SUB3',5,'2025-05-30 23:50:48','2025-05-31 03:50:48',0,0,1,0),(19,'SUB7',1,'2025-05-31 00:06:50','2025-06-01 15:24:44',1,4,1,1),(20,'SUB3',2,'2025-06-01 00:36:34','2025-06-01 12:36:34',1,4,1,0),(21,'SUB5',3,'2025-06-01 12:32:33','2025-06-01 15:20:19',1,4,0,1),(22,'SUB3',10,'2025-06-01 14:06:15','2025-06-01 15:22:56',0,0,0,1),(23,'SUB7',1,'2025-06-01 14:32:16','2025-06-01 15:23:20',1,4,0,1),(24,'SUB7',4,'2025-06-01 15:24:29','2025-06-01 15:24:35',0,0,0,1),(25,'SUB5',8,'2025-06-01 15:28:02','2025-06-01 15:28:05',0,0,0,1),(26,'SUB5',1,'2025-06-01 15:28:23','2025-06-01 15:28:37',0,0,0,1),(27,'SUB7',1,'2025-06-01 11:16:29','2025-06-01 16:17:30',1,4,0,1),(29,'SUB3',1,'2025-06-01 16:32:37','2025-06-01 16:33:08',0,0,0,1),(32,'SUB3',3,'2025-06-10 10:00:00','2025-06-10 15:30:00',0,0,1,1),(33,'SUB4',4,'2025-06-10 07:30:00','2025-06-10 13:50:00',1,4,1,1),(34,'SUB5',5,'2025-06-10 06:00:00','2025-06-10 12:30:00',1,4,1,1);
+INSERT INTO `parking_history` VALUES (13,'SUB5',6,'2025-05-30 22:27:38','2025-05-31 02:27:38',0,0,0,0,0),(14,'SUB5',5,'2025-05-30 18:27:38','2025-05-30 21:27:38',0,0,0,0,0),(15,'SUB5',7,'2025-05-30 15:27:38','2025-05-30 19:27:38',0,0,1,0,0),(16,'SUB5',9,'2025-05-31 01:27:38','2025-05-31 05:27:38',0,0,1,0,0),(17,'SUB6',7,'2025-05-30 23:50:20','2025-05-31 03:50:20',0,0,1,0,0),(18,'SUB3',5,'2025-05-30 23:50:48','2025-05-31 03:50:48',0,0,1,0,0),(19,'SUB7',1,'2025-05-31 00:06:50','2025-06-01 15:24:44',1,4,1,1,0),(20,'SUB3',2,'2025-06-01 00:36:34','2025-06-01 12:36:34',1,4,1,0,0),(21,'SUB5',3,'2025-06-01 12:32:33','2025-06-01 15:20:19',1,4,0,1,0),(22,'SUB3',10,'2025-06-01 14:06:15','2025-06-01 15:22:56',0,0,0,1,0),(23,'SUB7',1,'2025-06-01 14:32:16','2025-06-01 15:23:20',1,4,0,1,0),(24,'SUB7',4,'2025-06-01 15:24:29','2025-06-01 15:24:35',0,0,0,1,0),(25,'SUB5',8,'2025-06-01 15:28:02','2025-06-01 15:28:05',0,0,0,1,0),(26,'SUB5',1,'2025-06-01 15:28:23','2025-06-01 15:28:37',0,0,0,1,0),(27,'SUB7',1,'2025-06-01 11:16:29','2025-06-01 16:17:30',1,4,0,1,0),(29,'SUB3',1,'2025-06-01 16:32:37','2025-06-01 16:33:08',0,0,0,1,0),(32,'SUB3',3,'2025-06-10 10:00:00','2025-06-10 15:30:00',0,0,1,1,0),(33,'SUB4',4,'2025-06-10 07:30:00','2025-06-10 13:50:00',1,4,1,1,0),(34,'SUB5',5,'2025-06-10 06:00:00','2025-06-10 12:30:00',1,4,1,1,0);
 /*!40000 ALTER TABLE `parking_history` ENABLE KEYS */;
 UNLOCK TABLES;
 
+--
+-- Table structure for table `parking_history_archive`
+--
+
+DROP TABLE IF EXISTS `parking_history_archive`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `parking_history_archive` (
+  `history_id` int NOT NULL,
+  `subscriber_code` varchar(20) NOT NULL,
+  `parking_space_id` int NOT NULL,
+  `entry_time` datetime NOT NULL,
+  `exit_time` datetime DEFAULT NULL,
+  `extended` tinyint(1) DEFAULT '0',
+  `extended_hours` int DEFAULT '0',
+  `was_late` tinyint(1) DEFAULT '0',
+  `picked_up` tinyint(1) DEFAULT '0',
+  `overstay_minutes` int DEFAULT '0',
+  PRIMARY KEY (`history_id`),
+  KEY `subscriber_code` (`subscriber_code`),
+  KEY `idx_entry_time` (`entry_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `parking_space`
 --
@@ -188,6 +337,21 @@ INSERT INTO `subscriber` VALUES ('SUB1',1,'ibrahem@gmail.com','052-644-3213'),('
 /*!40000 ALTER TABLE `subscriber` ENABLE KEYS */;
 UNLOCK TABLES;
 
+--
+-- Table structure for table `subscriber_day_sketch`
+--
+
+DROP TABLE IF EXISTS `subscriber_day_sketch`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `subscriber_day_sketch` (
+  `day` date NOT NULL,
+  `sketch` varbinary(3073) NOT NULL,
+  `updated_at` timestamp NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (`day`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `system_log`
 --
@@ -204,6 +368,7 @@ CREATE TABLE `system_log` (
   `note` text,
   PRIMARY KEY (`log_id`),
   KEY `by_user` (`by_user`),
+  KEY `idx_log_time` (`log_time`),
   CONSTRAINT `system_log_ibfk_1` FOREIGN KEY (`by_user`) REFERENCES `users` (`id`)
 ) ENGINE=InnoDB AUTO_INCREMENT=31 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
 /*!40101 SET character_set_client = @saved_cs_client */;
@@ -218,6 +383,25 @@ INSERT INTO `system_log` VALUES (1,'Add User','Target-1',1,'2025-05-27 12:12:03'
 /*!40000 ALTER TABLE `system_log` ENABLE KEYS */;
 UNLOCK TABLES;
 
+--
+-- Table structure for table `system_log_archive`
+--
+
+DROP TABLE IF EXISTS `system_log_archive`;
+/*!40101 SET @saved_cs_client     = @@character_set_client */;
+/*!50503 SET character_set_client = utf8mb4 */;
+CREATE TABLE `system_log_archive` (
+  `log_id` int NOT NULL,
+  `action` varchar(100) NOT NULL,
+  `target` varchar(100) DEFAULT NULL,
+  `by_user` int DEFAULT NULL,
+  `log_time` timestamp NULL DEFAULT NULL,
+  `note` text,
+  PRIMARY KEY (`log_id`),
+  KEY `idx_log_time` (`log_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8;
+/*!40101 SET character_set_client = @saved_cs_client */;
+
 --
 -- Table structure for table `users`
 --
@@ -233,7 +417,9 @@ CREATE TABLE `users` (
   `last_name` varchar(50) NOT NULL,
   `role` enum('admin','supervisor','subscriber') NOT NULL,
   PRIMARY KEY (`id`),
-  UNIQUE KEY `username` (`username`)
+  UNIQUE KEY `username` (`username`),
+  KEY `idx_users_name` (`last_name`,`first_name`),
+  KEY `idx_users_first_name` (`first_name`)
 ) ENGINE=InnoDB AUTO_INCREMENT=8 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;
 /*!40101 SET character_set_client = @saved_cs_client */;
 